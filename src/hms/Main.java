@@ -1,5 +1,6 @@
 package hms;
 
+import hms.service.ServiceRegistry;
 import hms.ui.LoginFrame;
 
 import javax.swing.*;
@@ -14,6 +15,10 @@ public class Main {
         // Create data directories if they don't exist
         createDataDirectories();
 
+        // Load all data once; every panel shares these services
+        ServiceRegistry registry = ServiceRegistry.initialize();
+        Runtime.getRuntime().addShutdownHook(new Thread(registry::shutdown, "hms-shutdown"));
+
         // Set look and feel
         try {
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
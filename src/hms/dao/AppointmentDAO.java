@@ -0,0 +1,425 @@
+package hms.dao;
+
+import hms.interfaces.SecondaryIndex;
+import hms.model.Appointment;
+import hms.model.RecurrenceRule;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+public class AppointmentDAO extends LogStructuredDAO<Appointment> {
+
+    private static final String SCHEDULE_INDEX = "schedule";
+    private static final String RECURRENCE_INDEX = "recurrence";
+
+    public AppointmentDAO() {
+        this("data/appointments.txt");
+    }
+
+    public AppointmentDAO(String filePath) {
+        super(filePath);
+        addIndex("patientid", new HashIndex<>(Appointment::getPatientId, false, HashIndex.MatchMode.EXACT));
+        addIndex("doctorid", new HashIndex<>(Appointment::getDoctorId, false, HashIndex.MatchMode.EXACT));
+        addIndex("date", new SortedIndex<Appointment, String, Long>(Appointment::getStartTime,
+                value -> value instanceof Long ? (Long) value : null));
+        addIndex(SCHEDULE_INDEX, newScheduleIndex());
+        addIndex(RECURRENCE_INDEX, new RecurrenceIndex());
+    }
+
+    // Per-doctor, per-day index of one-off appointment times; cancelled appointments free their slot.
+    // Series are left to the recurrence index, which works their sessions out from the rule.
+    private static IntervalIndex<Appointment, String> newScheduleIndex() {
+        return new IntervalIndex<>(appointment -> appointment.isRecurring() ? null : appointment.getDoctorId(),
+                AppointmentDAO::epochDay,
+                Appointment::getStartMinute, Appointment::getEndMinute,
+                appointment -> !"CANCELLED".equalsIgnoreCase(appointment.getStatus()));
+    }
+
+    // Record: ID,PatientID,DoctorID,Date(epoch ms),TimeSlot,Duration(min),Status,Description,Fee,Paid
+    // then for a series: Recurrence (RRULE), or for a changed session of one: ,SeriesID,OccurrenceDay(epoch day)
+    @Override
+    protected Appointment parseEntity(String line) {
+        try {
+            LineTokenizer data = tokenize(line);
+            if (data.fieldCount() < 10) {
+                return null;
+            }
+            Appointment appointment = new Appointment(data.nextTrimmedString(), data.nextTrimmedString(),
+                    data.nextTrimmedString(), new Date(Long.parseLong(data.nextTrimmedString())),
+                    data.nextTrimmedString());
+            appointment.setDurationMinutes(data.nextInt());
+            appointment.setStatus(data.nextTrimmedString());
+            String description = data.nextString();
+            appointment.setDescription(description.equals("null") ? null : description);
+            appointment.setFee(data.nextDouble());
+            appointment.setPaid(data.nextBoolean());
+            if (data.hasMoreFields()) {
+                appointment.setRecurrence(RecurrenceRule.parse(data.nextTrimmedString()));
+            }
+            if (data.hasMoreFields()) {
+                String seriesId = data.nextTrimmedString();
+                appointment.setOccurrenceOf(seriesId, LocalDate.ofEpochDay(Long.parseLong(data.nextTrimmedString())));
+            }
+            return appointment;
+        } catch (Exception e) {
+            System.err.println("Invalid appointment data: " + line);
+            return null;
+        }
+    }
+
+    @Override
+    protected String entityToFileString(Appointment appointment) {
+        String line = LineTokenizer.join(
+                appointment.getAppointmentId(),
+                appointment.getPatientId(),
+                appointment.getDoctorId(),
+                appointment.getAppointmentDate().getTime(),
+                appointment.getTimeSlot(),
+                appointment.getDurationMinutes(),
+                appointment.getStatus(),
+                appointment.getDescription(),
+                appointment.getFee(),
+                appointment.isPaid());
+        if (appointment.isRecurring()) {
+            return line + "," + LineTokenizer.join(appointment.getRecurrence().toRuleString());
+        }
+        if (appointment.getSeriesId() != null && appointment.getOccurrenceDay() != null) {
+            return line + "," + LineTokenizer.join("", appointment.getSeriesId(),
+                    appointment.getOccurrenceDay().toEpochDay());
+        }
+        return line;
+    }
+
+    @Override
+    protected String getIdFromEntity(Appointment appointment) {
+        return appointment.getAppointmentId();
+    }
+
+    @Override
+    protected boolean matchesProperty(Appointment appointment, String propertyName, Object value) {
+        if (value == null) return false;
+
+        switch (propertyName.toLowerCase()) {
+            case "id":
+                return appointment.getAppointmentId().equals(value.toString());
+            case "patientid":
+                return value.toString().equals(appointment.getPatientId());
+            case "doctorid":
+                return value.toString().equals(appointment.getDoctorId());
+            case "status":
+                return appointment.getStatus() != null && appointment.getStatus().equalsIgnoreCase(value.toString());
+            default:
+                return false;
+        }
+    }
+
+    // Properties the management table can be sorted on
+    @Override
+    protected Comparator<Appointment> sortOrder(String propertyName) {
+        switch (propertyName.toLowerCase()) {
+            case "date":
+                return Comparator.comparingLong(Appointment::getStartTime);
+            case "status":
+                return textOrder(Appointment::getStatus);
+            default:
+                return super.sortOrder(propertyName);
+        }
+    }
+
+    public List<Appointment> findByPatient(String patientId) {
+        return findByProperty("patientid", patientId);
+    }
+
+    public List<Appointment> findByDoctor(String doctorId) {
+        return findByProperty("doctorid", doctorId);
+    }
+
+    /**
+     * The doctor's appointments on the day in time order, cancelled ones
+     * included: one-off bookings, changed sessions of series now on the day,
+     * and the unchanged sessions of the doctor's series that fall on it.
+     */
+    public List<Appointment> findByDoctorOnDay(String doctorId, LocalDate day) {
+        readLock.lock();
+        try {
+            List<Appointment> results = onDay(doctorId, day.toEpochDay(), scheduleIndex(), recurrenceIndex());
+            results.sort(Comparator.comparingInt(Appointment::getStartMinute));
+            return results;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // The doctor's appointments from one day to another inclusive, series expanded, in time order
+    public List<Appointment> findByDoctorBetween(String doctorId, LocalDate from, LocalDate to) {
+        readLock.lock();
+        try {
+            IntervalIndex<Appointment, String> schedule = scheduleIndex();
+            RecurrenceIndex recurrences = recurrenceIndex();
+            List<Appointment> results = new ArrayList<>();
+            for (long day = from.toEpochDay(); day <= to.toEpochDay(); day++) {
+                results.addAll(onDay(doctorId, day, schedule, recurrences));
+            }
+            results.sort(Comparator.comparingLong(Appointment::getStartTime));
+            return results;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Every doctor's appointments from one day to another inclusive, series expanded, in time order
+    public List<Appointment> findBetween(LocalDate from, LocalDate to) {
+        readLock.lock();
+        try {
+            ZoneId zone = ZoneId.systemDefault();
+            List<Appointment> results = findByRange("date", from.atStartOfDay(zone).toInstant().toEpochMilli(),
+                    to.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli() - 1);
+            // A series is filed under its first day; its sessions are added below instead
+            results.removeIf(Appointment::isRecurring);
+            RecurrenceIndex recurrences = recurrenceIndex();
+            for (RecurrenceIndex.Series series : recurrences.all()) {
+                Appointment appointment = getCache().get(series.id);
+                for (long day = series.firstOnOrAfter(from.toEpochDay());
+                     day <= Math.min(series.last, to.toEpochDay()); day += series.step) {
+                    if (!recurrences.isChanged(series.id, day)) {
+                        results.add(appointment.occurrenceOn(LocalDate.ofEpochDay(day)));
+                    }
+                }
+            }
+            results.sort(Comparator.comparingLong(Appointment::getStartTime));
+            return results;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * The appointment with the ID, which may also name one session of a
+     * series (see Appointment.occurrenceId): the stored change to that session
+     * if there is one, else the session worked out from the series. Null if
+     * there is no such appointment or the series has no session that day.
+     */
+    public Appointment findOccurrence(String id) {
+        readLock.lock();
+        try {
+            Appointment stored = findById(id);
+            int dash = id.lastIndexOf('-');
+            if (stored != null || dash < 0) {
+                return stored;
+            }
+            Appointment series = findById(id.substring(0, dash));
+            LocalDate day;
+            try {
+                day = LocalDate.parse(id.substring(dash + 1), DateTimeFormatter.BASIC_ISO_DATE);
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+            if (series == null || !series.occursOn(day) ||
+                    recurrenceIndex().isChanged(series.getAppointmentId(), day.toEpochDay())) {
+                return null;
+            }
+            return series.occurrenceOn(day);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Mark the appointment, or one session of a series, cancelled and return
+     * it, or null if there is no such appointment or the write failed.
+     * Readers never see the cancellation unless it was written.
+     */
+    public Appointment cancel(String id) {
+        writeLock.lock();
+        try {
+            Appointment appointment = findOccurrence(id);
+            if (appointment == null) {
+                return null;
+            }
+            if (!exists(appointment.getAppointmentId())) {
+                // A session worked out from its series is a new object; storing it records the change
+                appointment.setStatus("CANCELLED");
+                return save(appointment) ? appointment : null;
+            }
+            String previous = appointment.getStatus();
+            appointment.setStatus("CANCELLED");
+            if (update(appointment)) {
+                return appointment;
+            }
+            appointment.setStatus(previous);
+            return null;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Stored changes to single sessions of the series
+    public List<Appointment> findChanges(String seriesId) {
+        readLock.lock();
+        try {
+            return fromCache(recurrenceIndex().changesOf(seriesId));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Appointments that would clash with the given one's doctor and time, excluding itself
+    public List<Appointment> findConflicts(Appointment appointment) {
+        readLock.lock();
+        try {
+            return conflicts(appointment, scheduleIndex(), recurrenceIndex(), getCache()::get);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Save the appointment unless its doctor is already booked at that time
+    public boolean saveIfFree(Appointment appointment) {
+        writeLock.lock();
+        try {
+            return conflicts(appointment, scheduleIndex(), recurrenceIndex(), getCache()::get).isEmpty() &&
+                    save(appointment);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Update the appointment unless the new time clashes with another booking of its doctor
+    public boolean updateIfFree(Appointment appointment) {
+        writeLock.lock();
+        try {
+            return conflicts(appointment, scheduleIndex(), recurrenceIndex(), getCache()::get).isEmpty() &&
+                    update(appointment);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Save, with one write, every appointment that clashes neither with
+     * existing bookings nor with an earlier appointment of the same batch.
+     */
+    public int saveAllIfFree(Collection<Appointment> appointments) {
+        writeLock.lock();
+        try {
+            IntervalIndex<Appointment, String> schedule = scheduleIndex();
+            RecurrenceIndex recurrences = recurrenceIndex();
+            IntervalIndex<Appointment, String> acceptedSchedule = newScheduleIndex();
+            RecurrenceIndex acceptedRecurrences = new RecurrenceIndex();
+            Map<String, Appointment> accepted = new LinkedHashMap<>();
+            for (Appointment appointment : appointments) {
+                String id = appointment.getAppointmentId();
+                if (!accepted.containsKey(id) &&
+                        conflicts(appointment, schedule, recurrences, getCache()::get).isEmpty() &&
+                        conflicts(appointment, acceptedSchedule, acceptedRecurrences, accepted::get).isEmpty()) {
+                    acceptedSchedule.add(id, appointment);
+                    acceptedRecurrences.add(id, appointment);
+                    accepted.put(id, appointment);
+                }
+            }
+            return saveAll(accepted.values());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Appointments in the given indexes that clash with the appointment. A
+     * one-off booking is tested against the bookings on its day and against
+     * the sessions the doctor's series have that day. A series is tested
+     * against every booking on any day it has a session, and against each
+     * other series of the doctor at the same time of day for a first shared
+     * session, which is reported as the clash.
+     */
+    private List<Appointment> conflicts(Appointment appointment, IntervalIndex<Appointment, String> schedule,
+                                        RecurrenceIndex recurrences, Function<String, Appointment> lookup) {
+        String id = appointment.getAppointmentId();
+        String doctorId = appointment.getDoctorId();
+        int start = appointment.getStartMinute();
+        int end = appointment.getEndMinute();
+        if (doctorId == null || appointment.getDay() == null || start < 0 ||
+                "CANCELLED".equalsIgnoreCase(appointment.getStatus())) {
+            return Collections.emptyList();
+        }
+        List<Appointment> results = new ArrayList<>();
+        if (appointment.isRecurring()) {
+            RecurrenceIndex.Series series = RecurrenceIndex.Series.of(id, appointment);
+            addAll(results, schedule.overlappingOnDays(doctorId,
+                    day -> series.occursOn(day) && !recurrences.isChanged(id, day), start, end), id, lookup);
+            for (RecurrenceIndex.Series other : recurrences.ofDoctor(doctorId)) {
+                if (other.blocking && !other.id.equals(id) && other.start < end && other.end > start) {
+                    long day = recurrences.firstSharedDay(series, other);
+                    Appointment clash = day >= 0 ? lookup.apply(other.id) : null;
+                    if (clash != null) {
+                        results.add(clash.occurrenceOn(LocalDate.ofEpochDay(day)));
+                    }
+                }
+            }
+        } else {
+            long day = epochDay(appointment);
+            addAll(results, overlapping(schedule, appointment), id, lookup);
+            for (RecurrenceIndex.Series other : recurrences.overlapping(doctorId, day, start, end)) {
+                // A changed session is not held against the session it replaces
+                Appointment clash = lookup.apply(other.id);
+                if (clash != null && !(other.id.equals(appointment.getSeriesId()) &&
+                        day == appointment.getOccurrenceDay().toEpochDay())) {
+                    results.add(clash.occurrenceOn(LocalDate.ofEpochDay(day)));
+                }
+            }
+        }
+        return results;
+    }
+
+    // Stored one-off bookings and changed sessions on the day, and the unchanged sessions of series
+    private List<Appointment> onDay(String doctorId, long day, IntervalIndex<Appointment, String> schedule,
+                                    RecurrenceIndex recurrences) {
+        List<Appointment> results = fromCache(schedule.on(doctorId, day));
+        for (RecurrenceIndex.Series series : recurrences.sessionsOn(doctorId, day)) {
+            Appointment appointment = getCache().get(series.id);
+            if (appointment != null) {
+                results.add(appointment.occurrenceOn(LocalDate.ofEpochDay(day)));
+            }
+        }
+        return results;
+    }
+
+    private static void addAll(List<Appointment> results, List<String> ids, String except,
+                               Function<String, Appointment> lookup) {
+        for (String id : ids) {
+            Appointment appointment = id.equals(except) ? null : lookup.apply(id);
+            if (appointment != null) {
+                results.add(appointment);
+            }
+        }
+    }
+
+    private static List<String> overlapping(IntervalIndex<Appointment, String> schedule, Appointment appointment) {
+        return schedule.overlapping(appointment.getDoctorId(), epochDay(appointment),
+                appointment.getStartMinute(), appointment.getEndMinute());
+    }
+
+    @SuppressWarnings("unchecked")
+    private IntervalIndex<Appointment, String> scheduleIndex() {
+        SecondaryIndex<Appointment, String> index = getIndex(SCHEDULE_INDEX);
+        return (IntervalIndex<Appointment, String>) index;
+    }
+
+    private RecurrenceIndex recurrenceIndex() {
+        return (RecurrenceIndex) getIndex(RECURRENCE_INDEX);
+    }
+
+    private static long epochDay(Appointment appointment) {
+        LocalDate day = appointment.getDay();
+        return day != null ? day.toEpochDay() : Long.MIN_VALUE;
+    }
+}
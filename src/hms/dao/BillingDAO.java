@@ -0,0 +1,280 @@
+package hms.dao;
+
+import hms.model.Billing;
+import hms.util.Money;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bills with their line items, plus running totals kept as SumIndexes in
+ * whole cents: billed per day, per payment status and per patient, and
+ * outstanding per patient. They change with every write, so the total unpaid,
+ * a day's revenue or a patient's balance never needs a scan of the bills.
+ */
+public class BillingDAO extends LogStructuredDAO<Billing> {
+
+    public static final String PAID = "PAID";
+
+    // Fields per bill item: description, unit price, quantity
+    private static final int ITEM_FIELDS = 3;
+
+    private static final String BILLED_BY_DAY = "billedbyday";
+    private static final String BILLED_BY_STATUS = "billedbystatus";
+    private static final String BILLED_BY_PATIENT = "billedbypatient";
+    private static final String UNPAID_BY_PATIENT = "unpaidbypatient";
+
+    public BillingDAO() {
+        this("data/bills.txt");
+    }
+
+    public BillingDAO(String filePath) {
+        super(filePath);
+        // Bills are financial records, so pay for an fsync on every write
+        setDurability(DurabilityLevel.SYNC);
+        addIndex("patientid", new HashIndex<>(Billing::getPatientId, false, HashIndex.MatchMode.EXACT));
+        addIndex("paymentstatus", new HashIndex<>(Billing::getPaymentStatus, true, HashIndex.MatchMode.EXACT));
+        addIndex("date", new SortedIndex<Billing, String, Long>(bill -> bill.getBillDate().getTime(),
+                value -> value instanceof Long ? (Long) value : null));
+        addIndex(BILLED_BY_DAY, new SumIndex<Billing, String, Long>(BillingDAO::epochDay, BillingDAO::cents));
+        addIndex(BILLED_BY_STATUS, new SumIndex<Billing, String, String>(BillingDAO::status, BillingDAO::cents));
+        addIndex(BILLED_BY_PATIENT, new SumIndex<Billing, String, String>(Billing::getPatientId, BillingDAO::cents));
+        addIndex(UNPAID_BY_PATIENT, new SumIndex<Billing, String, String>(
+                bill -> PAID.equals(status(bill)) ? null : bill.getPatientId(), BillingDAO::cents));
+    }
+
+    // Record: ID,PatientID,BillDate(epoch ms),Total,Status,Method,Discount,Tax,ItemCount, then ITEM_FIELDS per item
+    @Override
+    protected Billing parseEntity(String line) {
+        try {
+            LineTokenizer data = tokenize(line);
+            if (data.fieldCount() < 9) {
+                return null;
+            }
+            Billing bill = new Billing(data.nextTrimmedString(), data.nextTrimmedString(),
+                    new Date(Long.parseLong(data.nextTrimmedString())));
+            long total = data.nextCents();
+            bill.setPaymentStatus(data.nextTrimmedString());
+            String method = data.nextTrimmedString();
+            bill.setPaymentMethod(method.equals("null") ? null : method);
+            double discount = data.nextDouble();
+            double tax = data.nextDouble();
+
+            int items = data.nextInt();
+            for (int i = 0; i < items && data.hasMoreFields(); i++) {
+                String description = data.nextString();
+                long unitPrice = data.nextCents();
+                bill.addItem(Billing.BillItem.ofCents(description, unitPrice, data.nextInt()));
+            }
+            bill.setDiscount(discount);
+            bill.setTax(tax);
+            if (items == 0) {
+                // Bills without items carry only their total
+                bill.setTotalCents(total);
+            }
+            return bill;
+        } catch (Exception e) {
+            System.err.println("Invalid bill data: " + line);
+            return null;
+        }
+    }
+
+    @Override
+    protected String entityToFileString(Billing bill) {
+        List<Billing.BillItem> items = bill.getItems();
+        List<Object> fields = new ArrayList<>(9 + items.size() * ITEM_FIELDS);
+        fields.add(bill.getBillId());
+        fields.add(bill.getPatientId());
+        fields.add(bill.getBillDate().getTime());
+        fields.add(Money.format(bill.getTotalCents()));
+        fields.add(bill.getPaymentStatus());
+        fields.add(bill.getPaymentMethod());
+        fields.add(bill.getDiscount());
+        fields.add(bill.getTax());
+        fields.add(items.size());
+        for (Billing.BillItem item : items) {
+            fields.add(item.getDescription());
+            fields.add(Money.format(item.getUnitPriceCents()));
+            fields.add(item.getQuantity());
+        }
+        return LineTokenizer.join(fields.toArray());
+    }
+
+    @Override
+    protected String getIdFromEntity(Billing bill) {
+        return bill.getBillId();
+    }
+
+    @Override
+    protected boolean matchesProperty(Billing bill, String propertyName, Object value) {
+        if (value == null) return false;
+
+        switch (propertyName.toLowerCase()) {
+            case "id":
+                return bill.getBillId().equals(value.toString());
+            case "patientid":
+                return value.toString().equals(bill.getPatientId());
+            case "paymentstatus":
+                return bill.getPaymentStatus() != null && bill.getPaymentStatus().equalsIgnoreCase(value.toString());
+            default:
+                return false;
+        }
+    }
+
+    // Properties the management table can be sorted on
+    @Override
+    protected Comparator<Billing> sortOrder(String propertyName) {
+        switch (propertyName.toLowerCase()) {
+            case "date":
+                return Comparator.comparingLong(bill -> bill.getBillDate().getTime());
+            case "amount":
+                return Comparator.comparingLong(Billing::getTotalCents);
+            case "paymentstatus":
+                return textOrder(Billing::getPaymentStatus);
+            default:
+                return super.sortOrder(propertyName);
+        }
+    }
+
+    public List<Billing> findByPatient(String patientId) {
+        return findByProperty("patientid", patientId);
+    }
+
+    // Record a payment status and method; readers never see the change unless it was written
+    public boolean setPayment(String billId, String paymentStatus, String paymentMethod) {
+        writeLock.lock();
+        try {
+            Billing bill = findById(billId);
+            if (bill == null) {
+                return false;
+            }
+            String previousStatus = bill.getPaymentStatus();
+            String previousMethod = bill.getPaymentMethod();
+            bill.setPaymentStatus(paymentStatus);
+            bill.setPaymentMethod(paymentMethod);
+            if (update(bill)) {
+                return true;
+            }
+            // Put the cached bill back the way its indexes still have it
+            bill.setPaymentStatus(previousStatus);
+            bill.setPaymentMethod(previousMethod);
+            return false;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Everything billed and not marked PAID
+    public double getTotalUnpaid() {
+        readLock.lock();
+        try {
+            SumIndex<Billing, String, String> byStatus = sums(BILLED_BY_STATUS);
+            return toAmount(byStatus.sumBetween(null, null) - byStatus.sum(PAID));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public double getTotalByStatus(String paymentStatus) {
+        readLock.lock();
+        try {
+            return toAmount(this.<String>sums(BILLED_BY_STATUS).sum(paymentStatus.trim().toUpperCase()));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public long countByStatus(String paymentStatus) {
+        readLock.lock();
+        try {
+            return this.<String>sums(BILLED_BY_STATUS).count(paymentStatus.trim().toUpperCase());
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Total billed on the day, paid or not
+    public double getRevenueOn(LocalDate day) {
+        readLock.lock();
+        try {
+            return toAmount(this.<Long>sums(BILLED_BY_DAY).sum(day.toEpochDay()));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Total billed from one day to another inclusive; a null bound leaves that side open
+    public double getRevenueBetween(LocalDate from, LocalDate to) {
+        readLock.lock();
+        try {
+            return toAmount(this.<Long>sums(BILLED_BY_DAY).sumBetween(
+                    from != null ? from.toEpochDay() : null, to != null ? to.toEpochDay() : null));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Total billed per day that has bills, from one day to another inclusive, in date order
+    public Map<LocalDate, Double> getDailyRevenue(LocalDate from, LocalDate to) {
+        readLock.lock();
+        try {
+            Map<LocalDate, Double> revenue = new LinkedHashMap<>();
+            for (Map.Entry<Long, Long> day : this.<Long>sums(BILLED_BY_DAY)
+                    .sumsBetween(from.toEpochDay(), to.toEpochDay()).entrySet()) {
+                revenue.put(LocalDate.ofEpochDay(day.getKey()), toAmount(day.getValue()));
+            }
+            return revenue;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public double getPatientTotal(String patientId) {
+        readLock.lock();
+        try {
+            return toAmount(this.<String>sums(BILLED_BY_PATIENT).sum(patientId));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // What the patient still owes: their bills not marked PAID
+    public double getPatientBalance(String patientId) {
+        readLock.lock();
+        try {
+            return toAmount(this.<String>sums(UNPAID_BY_PATIENT).sum(patientId));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K extends Comparable<K>> SumIndex<Billing, String, K> sums(String name) {
+        return (SumIndex<Billing, String, K>) getIndex(name);
+    }
+
+    private static Long epochDay(Billing bill) {
+        return bill.getBillDate() != null
+                ? Instant.ofEpochMilli(bill.getBillDate().getTime()).atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay()
+                : null;
+    }
+
+    private static String status(Billing bill) {
+        return bill.getPaymentStatus() != null ? bill.getPaymentStatus().trim().toUpperCase() : "UNPAID";
+    }
+
+    // Totals are summed in whole cents so that adding and removing bills never drifts
+    private static long cents(Billing bill) {
+        return bill.getTotalCents();
+    }
+
+    private static double toAmount(long cents) {
+        return Money.toAmount(cents);
+    }
+}
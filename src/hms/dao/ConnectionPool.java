@@ -0,0 +1,150 @@
+package hms.dao;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Fixed-size pool of JDBC connections to one database.
+ *
+ * A semaphore with one permit per connection bounds how many are handed out;
+ * once all are in use, acquire() waits for a release. Idle connections are
+ * reused if they still pass Connection.isValid, otherwise closed and replaced
+ * by a fresh one, so a pool whose connections all went bad (say, after a
+ * database restart) recovers instead of starving its waiters. Closing the
+ * pool wakes every waiter with an SQLException.
+ */
+public final class ConnectionPool implements AutoCloseable {
+
+    // Embedded H2 database in the data directory (data/hms.mv.db); no server process needed
+    public static final String DEFAULT_URL = "jdbc:h2:./data/hms";
+    private static final int DEFAULT_SIZE = 4;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int size;
+    // One permit per connection that may be handed out
+    private final Semaphore permits;
+    private final ConcurrentLinkedQueue<Connection> idle = new ConcurrentLinkedQueue<>();
+
+    // Guarded by this
+    private final List<Connection> all = new ArrayList<>();
+    private volatile boolean closed;
+
+    public ConnectionPool(String url, String user, String password, int size) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.size = size;
+        this.permits = new Semaphore(size, true);
+    }
+
+    // Pool configured by -Dhms.jdbc.url, -Dhms.jdbc.user, -Dhms.jdbc.password and -Dhms.jdbc.poolSize
+    public static ConnectionPool fromSystemProperties() {
+        return new ConnectionPool(System.getProperty("hms.jdbc.url", DEFAULT_URL),
+                System.getProperty("hms.jdbc.user", "sa"), System.getProperty("hms.jdbc.password", ""),
+                Integer.getInteger("hms.jdbc.poolSize", DEFAULT_SIZE));
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public Connection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool for " + url + " is closed");
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a connection to " + url, e);
+        }
+        try {
+            if (closed) {
+                throw new SQLException("Connection pool for " + url + " is closed");
+            }
+            Connection connection;
+            while ((connection = idle.poll()) != null) {
+                if (isValid(connection)) {
+                    return connection;
+                }
+                discard(connection);
+            }
+            connection = DriverManager.getConnection(url, user, password);
+            synchronized (this) {
+                if (closed) {
+                    closeQuietly(connection);
+                    throw new SQLException("Connection pool for " + url + " is closed");
+                }
+                all.add(connection);
+            }
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // Return a connection; its transaction must be finished (committed or rolled back)
+    public void release(Connection connection) {
+        boolean reusable;
+        try {
+            reusable = !closed && connection.getAutoCommit() && !connection.isClosed();
+        } catch (SQLException e) {
+            reusable = false;
+        }
+        if (reusable) {
+            idle.offer(connection);
+        } else {
+            discard(connection);
+        }
+        permits.release();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (Connection connection : all) {
+                closeQuietly(connection);
+            }
+            all.clear();
+            idle.clear();
+        }
+        // Wake every waiter; each sees the pool closed and hands its permit back
+        permits.release(size + permits.getQueueLength());
+    }
+
+    private boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discard(Connection connection) {
+        synchronized (this) {
+            all.remove(connection);
+        }
+        closeQuietly(connection);
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package hms.dao;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Advisory lock on a data file, shared with other processes through a sidecar
+ * "&lt;file&gt;.lock" file. The data file itself cannot carry the lock because
+ * atomic rewrites replace it with a new file.
+ *
+ * File locks belong to the whole JVM and cannot overlap within it, so holders
+ * in this process are first serialized on an in-process lock per path. The
+ * lock is reentrant per thread: only the outermost acquire touches the file.
+ *
+ * The per-path state also counts this process's rewrites of the data file,
+ * so a lazy reader can tell that the bytes under it were replaced.
+ */
+final class DataFileLock {
+
+    private static final ConcurrentHashMap<Path, ReentrantLock> IN_PROCESS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Path, AtomicLong> REWRITES = new ConcurrentHashMap<>();
+
+    private final Path lockPath;
+    private final ReentrantLock local;
+    private final AtomicLong rewrites;
+
+    // Only touched by the thread holding the in-process lock
+    private FileChannel channel;
+    private FileLock fileLock;
+
+    DataFileLock(String dataFile) {
+        this.lockPath = Paths.get(dataFile + ".lock").toAbsolutePath().normalize();
+        this.local = IN_PROCESS.computeIfAbsent(lockPath, path -> new ReentrantLock());
+        this.rewrites = REWRITES.computeIfAbsent(lockPath, path -> new AtomicLong());
+    }
+
+    // Rewrites of the data file so far by any DAO in this process
+    long rewriteCount() {
+        return rewrites.get();
+    }
+
+    // Called by the exclusive holder just before it replaces or truncates the data file
+    void countRewrite() {
+        rewrites.incrementAndGet();
+    }
+
+    // Block until this process holds the lock; shared holders exclude only exclusive ones
+    void acquire(boolean shared) {
+        local.lock();
+        if (local.getHoldCount() > 1) {
+            return;
+        }
+        try {
+            if (channel == null || !channel.isOpen()) {
+                channel = FileChannel.open(lockPath, StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            fileLock = channel.lock(0, Long.MAX_VALUE, shared);
+        } catch (IOException e) {
+            // Some shares do not support locking; carry on with in-process locking only
+            System.err.println("Could not lock " + lockPath + ": " + e.getMessage());
+            fileLock = null;
+        }
+    }
+
+    void release() {
+        try {
+            if (local.getHoldCount() == 1 && fileLock != null) {
+                fileLock.release();
+                fileLock = null;
+            }
+        } catch (IOException e) {
+            System.err.println("Could not unlock " + lockPath + ": " + e.getMessage());
+        } finally {
+            local.unlock();
+        }
+    }
+}
@@ -1,43 +1,70 @@
 package hms.dao;
 
+import hms.interfaces.SearchableDAO;
 import hms.model.Doctor;
+import java.util.Comparator;
 import java.util.List;
 
-public class DoctorDAO extends FileBasedDAO<Doctor, String> {
+public class DoctorDAO extends FileBasedDAO<Doctor, String> implements SearchableDAO<Doctor, String> {
+
+    // Column layout shared by the binary snapshot and the SQL table (see SqlDoctorDAO)
+    static final SnapshotSchema<Doctor> SCHEMA = new SnapshotSchema<Doctor>()
+            .string("id", Doctor::getId)
+            .string("name", Doctor::getName)
+            .integer("age", Doctor::getAge)
+            .string("contact", Doctor::getContact)
+            .string("email", Doctor::getEmail)
+            .string("address", Doctor::getAddress)
+            .string("gender", Doctor::getGender)
+            .string("specialization", Doctor::getSpecialization)
+            .string("qualification", Doctor::getQualification)
+            .string("availability", Doctor::getAvailability)
+            .decimal("consultationFee", Doctor::getConsultationFee)
+            .rows(row -> new Doctor(row.string(0), row.string(1), row.integer(2), row.string(3),
+                    row.string(4), row.string(5), row.string(6), row.string(7), row.string(8),
+                    row.string(9), row.decimal(10)));
 
     public DoctorDAO() {
-        super("data/doctors.txt");
+        this(false);
+    }
+
+    public DoctorDAO(boolean cacheEnabled) {
+        super("data/doctors.txt", cacheEnabled);
+        addIndex("specialization", new HashIndex<>(Doctor::getSpecialization, true, HashIndex.MatchMode.CONTAINS));
+        addIndex("availability", new HashIndex<>(Doctor::getAvailability, true, HashIndex.MatchMode.CONTAINS));
+        addIndex("search", new TrigramIndex<Doctor, String>(Doctor::getId, Doctor::getName, Doctor::getSpecialization));
     }
 
     @Override
     protected Doctor parseEntity(String line) {
         try {
-            String[] data = line.split(",");
+            LineTokenizer data = tokenize(line);
+            int fieldCount = data.fieldCount();
             // Handle basic constructor
-            if (data.length == 6) {
+            if (fieldCount == 6) {
                 return new Doctor(
-                        data[0], // id
-                        data[1], // name
-                        Integer.parseInt(data[2]), // age
-                        data[3], // contact
-                        data[4], // specialization
-                        data[5]  // availability
+                        data.nextString(), // id
+                        data.nextString(), // name
+                        data.nextInt(),    // age
+                        data.nextString(), // contact
+                        data.nextString(), // specialization
+                        data.nextString()  // availability
                 );
             }
             // Handle full constructor
-            else if (data.length >= 11) {
+            else if (fieldCount >= 11) {
                 return new Doctor(
-                        data[0], // id
-                        data[1], // name
-                        Integer.parseInt(data[2]), // age
-                        data[3], // contact
-                        data[4], // email
-                        data[5], // address
-                        data[6], // gender
-                        data[7], // specialization
-                        data[8], // qualification
-                        data[9], // availability
-                        Double.parseDouble(data[10]) // consultationFee
+                        data.nextString(), // id
+                        data.nextString(), // name
+                        data.nextInt(),    // age
+                        data.nextString(), // contact
+                        data.nextString(), // email
+                        data.nextString(), // address
+                        data.nextString(), // gender
+                        data.nextString(), // specialization
+                        data.nextString(), // qualification
+                        data.nextString(), // availability
+                        data.nextDouble()  // consultationFee
                 );
             }
             return null;
@@ -49,7 +76,14 @@ public class DoctorDAO extends FileBasedDAO<Doctor, String> {
 
     @Override
     protected String entityToFileString(Doctor doctor) {
-        return doctor.toFileString();
+        return LineTokenizer.join(doctor.getId(), doctor.getName(), doctor.getAge(), doctor.getContact(),
+                doctor.getEmail(), doctor.getAddress(), doctor.getGender(), doctor.getSpecialization(),
+                doctor.getQualification(), doctor.getAvailability(), doctor.getConsultationFee());
+    }
+
+    @Override
+    protected SnapshotSchema<Doctor> snapshotSchema() {
+        return SCHEMA;
     }
 
     @Override
@@ -57,6 +91,19 @@ public class DoctorDAO extends FileBasedDAO<Doctor, String> {
         return doctor.getId();
     }
 
+    // Properties the management table can be sorted on
+    @Override
+    protected Comparator<Doctor> sortOrder(String propertyName) {
+        switch (propertyName.toLowerCase()) {
+            case "name":
+                return textOrder(Doctor::getName);
+            case "specialization":
+                return textOrder(Doctor::getSpecialization);
+            default:
+                return super.sortOrder(propertyName);
+        }
+    }
+
     @Override
     protected boolean matchesProperty(Doctor doctor, String propertyName, Object value) {
         if (value == null) return false;
@@ -82,13 +129,18 @@ public class DoctorDAO extends FileBasedDAO<Doctor, String> {
         return findByProperty("specialization", specialization);
     }
 
+    @Override
+    public List<Doctor> search(String query) {
+        return searchDoctors(query);
+    }
+
     public List<Doctor> searchDoctors(String query) {
         if (query == null || query.trim().isEmpty()) {
             return findAll();
         }
 
         String searchTerm = query.toLowerCase();
-        return findByPredicate(doctor ->
+        return findByIndex("search", searchTerm, doctor ->
                 (doctor.getId() != null && doctor.getId().toLowerCase().contains(searchTerm)) ||
                         (doctor.getName() != null && doctor.getName().toLowerCase().contains(searchTerm)) ||
                         (doctor.getSpecialization() != null && doctor.getSpecialization().toLowerCase().contains(searchTerm))
@@ -0,0 +1,14 @@
+package hms.dao;
+
+/**
+ * How much effort a file-based DAO spends making a write survive a crash.
+ * Each level is slower than the one before it.
+ */
+public enum DurabilityLevel {
+    // Rewrite the data file in place; a crash mid-write can lose the file
+    IN_PLACE,
+    // Write a sibling temp file and atomically rename it over the data file
+    ATOMIC,
+    // As ATOMIC, but also fsync the data and directory before returning
+    SYNC
+}
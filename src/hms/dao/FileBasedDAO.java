@@ -1,21 +1,170 @@
 package hms.dao;
 
 import hms.interfaces.DataAccessObject;
+import hms.interfaces.SecondaryIndex;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
- * Abstract base class for file-based DAO implementations
+ * Abstract base class for file-based DAO implementations.
+ *
+ * In cached mode the file is parsed once into an ID-keyed map that preserves
+ * file order; reads are then served from memory and every write goes to both
+ * the map and the file.
+ *
+ * New entities are appended as a single line instead of rewriting the file.
+ * Every record is newline-terminated, so a final line without a terminator
+ * can only come from an interrupted append; it is skipped on load and cut off
+ * before the next append.
+ *
+ * Full rewrites follow the DAO's durability level: by default they go to a
+ * sibling temp file that is renamed over the original, so a crash leaves
+ * either the old or the new file, never a truncated one.
+ *
+ * Subclasses can register secondary indexes per property; in cached mode they
+ * are built on first use, maintained on every write after that, and let
+ * findByProperty skip the full scan.
+ *
+ * Files above the mapped-read threshold are read through a memory mapping:
+ * record boundaries are found directly in the mapped bytes, and an uncached
+ * findById decodes only the row whose ID matches.
+ *
+ * DAOs that define a snapshot schema keep a binary columnar copy of their
+ * entities next to the text file (e.g. data/patients.snap). A cached DAO
+ * loads from the snapshot when it still matches the text file, and otherwise
+ * parses the text and rewrites the snapshot in the background.
+ *
+ * A DAO instance is safe to share between threads. Lookups hold a read lock
+ * and run in parallel; save, update, delete and subclass read-modify-write
+ * operations hold the write lock, so they never interleave and no update is
+ * lost. Subclasses doing their own read-modify-write wrap it in writeLock().
+ *
+ * Several processes may share one data directory. The write lock also takes
+ * an advisory lock on a sidecar "&lt;file&gt;.lock" file, and loads take it
+ * shared. A cached DAO remembers the size, modification time and identity of
+ * the file it last read or wrote; when another process has changed it, the
+ * cache catches up before the next write, or before a read once the change
+ * check interval has passed. If the file only grew, just the appended records
+ * are read; any other change reloads it. A rewrite by another process that
+ * keeps both size and timestamp identical cannot be told apart.
+ *
+ * A cached DAO can instead be attached to a WriteAheadLog. Its writes then
+ * queue a journal record, wait for the group commit and only then reach the
+ * cache, so readers never see a change the journal failed to make durable;
+ * the data file is only rewritten by the journal's checkpointer. Other
+ * processes may still write the file directly, so the checkpoint takes the
+ * file lock and first catches up with them; if the file was rewritten rather
+ * than appended to, it is reloaded and the journal replayed over it.
  */
 public abstract class FileBasedDAO<T, ID> implements DataAccessObject<T, ID> {
 
     protected String filePath;
+    protected final boolean cacheEnabled;
+    protected DurabilityLevel durability = DurabilityLevel.ATOMIC;
+    protected long mappedReadThreshold = DEFAULT_MAPPED_READ_THRESHOLD;
+    protected long changeCheckInterval = DEFAULT_CHANGE_CHECK_INTERVAL;
+
+    // Size of the direct buffer used to batch bytes during full rewrites
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    // Mapping a file on Windows blocks renaming over it until the mapping is collected,
+    // which would break atomic rewrites, so mapped reads are only used elsewhere
+    private static final boolean MAPPED_READS_SUPPORTED =
+            !System.getProperty("os.name", "").toLowerCase().startsWith("windows");
+    private static final long DEFAULT_MAPPED_READ_THRESHOLD = 1L << 20;
+    private static final long DEFAULT_CHANGE_CHECK_INTERVAL = 500;
+    // Bytes before the end of the loaded data compared to tell an append from a rewrite
+    private static final int TAIL_FINGERPRINT_SIZE = 64;
+    // Sorted index over the IDs' string form, kept by every DAO for keyset paging
+    private static final String ID_INDEX = "id";
+
+    // Shared daemon thread for housekeeping such as snapshots and log compaction
+    protected static final ExecutorService BACKGROUND = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hms-dao-background");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // parseEntity runs on whichever thread reads, so each thread reuses its own tokenizer
+    private static final ThreadLocal<LineTokenizer> TOKENIZER = ThreadLocal.withInitial(LineTokenizer::new);
+    // Rewrites run on a few threads (EDT, background, journal); each keeps one write buffer instead of one per rewrite
+    private static final ThreadLocal<ByteBuffer> WRITE_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE));
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final DataFileLock fileLock;
+    protected final DataLock readLock = new DataLock(false);
+    protected final DataLock writeLock = new DataLock(true);
+    // Serializes lazy loading among readers, who only share the read lock
+    private final Object loadMonitor = new Object();
+
+    // Set once at startup when writes go through a write-ahead journal
+    volatile WriteAheadLog journal;
+    // Journaled changes not yet checkpointed into the data file
+    private volatile boolean journalDirty;
+    // Journal blocks queued by this DAO whose commit has not been applied yet, oldest first; guarded by the write lock
+    private final ArrayDeque<JournaledBlock<T, ID>> journaledBlocks = new ArrayDeque<>();
+    // The newest of those blocks per ID it changes, so writers check against changes still on their way to the cache
+    private final Map<ID, JournaledBlock<T, ID>> newestBlockById = new HashMap<>();
+
+    // Lazily loaded on first access when caching is enabled
+    private volatile Map<ID, T> cache;
+    // What the file looked like when the cache last matched it; null while unloaded
+    private volatile FileState loadedState;
+    private volatile long nextChangeCheck;
+    private final Map<String, SecondaryIndex<T, ID>> indexes = new LinkedHashMap<>();
+    // Indexes populated from the current cache; the rest are built on first lookup
+    private final Set<SecondaryIndex<T, ID>> builtIndexes = ConcurrentHashMap.newKeySet();
 
     public FileBasedDAO(String filePath) {
+        this(filePath, false);
+    }
+
+    public FileBasedDAO(String filePath, boolean cacheEnabled) {
         this.filePath = filePath;
+        this.cacheEnabled = cacheEnabled;
+        this.fileLock = new DataFileLock(filePath);
         initializeFile();
+        addIndex(ID_INDEX, new SortedIndex<T, ID, String>(entity -> String.valueOf(getIdFromEntity(entity)),
+                String::valueOf));
     }
 
     // Initialize the file if it doesn't exist
@@ -35,123 +184,1548 @@ public abstract class FileBasedDAO<T, ID> implements DataAccessObject<T, ID> {
         }
     }
 
+    public boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+
+    public DurabilityLevel getDurability() {
+        return durability;
+    }
+
+    public void setDurability(DurabilityLevel durability) {
+        if (durability == null) {
+            throw new IllegalArgumentException("Durability level cannot be null");
+        }
+        this.durability = durability;
+    }
+
+    public long getMappedReadThreshold() {
+        return mappedReadThreshold;
+    }
+
+    // Files at least this large are read through a memory mapping; Long.MAX_VALUE disables it
+    public void setMappedReadThreshold(long mappedReadThreshold) {
+        this.mappedReadThreshold = mappedReadThreshold;
+    }
+
+    public long getChangeCheckInterval() {
+        return changeCheckInterval;
+    }
+
+    // Minimum time in milliseconds between checks for other processes' changes on the read path
+    public void setChangeCheckInterval(long changeCheckInterval) {
+        this.changeCheckInterval = changeCheckInterval;
+    }
+
+    private boolean useMappedReads() {
+        return MAPPED_READS_SUPPORTED && new File(filePath).length() >= mappedReadThreshold;
+    }
+
+    // Drop the in-memory copy so the next read reloads it from disk
+    public void invalidateCache() {
+        writeLock.lock();
+        try {
+            cache = null;
+            loadedState = null;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Return the cache, loading it from the file on first use.
+    // Callers must not modify it directly; use cachePut/cacheRemove so indexes stay in sync.
+    // Callers must hold the read or write lock.
+    protected Map<ID, T> getCache() {
+        Map<ID, T> current = cache;
+        if (current != null) {
+            return current;
+        }
+        synchronized (loadMonitor) {
+            if (cache == null) {
+                // Hold off writers in other processes so the state recorded below matches what was read
+                fileLock.acquire(true);
+                try {
+                    Map<ID, T> loaded = loadSnapshot();
+                    if (loaded == null) {
+                        loaded = loadCache();
+                        scheduleSnapshot(new ArrayList<>(loaded.values()));
+                    }
+                    for (SecondaryIndex<T, ID> index : builtIndexes) {
+                        index.clear();
+                    }
+                    builtIndexes.clear();
+                    cache = loaded;
+                    loadedState = captureFileState();
+                } finally {
+                    fileLock.release();
+                }
+            }
+            return cache;
+        }
+    }
+
+    // Column layout for binary snapshots; null (the default) disables snapshots
+    protected SnapshotSchema<T> snapshotSchema() {
+        return null;
+    }
+
+    // Called after the cache was restored from a snapshot instead of the text file, with the file's line count
+    protected void snapshotLoaded(Map<ID, T> loaded, long records) {
+    }
+
+    // Lines in the data file when it holds the given number of live entities; recorded in snapshots
+    protected long sourceRecords(int liveEntities) {
+        return liveEntities;
+    }
+
+    protected Path getSnapshotPath() {
+        String base = filePath.endsWith(".txt") ? filePath.substring(0, filePath.length() - 4) : filePath;
+        return Paths.get(base + ".snap");
+    }
+
+    private Map<ID, T> loadSnapshot() {
+        SnapshotSchema<T> schema = snapshotSchema();
+        if (schema == null) {
+            return null;
+        }
+        try {
+            SnapshotFile.Loaded<T> snapshot = SnapshotFile.read(getSnapshotPath(), new File(filePath), schema);
+            if (snapshot == null) {
+                return null;
+            }
+            Map<ID, T> loaded = new LinkedHashMap<>();
+            for (T entity : snapshot.entities) {
+                loaded.put(getIdFromEntity(entity), entity);
+            }
+            snapshotLoaded(loaded, snapshot.records);
+            return loaded;
+        } catch (IOException | RuntimeException e) {
+            // A damaged snapshot is only an optimisation; fall back to the text file
+            System.err.println("Ignoring unreadable snapshot " + getSnapshotPath() + ": " + e);
+            return null;
+        }
+    }
+
+    // Write a snapshot of the current cache on the calling thread if the existing one is stale, e.g. at shutdown
+    public void writeSnapshot() {
+        SnapshotSchema<T> schema = snapshotSchema();
+        if (schema == null || !cacheEnabled) {
+            return;
+        }
+        readLock.lock();
+        try {
+            Map<ID, T> current = cache;
+            if (current == null) {
+                return;
+            }
+            SnapshotFile.Source source = SnapshotFile.Source.of(new File(filePath), sourceRecords(current.size()));
+            if (!SnapshotFile.isCurrent(getSnapshotPath(), source)) {
+                SnapshotFile.write(getSnapshotPath(), schema, new ArrayList<>(current.values()), source);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to write snapshot " + getSnapshotPath() + ": " + e.getMessage());
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Capture the source file's identity and checksum now, then write the snapshot off the caller's thread
+    protected void scheduleSnapshot(List<T> entities) {
+        SnapshotSchema<T> schema = snapshotSchema();
+        if (schema == null) {
+            return;
+        }
+        SnapshotFile.Source source;
+        try {
+            source = SnapshotFile.Source.of(new File(filePath), sourceRecords(entities.size()));
+        } catch (IOException e) {
+            System.err.println("Failed to write snapshot " + getSnapshotPath() + ": " + e.getMessage());
+            return;
+        }
+        BACKGROUND.execute(() -> {
+            try {
+                SnapshotFile.write(getSnapshotPath(), schema, entities, source);
+            } catch (IOException e) {
+                System.err.println("Failed to write snapshot " + getSnapshotPath() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    // Callers must hold the write lock
+    protected void cachePut(T entity) {
+        ID id = getIdFromEntity(entity);
+        getCache().put(id, entity);
+        for (SecondaryIndex<T, ID> index : builtIndexes) {
+            index.remove(id);
+            index.add(id, entity);
+        }
+    }
+
+    protected void cacheRemove(ID id) {
+        getCache().remove(id);
+        for (SecondaryIndex<T, ID> index : builtIndexes) {
+            index.remove(id);
+        }
+    }
+
+    // Apply one record appended by another process to the loaded cache
+    protected void applyRecord(String line) {
+        T entity = parseEntity(line);
+        if (entity != null) {
+            cachePut(entity);
+        }
+    }
+
+    // Called with the write lock held: bring the cache up to date with changes made by other processes.
+    // Returns whether there were any.
+    private boolean catchUpWithFile() {
+        FileState state = loadedState;
+        if (!cacheEnabled || cache == null || state == null) {
+            return false;
+        }
+        FileState current = statFile();
+        if (current == null || state.sameFile(current)) {
+            return false;
+        }
+        if (!readAppendedRecords(state, current)) {
+            invalidateCache();
+            getCache();
+            if (journal != null) {
+                // The reloaded file lacks this process's changes since the last checkpoint; the journal still has them
+                journal.replayInto(this);
+            }
+        }
+        return true;
+    }
+
+    // Catch up with another process's changes from the read path; the caller holds neither side of the lock
+    private void catchUpExternal() {
+        writeLock.lock();
+        try {
+            // Unjournaled DAOs already caught up while taking the write lock
+            if (journal != null) {
+                fileLock.acquire(true);
+                try {
+                    catchUpWithFile();
+                } finally {
+                    fileLock.release();
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // True if a read should first catch up with another process's changes; checked at most once per interval
+    private boolean externalChangeSuspected() {
+        FileState state = loadedState;
+        if (!cacheEnabled || state == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (now < nextChangeCheck) {
+            return false;
+        }
+        nextChangeCheck = now + changeCheckInterval;
+        FileState current = statFile();
+        return current != null && !state.sameFile(current);
+    }
+
+    // Read only the records appended since the cache was loaded; false if the file was not just appended to
+    private boolean readAppendedRecords(FileState state, FileState current) {
+        if (!Objects.equals(state.fileKey, current.fileKey) || current.size <= state.consumed ||
+                current.size - state.consumed > Integer.MAX_VALUE) {
+            return false;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(filePath, "r")) {
+            if (!Arrays.equals(state.tail, readTail(file, state.consumed))) {
+                return false;
+            }
+            byte[] bytes = new byte[(int) (current.size - state.consumed)];
+            file.seek(state.consumed);
+            file.readFully(bytes);
+            int lineStart = 0;
+            for (int i = 0; i < bytes.length; i++) {
+                if (bytes[i] != '\n') {
+                    continue;
+                }
+                int lineEnd = i > lineStart && bytes[i - 1] == '\r' ? i - 1 : i;
+                String line = new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+                if (!line.trim().isEmpty()) {
+                    applyRecord(line);
+                }
+                lineStart = i + 1;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        loadedState = captureFileState();
+        return true;
+    }
+
+    // Record the file as it is now, after this DAO read or wrote it under the file lock
+    private void recordFileState() {
+        if (cache != null) {
+            loadedState = captureFileState();
+        }
+    }
+
+    private FileState captureFileState() {
+        FileState current = statFile();
+        if (current == null) {
+            return null;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(filePath, "r")) {
+            current.consumed = completeLength(file);
+            current.tail = readTail(file, current.consumed);
+            return current;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private FileState statFile() {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(Paths.get(filePath), BasicFileAttributes.class);
+            return new FileState(attributes.fileKey(), attributes.size(), attributes.lastModifiedTime().toMillis());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // The bytes just before the given offset
+    private static byte[] readTail(RandomAccessFile file, long end) throws IOException {
+        byte[] tail = new byte[(int) Math.min(TAIL_FINGERPRINT_SIZE, end)];
+        file.seek(end - tail.length);
+        file.readFully(tail);
+        return tail;
+    }
+
+    // Register a secondary index for a property; it is only consulted in cached mode
+    protected void addIndex(String propertyName, SecondaryIndex<T, ID> index) {
+        SecondaryIndex<T, ID> previous = indexes.put(propertyName.toLowerCase(), index);
+        if (previous != null) {
+            builtIndexes.remove(previous);
+        }
+    }
+
+    // The named index populated from the cache, or null if there is none or the DAO is uncached.
+    // Building on demand keeps startup cheap; a large trigram index can take seconds to fill.
+    protected SecondaryIndex<T, ID> getIndex(String name) {
+        SecondaryIndex<T, ID> index = indexes.get(name.toLowerCase());
+        if (index == null || !cacheEnabled) {
+            return null;
+        }
+        Map<ID, T> cache = getCache();
+        if (!builtIndexes.contains(index)) {
+            synchronized (loadMonitor) {
+                if (!builtIndexes.contains(index)) {
+                    index.clear();
+                    for (Map.Entry<ID, T> entry : cache.entrySet()) {
+                        index.add(entry.getKey(), entry.getValue());
+                    }
+                    builtIndexes.add(index);
+                }
+            }
+        }
+        return index;
+    }
+
+    // Build the ID-keyed cache from the file contents
+    protected Map<ID, T> loadCache() {
+        Map<ID, T> loaded = new LinkedHashMap<>();
+        for (T entity : readFromFile()) {
+            loaded.put(getIdFromEntity(entity), entity);
+        }
+        return loaded;
+    }
+
     @Override
     public boolean save(T entity) {
-        List<T> entities = findAll();
-        entities.add(entity);
-        return writeToFile(entities);
+        if (journal != null) {
+            return journalChanges(Collections.singletonList(entity), Collections.emptyList(), false) > 0;
+        }
+        writeLock.lock();
+        try {
+            if (!appendToFile(entity)) {
+                return false;
+            }
+            if (cacheEnabled) {
+                cachePut(entity);
+            }
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     @Override
     public T findById(ID id) {
-        List<T> entities = findAll();
-        for (T entity : entities) {
-            if (getIdFromEntity(entity).equals(id)) {
-                return entity;
+        readLock.lock();
+        try {
+            if (cacheEnabled) {
+                return getCache().get(id);
+            }
+            if (id != null && useMappedReads()) {
+                return findMappedById(id);
+            }
+
+            List<T> entities = readFromFile();
+            for (T entity : entities) {
+                if (getIdFromEntity(entity).equals(id)) {
+                    return entity;
+                }
             }
+            return null;
+        } finally {
+            readLock.unlock();
         }
-        return null;
     }
 
     @Override
     public List<T> findAll() {
+        readLock.lock();
+        try {
+            if (cacheEnabled) {
+                return new ArrayList<>(getCache().values());
+            }
+            return readFromFile();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Entities in natural order as a lazy stream. An uncached DAO reads and
+     * parses the file block by block as the stream is consumed, so findFirst,
+     * limit or anyMatch stop reading early and memory only holds what the
+     * caller keeps; close the stream to release the file if it is not read to
+     * the end. It covers the records complete when it was created and fails
+     * with ConcurrentModificationException if the file is rewritten meanwhile.
+     * A cached DAO streams a snapshot of the cache. Either way no lock is held
+     * while the stream is consumed.
+     */
+    public Stream<T> stream() {
+        return stream(false);
+    }
+
+    // Like stream(), but an uncached DAO parses line-aligned chunks of the mapped file in parallel
+    public Stream<T> parallelStream() {
+        return stream(true);
+    }
+
+    // Lazily parsed entities that match the predicate
+    public Stream<T> scan(Predicate<T> predicate) {
+        return stream().filter(predicate);
+    }
+
+    private Stream<T> stream(boolean parallel) {
+        if (cacheEnabled) {
+            List<T> snapshot;
+            readLock.lock();
+            try {
+                snapshot = new ArrayList<>(getCache().values());
+            } finally {
+                readLock.unlock();
+            }
+            return parallel ? snapshot.parallelStream() : snapshot.stream();
+        }
+        return fileLines(parallel).map(this::parseEntity).filter(Objects::nonNull);
+    }
+
+    /**
+     * Complete, non-blank lines of the file as it is now, read lazily. The
+     * range and the file's rewrite count are captured under the read lock and
+     * the shared file lock; no lock is held afterwards, so the caller may write
+     * through the DAO while consuming the stream, as long as it does not
+     * rewrite the file.
+     */
+    private Stream<String> fileLines(boolean parallel) {
+        RandomAccessFile file = null;
+        long complete;
+        long rewrites;
+        String unterminated;
+        readLock.lock();
+        fileLock.acquire(true);
+        try {
+            file = new RandomAccessFile(filePath, "r");
+            complete = completeLength(file);
+            unterminated = unterminatedLine(file, complete);
+            rewrites = fileLock.rewriteCount();
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeQuietly(file);
+            return Stream.empty();
+        } finally {
+            fileLock.release();
+            readLock.unlock();
+        }
+
+        Stream<String> lines = FileLineSpliterator.lines(file.getChannel(), complete, () -> {
+            if (fileLock.rewriteCount() != rewrites) {
+                throw new ConcurrentModificationException(filePath + " was rewritten while being streamed");
+            }
+        });
+        List<String> tail = new ArrayList<>(1);
+        acceptUnterminatedLine(unterminated, tail::add);
+        if (!tail.isEmpty()) {
+            lines = Stream.concat(lines, tail.stream());
+        }
+        // The spliterator splits the file at line boundaries, so chunks parse in parallel
+        return parallel ? lines.parallel() : lines;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            System.err.println("Error closing data file: " + e.getMessage());
+        }
+    }
+
+    // Parse every entity currently stored in the file
+    protected List<T> readFromFile() {
         List<T> entities = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (!line.trim().isEmpty()) {
+        readLines(line -> {
+            T entity = parseEntity(line);
+            if (entity != null) {
+                entities.add(entity);
+            }
+        });
+        return entities;
+    }
+
+    // Scan the mapped file comparing raw ID bytes, decoding only the matching row
+    private T findMappedById(ID id) {
+        byte[] key = id.toString().getBytes(StandardCharsets.UTF_8);
+        MappedLineReader reader = new MappedLineReader();
+        List<T> found = new ArrayList<>(1);
+        try {
+            boolean complete = reader.scan(Paths.get(filePath), (buffer, start, end) -> {
+                if (!MappedLineReader.firstFieldEquals(buffer, start, end, key)) {
+                    return true;
+                }
+                T entity = parseEntity(reader.decode(buffer, start, end));
+                if (entity != null && getIdFromEntity(entity).equals(id)) {
+                    found.add(entity);
+                    return false;
+                }
+                return true;
+            });
+            if (!complete) {
+                acceptUnterminatedLine(readUnterminatedLine(), line -> {
                     T entity = parseEntity(line);
-                    if (entity != null) {
-                        entities.add(entity);
+                    if (entity != null && getIdFromEntity(entity).equals(id)) {
+                        found.add(entity);
                     }
+                });
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    // Pass each complete, non-blank line of the file to the consumer in order
+    protected void readLines(Consumer<String> consumer) {
+        if (useMappedReads()) {
+            readMappedLines(consumer);
+            return;
+        }
+
+        boolean tornTail = readUnterminatedLine() != null;
+        try (BufferedReader reader = new BufferedReader(new FileReader(filePath, StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            while (line != null) {
+                String next = reader.readLine();
+                if (next == null && tornTail) {
+                    // Handled below, the same way for both read paths
+                    break;
                 }
+                if (!line.trim().isEmpty()) {
+                    consumer.accept(line);
+                }
+                line = next;
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
-        return entities;
+        acceptUnterminatedLine(readUnterminatedLine(), consumer);
+    }
+
+    // Pass on a last line that lacks its line terminator if it is a whole record
+    private void acceptUnterminatedLine(String unterminated, Consumer<String> consumer) {
+        String line = withoutCarriageReturn(unterminated);
+        if (line == null || line.trim().isEmpty()) {
+            return;
+        }
+        if (isCompleteRecord(line)) {
+            consumer.accept(line);
+        } else {
+            System.err.println("Skipping incomplete last record in " + filePath + ": " + line);
+        }
+    }
+
+    /**
+     * Whether a last line without a line terminator is a whole record, e.g.
+     * from a file edited by hand, rather than the start of a write that never
+     * finished. Such a line is read, and the terminator is added before the
+     * next append; any other unterminated line is ignored and cut off then.
+     */
+    protected boolean isCompleteRecord(String line) {
+        return parseEntity(line) != null;
     }
 
     @Override
     public List<T> findByProperty(String propertyName, Object value) {
-        List<T> entities = findAll();
-        List<T> results = new ArrayList<>();
+        readLock.lock();
+        try {
+            SecondaryIndex<T, ID> index = value != null ? getIndex(propertyName) : null;
+            Collection<ID> candidates = index != null ? index.lookup(value) : null;
+            if (candidates != null) {
+                Map<ID, T> cache = getCache();
+                List<T> results = new ArrayList<>(candidates.size());
+                for (ID id : candidates) {
+                    T entity = cache.get(id);
+                    // Re-check so indexed and scanned lookups give identical answers
+                    if (entity != null && matchesProperty(entity, propertyName, value)) {
+                        results.add(entity);
+                    }
+                }
+                return results;
+            }
 
-        for (T entity : entities) {
-            if (matchesProperty(entity, propertyName, value)) {
-                results.add(entity);
+            return findByPredicate(entity -> matchesProperty(entity, propertyName, value));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Filter through a named index's candidates when it can answer the query, else scan
+    protected List<T> findByIndex(String indexName, Object value, Predicate<T> predicate) {
+        readLock.lock();
+        try {
+            SecondaryIndex<T, ID> index = getIndex(indexName);
+            Collection<ID> candidates = index != null ? index.lookup(value) : null;
+            if (candidates == null) {
+                return findByPredicate(predicate);
+            }
+
+            Map<ID, T> cache = getCache();
+            List<T> results = new ArrayList<>(candidates.size());
+            for (ID id : candidates) {
+                T entity = cache.get(id);
+                if (entity != null && predicate.test(entity)) {
+                    results.add(entity);
+                }
             }
+            return results;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Entities whose sorted-indexed property lies in [from, to]; a null bound is open
+    public List<T> findByRange(String propertyName, Object from, Object to) {
+        SecondaryIndex<T, ID> index = indexes.get(propertyName.toLowerCase());
+        if (!(index instanceof SortedIndex)) {
+            throw new IllegalArgumentException("No sorted index on property: " + propertyName);
+        }
+        SortedIndex<T, ID, ?> sorted = (SortedIndex<T, ID, ?>) index;
+        if (!cacheEnabled) {
+            return findByPredicate(entity -> sorted.inRange(entity, from, to));
         }
 
-        return results;
+        readLock.lock();
+        try {
+            getIndex(propertyName);
+            Map<ID, T> cache = getCache();
+            Collection<ID> ids = sorted.range(from, to);
+            List<T> results = new ArrayList<>(ids.size());
+            for (ID id : ids) {
+                T entity = cache.get(id);
+                if (entity != null) {
+                    results.add(entity);
+                }
+            }
+            return results;
+        } finally {
+            readLock.unlock();
+        }
     }
 
     @Override
-    public boolean update(T entity) {
-        List<T> entities = findAll();
-        boolean updated = false;
+    public List<T> findPage(int offset, int limit, String sort) {
+        checkWindow(offset, limit);
+        readLock.lock();
+        try {
+            if (sort == null) {
+                // Natural order: step over the skipped entities without collecting them
+                List<T> page = new ArrayList<>(Math.min(limit, 1024));
+                int[] position = {0};
+                scanEntities(entity -> {
+                    if (position[0]++ >= offset) {
+                        page.add(entity);
+                    }
+                    return page.size() < limit;
+                });
+                return page;
+            }
 
-        for (int i = 0; i < entities.size(); i++) {
-            if (getIdFromEntity(entities.get(i)).equals(getIdFromEntity(entity))) {
-                entities.set(i, entity);
-                updated = true;
-                break;
+            boolean descending = sort.startsWith("-");
+            String property = descending ? sort.substring(1) : sort;
+            Comparator<T> order = sortOrder(property);
+            if (order == null) {
+                throw new IllegalArgumentException("Cannot sort by property: " + property);
             }
+            // A sorted index covering every entity already holds the order
+            SecondaryIndex<T, ID> index = getIndex(property);
+            if (index instanceof SortedIndex && ((SortedIndex<T, ID, ?>) index).size() == getCache().size()) {
+                return fromCache(((SortedIndex<T, ID, ?>) index).slice(offset, limit, descending));
+            }
+            order = order.thenComparing(idOrder());
+            order = descending ? order.reversed() : order;
+            if (cacheEnabled && offset > getCache().size() / 2) {
+                // Deep page: select it from the other end so the heap stays below half the table
+                int size = getCache().size();
+                int from = Math.max(0, size - offset - limit);
+                List<T> page = topEntities(from, Math.max(0, size - offset - from), order.reversed(), entity -> true);
+                Collections.reverse(page);
+                return page;
+            }
+            return topEntities(offset, limit, order, entity -> true);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<T> findAfter(ID afterId, int limit) {
+        checkWindow(0, limit);
+        readLock.lock();
+        try {
+            SecondaryIndex<T, ID> index = getIndex(ID_INDEX);
+            if (index instanceof SortedIndex) {
+                return fromCache(((SortedIndex<T, ID, ?>) index).after(afterId, limit));
+            }
+            String after = afterId != null ? String.valueOf(afterId) : null;
+            return topEntities(0, limit, idOrder(),
+                    entity -> after == null || String.valueOf(getIdFromEntity(entity)).compareTo(after) > 0);
+        } finally {
+            readLock.unlock();
         }
+    }
+
+    /**
+     * Subclass hook: the order for findPage's sort property, or null if the
+     * property cannot be sorted on. Ties are broken by ID, and a descending
+     * sort reverses the whole order, ties included.
+     */
+    protected Comparator<T> sortOrder(String propertyName) {
+        return propertyName.equalsIgnoreCase(ID_INDEX) ? idOrder() : null;
+    }
+
+    // Case-insensitive order on a text property, nulls first
+    protected static <T> Comparator<T> textOrder(Function<T, String> property) {
+        return Comparator.comparing(property, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER));
+    }
+
+    private Comparator<T> idOrder() {
+        return Comparator.comparing(entity -> String.valueOf(getIdFromEntity(entity)));
+    }
 
-        if (updated) {
-            return writeToFile(entities);
+    private static void checkWindow(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit must not be negative");
+        }
+    }
+
+    // Cached entities for the given IDs, in order; the caller holds the read lock
+    protected List<T> fromCache(List<ID> ids) {
+        Map<ID, T> cache = getCache();
+        List<T> entities = new ArrayList<>(ids.size());
+        for (ID id : ids) {
+            T entity = cache.get(id);
+            if (entity != null) {
+                entities.add(entity);
+            }
+        }
+        return entities;
+    }
+
+    // Entities [offset, offset + limit) of the accepted ones in the given order, keeping at most offset + limit in a heap
+    private List<T> topEntities(int offset, int limit, Comparator<T> order, Predicate<T> accept) {
+        int keep = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+        if (keep == 0) {
+            return new ArrayList<>();
+        }
+        PriorityQueue<T> worstFirst = new PriorityQueue<>(Math.min(keep, 1024), order.reversed());
+        scanEntities(entity -> {
+            if (!accept.test(entity)) {
+                return true;
+            }
+            if (worstFirst.size() < keep) {
+                worstFirst.add(entity);
+            } else if (order.compare(entity, worstFirst.peek()) < 0) {
+                worstFirst.poll();
+                worstFirst.add(entity);
+            }
+            return true;
+        });
+        List<T> sorted = new ArrayList<>(worstFirst);
+        sorted.sort(order);
+        return offset < sorted.size() ? new ArrayList<>(sorted.subList(offset, sorted.size())) : new ArrayList<>();
+    }
+
+    // Visit entities in natural order until the visitor returns false; uncached DAOs parse one line at a time.
+    // The caller holds the read lock.
+    private void scanEntities(Predicate<T> visitor) {
+        if (cacheEnabled) {
+            for (T entity : getCache().values()) {
+                if (!visitor.test(entity)) {
+                    return;
+                }
+            }
+            return;
+        }
+        try (Stream<T> entities = stream()) {
+            Iterator<T> iterator = entities.iterator();
+            while (iterator.hasNext() && visitor.test(iterator.next())) {
+                // The visitor does the work; stop reading as soon as it is done
+            }
+        }
+    }
+
+    @Override
+    public boolean update(T entity) {
+        if (journal != null) {
+            return journalChanges(Collections.singletonList(entity), Collections.emptyList(), true) > 0;
+        }
+        writeLock.lock();
+        try {
+            List<T> entities = findAll();
+            boolean updated = false;
+
+            for (int i = 0; i < entities.size(); i++) {
+                if (getIdFromEntity(entities.get(i)).equals(getIdFromEntity(entity))) {
+                    entities.set(i, entity);
+                    updated = true;
+                    break;
+                }
+            }
+
+            if (updated && writeToFile(entities)) {
+                if (cacheEnabled) {
+                    cachePut(entity);
+                }
+                return true;
+            }
+            return false;
+        } finally {
+            writeLock.unlock();
         }
-        return false;
     }
 
     @Override
     public boolean delete(ID id) {
-        List<T> entities = findAll();
-        boolean removed = entities.removeIf(entity -> getIdFromEntity(entity).equals(id));
+        if (journal != null) {
+            return journalChanges(Collections.emptyList(), Collections.singletonList(id), true) > 0;
+        }
+        writeLock.lock();
+        try {
+            List<T> entities = findAll();
+            boolean removed = entities.removeIf(entity -> getIdFromEntity(entity).equals(id));
+
+            if (removed && writeToFile(entities)) {
+                if (cacheEnabled) {
+                    cacheRemove(id);
+                }
+                return true;
+            }
+            return false;
+        } finally {
+            writeLock.unlock();
+        }
+    }
 
-        if (removed) {
-            return writeToFile(entities);
+    @Override
+    public int saveAll(Collection<T> entities) {
+        if (entities.isEmpty()) {
+            return 0;
+        }
+        if (journal != null) {
+            return journalChanges(entities, Collections.emptyList(), false);
+        }
+        writeLock.lock();
+        try {
+            List<String> lines = new ArrayList<>(entities.size());
+            for (T entity : entities) {
+                lines.add(entityToFileString(entity));
+            }
+            if (!appendLines(lines)) {
+                return 0;
+            }
+            if (cacheEnabled) {
+                for (T entity : entities) {
+                    cachePut(entity);
+                }
+            }
+            return entities.size();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public int updateAll(Collection<T> entities) {
+        if (entities.isEmpty()) {
+            return 0;
+        }
+        if (journal != null) {
+            return journalChanges(entities, Collections.emptyList(), true);
+        }
+        writeLock.lock();
+        try {
+            Map<ID, T> replacements = new HashMap<>();
+            for (T entity : entities) {
+                replacements.put(getIdFromEntity(entity), entity);
+            }
+
+            List<T> all = findAll();
+            List<T> updated = new ArrayList<>();
+            for (int i = 0; i < all.size(); i++) {
+                T replacement = replacements.get(getIdFromEntity(all.get(i)));
+                if (replacement != null) {
+                    all.set(i, replacement);
+                    updated.add(replacement);
+                }
+            }
+
+            if (updated.isEmpty() || !writeToFile(all)) {
+                return 0;
+            }
+            if (cacheEnabled) {
+                for (T entity : updated) {
+                    cachePut(entity);
+                }
+            }
+            return updated.size();
+        } finally {
+            writeLock.unlock();
         }
-        return false;
+    }
+
+    @Override
+    public int deleteAll(Collection<ID> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        if (journal != null) {
+            return journalChanges(Collections.emptyList(), ids, true);
+        }
+        writeLock.lock();
+        try {
+            Set<ID> targets = new HashSet<>(ids);
+            List<T> all = findAll();
+            List<ID> removed = new ArrayList<>();
+            List<T> kept = new ArrayList<>(all.size());
+            for (T entity : all) {
+                ID id = getIdFromEntity(entity);
+                if (targets.contains(id)) {
+                    removed.add(id);
+                } else {
+                    kept.add(entity);
+                }
+            }
+
+            if (removed.isEmpty() || !writeToFile(kept)) {
+                return 0;
+            }
+            if (cacheEnabled) {
+                for (ID id : removed) {
+                    cacheRemove(id);
+                }
+            }
+            return removed.size();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Queue upserts and deletes as one journal block, wait for the group
+     * commit outside the lock so concurrent writers can share the fsync, and
+     * apply the block to the cache once it is durable. Deletes, and upserts
+     * when requireExisting is set, skip IDs that are not present, counting
+     * changes still queued. Returns the number applied, or 0 if the journal
+     * write failed, in which case the cache is left as it was.
+     */
+    protected int journalChanges(Collection<T> upserts, Collection<ID> deletes, boolean requireExisting) {
+        JournaledBlock<T, ID> block = new JournaledBlock<>();
+        int applied;
+        writeLock.lock();
+        try {
+            applySettledBlocks();
+            List<String[]> records = new ArrayList<>(upserts.size() + deletes.size());
+            for (T entity : upserts) {
+                ID id = getIdFromEntity(entity);
+                if (!requireExisting || newestVersion(id) != null) {
+                    records.add(journalRecord(WriteAheadLog.UPSERT, entity));
+                    block.upserts.put(id, entity);
+                }
+            }
+            for (ID id : deletes) {
+                T existing = newestVersion(id);
+                // The delete record carries the whole entity so replay needs no ID parsing
+                if (existing != null && block.deletes.add(id)) {
+                    records.add(journalRecord(WriteAheadLog.DELETE, existing));
+                }
+            }
+            if (records.isEmpty()) {
+                return 0;
+            }
+            block.commit = journal.submit(records);
+            journaledBlocks.add(block);
+            for (ID id : block.upserts.keySet()) {
+                newestBlockById.put(id, block);
+            }
+            for (ID id : block.deletes) {
+                newestBlockById.put(id, block);
+            }
+            applied = records.size();
+        } finally {
+            writeLock.unlock();
+        }
+        boolean durable = block.commit.await();
+        writeLock.lock();
+        try {
+            applySettledBlocks();
+        } finally {
+            writeLock.unlock();
+        }
+        return durable ? applied : 0;
+    }
+
+    // The entity as the newest queued change leaves it, else the cached one; the caller holds the write lock
+    private T newestVersion(ID id) {
+        JournaledBlock<T, ID> block = newestBlockById.get(id);
+        if (block == null) {
+            return getCache().get(id);
+        }
+        return block.deletes.contains(id) ? null : block.upserts.get(id);
+    }
+
+    // Apply the blocks the journal has settled, oldest first, dropping failed ones; the caller holds the write lock.
+    // The journal settles blocks in the order they were queued, so a pending block holds back only newer ones.
+    private void applySettledBlocks() {
+        while (!journaledBlocks.isEmpty() && journaledBlocks.peek().commit.isDone()) {
+            JournaledBlock<T, ID> block = journaledBlocks.poll();
+            boolean durable = block.commit.await();
+            for (Map.Entry<ID, T> upsert : block.upserts.entrySet()) {
+                if (durable) {
+                    cachePut(upsert.getValue());
+                }
+                newestBlockById.remove(upsert.getKey(), block);
+            }
+            for (ID id : block.deletes) {
+                if (durable) {
+                    cacheRemove(id);
+                }
+                newestBlockById.remove(id, block);
+            }
+            if (durable) {
+                journalDirty = true;
+            }
+        }
+    }
+
+    // Wait until every block this DAO queued is settled and applied, e.g. before a unit of work reads the cache.
+    // The caller holds the write lock.
+    void settleJournaled() {
+        JournaledBlock<T, ID> newest = journaledBlocks.peekLast();
+        if (newest != null) {
+            newest.commit.await();
+        }
+        applySettledBlocks();
+    }
+
+    String[] journalRecord(char op, T entity) {
+        return new String[]{filePath, String.valueOf(op), entityToFileString(entity)};
+    }
+
+    // Put entities in the cache once the journal block of a unit of work is durable
+    void applyJournaled(Collection<T> entities) {
+        for (T entity : entities) {
+            cachePut(entity);
+        }
+        journalDirty = true;
+    }
+
+    // Apply one record from the journal during recovery
+    void replayJournalRecord(char op, String line) {
+        writeLock.lock();
+        try {
+            getCache();
+            T entity = parseEntity(line);
+            if (entity == null) {
+                return;
+            }
+            if (op == WriteAheadLog.DELETE) {
+                cacheRemove(getIdFromEntity(entity));
+            } else {
+                cachePut(entity);
+            }
+            journalDirty = true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Rewrite the data file from the cache if journaled changes, or another process's, are missing from it
+    boolean checkpoint() {
+        List<String> lines;
+        boolean written;
+        writeLock.lock();
+        // Keep other processes from writing the file directly until the rewrite below is done
+        fileLock.acquire(false);
+        try {
+            try {
+                // Blocks written to the journal being checkpointed must be in the cache before it is copied
+                applySettledBlocks();
+                boolean externalChanges = catchUpWithFile();
+                if (!journalDirty && !externalChanges) {
+                    return true;
+                }
+                journalDirty = false;
+                // Encoded under the lock: writers change cached entities in place and undo a failed change
+                lines = new ArrayList<>(getCache().size());
+                for (T entity : getCache().values()) {
+                    lines.add(entityToFileString(entity));
+                }
+            } finally {
+                writeLock.unlock();
+            }
+            // Written outside the DAO lock; writers meanwhile only touch the cache and the journal
+            written = writeRecords(lines, Function.identity(), DurabilityLevel.SYNC);
+        } finally {
+            fileLock.release();
+        }
+        if (!written) {
+            writeLock.lock();
+            try {
+                journalDirty = true;
+            } finally {
+                writeLock.unlock();
+            }
+            return false;
+        }
+        checkpointWritten(lines.size());
+        return true;
+    }
+
+    // Called after a checkpoint rewrote the data file with the given number of records
+    protected void checkpointWritten(int records) {
     }
 
     @Override
     public boolean exists(ID id) {
-        return findById(id) != null;
+        readLock.lock();
+        try {
+            if (cacheEnabled) {
+                return getCache().containsKey(id);
+            }
+            return findById(id) != null;
+        } finally {
+            readLock.unlock();
+        }
     }
 
     @Override
     public long count() {
-        return findAll().size();
+        readLock.lock();
+        try {
+            if (cacheEnabled) {
+                return getCache().size();
+            }
+            return countRecordLines();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Non-blank lines in the file, counted from the raw bytes without parsing
+     * them; only a last line lacking its terminator is parsed, to tell a whole
+     * record from a torn one. Unlike findAll, a malformed line still counts.
+     */
+    private long countRecordLines() {
+        long[] count = {0};
+        try {
+            boolean complete;
+            if (useMappedReads()) {
+                complete = new MappedLineReader().scan(Paths.get(filePath), (buffer, start, end) -> {
+                    count[0]++;
+                    return true;
+                });
+            } else {
+                complete = countTerminatedLines(count);
+            }
+            if (!complete) {
+                acceptUnterminatedLine(readUnterminatedLine(), line -> count[0]++);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return count[0];
+    }
+
+    // Add the file's non-blank terminated lines to count[0]; returns false if text follows the last newline
+    private boolean countTerminatedLines(long[] count) throws IOException {
+        byte[] buffer = new byte[64 << 10];
+        boolean blank = true;
+        boolean terminated = true;
+        try (InputStream in = new FileInputStream(filePath)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer[i];
+                    if (b == '\n') {
+                        if (!blank) {
+                            count[0]++;
+                        }
+                        blank = true;
+                        terminated = true;
+                    } else {
+                        terminated = false;
+                        if (b != ' ' && b != '\t' && b != '\r') {
+                            blank = false;
+                        }
+                    }
+                }
+            }
+        }
+        return terminated;
+    }
+
+    private void readMappedLines(Consumer<String> consumer) {
+        MappedLineReader reader = new MappedLineReader();
+        try {
+            boolean complete = reader.scan(Paths.get(filePath), (buffer, start, end) -> {
+                consumer.accept(reader.decode(buffer, start, end));
+                return true;
+            });
+            if (!complete) {
+                acceptUnterminatedLine(readUnterminatedLine(), consumer);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Append a single entity as a new line at the end of the file
+    protected boolean appendToFile(T entity) {
+        return appendLine(entityToFileString(entity));
+    }
+
+    // Append a raw record line at the end of the file
+    protected boolean appendLine(String line) {
+        return appendLines(Collections.singletonList(line));
+    }
+
+    // Append raw record lines with a single write (and a single sync under SYNC durability)
+    protected boolean appendLines(List<String> lines) {
+        StringBuilder text = new StringBuilder(lines.size() * 64);
+        for (String line : lines) {
+            text.append(line).append(System.lineSeparator());
+        }
+        byte[] record = text.toString().getBytes(StandardCharsets.UTF_8);
+        try (RandomAccessFile file = new RandomAccessFile(filePath, "rw")) {
+            long length = truncateTornTail(file);
+            file.seek(length);
+            file.write(record);
+            if (durability == DurabilityLevel.SYNC) {
+                file.getFD().sync();
+            }
+            recordFileState();
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // The text after the file's last line terminator, or null if there is none
+    private String readUnterminatedLine() {
+        try (RandomAccessFile file = new RandomAccessFile(filePath, "r")) {
+            return unterminatedLine(file, completeLength(file));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static String withoutCarriageReturn(String line) {
+        return line != null && line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+
+    private static String unterminatedLine(RandomAccessFile file, long completeLength) throws IOException {
+        long length = file.length();
+        if (completeLength >= length) {
+            return null;
+        }
+        byte[] tail = new byte[(int) (length - completeLength)];
+        file.seek(completeLength);
+        file.readFully(tail);
+        return new String(tail, StandardCharsets.UTF_8);
+    }
+
+    // Length of the file up to and including its last line terminator
+    private static long completeLength(RandomAccessFile file) throws IOException {
+        long end = file.length();
+        while (end > 0) {
+            file.seek(end - 1);
+            if (file.read() == '\n') {
+                break;
+            }
+            end--;
+        }
+        return end;
+    }
+
+    // Terminate a last line that is a whole record, cut off one that is not, and return the resulting file length
+    private long truncateTornTail(RandomAccessFile file) throws IOException {
+        long length = file.length();
+        long end = completeLength(file);
+        String line = unterminatedLine(file, end);
+        if (line == null) {
+            return end;
+        }
+        String record = withoutCarriageReturn(line);
+        if (!record.trim().isEmpty() && isCompleteRecord(record)) {
+            // A trailing "\r" is a CRLF terminator cut in half
+            byte[] terminator = (line.endsWith("\r") ? "\n" : System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+            file.seek(length);
+            file.write(terminator);
+            return length + terminator.length;
+        }
+        System.err.println("Discarding incomplete last record in " + filePath);
+        file.setLength(end);
+        return end;
     }
 
     // Helper method to write entities to file
     protected boolean writeToFile(List<T> entities) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath, false))) {
-            for (T entity : entities) {
-                writer.write(entityToFileString(entity));
-                writer.newLine();
+        return writeToFile(entities, durability);
+    }
+
+    private boolean writeToFile(List<T> entities, DurabilityLevel durability) {
+        return writeRecords(entities, this::entityToFileString, durability);
+    }
+
+    private <R> boolean writeRecords(List<R> records, Function<R, String> encoder, DurabilityLevel durability) {
+        Path target = Paths.get(filePath);
+        if (durability == DurabilityLevel.IN_PLACE) {
+            fileLock.countRewrite();
+            try (FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeRecords(channel, records, encoder);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            }
+            recordFileState();
+            return true;
+        }
+
+        Path dir = target.toAbsolutePath().getParent();
+        Path temp = null;
+        try {
+            // Created like the in-place path creates files, not owner-only as Files.createTempFile would
+            temp = Files.createFile(dir.resolve(target.getFileName() + "."
+                    + Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36) + ".tmp"));
+            copyOwnerAndPermissions(target, temp);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                writeRecords(channel, records, encoder);
+                if (durability == DurabilityLevel.SYNC) {
+                    channel.force(true);
+                }
+            }
+            fileLock.countRewrite();
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (durability == DurabilityLevel.SYNC) {
+                syncDirectory(dir);
             }
+            recordFileState();
             return true;
         } catch (IOException e) {
             e.printStackTrace();
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // Best effort; a stray temp file does not affect the data file
+                }
+            }
             return false;
         }
     }
 
-    // Helper method to find entities based on a predicate
+    // The rename replaces the data file, so the replacement takes over its owner, group and mode
+    private static void copyOwnerAndPermissions(Path from, Path to) throws IOException {
+        PosixFileAttributeView target = Files.getFileAttributeView(to, PosixFileAttributeView.class);
+        if (target == null || !Files.exists(from)) {
+            return;
+        }
+        PosixFileAttributes original = Files.readAttributes(from, PosixFileAttributes.class);
+        target.setPermissions(original.permissions());
+        try {
+            target.setGroup(original.group());
+            target.setOwner(original.owner());
+        } catch (IOException e) {
+            // Only a privileged process may give a file away; it then stays with the writer
+        }
+    }
+
+    // Encode records into a large direct buffer so each write() moves up to a megabyte
+    private static <R> void writeRecords(FileChannel channel, List<R> records, Function<R, String> encoder)
+            throws IOException {
+        ByteBuffer buffer = WRITE_BUFFER.get();
+        buffer.clear();
+        byte[] newline = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+        for (R record : records) {
+            byte[] line = encoder.apply(record).getBytes(StandardCharsets.UTF_8);
+            int needed = line.length + newline.length;
+            if (buffer.remaining() < needed) {
+                flush(channel, buffer);
+            }
+            if (buffer.remaining() < needed) {
+                // A single record larger than the buffer goes straight to the channel
+                writeFully(channel, ByteBuffer.wrap(line));
+                writeFully(channel, ByteBuffer.wrap(newline));
+            } else {
+                buffer.put(line).put(newline);
+            }
+        }
+        flush(channel, buffer);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        writeFully(channel, buffer);
+        buffer.clear();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // Persist the rename itself; not every platform allows opening a directory
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directory fsync is unsupported on some platforms (e.g. Windows)
+        }
+    }
+
+    // Helper method to find entities based on a predicate; an uncached DAO only keeps the matches in memory
     public List<T> findByPredicate(Predicate<T> predicate) {
-        List<T> entities = findAll();
-        List<T> results = new ArrayList<>();
+        try (Stream<T> matches = scan(predicate)) {
+            return matches.collect(Collectors.toList());
+        }
+    }
 
-        for (T entity : entities) {
-            if (predicate.test(entity)) {
-                results.add(entity);
+    // Tokenizer positioned at the first field of the line, for use inside parseEntity
+    protected LineTokenizer tokenize(String line) {
+        return TOKENIZER.get().reset(line);
+    }
+
+    /**
+     * One side of the DAO's read/write lock. The write side also holds the
+     * cross-process file lock and first catches up with changes made by other
+     * processes; the read side catches up first when a change is suspected.
+     * Only lock() and unlock() are offered: a timed or interruptible attempt
+     * could not be honoured once the file lock blocks.
+     */
+    protected final class DataLock {
+        private final boolean exclusive;
+
+        DataLock(boolean exclusive) {
+            this.exclusive = exclusive;
+        }
+
+        public void lock() {
+            if (exclusive) {
+                lock.writeLock().lock();
+                // Journaled writes only reach the journal; the checkpoint that rewrites the file takes the file lock
+                if (lock.getWriteHoldCount() == 1 && journal == null) {
+                    fileLock.acquire(false);
+                    try {
+                        catchUpWithFile();
+                    } catch (RuntimeException | Error e) {
+                        fileLock.release();
+                        lock.writeLock().unlock();
+                        throw e;
+                    }
+                }
+                return;
+            }
+            // A thread already holding either side cannot take the write lock to catch up
+            if (lock.getReadHoldCount() == 0 && !lock.isWriteLockedByCurrentThread() && externalChangeSuspected()) {
+                catchUpExternal();
+            }
+            lock.readLock().lock();
+        }
+
+        public void unlock() {
+            if (exclusive) {
+                if (lock.getWriteHoldCount() == 1 && journal == null) {
+                    fileLock.release();
+                }
+                lock.writeLock().unlock();
+            } else {
+                lock.readLock().unlock();
             }
         }
+    }
+
+    // One journal block queued by journalChanges, applied to the cache once its commit is settled
+    private static final class JournaledBlock<T, ID> {
+        final Map<ID, T> upserts = new LinkedHashMap<>();
+        final Set<ID> deletes = new LinkedHashSet<>();
+        WriteAheadLog.Commit commit;
+    }
+
+    // Identity of the data file at one point in time, plus how much of it the cache reflects
+    private static final class FileState {
+        final Object fileKey;
+        final long size;
+        final long modified;
+        // Bytes up to the last complete record, and the bytes just before that point
+        long consumed;
+        byte[] tail;
 
-        return results;
+        FileState(Object fileKey, long size, long modified) {
+            this.fileKey = fileKey;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        boolean sameFile(FileState other) {
+            return Objects.equals(fileKey, other.fileKey) && size == other.size && modified == other.modified;
+        }
     }
 
     // Abstract methods to be implemented by subclasses
@@ -0,0 +1,193 @@
+package hms.dao;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ConcurrentModificationException;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Non-blank lines of the first bytes of a file, read block by block with
+ * positional reads as the stream is consumed, so memory holds one block per
+ * split rather than the whole range. Splits share the channel, which is
+ * closed once every split is exhausted, or when the stream is closed.
+ *
+ * Like a fail-fast iterator, each block is checked after it is read: the
+ * caller's check throws ConcurrentModificationException if the file was
+ * rewritten since the range was captured, and a file cut short of the range
+ * is reported the same way.
+ */
+final class FileLineSpliterator implements Spliterator<String> {
+
+    private static final int BLOCK_SIZE = 64 << 10;
+    // Ranges smaller than this are not split further for parallel streams
+    private static final int MIN_SPLIT_BYTES = 64 << 10;
+
+    private final FileChannel channel;
+    private final Runnable checkUnchanged;
+    // Splits not yet exhausted; the last one to finish closes the channel
+    private final AtomicInteger openSplits;
+    private long position;
+    private final long end;
+    private boolean finished;
+
+    private byte[] block = new byte[BLOCK_SIZE];
+    private long blockStart;
+    private int blockLength;
+
+    private FileLineSpliterator(FileChannel channel, Runnable checkUnchanged, AtomicInteger openSplits,
+                                long position, long end) {
+        this.channel = channel;
+        this.checkUnchanged = checkUnchanged;
+        this.openSplits = openSplits;
+        this.position = position;
+        this.end = end;
+    }
+
+    /**
+     * Lines in [0, end) of the channel's file as a lazy stream; end must be
+     * just past a newline. The stream owns the channel from here on.
+     */
+    static Stream<String> lines(FileChannel channel, long end, Runnable checkUnchanged) {
+        FileLineSpliterator lines = new FileLineSpliterator(channel, checkUnchanged, new AtomicInteger(1), 0, end);
+        return StreamSupport.stream(lines, false).onClose(lines::closeChannel);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super String> action) {
+        while (position < end) {
+            int offset = (int) (position - blockStart);
+            if (offset < 0 || offset >= blockLength) {
+                fill(position);
+                offset = 0;
+            }
+            int newline = offset;
+            while (newline < blockLength && block[newline] != '\n') {
+                newline++;
+            }
+            if (newline == blockLength) {
+                if (blockStart + blockLength >= end) {
+                    throw new ConcurrentModificationException("Data file changed while being streamed");
+                }
+                // The line runs past this block: read again from its start, in a larger block if it fills one
+                if (offset == 0) {
+                    block = new byte[block.length * 2];
+                }
+                fill(position);
+                continue;
+            }
+            int lineEnd = newline > offset && block[newline - 1] == '\r' ? newline - 1 : newline;
+            position = blockStart + newline + 1;
+            if (!isBlank(offset, lineEnd)) {
+                action.accept(new String(block, offset, lineEnd - offset, StandardCharsets.UTF_8));
+                return true;
+            }
+        }
+        finish();
+        return false;
+    }
+
+    // Hand the first half, cut just after a newline, to a new spliterator
+    @Override
+    public Spliterator<String> trySplit() {
+        if (end - position < 2 * MIN_SPLIT_BYTES) {
+            return null;
+        }
+        long middle = nextLineStart(position + (end - position) / 2);
+        if (middle >= end) {
+            return null;
+        }
+        openSplits.incrementAndGet();
+        Spliterator<String> prefix = new FileLineSpliterator(channel, checkUnchanged, openSplits, position, middle);
+        position = middle;
+        blockLength = 0;
+        return prefix;
+    }
+
+    // In bytes, which is all that is known without scanning; only the relative sizes of splits matter
+    @Override
+    public long estimateSize() {
+        return end - position;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    // Read the block starting at from, then make sure the file was not replaced underneath
+    private void fill(long from) {
+        int length = (int) Math.min(block.length, end - from);
+        ByteBuffer buffer = ByteBuffer.wrap(block, 0, length);
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, from + buffer.position()) < 0) {
+                    throw new ConcurrentModificationException("Data file was cut short while being streamed");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        blockStart = from;
+        blockLength = length;
+        checkUnchanged.run();
+    }
+
+    // Offset just past the first newline at or after from, or end if there is none before it
+    private long nextLineStart(long from) {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long offset = from;
+        try {
+            while (offset < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - offset));
+                int read = channel.read(buffer, offset);
+                if (read <= 0) {
+                    return end;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '\n') {
+                        return offset + i + 1;
+                    }
+                }
+                offset += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return end;
+    }
+
+    private boolean isBlank(int start, int end) {
+        for (int i = start; i < end; i++) {
+            byte b = block[i];
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void finish() {
+        if (!finished) {
+            finished = true;
+            if (openSplits.decrementAndGet() == 0) {
+                closeChannel();
+            }
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing streamed data file: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package hms.dao;
+
+import hms.interfaces.SecondaryIndex;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Hash index from a string property to the IDs that carry it.
+ *
+ * EXACT lookups cost O(matches). CONTAINS lookups check each distinct key once
+ * and return the union of matching postings, which keeps the substring
+ * semantics of matchesProperty while costing O(distinct values + matches).
+ */
+public class HashIndex<T, ID> implements SecondaryIndex<T, ID> {
+
+    public enum MatchMode {
+        EXACT,
+        CONTAINS
+    }
+
+    private final Function<T, String> keyExtractor;
+    private final boolean ignoreCase;
+    private final MatchMode matchMode;
+
+    private final Map<String, Set<ID>> postings = new HashMap<>();
+    // Remember each ID's key so removal works even if the entity was mutated in place
+    private final Map<ID, String> keysById = new HashMap<>();
+
+    public HashIndex(Function<T, String> keyExtractor, boolean ignoreCase, MatchMode matchMode) {
+        this.keyExtractor = keyExtractor;
+        this.ignoreCase = ignoreCase;
+        this.matchMode = matchMode;
+    }
+
+    @Override
+    public void add(ID id, T entity) {
+        String key = normalize(keyExtractor.apply(entity));
+        if (key == null) {
+            return;
+        }
+        postings.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(id);
+        keysById.put(id, key);
+    }
+
+    @Override
+    public void remove(ID id) {
+        String key = keysById.remove(id);
+        if (key == null) {
+            return;
+        }
+        Set<ID> ids = postings.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                postings.remove(key);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        postings.clear();
+        keysById.clear();
+    }
+
+    @Override
+    public Collection<ID> lookup(Object value) {
+        String query = normalize(value != null ? value.toString() : null);
+        if (query == null) {
+            return Collections.emptyList();
+        }
+        if (matchMode == MatchMode.EXACT) {
+            Set<ID> ids = postings.get(query);
+            return ids != null ? new ArrayList<>(ids) : Collections.emptyList();
+        }
+
+        List<ID> results = new ArrayList<>();
+        for (Map.Entry<String, Set<ID>> entry : postings.entrySet()) {
+            if (entry.getKey().contains(query)) {
+                results.addAll(entry.getValue());
+            }
+        }
+        return results;
+    }
+
+    // Number of distinct keys currently indexed
+    public int keyCount() {
+        return postings.size();
+    }
+
+    private String normalize(String key) {
+        if (key == null) {
+            return null;
+        }
+        return ignoreCase ? key.toLowerCase() : key;
+    }
+}
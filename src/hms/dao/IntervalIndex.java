@@ -0,0 +1,188 @@
+package hms.dao;
+
+import hms.interfaces.SecondaryIndex;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Index of time intervals per resource and per day, e.g. each doctor's
+ * appointments on each date.
+ *
+ * A day keeps its intervals in a TreeMap keyed by start minute, so listing a
+ * resource's day is a direct lookup and an overlap test costs O(log n + k):
+ * it only visits intervals that start less than the day's longest interval
+ * before the queried end. Only intervals the blocking predicate accepts (e.g.
+ * appointments that are not cancelled) count as overlaps. Entities without a
+ * resource or with a negative start are not indexed.
+ */
+public class IntervalIndex<T, ID> implements SecondaryIndex<T, ID> {
+
+    private final Function<T, String> resourceOf;
+    private final ToLongFunction<T> dayOf;
+    private final ToIntFunction<T> startOf;
+    private final ToIntFunction<T> endOf;
+    private final Predicate<T> blocking;
+
+    private final Map<String, Map<Long, Day<ID>>> days = new HashMap<>();
+    // Remember where each ID was filed so removal works even if the entity was mutated in place
+    private final Map<ID, Interval<ID>> intervalsById = new HashMap<>();
+
+    public IntervalIndex(Function<T, String> resourceOf, ToLongFunction<T> dayOf, ToIntFunction<T> startOf,
+                         ToIntFunction<T> endOf, Predicate<T> blocking) {
+        this.resourceOf = resourceOf;
+        this.dayOf = dayOf;
+        this.startOf = startOf;
+        this.endOf = endOf;
+        this.blocking = blocking;
+    }
+
+    @Override
+    public void add(ID id, T entity) {
+        String resource = resourceOf.apply(entity);
+        int start = startOf.applyAsInt(entity);
+        if (resource == null || start < 0) {
+            return;
+        }
+        Interval<ID> interval = new Interval<>(id, resource, dayOf.applyAsLong(entity), start,
+                Math.max(start, endOf.applyAsInt(entity)), blocking.test(entity));
+        intervalsById.put(id, interval);
+        days.computeIfAbsent(resource, r -> new HashMap<>())
+                .computeIfAbsent(interval.day, d -> new Day<>())
+                .add(interval);
+    }
+
+    @Override
+    public void remove(ID id) {
+        Interval<ID> interval = intervalsById.remove(id);
+        if (interval == null) {
+            return;
+        }
+        Map<Long, Day<ID>> resourceDays = days.get(interval.resource);
+        Day<ID> day = resourceDays != null ? resourceDays.get(interval.day) : null;
+        if (day != null && day.remove(interval)) {
+            resourceDays.remove(interval.day);
+            if (resourceDays.isEmpty()) {
+                days.remove(interval.resource);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        days.clear();
+        intervalsById.clear();
+    }
+
+    // Queries go through on() and overlapping()
+    @Override
+    public Collection<ID> lookup(Object value) {
+        return null;
+    }
+
+    // IDs filed under the resource on the day, in start order
+    public List<ID> on(String resource, long day) {
+        Day<ID> schedule = find(resource, day);
+        if (schedule == null) {
+            return Collections.emptyList();
+        }
+        List<ID> results = new ArrayList<>();
+        for (List<Interval<ID>> intervals : schedule.byStart.values()) {
+            for (Interval<ID> interval : intervals) {
+                results.add(interval.id);
+            }
+        }
+        return results;
+    }
+
+    // IDs of blocking intervals on the day that overlap [start, end), in start order
+    public List<ID> overlapping(String resource, long day, int start, int end) {
+        Day<ID> schedule = find(resource, day);
+        if (schedule == null || end <= start) {
+            return Collections.emptyList();
+        }
+        // Anything starting at or before start - longest has ended by start
+        NavigableMap<Integer, List<Interval<ID>>> candidates =
+                schedule.byStart.subMap(start - schedule.longest, false, end, false);
+        List<ID> results = new ArrayList<>();
+        for (List<Interval<ID>> intervals : candidates.values()) {
+            for (Interval<ID> interval : intervals) {
+                if (interval.blocking && interval.end > start) {
+                    results.add(interval.id);
+                }
+            }
+        }
+        return results;
+    }
+
+    // IDs of blocking intervals of the resource, on any day the filter accepts, that overlap [start, end) of that day
+    public List<ID> overlappingOnDays(String resource, LongPredicate dayFilter, int start, int end) {
+        Map<Long, Day<ID>> resourceDays = days.get(resource);
+        if (resourceDays == null || end <= start) {
+            return Collections.emptyList();
+        }
+        List<ID> results = new ArrayList<>();
+        for (Map.Entry<Long, Day<ID>> day : resourceDays.entrySet()) {
+            if (dayFilter.test(day.getKey())) {
+                results.addAll(overlapping(resource, day.getKey(), start, end));
+            }
+        }
+        return results;
+    }
+
+    private Day<ID> find(String resource, long day) {
+        Map<Long, Day<ID>> resourceDays = days.get(resource);
+        return resourceDays != null ? resourceDays.get(day) : null;
+    }
+
+    private static final class Interval<ID> {
+        final ID id;
+        final String resource;
+        final long day;
+        final int start;
+        final int end;
+        final boolean blocking;
+
+        Interval(ID id, String resource, long day, int start, int end, boolean blocking) {
+            this.id = id;
+            this.resource = resource;
+            this.day = day;
+            this.start = start;
+            this.end = end;
+            this.blocking = blocking;
+        }
+    }
+
+    private static final class Day<ID> {
+        final TreeMap<Integer, List<Interval<ID>>> byStart = new TreeMap<>();
+        // Longest interval ever filed here; never lowered, which only widens the overlap scan
+        int longest;
+
+        void add(Interval<ID> interval) {
+            byStart.computeIfAbsent(interval.start, s -> new ArrayList<>(1)).add(interval);
+            longest = Math.max(longest, interval.end - interval.start);
+        }
+
+        // Returns true once the day is empty
+        boolean remove(Interval<ID> interval) {
+            List<Interval<ID>> intervals = byStart.get(interval.start);
+            if (intervals != null) {
+                intervals.remove(interval);
+                if (intervals.isEmpty()) {
+                    byStart.remove(interval.start);
+                }
+            }
+            return byStart.isEmpty();
+        }
+    }
+}
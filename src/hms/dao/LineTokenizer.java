@@ -0,0 +1,304 @@
+package hms.dao;
+
+import hms.util.Money;
+import java.util.NoSuchElementException;
+
+/**
+ * Reusable tokenizer for the comma-separated records in the data files.
+ *
+ * A line is copied once into an internal char buffer and the fields are then
+ * walked in place. Only nextString allocates a String; ints, doubles and
+ * money amounts are parsed straight from the buffer. A field wrapped in double quotes can hold
+ * commas, and a quote inside it is written twice (""), so addresses and
+ * descriptions with commas survive a round trip through join.
+ *
+ * Instances are not thread-safe; FileBasedDAO hands out one per thread.
+ */
+public final class LineTokenizer {
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    // Largest mantissa that a double holds exactly
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private char[] chars = new char[256];
+    private int length;
+    private int position;
+    private boolean exhausted;
+
+    // Bounds of the field most recently consumed
+    private int fieldStart;
+    private int fieldEnd;
+    private boolean fieldHasEscapes;
+
+    private final StringBuilder unescaped = new StringBuilder();
+
+    public LineTokenizer reset(String line) {
+        length = line.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        line.getChars(0, length, chars, 0);
+        position = 0;
+        exhausted = false;
+        return this;
+    }
+
+    // Number of fields on the line, split by the same rules as advance
+    public int fieldCount() {
+        int count = 1;
+        int i = 0;
+        while (true) {
+            while (i < length && chars[i] == ' ') {
+                i++;
+            }
+            // A quote opens a quoted field only at its start; elsewhere it is plain text
+            if (i < length && chars[i] == '"') {
+                i = closingQuote(i + 1);
+            }
+            while (i < length && chars[i] != ',') {
+                i++;
+            }
+            if (i >= length) {
+                return count;
+            }
+            count++;
+            i++;
+        }
+    }
+
+    public boolean hasMoreFields() {
+        return !exhausted;
+    }
+
+    public void skipField() {
+        advance();
+    }
+
+    // Next field exactly as stored, with surrounding quotes removed
+    public String nextString() {
+        advance();
+        return currentField();
+    }
+
+    public String nextTrimmedString() {
+        advance();
+        trimField();
+        return currentField();
+    }
+
+    public int nextInt() {
+        advance();
+        trimField();
+        int i = fieldStart;
+        if (i == fieldEnd) {
+            throw new NumberFormatException("Empty numeric field");
+        }
+        boolean negative = chars[i] == '-';
+        if (negative || chars[i] == '+') {
+            i++;
+        }
+        if (i == fieldEnd || fieldEnd - i > 10) {
+            throw invalidNumber();
+        }
+        long value = 0;
+        for (; i < fieldEnd; i++) {
+            int digit = chars[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw invalidNumber();
+            }
+            value = value * 10 + digit;
+        }
+        value = negative ? -value : value;
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw invalidNumber();
+        }
+        return (int) value;
+    }
+
+    public double nextDouble() {
+        advance();
+        trimField();
+        int i = fieldStart;
+        boolean negative = i < fieldEnd && chars[i] == '-';
+        if (i < fieldEnd && (negative || chars[i] == '+')) {
+            i++;
+        }
+
+        // Plain decimals with at most 15-16 significant digits are exact as mantissa / 10^scale
+        long mantissa = 0;
+        int scale = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        for (; i < fieldEnd; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                if (mantissa > (MAX_EXACT_MANTISSA - 9) / 10) {
+                    return slowDouble();
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                seenDigit = true;
+                if (seenPoint) {
+                    scale++;
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                // Exponents, NaN, Infinity and malformed input
+                return slowDouble();
+            }
+        }
+        if (!seenDigit || scale >= POWERS_OF_TEN.length) {
+            return slowDouble();
+        }
+        double value = scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    // Money amount such as "12.50" as cents, exact whatever its decimal digits
+    public long nextCents() {
+        advance();
+        return Money.parse(chars, fieldStart, fieldEnd);
+    }
+
+    public boolean nextBoolean() {
+        advance();
+        trimField();
+        int len = fieldEnd - fieldStart;
+        // Same rule as Boolean.parseBoolean: only "true", in any case, is true
+        return len == 4 &&
+                (chars[fieldStart] | 0x20) == 't' &&
+                (chars[fieldStart + 1] | 0x20) == 'r' &&
+                (chars[fieldStart + 2] | 0x20) == 'u' &&
+                (chars[fieldStart + 3] | 0x20) == 'e';
+    }
+
+    // Append one field in the format this tokenizer reads back, quoting only when needed
+    public static void appendField(StringBuilder line, Object value) {
+        String text = String.valueOf(value);
+        // Records are one per line, so embedded line breaks cannot be stored
+        if (text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            text = text.replace('\r', ' ').replace('\n', ' ');
+        }
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0) {
+            line.append(text);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+
+    // Build a record line from field values
+    public static String join(Object... values) {
+        StringBuilder line = new StringBuilder(values.length * 16);
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            appendField(line, values[i]);
+        }
+        return line.toString();
+    }
+
+    private void advance() {
+        if (exhausted) {
+            throw new NoSuchElementException("No more fields on line");
+        }
+        fieldHasEscapes = false;
+
+        int start = position;
+        while (start < length && chars[start] == ' ') {
+            start++;
+        }
+
+        int next;
+        if (start < length && chars[start] == '"') {
+            fieldStart = start + 1;
+            int i = closingQuote(fieldStart);
+            fieldHasEscapes = hasEscapes(fieldStart, i);
+            fieldEnd = i;
+            next = i;
+            while (next < length && chars[next] != ',') {
+                next++;
+            }
+        } else {
+            fieldStart = position;
+            next = position;
+            while (next < length && chars[next] != ',') {
+                next++;
+            }
+            fieldEnd = next;
+        }
+
+        if (next >= length) {
+            exhausted = true;
+        }
+        position = next + 1;
+    }
+
+    // Index of the quote closing a quoted field that starts at from, skipping "" pairs
+    private int closingQuote(int from) {
+        int i = from;
+        while (i < length) {
+            if (chars[i] == '"') {
+                if (i + 1 < length && chars[i + 1] == '"') {
+                    i += 2;
+                    continue;
+                }
+                return i;
+            }
+            i++;
+        }
+        return length;
+    }
+
+    private boolean hasEscapes(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (chars[i] == '"') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String currentField() {
+        if (!fieldHasEscapes) {
+            return new String(chars, fieldStart, fieldEnd - fieldStart);
+        }
+        unescaped.setLength(0);
+        for (int i = fieldStart; i < fieldEnd; i++) {
+            unescaped.append(chars[i]);
+            if (chars[i] == '"') {
+                i++; // Skip the second quote of a "" pair
+            }
+        }
+        return unescaped.toString();
+    }
+
+    private void trimField() {
+        while (fieldStart < fieldEnd && Character.isWhitespace(chars[fieldStart])) {
+            fieldStart++;
+        }
+        while (fieldEnd > fieldStart && Character.isWhitespace(chars[fieldEnd - 1])) {
+            fieldEnd--;
+        }
+    }
+
+    private double slowDouble() {
+        return Double.parseDouble(new String(chars, fieldStart, fieldEnd - fieldStart));
+    }
+
+    private NumberFormatException invalidNumber() {
+        return new NumberFormatException("For input string: \"" +
+                new String(chars, fieldStart, fieldEnd - fieldStart) + "\"");
+    }
+}
@@ -0,0 +1,327 @@
+package hms.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * File-based DAO that treats its data file as an append-only log.
+ *
+ * Each entity line is an upsert and a "#DELETED,<id>" line is a tombstone, so
+ * save, update and delete each append one line instead of rewriting the file.
+ * A file written by the plain FileBasedDAO is a valid log with no dead records.
+ * The live entities are rebuilt into the in-memory cache on open, and the log
+ * is compacted in the background once dead records pass the configured ratio.
+ */
+public abstract class LogStructuredDAO<T> extends FileBasedDAO<T, String> {
+
+    protected static final String TOMBSTONE_PREFIX = "#DELETED,";
+
+    private static final double DEFAULT_COMPACTION_RATIO = 0.5;
+    private static final int MIN_DEAD_RECORDS = 64;
+
+    private final double compactionRatio;
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean(false);
+
+    // Number of lines currently in the log, live or dead
+    private long logRecords;
+
+    public LogStructuredDAO(String filePath) {
+        this(filePath, DEFAULT_COMPACTION_RATIO);
+    }
+
+    public LogStructuredDAO(String filePath, double compactionRatio) {
+        super(filePath, true);
+        if (compactionRatio <= 0 || compactionRatio >= 1) {
+            throw new IllegalArgumentException("Compaction ratio must be between 0 and 1");
+        }
+        this.compactionRatio = compactionRatio;
+    }
+
+    // Replay the log: later records for an ID replace earlier ones
+    @Override
+    protected Map<String, T> loadCache() {
+        Map<String, T> loaded = new LinkedHashMap<>();
+        long[] records = {0};
+        readLines(line -> {
+            records[0]++;
+            if (line.startsWith(TOMBSTONE_PREFIX)) {
+                loaded.remove(line.substring(TOMBSTONE_PREFIX.length()).trim());
+                return;
+            }
+            T entity = parseEntity(line);
+            if (entity != null) {
+                loaded.put(getIdFromEntity(entity), entity);
+            }
+        });
+        logRecords = records[0];
+        return loaded;
+    }
+
+    // A snapshot only holds live rows, but records how many lines the log had, dead ones included
+    @Override
+    protected void snapshotLoaded(Map<String, T> loaded, long records) {
+        logRecords = records;
+    }
+
+    @Override
+    protected long sourceRecords(int liveEntities) {
+        return logRecords;
+    }
+
+    // A cut-off tombstone could name a different ID, so an unterminated one is never trusted
+    @Override
+    protected boolean isCompleteRecord(String line) {
+        return !line.startsWith(TOMBSTONE_PREFIX) && super.isCompleteRecord(line);
+    }
+
+    // A record appended by another process is replayed like any other log line
+    @Override
+    protected void applyRecord(String line) {
+        logRecords++;
+        if (line.startsWith(TOMBSTONE_PREFIX)) {
+            cacheRemove(line.substring(TOMBSTONE_PREFIX.length()).trim());
+            return;
+        }
+        super.applyRecord(line);
+    }
+
+    @Override
+    public boolean save(T entity) {
+        if (journal != null) {
+            return super.save(entity);
+        }
+        writeLock.lock();
+        try {
+            getCache();
+            if (!super.save(entity)) {
+                return false;
+            }
+            logRecords++;
+            maybeScheduleCompaction();
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean update(T entity) {
+        if (journal != null) {
+            return super.update(entity);
+        }
+        writeLock.lock();
+        try {
+            Map<String, T> cache = getCache();
+            String id = getIdFromEntity(entity);
+            if (!cache.containsKey(id) || !appendToFile(entity)) {
+                return false;
+            }
+            cachePut(entity);
+            logRecords++;
+            maybeScheduleCompaction();
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean delete(String id) {
+        if (journal != null) {
+            return super.delete(id);
+        }
+        writeLock.lock();
+        try {
+            Map<String, T> cache = getCache();
+            if (id == null || !cache.containsKey(id) || !appendLine(TOMBSTONE_PREFIX + id)) {
+                return false;
+            }
+            cacheRemove(id);
+            logRecords++;
+            maybeScheduleCompaction();
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public int saveAll(Collection<T> entities) {
+        if (journal != null) {
+            return super.saveAll(entities);
+        }
+        writeLock.lock();
+        try {
+            getCache();
+            int saved = super.saveAll(entities);
+            logRecords += saved;
+            maybeScheduleCompaction();
+            return saved;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Append every entity that exists in one write; unknown IDs are skipped
+    @Override
+    public int updateAll(Collection<T> entities) {
+        if (journal != null) {
+            return super.updateAll(entities);
+        }
+        writeLock.lock();
+        try {
+            Map<String, T> cache = getCache();
+            List<T> updated = new ArrayList<>(entities.size());
+            List<String> lines = new ArrayList<>(entities.size());
+            for (T entity : entities) {
+                if (cache.containsKey(getIdFromEntity(entity))) {
+                    updated.add(entity);
+                    lines.add(entityToFileString(entity));
+                }
+            }
+            if (updated.isEmpty() || !appendLines(lines)) {
+                return 0;
+            }
+            for (T entity : updated) {
+                cachePut(entity);
+            }
+            logRecords += updated.size();
+            maybeScheduleCompaction();
+            return updated.size();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public int deleteAll(Collection<String> ids) {
+        if (journal != null) {
+            return super.deleteAll(ids);
+        }
+        writeLock.lock();
+        try {
+            Map<String, T> cache = getCache();
+            Set<String> removed = new LinkedHashSet<>();
+            for (String id : ids) {
+                if (id != null && cache.containsKey(id)) {
+                    removed.add(id);
+                }
+            }
+            List<String> tombstones = new ArrayList<>(removed.size());
+            for (String id : removed) {
+                tombstones.add(TOMBSTONE_PREFIX + id);
+            }
+            if (removed.isEmpty() || !appendLines(tombstones)) {
+                return 0;
+            }
+            for (String id : removed) {
+                cacheRemove(id);
+            }
+            logRecords += removed.size();
+            maybeScheduleCompaction();
+            return removed.size();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Append the upserts of a committed unit of work; the caller holds the write lock
+    boolean upsertAll(Collection<T> entities) {
+        getCache();
+        List<String> lines = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            lines.add(entityToFileString(entity));
+        }
+        if (!appendLines(lines)) {
+            return false;
+        }
+        for (T entity : entities) {
+            cachePut(entity);
+        }
+        logRecords += entities.size();
+        maybeScheduleCompaction();
+        return true;
+    }
+
+    // Append raw records recovered from the transaction journal and apply them to the cache
+    boolean replayRecords(List<String> lines) {
+        writeLock.lock();
+        try {
+            getCache();
+            if (!appendLines(lines)) {
+                return false;
+            }
+            for (String line : lines) {
+                applyRecord(line);
+            }
+            maybeScheduleCompaction();
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // A checkpoint rewrites the log with one line per live entity, like a compaction
+    @Override
+    protected void checkpointWritten(int records) {
+        writeLock.lock();
+        try {
+            logRecords = records;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Number of superseded records and tombstones still in the log
+    public long getDeadRecordCount() {
+        readLock.lock();
+        try {
+            // Load first: loading is what sets logRecords
+            int live = getCache().size();
+            return logRecords - live;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    // Rewrite the log so it holds exactly one line per live entity
+    public boolean compact() {
+        writeLock.lock();
+        try {
+            Map<String, T> cache = getCache();
+            List<T> live = new ArrayList<>(cache.values());
+            if (!writeToFile(live)) {
+                return false;
+            }
+            logRecords = cache.size();
+            // The compacted file is a good base for the next startup
+            scheduleSnapshot(live);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Called with the write lock held
+    private void maybeScheduleCompaction() {
+        long dead = logRecords - getCache().size();
+        if (dead < MIN_DEAD_RECORDS || dead < logRecords * compactionRatio) {
+            return;
+        }
+        if (compactionScheduled.compareAndSet(false, true)) {
+            BACKGROUND.execute(() -> {
+                try {
+                    compact();
+                } finally {
+                    compactionScheduled.set(false);
+                }
+            });
+        }
+    }
+}
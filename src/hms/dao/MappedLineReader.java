@@ -0,0 +1,106 @@
+package hms.dao;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Scans a data file through memory-mapped windows, finding record boundaries
+ * by looking for newline bytes directly in the mapping. Lines are handed out
+ * as byte ranges and only decoded to a String when the caller asks.
+ */
+final class MappedLineReader {
+
+    // Map at most this much of the file at a time so huge files do not exhaust address space
+    private static final long WINDOW_SIZE = 256L << 20;
+
+    /**
+     * Receives one complete line as the byte range [start, end) of the buffer,
+     * without its line terminator. Returning false stops the scan.
+     */
+    interface LineVisitor {
+        boolean visit(ByteBuffer buffer, int start, int end);
+    }
+
+    private byte[] scratch = new byte[512];
+
+    /**
+     * Visit every complete, non-blank line. Returns false if the file ends with
+     * an unterminated (torn) line, which is not passed to the visitor.
+     */
+    boolean scan(Path path, LineVisitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long windowStart = 0;
+            while (windowStart < size) {
+                long windowLength = Math.min(WINDOW_SIZE, size - windowStart);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+                int limit = (int) windowLength;
+                int lineStart = 0;
+                for (int i = 0; i < limit; i++) {
+                    if (buffer.get(i) != '\n') {
+                        continue;
+                    }
+                    int lineEnd = i;
+                    if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                        lineEnd--;
+                    }
+                    if (!isBlank(buffer, lineStart, lineEnd) && !visitor.visit(buffer, lineStart, lineEnd)) {
+                        return true;
+                    }
+                    lineStart = i + 1;
+                }
+
+                if (windowStart + windowLength >= size) {
+                    // Anything left after the last newline was never completed
+                    return lineStart == limit;
+                }
+                if (lineStart == 0) {
+                    throw new IOException("Record longer than " + WINDOW_SIZE + " bytes in " + path);
+                }
+                // Re-map from the start of the line that straddles the window boundary
+                windowStart += lineStart;
+            }
+            return true;
+        }
+    }
+
+    // Decode a line's bytes as UTF-8, reusing an internal copy buffer
+    String decode(ByteBuffer buffer, int start, int end) {
+        int length = end - start;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            scratch[i] = buffer.get(start + i);
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // True if the line's first comma-separated field is exactly the given bytes
+    static boolean firstFieldEquals(ByteBuffer buffer, int start, int end, byte[] field) {
+        if (end - start < field.length) {
+            return false;
+        }
+        for (int i = 0; i < field.length; i++) {
+            if (buffer.get(start + i) != field[i]) {
+                return false;
+            }
+        }
+        return start + field.length == end || buffer.get(start + field.length) == ',';
+    }
+
+    private static boolean isBlank(ByteBuffer buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,13 +1,19 @@
 package hms.dao;
 
 import hms.model.Medicine;
+import hms.util.Money;
+import java.util.Comparator;
 import java.util.List;
 import java.util.function.Predicate;
 
-public class MedicineDAO extends FileBasedDAO<Medicine, String> {
+public class MedicineDAO extends LogStructuredDAO<Medicine> {
 
     public MedicineDAO() {
         super("data/medicines.txt");
+        addIndex("category", new HashIndex<>(Medicine::getCategory, true, HashIndex.MatchMode.CONTAINS));
+        addIndex("manufacturer", new HashIndex<>(Medicine::getManufacturer, true, HashIndex.MatchMode.CONTAINS));
+        addIndex("search", new TrigramIndex<Medicine, String>(Medicine::getMedicineId, Medicine::getName,
+                Medicine::getManufacturer, Medicine::getCategory));
     }
 
     @Override
@@ -17,32 +23,34 @@ public class MedicineDAO extends FileBasedDAO<Medicine, String> {
         }
 
         try {
-            String[] data = line.split(",");
-            if (data.length >= 6) { // Need at least 6 fields: ID,Name,Manufacturer,Category,Price,Quantity
+            LineTokenizer data = tokenize(line);
+            int fieldCount = data.fieldCount();
+            if (fieldCount >= 6) { // Need at least 6 fields: ID,Name,Manufacturer,Category,Price,Quantity
 
                 // Validate required fields
-                String medicineId = data[0].trim();
-                String name = data[1].trim();
-                String manufacturer = data[2].trim();
-                String category = data[3].trim();
+                String medicineId = data.nextTrimmedString();
+                String name = data.nextTrimmedString();
+                String manufacturer = data.nextTrimmedString();
+                String category = data.nextTrimmedString();
 
                 if (medicineId.isEmpty() || name.isEmpty()) {
                     System.err.println("Invalid medicine data - missing ID or name: " + line);
                     return null;
                 }
 
-                double price;
+                long price;
                 int quantity;
 
                 try {
-                    price = Double.parseDouble(data[4].trim());
-                    quantity = Integer.parseInt(data[5].trim());
+                    price = data.nextCents();
+                    quantity = data.nextInt();
                 } catch (NumberFormatException e) {
                     System.err.println("Invalid number format in medicine data: " + line);
                     return null;
                 }
 
-                Medicine medicine = new Medicine(medicineId, name, manufacturer, price, quantity);
+                Medicine medicine = new Medicine(medicineId, name, manufacturer, 0, quantity);
+                medicine.setPriceCents(price);
 
                 // Set category
                 if (!category.isEmpty() && !category.equals("null")) {
@@ -50,8 +58,11 @@ public class MedicineDAO extends FileBasedDAO<Medicine, String> {
                 }
 
                 // Set description (index 6)
-                if (data.length >= 7 && !data[6].trim().isEmpty() && !data[6].trim().equals("null")) {
-                    medicine.setDescription(data[6].trim());
+                if (fieldCount >= 7) {
+                    String description = data.nextTrimmedString();
+                    if (!description.isEmpty() && !description.equals("null")) {
+                        medicine.setDescription(description);
+                    }
                 }
 
                 return medicine;
@@ -69,7 +80,28 @@ public class MedicineDAO extends FileBasedDAO<Medicine, String> {
     @Override
     protected String entityToFileString(Medicine medicine) {
         if (medicine == null) return "";
-        return medicine.toFileString();
+        return LineTokenizer.join(medicine.getMedicineId(), medicine.getName(), medicine.getManufacturer(),
+                medicine.getCategory(), Money.format(medicine.getPriceCents()), medicine.getQuantity(), medicine.getDescription());
+    }
+
+    @Override
+    protected SnapshotSchema<Medicine> snapshotSchema() {
+        return new SnapshotSchema<Medicine>()
+                .string("medicineId", Medicine::getMedicineId)
+                .string("name", Medicine::getName)
+                .string("manufacturer", Medicine::getManufacturer)
+                .string("category", Medicine::getCategory)
+                .longInteger("priceCents", Medicine::getPriceCents)
+                .integer("quantity", Medicine::getQuantity)
+                .string("description", Medicine::getDescription)
+                .rows(row -> {
+                    Medicine medicine = new Medicine(row.string(0), row.string(1), row.string(2),
+                            0, row.integer(5));
+                    medicine.setPriceCents(row.longInteger(4));
+                    medicine.setCategory(row.string(3));
+                    medicine.setDescription(row.string(6));
+                    return medicine;
+                });
     }
 
     @Override
@@ -77,6 +109,23 @@ public class MedicineDAO extends FileBasedDAO<Medicine, String> {
         return medicine != null ? medicine.getMedicineId() : null;
     }
 
+    // Properties the management table can be sorted on
+    @Override
+    protected Comparator<Medicine> sortOrder(String propertyName) {
+        switch (propertyName.toLowerCase()) {
+            case "name":
+                return textOrder(Medicine::getName);
+            case "category":
+                return textOrder(Medicine::getCategory);
+            case "price":
+                return Comparator.comparingLong(Medicine::getPriceCents);
+            case "quantity":
+                return Comparator.comparingInt(Medicine::getQuantity);
+            default:
+                return super.sortOrder(propertyName);
+        }
+    }
+
     @Override
     protected boolean matchesProperty(Medicine medicine, String propertyName, Object value) {
         if (medicine == null || value == null) return false;
@@ -110,7 +159,7 @@ public class MedicineDAO extends FileBasedDAO<Medicine, String> {
         }
 
         String searchTerm = query.toLowerCase();
-        return findByPredicate(medicine ->
+        return findByIndex("search", searchTerm, medicine ->
                 (medicine.getMedicineId() != null && medicine.getMedicineId().toLowerCase().contains(searchTerm)) ||
                         (medicine.getName() != null && medicine.getName().toLowerCase().contains(searchTerm)) ||
                         (medicine.getManufacturer() != null && medicine.getManufacturer().toLowerCase().contains(searchTerm)) ||
@@ -122,12 +171,16 @@ public class MedicineDAO extends FileBasedDAO<Medicine, String> {
     public boolean updateQuantity(String medicineId, int newQuantity) {
         if (medicineId == null || newQuantity < 0) return false;
 
-        Medicine medicine = findById(medicineId);
-        if (medicine != null) {
-            medicine.setQuantity(newQuantity);
-            return update(medicine);
+        writeLock.lock();
+        try {
+            Medicine medicine = findById(medicineId);
+            if (medicine != null) {
+                return setQuantity(medicine, newQuantity);
+            }
+            return false;
+        } finally {
+            writeLock.unlock();
         }
-        return false;
     }
 
     // Method to check if a medicine is in stock
@@ -139,14 +192,30 @@ public class MedicineDAO extends FileBasedDAO<Medicine, String> {
     }
 
     // Method to reduce quantity (for dispensing)
+    // The check and the write happen under one write lock, so concurrent dispensing cannot oversell
     public boolean reduceQuantity(String medicineId, int quantityToReduce) {
         if (medicineId == null || quantityToReduce <= 0) return false;
 
-        Medicine medicine = findById(medicineId);
-        if (medicine != null && medicine.getQuantity() >= quantityToReduce) {
-            medicine.setQuantity(medicine.getQuantity() - quantityToReduce);
-            return update(medicine);
+        writeLock.lock();
+        try {
+            Medicine medicine = findById(medicineId);
+            if (medicine != null && medicine.getQuantity() >= quantityToReduce) {
+                return setQuantity(medicine, medicine.getQuantity() - quantityToReduce);
+            }
+            return false;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Persist a new quantity, restoring the cached value if the write fails
+    private boolean setQuantity(Medicine medicine, int quantity) {
+        int previous = medicine.getQuantity();
+        medicine.setQuantity(quantity);
+        if (update(medicine)) {
+            return true;
         }
+        medicine.setQuantity(previous);
         return false;
     }
 
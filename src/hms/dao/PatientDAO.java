@@ -1,41 +1,66 @@
 package hms.dao;
 
+import hms.interfaces.SearchableDAO;
 import hms.model.Patient;
+import java.util.Comparator;
 import java.util.List;
 
-public class PatientDAO extends FileBasedDAO<Patient, String> {
+public class PatientDAO extends LogStructuredDAO<Patient> implements SearchableDAO<Patient, String> {
+
+    // Column layout shared by the binary snapshot and the SQL table (see SqlPatientDAO)
+    static final SnapshotSchema<Patient> SCHEMA = new SnapshotSchema<Patient>()
+            .string("id", Patient::getId)
+            .string("name", Patient::getName)
+            .integer("age", Patient::getAge)
+            .string("contact", Patient::getContact)
+            .string("email", Patient::getEmail)
+            .string("address", Patient::getAddress)
+            .string("gender", Patient::getGender)
+            .string("bloodGroup", Patient::getBloodGroup)
+            .string("allergies", Patient::getAllergies)
+            .string("disease", Patient::getDisease)
+            .rows(row -> new Patient(row.string(0), row.string(1), row.integer(2), row.string(3),
+                    row.string(4), row.string(5), row.string(6), row.string(7), row.string(8), row.string(9)));
 
     public PatientDAO() {
         super("data/patients.txt");
+        // Patient records are irreplaceable, so pay for an fsync on every write
+        setDurability(DurabilityLevel.SYNC);
+        addIndex("disease", new HashIndex<>(Patient::getDisease, true, HashIndex.MatchMode.CONTAINS));
+        addIndex("bloodgroup", new HashIndex<>(Patient::getBloodGroup, true, HashIndex.MatchMode.EXACT));
+        addIndex("age", new SortedIndex<Patient, String, Integer>(Patient::getAge, PatientDAO::toAge));
+        addIndex("search", new TrigramIndex<Patient, String>(Patient::getId, Patient::getName,
+                Patient::getDisease, Patient::getContact));
     }
 
     @Override
     protected Patient parseEntity(String line) {
         try {
-            String[] data = line.split(",");
+            LineTokenizer data = tokenize(line);
+            int fieldCount = data.fieldCount();
             // Handle basic constructor with minimal fields
-            if (data.length == 5) {
+            if (fieldCount == 5) {
                 return new Patient(
-                        data[0], // id
-                        data[1], // name
-                        Integer.parseInt(data[2]), // age
-                        data[3], // contact
-                        data[4]  // disease
+                        data.nextString(), // id
+                        data.nextString(), // name
+                        data.nextInt(),    // age
+                        data.nextString(), // contact
+                        data.nextString()  // disease
                 );
             }
             // Handle full constructor with all fields
-            else if (data.length >= 10) {
+            else if (fieldCount >= 10) {
                 return new Patient(
-                        data[0], // id
-                        data[1], // name
-                        Integer.parseInt(data[2]), // age
-                        data[3], // contact
-                        data[4], // email
-                        data[5], // address
-                        data[6], // gender
-                        data[7], // bloodGroup
-                        data[8], // allergies
-                        data[9]  // disease
+                        data.nextString(), // id
+                        data.nextString(), // name
+                        data.nextInt(),    // age
+                        data.nextString(), // contact
+                        data.nextString(), // email
+                        data.nextString(), // address
+                        data.nextString(), // gender
+                        data.nextString(), // bloodGroup
+                        data.nextString(), // allergies
+                        data.nextString()  // disease
                 );
             }
             return null;
@@ -47,7 +72,14 @@ public class PatientDAO extends FileBasedDAO<Patient, String> {
 
     @Override
     protected String entityToFileString(Patient patient) {
-        return patient.toFileString();
+        return LineTokenizer.join(patient.getId(), patient.getName(), patient.getAge(), patient.getContact(),
+                patient.getEmail(), patient.getAddress(), patient.getGender(), patient.getBloodGroup(),
+                patient.getAllergies(), patient.getDisease());
+    }
+
+    @Override
+    protected SnapshotSchema<Patient> snapshotSchema() {
+        return SCHEMA;
     }
 
     @Override
@@ -55,6 +87,21 @@ public class PatientDAO extends FileBasedDAO<Patient, String> {
         return patient.getId();
     }
 
+    // Properties the management table can be sorted on
+    @Override
+    protected Comparator<Patient> sortOrder(String propertyName) {
+        switch (propertyName.toLowerCase()) {
+            case "name":
+                return textOrder(Patient::getName);
+            case "age":
+                return Comparator.comparingInt(Patient::getAge);
+            case "disease":
+                return textOrder(Patient::getDisease);
+            default:
+                return super.sortOrder(propertyName);
+        }
+    }
+
     @Override
     protected boolean matchesProperty(Patient patient, String propertyName, Object value) {
         if (value == null) return false;
@@ -79,6 +126,9 @@ public class PatientDAO extends FileBasedDAO<Patient, String> {
             case "contact":
                 return patient.getContact() != null &&
                         patient.getContact().contains(value.toString());
+            case "bloodgroup":
+                return patient.getBloodGroup() != null &&
+                        patient.getBloodGroup().equalsIgnoreCase(value.toString());
             default:
                 return false;
         }
@@ -89,13 +139,38 @@ public class PatientDAO extends FileBasedDAO<Patient, String> {
         return findByProperty("disease", disease);
     }
 
+    public List<Patient> findByBloodGroup(String bloodGroup) {
+        return findByProperty("bloodGroup", bloodGroup);
+    }
+
+    // Patients aged between minAge and maxAge inclusive
+    public List<Patient> findByAgeRange(int minAge, int maxAge) {
+        return findByRange("age", minAge, maxAge);
+    }
+
+    private static Integer toAge(Object value) {
+        if (value instanceof Integer) {
+            return (Integer) value;
+        }
+        try {
+            return Integer.parseInt(value.toString().trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public List<Patient> search(String query) {
+        return searchPatients(query);
+    }
+
     public List<Patient> searchPatients(String query) {
         if (query == null || query.trim().isEmpty()) {
             return findAll();
         }
 
         String searchTerm = query.toLowerCase();
-        return findByPredicate(patient ->
+        return findByIndex("search", searchTerm, patient ->
                 (patient.getId() != null && patient.getId().toLowerCase().contains(searchTerm)) ||
                         (patient.getName() != null && patient.getName().toLowerCase().contains(searchTerm)) ||
                         (patient.getDisease() != null && patient.getDisease().toLowerCase().contains(searchTerm)) ||
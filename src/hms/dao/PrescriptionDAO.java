@@ -0,0 +1,101 @@
+package hms.dao;
+
+import hms.model.Medicine;
+import hms.model.Prescription;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+public class PrescriptionDAO extends LogStructuredDAO<Prescription> {
+
+    // Fields per prescribed medicine: ID, name, quantity, dosage, frequency, duration
+    private static final int ITEM_FIELDS = 6;
+
+    public PrescriptionDAO() {
+        super("data/prescriptions.txt");
+        addIndex("patientid", new HashIndex<>(Prescription::getPatientId, false, HashIndex.MatchMode.EXACT));
+        addIndex("doctorid", new HashIndex<>(Prescription::getDoctorId, false, HashIndex.MatchMode.EXACT));
+    }
+
+    // Record: ID,PatientID,DoctorID,IssueDate(epoch ms),Notes,Dispensed,ItemCount, then ITEM_FIELDS per item
+    @Override
+    protected Prescription parseEntity(String line) {
+        try {
+            LineTokenizer data = tokenize(line);
+            if (data.fieldCount() < 7) {
+                return null;
+            }
+            String prescriptionId = data.nextTrimmedString();
+            String patientId = data.nextTrimmedString();
+            String doctorId = data.nextTrimmedString();
+            Prescription prescription = new Prescription(prescriptionId, patientId,
+                    doctorId.equals("null") ? null : doctorId, new Date(Long.parseLong(data.nextTrimmedString())));
+            String notes = data.nextString();
+            prescription.setNotes(notes.equals("null") ? null : notes);
+            prescription.setDispensed(data.nextBoolean());
+
+            int items = data.nextInt();
+            for (int i = 0; i < items && data.hasMoreFields(); i++) {
+                String medicineId = data.nextTrimmedString();
+                String name = data.nextTrimmedString();
+                int quantity = data.nextInt();
+                Medicine medicine = new Medicine(medicineId, name, data.nextString(), data.nextString(), data.nextString());
+                medicine.setQuantity(quantity);
+                prescription.addMedicine(medicine);
+            }
+            return prescription;
+        } catch (Exception e) {
+            System.err.println("Invalid prescription data: " + line);
+            return null;
+        }
+    }
+
+    @Override
+    protected String entityToFileString(Prescription prescription) {
+        List<Medicine> medicines = prescription.getMedicines();
+        List<Object> fields = new ArrayList<>(7 + medicines.size() * ITEM_FIELDS);
+        fields.add(prescription.getPrescriptionId());
+        fields.add(prescription.getPatientId());
+        fields.add(prescription.getDoctorId());
+        fields.add(prescription.getIssueDate().getTime());
+        fields.add(prescription.getNotes());
+        fields.add(prescription.isDispensed());
+        fields.add(medicines.size());
+        for (Medicine medicine : medicines) {
+            fields.add(medicine.getMedicineId());
+            fields.add(medicine.getName());
+            fields.add(medicine.getQuantity());
+            fields.add(medicine.getDosage());
+            fields.add(medicine.getFrequency());
+            fields.add(medicine.getDuration());
+        }
+        return LineTokenizer.join(fields.toArray());
+    }
+
+    @Override
+    protected String getIdFromEntity(Prescription prescription) {
+        return prescription.getPrescriptionId();
+    }
+
+    @Override
+    protected boolean matchesProperty(Prescription prescription, String propertyName, Object value) {
+        if (value == null) return false;
+
+        switch (propertyName.toLowerCase()) {
+            case "id":
+                return prescription.getPrescriptionId().equals(value.toString());
+            case "patientid":
+                return value.toString().equals(prescription.getPatientId());
+            case "doctorid":
+                return value.toString().equals(prescription.getDoctorId());
+            case "dispensed":
+                return prescription.isDispensed() == Boolean.parseBoolean(value.toString());
+            default:
+                return false;
+        }
+    }
+
+    public List<Prescription> findByPatient(String patientId) {
+        return findByProperty("patientid", patientId);
+    }
+}
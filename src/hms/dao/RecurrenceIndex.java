@@ -0,0 +1,213 @@
+package hms.dao;
+
+import hms.interfaces.SecondaryIndex;
+import hms.model.Appointment;
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of recurring appointments. Each series is filed under its doctor
+ * with its first and last day, step and time of day, so whether it has a
+ * session on a day is arithmetic rather than a lookup of stored sessions.
+ * Changes to single sessions (stored appointments pointing back at the
+ * series and the day the session was due) are filed per series and day; a
+ * changed session no longer counts as the series' own, wherever and whenever
+ * the change put it.
+ *
+ * Series that are cancelled, or whose date or time cannot be read, never
+ * block another booking.
+ */
+public class RecurrenceIndex implements SecondaryIndex<Appointment, String> {
+
+    private static final long NO_END = Long.MAX_VALUE;
+
+    private final Map<String, Map<String, Series>> seriesByDoctor = new HashMap<>();
+    private final Map<String, Series> seriesById = new HashMap<>();
+    // Series ID -> day the session was due -> ID of the stored change
+    private final Map<String, Map<Long, String>> changes = new HashMap<>();
+    // Change ID -> (series ID, day), remembered so removal works after in-place edits
+    private final Map<String, Map.Entry<String, Long>> changesById = new HashMap<>();
+
+    @Override
+    public void add(String id, Appointment appointment) {
+        if (appointment.isRecurring()) {
+            Series series = Series.of(id, appointment);
+            if (series != null) {
+                seriesById.put(id, series);
+                seriesByDoctor.computeIfAbsent(series.doctorId, d -> new HashMap<>()).put(id, series);
+            }
+        } else if (appointment.getSeriesId() != null && appointment.getOccurrenceDay() != null) {
+            long day = appointment.getOccurrenceDay().toEpochDay();
+            changes.computeIfAbsent(appointment.getSeriesId(), s -> new HashMap<>()).put(day, id);
+            changesById.put(id, new AbstractMap.SimpleImmutableEntry<>(appointment.getSeriesId(), day));
+        }
+    }
+
+    @Override
+    public void remove(String id) {
+        Series series = seriesById.remove(id);
+        if (series != null) {
+            Map<String, Series> ofDoctor = seriesByDoctor.get(series.doctorId);
+            ofDoctor.remove(id);
+            if (ofDoctor.isEmpty()) {
+                seriesByDoctor.remove(series.doctorId);
+            }
+        }
+        Map.Entry<String, Long> change = changesById.remove(id);
+        if (change != null) {
+            Map<Long, String> ofSeries = changes.get(change.getKey());
+            ofSeries.remove(change.getValue());
+            if (ofSeries.isEmpty()) {
+                changes.remove(change.getKey());
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        seriesByDoctor.clear();
+        seriesById.clear();
+        changes.clear();
+        changesById.clear();
+    }
+
+    // Queries go through the methods below
+    @Override
+    public Collection<String> lookup(Object value) {
+        return null;
+    }
+
+    Collection<Series> all() {
+        return seriesById.values();
+    }
+
+    Collection<Series> ofDoctor(String doctorId) {
+        Map<String, Series> ofDoctor = seriesByDoctor.get(doctorId);
+        return ofDoctor != null ? ofDoctor.values() : Collections.<Series>emptyList();
+    }
+
+    // IDs of the stored changes to the series' sessions
+    List<String> changesOf(String seriesId) {
+        Map<Long, String> ofSeries = changes.get(seriesId);
+        return ofSeries != null ? new ArrayList<>(ofSeries.values()) : Collections.<String>emptyList();
+    }
+
+    // Whether the series' session due on the day has been changed (moved, cancelled or edited)
+    boolean isChanged(String seriesId, long day) {
+        Map<Long, String> ofSeries = changes.get(seriesId);
+        return ofSeries != null && ofSeries.containsKey(day);
+    }
+
+    // The doctor's series with an unchanged session on the day, cancelled series included
+    List<Series> sessionsOn(String doctorId, long day) {
+        List<Series> results = new ArrayList<>();
+        for (Series series : ofDoctor(doctorId)) {
+            if (series.occursOn(day) && !isChanged(series.id, day)) {
+                results.add(series);
+            }
+        }
+        return results;
+    }
+
+    // The doctor's blocking series with an unchanged session on the day overlapping [start, end)
+    List<Series> overlapping(String doctorId, long day, int start, int end) {
+        List<Series> results = new ArrayList<>();
+        for (Series series : sessionsOn(doctorId, day)) {
+            if (series.blocking && series.start < end && series.end > start) {
+                results.add(series);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * First day on which both series have a session that neither has
+     * changed, or -1 if there is none. The days both meet form an arithmetic
+     * progression whose step is the lcm of theirs; since only finitely many
+     * sessions are changed, the walk along it stops after at most that many
+     * skips even for series without an end.
+     */
+    long firstSharedDay(Series a, Series b) {
+        long from = Math.max(a.first, b.first);
+        long to = Math.min(a.last, b.last);
+        long day = a.firstOnOrAfter(from);
+        // Step along a until b also meets; the pattern repeats after b.step of a's steps
+        for (int i = 0; i < b.step && day <= to && !b.occursOn(day); i++) {
+            day += a.step;
+        }
+        if (day > to || !b.occursOn(day)) {
+            return -1;
+        }
+        long shared = lcm(a.step, b.step);
+        while (day <= to) {
+            if (!isChanged(a.id, day) && !isChanged(b.id, day)) {
+                return day;
+            }
+            day += shared;
+        }
+        return -1;
+    }
+
+    private static long lcm(long a, long b) {
+        long x = a;
+        long y = b;
+        while (y != 0) {
+            long t = x % y;
+            x = y;
+            y = t;
+        }
+        return a / x * b;
+    }
+
+    // A recurring appointment reduced to epoch days and minutes
+    static final class Series {
+        final String id;
+        final String doctorId;
+        final long first;
+        final long last;
+        final int step;
+        final int start;
+        final int end;
+        final boolean blocking;
+
+        private Series(String id, String doctorId, long first, long last, int step, int start, int end, boolean blocking) {
+            this.id = id;
+            this.doctorId = doctorId;
+            this.first = first;
+            this.last = last;
+            this.step = step;
+            this.start = start;
+            this.end = end;
+            this.blocking = blocking;
+        }
+
+        // Null unless the appointment is a series with a doctor, a date and a readable time
+        static Series of(String id, Appointment appointment) {
+            LocalDate first = appointment.getDay();
+            int start = appointment.getStartMinute();
+            if (!appointment.isRecurring() || appointment.getDoctorId() == null || first == null || start < 0) {
+                return null;
+            }
+            LocalDate last = appointment.getRecurrence().lastDay(first);
+            return new Series(id, appointment.getDoctorId(), first.toEpochDay(),
+                    last != null ? last.toEpochDay() : NO_END, appointment.getRecurrence().getStepDays(),
+                    start, Math.max(start, appointment.getEndMinute()),
+                    !"CANCELLED".equalsIgnoreCase(appointment.getStatus()));
+        }
+
+        boolean occursOn(long day) {
+            return day >= first && day <= last && (day - first) % step == 0;
+        }
+
+        // First session day on or after the day (may be past the last one)
+        long firstOnOrAfter(long day) {
+            return day <= first ? first : first + (day - first + step - 1) / step * step;
+        }
+    }
+}
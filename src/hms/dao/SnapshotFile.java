@@ -0,0 +1,342 @@
+package hms.dao;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary, column-oriented snapshot of a data file's entities, used to skip
+ * text parsing at startup.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   int magic, int version
+ *   long sourceLength, long sourceModified,  -- the .txt file this was taken from
+ *   long sourceChecksum, long sourceRecords     (CRC32 of its bytes, its line count)
+ *   int columnCount, then per column: UTF name, byte type
+ *   int rowCount
+ *   per column, rowCount values:
+ *     STRING  int byteLength (-1 for null) + UTF-8 bytes
+ *     INT     int
+ *     LONG    long
+ *     DOUBLE  double
+ *     BOOLEAN byte
+ *   long checksum                             -- CRC32 of everything above
+ * </pre>
+ * A snapshot is only used if it is intact, its columns match the current
+ * schema, and the text file still has the recorded length, modification time
+ * and checksum. Length and time are compared first, so a stale snapshot is
+ * usually rejected without reading the text file; the checksum catches an
+ * edit that kept both, e.g. within the file system's timestamp granularity.
+ */
+final class SnapshotFile {
+
+    private static final int MAGIC = 0x484D5353; // "HMSS"
+    private static final int VERSION = 2;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * The identity of a source file at one moment, recorded in a snapshot taken
+     * from it: length, modification time, CRC32 of the content and the number
+     * of records (lines) the entities were read from.
+     */
+    static final class Source {
+        final long length;
+        final long modified;
+        final long checksum;
+        final long records;
+
+        Source(long length, long modified, long checksum, long records) {
+            this.length = length;
+            this.modified = modified;
+            this.checksum = checksum;
+            this.records = records;
+        }
+
+        // The file as it is now, with the given record count
+        static Source of(File file, long records) throws IOException {
+            return new Source(file.length(), file.lastModified(), checksum(file), records);
+        }
+    }
+
+    // A snapshot that was found current, with the record count it was taken at
+    static final class Loaded<T> {
+        final List<T> entities;
+        final long records;
+
+        Loaded(List<T> entities, long records) {
+            this.entities = entities;
+            this.records = records;
+        }
+    }
+
+    static <T> void write(Path snapshot, SnapshotSchema<T> schema, List<T> entities, Source source)
+            throws IOException {
+        Path temp = Files.createTempFile(snapshot.toAbsolutePath().getParent(), snapshot.getFileName().toString(), ".tmp");
+        try {
+            CRC32 crc = new CRC32();
+            try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16), crc))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(source.length);
+                out.writeLong(source.modified);
+                out.writeLong(source.checksum);
+                out.writeLong(source.records);
+
+                List<SnapshotSchema.Column<T>> columns = schema.getColumns();
+                out.writeInt(columns.size());
+                for (SnapshotSchema.Column<T> column : columns) {
+                    out.writeUTF(column.name);
+                    out.writeByte(column.type.ordinal());
+                }
+
+                out.writeInt(entities.size());
+                for (SnapshotSchema.Column<T> column : columns) {
+                    writeColumn(out, column, entities);
+                }
+                out.writeLong(crc.getValue());
+            }
+            try {
+                Files.move(temp, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // True if the snapshot exists and was taken from the source as described
+    static boolean isCurrent(Path snapshot, Source source) throws IOException {
+        if (!Files.exists(snapshot)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+            return in.readInt() == MAGIC && in.readInt() == VERSION &&
+                    in.readLong() == source.length && in.readLong() == source.modified &&
+                    in.readLong() == source.checksum;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Load the entities from a snapshot, or return null if it is missing,
+     * damaged, out of date with respect to the source file, or written for a
+     * different schema.
+     */
+    static <T> Loaded<T> read(Path snapshot, File source, SnapshotSchema<T> schema) throws IOException {
+        if (!Files.exists(snapshot)) {
+            return null;
+        }
+        byte[] bytes = Files.readAllBytes(snapshot);
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                return null;
+            }
+            if (in.getLong() != source.length() || in.getLong() != source.lastModified()) {
+                return null;
+            }
+            long sourceChecksum = in.getLong();
+            long sourceRecords = in.getLong();
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length - Long.BYTES);
+            if (ByteBuffer.wrap(bytes, bytes.length - Long.BYTES, Long.BYTES).getLong() != crc.getValue()) {
+                return null;
+            }
+            // Only now read the source: length and time already match, so this is the last word
+            if (sourceChecksum != checksum(source)) {
+                return null;
+            }
+
+            List<SnapshotSchema.Column<T>> columns = schema.getColumns();
+            if (in.getInt() != columns.size()) {
+                return null;
+            }
+            for (SnapshotSchema.Column<T> column : columns) {
+                String name = readUtf(in);
+                if (!column.name.equals(name) || in.get() != column.type.ordinal()) {
+                    return null;
+                }
+            }
+
+            int rowCount = in.getInt();
+            Object[] data = new Object[columns.size()];
+            for (int c = 0; c < columns.size(); c++) {
+                data[c] = readColumn(in, columns.get(c).type, rowCount);
+            }
+
+            ColumnRow row = new ColumnRow(data);
+            List<T> entities = new ArrayList<>(rowCount);
+            for (int r = 0; r < rowCount; r++) {
+                row.index = r;
+                entities.add(schema.createEntity(row));
+            }
+            return new Loaded<>(entities, sourceRecords);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            // Truncated or corrupt snapshot: fall back to the text file
+            return null;
+        }
+    }
+
+    // CRC32 of the file's content; 0 for a missing or empty file
+    static long checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        if (!file.exists()) {
+            return crc.getValue();
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static <T> void writeColumn(DataOutputStream out, SnapshotSchema.Column<T> column,
+                                        List<T> entities) throws IOException {
+        switch (column.type) {
+            case STRING:
+                for (T entity : entities) {
+                    String value = column.stringGetter.apply(entity);
+                    if (value == null) {
+                        out.writeInt(-1);
+                    } else {
+                        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                        out.writeInt(bytes.length);
+                        out.write(bytes);
+                    }
+                }
+                break;
+            case INT:
+                for (T entity : entities) {
+                    out.writeInt(column.intGetter.applyAsInt(entity));
+                }
+                break;
+            case LONG:
+                for (T entity : entities) {
+                    out.writeLong(column.longGetter.applyAsLong(entity));
+                }
+                break;
+            case DOUBLE:
+                for (T entity : entities) {
+                    out.writeDouble(column.doubleGetter.applyAsDouble(entity));
+                }
+                break;
+            case BOOLEAN:
+                for (T entity : entities) {
+                    out.writeByte(column.booleanGetter.test(entity) ? 1 : 0);
+                }
+                break;
+        }
+    }
+
+    private static Object readColumn(ByteBuffer in, SnapshotSchema.ColumnType type, int rowCount) {
+        switch (type) {
+            case STRING: {
+                String[] values = new String[rowCount];
+                byte[] bytes = in.array();
+                for (int r = 0; r < rowCount; r++) {
+                    int length = in.getInt();
+                    if (length >= 0) {
+                        values[r] = new String(bytes, in.position(), length, StandardCharsets.UTF_8);
+                        in.position(in.position() + length);
+                    }
+                }
+                return values;
+            }
+            case INT: {
+                int[] values = new int[rowCount];
+                in.asIntBuffer().get(values);
+                in.position(in.position() + rowCount * Integer.BYTES);
+                return values;
+            }
+            case LONG: {
+                long[] values = new long[rowCount];
+                in.asLongBuffer().get(values);
+                in.position(in.position() + rowCount * Long.BYTES);
+                return values;
+            }
+            case DOUBLE: {
+                double[] values = new double[rowCount];
+                in.asDoubleBuffer().get(values);
+                in.position(in.position() + rowCount * Double.BYTES);
+                return values;
+            }
+            default: {
+                boolean[] values = new boolean[rowCount];
+                for (int r = 0; r < rowCount; r++) {
+                    values[r] = in.get() != 0;
+                }
+                return values;
+            }
+        }
+    }
+
+    // Matches DataOutputStream.writeUTF for the ASCII column names we write
+    private static String readUtf(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    // Cursor over the column arrays; moved from row to row by read()
+    private static final class ColumnRow implements SnapshotSchema.Row {
+        private final Object[] data;
+        private int index;
+
+        ColumnRow(Object[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public String string(int column) {
+            return ((String[]) data[column])[index];
+        }
+
+        @Override
+        public int integer(int column) {
+            return ((int[]) data[column])[index];
+        }
+
+        @Override
+        public long longInteger(int column) {
+            return ((long[]) data[column])[index];
+        }
+
+        @Override
+        public double decimal(int column) {
+            return ((double[]) data[column])[index];
+        }
+
+        @Override
+        public boolean bool(int column) {
+            return ((boolean[]) data[column])[index];
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package hms.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Column layout of an entity type in a binary snapshot: how to pull each
+ * column out of an entity, and how to build an entity back from one row.
+ * Columns are addressed by the order in which they were declared.
+ */
+public final class SnapshotSchema<T> {
+
+    // Snapshots store the ordinal, so new types go at the end
+    enum ColumnType {
+        STRING, INT, DOUBLE, BOOLEAN, LONG
+    }
+
+    static final class Column<T> {
+        final String name;
+        final ColumnType type;
+        final Function<T, String> stringGetter;
+        final ToIntFunction<T> intGetter;
+        final ToLongFunction<T> longGetter;
+        final ToDoubleFunction<T> doubleGetter;
+        final Predicate<T> booleanGetter;
+
+        private Column(String name, ColumnType type, Function<T, String> stringGetter, ToIntFunction<T> intGetter,
+                       ToLongFunction<T> longGetter, ToDoubleFunction<T> doubleGetter, Predicate<T> booleanGetter) {
+            this.name = name;
+            this.type = type;
+            this.stringGetter = stringGetter;
+            this.intGetter = intGetter;
+            this.longGetter = longGetter;
+            this.doubleGetter = doubleGetter;
+            this.booleanGetter = booleanGetter;
+        }
+    }
+
+    /**
+     * Read access to one row of a loaded snapshot. A single instance is moved
+     * across rows, so factories must not keep a reference to it.
+     */
+    public interface Row {
+        String string(int column);
+        int integer(int column);
+        long longInteger(int column);
+        double decimal(int column);
+        boolean bool(int column);
+    }
+
+    private final List<Column<T>> columns = new ArrayList<>();
+    private Function<Row, T> factory;
+
+    public SnapshotSchema<T> string(String name, Function<T, String> getter) {
+        columns.add(new Column<>(name, ColumnType.STRING, getter, null, null, null, null));
+        return this;
+    }
+
+    public SnapshotSchema<T> integer(String name, ToIntFunction<T> getter) {
+        columns.add(new Column<>(name, ColumnType.INT, null, getter, null, null, null));
+        return this;
+    }
+
+    // E.g. money in cents, which must not pass through a double
+    public SnapshotSchema<T> longInteger(String name, ToLongFunction<T> getter) {
+        columns.add(new Column<>(name, ColumnType.LONG, null, null, getter, null, null));
+        return this;
+    }
+
+    public SnapshotSchema<T> decimal(String name, ToDoubleFunction<T> getter) {
+        columns.add(new Column<>(name, ColumnType.DOUBLE, null, null, null, getter, null));
+        return this;
+    }
+
+    public SnapshotSchema<T> bool(String name, Predicate<T> getter) {
+        columns.add(new Column<>(name, ColumnType.BOOLEAN, null, null, null, null, getter));
+        return this;
+    }
+
+    public SnapshotSchema<T> rows(Function<Row, T> factory) {
+        this.factory = factory;
+        return this;
+    }
+
+    List<Column<T>> getColumns() {
+        return Collections.unmodifiableList(columns);
+    }
+
+    T createEntity(Row row) {
+        if (factory == null) {
+            throw new IllegalStateException("Snapshot schema has no row factory");
+        }
+        return factory.apply(row);
+    }
+}
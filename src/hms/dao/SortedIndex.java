@@ -0,0 +1,156 @@
+package hms.dao;
+
+import hms.interfaces.SecondaryIndex;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Ordered index that answers both exact and range lookups in O(log n + matches)
+ */
+public class SortedIndex<T, ID, K extends Comparable<K>> implements SecondaryIndex<T, ID> {
+
+    private final Function<T, K> keyExtractor;
+    // Converts a query value (e.g. a String from a search box) into a key, or null if it cannot
+    private final Function<Object, K> queryConverter;
+
+    private final TreeMap<K, Set<ID>> postings = new TreeMap<>();
+    private final Map<ID, K> keysById = new HashMap<>();
+
+    public SortedIndex(Function<T, K> keyExtractor, Function<Object, K> queryConverter) {
+        this.keyExtractor = keyExtractor;
+        this.queryConverter = queryConverter;
+    }
+
+    @Override
+    public void add(ID id, T entity) {
+        K key = keyExtractor.apply(entity);
+        if (key == null) {
+            return;
+        }
+        postings.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(id);
+        keysById.put(id, key);
+    }
+
+    @Override
+    public void remove(ID id) {
+        K key = keysById.remove(id);
+        if (key == null) {
+            return;
+        }
+        Set<ID> ids = postings.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                postings.remove(key);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        postings.clear();
+        keysById.clear();
+    }
+
+    @Override
+    public Collection<ID> lookup(Object value) {
+        K key = convert(value);
+        if (key == null) {
+            return null;
+        }
+        Set<ID> ids = postings.get(key);
+        return ids != null ? new ArrayList<>(ids) : Collections.emptyList();
+    }
+
+    // IDs whose key lies in [from, to]; a null bound leaves that side open
+    public Collection<ID> range(Object from, Object to) {
+        K low = convert(from);
+        K high = convert(to);
+        NavigableMap<K, Set<ID>> view;
+        if (low != null && high != null) {
+            if (low.compareTo(high) > 0) {
+                return Collections.emptyList();
+            }
+            view = postings.subMap(low, true, high, true);
+        } else if (low != null) {
+            view = postings.tailMap(low, true);
+        } else if (high != null) {
+            view = postings.headMap(high, true);
+        } else {
+            view = postings;
+        }
+
+        List<ID> results = new ArrayList<>();
+        for (Set<ID> ids : view.values()) {
+            results.addAll(ids);
+        }
+        return results;
+    }
+
+    // Up to limit IDs whose key is strictly greater than the given key (from the start for null), in key order
+    public List<ID> after(Object from, int limit) {
+        K low = convert(from);
+        NavigableMap<K, Set<ID>> view = low != null ? postings.tailMap(low, false) : postings;
+        List<ID> results = new ArrayList<>(Math.min(limit, keysById.size()));
+        for (Set<ID> ids : view.values()) {
+            for (ID id : ids) {
+                if (results.size() == limit) {
+                    return results;
+                }
+                results.add(id);
+            }
+        }
+        return results;
+    }
+
+    // IDs at positions [offset, offset + limit) in key order, walking only the skipped and returned entries
+    public List<ID> slice(int offset, int limit, boolean descending) {
+        List<ID> results = new ArrayList<>(Math.min(limit, keysById.size()));
+        int skipped = 0;
+        for (Set<ID> ids : (descending ? postings.descendingMap() : postings).values()) {
+            if (skipped + ids.size() <= offset) {
+                skipped += ids.size();
+                continue;
+            }
+            for (ID id : ids) {
+                if (skipped < offset) {
+                    skipped++;
+                } else if (results.size() < limit) {
+                    results.add(id);
+                } else {
+                    return results;
+                }
+            }
+        }
+        return results;
+    }
+
+    // Number of indexed entities; entities with a null key are not indexed
+    public int size() {
+        return keysById.size();
+    }
+
+    // Evaluate the same range test directly against an entity (used when no cache is loaded)
+    public boolean inRange(T entity, Object from, Object to) {
+        K key = keyExtractor.apply(entity);
+        if (key == null) {
+            return false;
+        }
+        K low = convert(from);
+        K high = convert(to);
+        return (low == null || key.compareTo(low) >= 0) && (high == null || key.compareTo(high) <= 0);
+    }
+
+    private K convert(Object value) {
+        return value != null ? queryConverter.apply(value) : null;
+    }
+}
@@ -0,0 +1,514 @@
+package hms.dao;
+
+import hms.interfaces.SearchableDAO;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Abstract base class for DAOs backed by a SQL table, intended for an
+ * embedded, file-mode engine such as H2 so no server is needed.
+ *
+ * The table layout is the entity's SnapshotSchema: one column per schema
+ * column, the first being the primary key. The table and its indexes are
+ * created on construction if missing. Every statement is prepared, and
+ * connections come from a shared ConnectionPool. Batch operations run as a
+ * single transaction with JDBC batching, so they apply completely or not at
+ * all.
+ *
+ * Only standard SQL and java.sql are used; the JDBC driver is picked from the
+ * pool's URL at runtime. As in the file-based DAOs, a failed statement is
+ * reported and turned into false, null or an empty result.
+ */
+public abstract class SqlDAO<T> implements SearchableDAO<T, String> {
+
+    // SQLState class for integrity constraint violations such as a duplicate primary key
+    private static final String CONSTRAINT_VIOLATION = "23";
+    // Rows sent to the driver per executeBatch() inside one batch transaction
+    private static final int BATCH_CHUNK = 1000;
+
+    protected final ConnectionPool pool;
+    protected final String table;
+    private final SnapshotSchema<T> schema;
+    private final List<SnapshotSchema.Column<T>> columns;
+    private final Map<String, PropertyColumn> properties = new HashMap<>();
+    private final List<String> searchColumns = new ArrayList<>();
+
+    private final String selectColumns;
+    private final String insertSql;
+    private final String updateSql;
+
+    private interface SqlWork<R> {
+        R run(Connection connection) throws SQLException;
+    }
+
+    private static final class PropertyColumn {
+        final String column;
+        final HashIndex.MatchMode matchMode;
+        final boolean ignoreCase;
+
+        PropertyColumn(String column, HashIndex.MatchMode matchMode, boolean ignoreCase) {
+            this.column = column;
+            this.matchMode = matchMode;
+            this.ignoreCase = ignoreCase;
+        }
+    }
+
+    protected SqlDAO(ConnectionPool pool, String table, SnapshotSchema<T> schema) {
+        this.pool = pool;
+        this.table = table;
+        this.schema = schema;
+        this.columns = schema.getColumns();
+
+        List<String> names = new ArrayList<>(columns.size());
+        for (SnapshotSchema.Column<T> column : columns) {
+            names.add(column.name);
+        }
+        selectColumns = String.join(", ", names);
+        insertSql = "INSERT INTO " + table + " (" + selectColumns + ") VALUES (" +
+                String.join(", ", Collections.nCopies(names.size(), "?")) + ")";
+        updateSql = "UPDATE " + table + " SET " + String.join(" = ?, ", names.subList(1, names.size())) +
+                " = ? WHERE " + idColumn() + " = ?";
+
+        createTable();
+        properties.put("id", new PropertyColumn(idColumn(), HashIndex.MatchMode.EXACT, false));
+    }
+
+    private String idColumn() {
+        return columns.get(0).name;
+    }
+
+    private void createTable() {
+        StringBuilder ddl = new StringBuilder("CREATE TABLE IF NOT EXISTS ").append(table).append(" (");
+        for (SnapshotSchema.Column<T> column : columns) {
+            ddl.append(column.name).append(' ').append(sqlType(column.type)).append(", ");
+        }
+        ddl.append("PRIMARY KEY (").append(idColumn()).append("))");
+        String sql = ddl.toString();
+        Boolean created = withConnection(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(sql);
+            }
+            return true;
+        }, false);
+        if (!created) {
+            throw new IllegalStateException("Could not create table " + table + " in " + pool.getUrl());
+        }
+    }
+
+    private static String sqlType(SnapshotSchema.ColumnType type) {
+        switch (type) {
+            case INT:
+                return "INTEGER";
+            case LONG:
+                return "BIGINT";
+            case DOUBLE:
+                return "DOUBLE PRECISION";
+            case BOOLEAN:
+                return "BOOLEAN";
+            default:
+                // No length limit: the file-based DAOs accept strings of any size, and
+                // CLOB could not serve as the primary key or be indexed
+                return "VARCHAR";
+        }
+    }
+
+    /**
+     * Subclass hook: create a B-tree index on a column, if missing. The
+     * engine uses it for exact and prefix matches, and because it ends with
+     * the primary key it also serves findPage's "ORDER BY column, id" without
+     * sorting the table.
+     */
+    protected void addIndex(String column) {
+        String sql = "CREATE INDEX IF NOT EXISTS idx_" + table + "_" + column + " ON " + table +
+                " (" + column + ", " + idColumn() + ")";
+        withConnection(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(sql);
+            }
+            return true;
+        }, false);
+    }
+
+    // Subclass hook: let findByProperty answer a property from a column, with the file DAO's matching rules
+    protected void addProperty(String propertyName, String column, HashIndex.MatchMode matchMode, boolean ignoreCase) {
+        properties.put(propertyName.toLowerCase(), new PropertyColumn(column, matchMode, ignoreCase));
+    }
+
+    // Subclass hook: columns matched (case-insensitive substring) by search()
+    protected void addSearchColumns(String... columnNames) {
+        Collections.addAll(searchColumns, columnNames);
+    }
+
+    @Override
+    public boolean save(T entity) {
+        return withConnection(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(insertSql)) {
+                bindInsert(statement, entity);
+                return statement.executeUpdate() > 0;
+            } catch (SQLException e) {
+                if (isConstraintViolation(e)) {
+                    // The ID is taken; same answer as a service-level exists() check
+                    return false;
+                }
+                throw e;
+            }
+        }, false);
+    }
+
+    @Override
+    public T findById(String id) {
+        List<T> found = query("SELECT " + selectColumns + " FROM " + table + " WHERE " + idColumn() + " = ?", id);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    @Override
+    public List<T> findAll() {
+        return query("SELECT " + selectColumns + " FROM " + table + " ORDER BY " + idColumn());
+    }
+
+    @Override
+    public List<T> findByProperty(String propertyName, Object value) {
+        PropertyColumn property = properties.get(propertyName.toLowerCase());
+        if (property == null || value == null) {
+            return new ArrayList<>();
+        }
+        String column = property.ignoreCase ? "LOWER(" + property.column + ")" : property.column;
+        String text = property.ignoreCase ? value.toString().toLowerCase() : value.toString();
+        if (property.matchMode == HashIndex.MatchMode.CONTAINS) {
+            return query("SELECT " + selectColumns + " FROM " + table + " WHERE " + column +
+                    " LIKE ? ESCAPE '\\' ORDER BY " + idColumn(), containsPattern(text));
+        }
+        return query("SELECT " + selectColumns + " FROM " + table + " WHERE " + column +
+                " = ? ORDER BY " + idColumn(), value instanceof String ? text : value);
+    }
+
+    @Override
+    public List<T> findPage(int offset, int limit, String sort) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit must not be negative");
+        }
+        if (sort == null) {
+            return query("SELECT " + selectColumns + " FROM " + table + " ORDER BY " + idColumn() +
+                    " LIMIT ? OFFSET ?", limit, offset);
+        }
+        boolean descending = sort.startsWith("-");
+        String property = descending ? sort.substring(1) : sort;
+        PropertyColumn column = properties.get(property.toLowerCase());
+        if (column == null) {
+            throw new IllegalArgumentException("Cannot sort by property: " + property);
+        }
+        String sql = "SELECT " + selectColumns + " FROM " + table + " ORDER BY " + column.column + ", " +
+                idColumn() + " LIMIT ? OFFSET ?";
+        if (!descending) {
+            return query(sql, limit, offset);
+        }
+        // Engines such as H2 only walk an index forwards, so read the mirrored ascending window and reverse it.
+        // Like the file DAOs, a descending sort reverses the whole order, ties included.
+        long size = count();
+        long from = Math.max(0, size - offset - limit);
+        List<T> page = query(sql, Math.max(0, size - offset - from), from);
+        Collections.reverse(page);
+        return page;
+    }
+
+    // Seeks the primary key index, so every page costs the same however deep it is
+    @Override
+    public List<T> findAfter(String afterId, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative");
+        }
+        if (afterId == null) {
+            return query("SELECT " + selectColumns + " FROM " + table + " ORDER BY " + idColumn() + " LIMIT ?", limit);
+        }
+        return query("SELECT " + selectColumns + " FROM " + table + " WHERE " + idColumn() + " > ? ORDER BY " +
+                idColumn() + " LIMIT ?", afterId, limit);
+    }
+
+    @Override
+    public List<T> search(String query) {
+        if (query == null || query.trim().isEmpty() || searchColumns.isEmpty()) {
+            return findAll();
+        }
+        String pattern = containsPattern(query.toLowerCase());
+        List<String> conditions = new ArrayList<>(searchColumns.size());
+        Object[] parameters = new Object[searchColumns.size()];
+        for (int i = 0; i < searchColumns.size(); i++) {
+            conditions.add("LOWER(" + searchColumns.get(i) + ") LIKE ? ESCAPE '\\'");
+            parameters[i] = pattern;
+        }
+        return query("SELECT " + selectColumns + " FROM " + table + " WHERE " + String.join(" OR ", conditions) +
+                " ORDER BY " + idColumn(), parameters);
+    }
+
+    @Override
+    public boolean update(T entity) {
+        return withConnection(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(updateSql)) {
+                bindUpdate(statement, entity);
+                return statement.executeUpdate() > 0;
+            }
+        }, false);
+    }
+
+    @Override
+    public boolean delete(String id) {
+        return withConnection(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "DELETE FROM " + table + " WHERE " + idColumn() + " = ?")) {
+                statement.setString(1, id);
+                return statement.executeUpdate() > 0;
+            }
+        }, false);
+    }
+
+    @Override
+    public boolean exists(String id) {
+        return withConnection(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT 1 FROM " + table + " WHERE " + idColumn() + " = ?")) {
+                statement.setString(1, id);
+                try (ResultSet results = statement.executeQuery()) {
+                    return results.next();
+                }
+            }
+        }, false);
+    }
+
+    @Override
+    public long count() {
+        return withConnection(connection -> {
+            try (Statement statement = connection.createStatement();
+                 ResultSet results = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+                return results.next() ? results.getLong(1) : 0L;
+            }
+        }, 0L);
+    }
+
+    // All or nothing: a duplicate ID fails the whole batch and nothing is saved
+    @Override
+    public int saveAll(Collection<T> entities) {
+        if (entities.isEmpty()) {
+            return 0;
+        }
+        return inTransaction(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(insertSql)) {
+                int affected = 0;
+                int pending = 0;
+                for (T entity : entities) {
+                    bindInsert(statement, entity);
+                    statement.addBatch();
+                    if (++pending == BATCH_CHUNK) {
+                        affected += affectedRows(statement.executeBatch());
+                        pending = 0;
+                    }
+                }
+                return affected + affectedRows(statement.executeBatch());
+            }
+        });
+    }
+
+    @Override
+    public int updateAll(Collection<T> entities) {
+        if (entities.isEmpty()) {
+            return 0;
+        }
+        return inTransaction(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(updateSql)) {
+                int affected = 0;
+                int pending = 0;
+                for (T entity : entities) {
+                    bindUpdate(statement, entity);
+                    statement.addBatch();
+                    if (++pending == BATCH_CHUNK) {
+                        affected += affectedRows(statement.executeBatch());
+                        pending = 0;
+                    }
+                }
+                return affected + affectedRows(statement.executeBatch());
+            }
+        });
+    }
+
+    @Override
+    public int deleteAll(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return inTransaction(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "DELETE FROM " + table + " WHERE " + idColumn() + " = ?")) {
+                int affected = 0;
+                int pending = 0;
+                for (String id : ids) {
+                    statement.setString(1, id);
+                    statement.addBatch();
+                    if (++pending == BATCH_CHUNK) {
+                        affected += affectedRows(statement.executeBatch());
+                        pending = 0;
+                    }
+                }
+                return affected + affectedRows(statement.executeBatch());
+            }
+        });
+    }
+
+    private List<T> query(String sql, Object... parameters) {
+        return withConnection(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (int i = 0; i < parameters.length; i++) {
+                    statement.setObject(i + 1, parameters[i]);
+                }
+                List<T> entities = new ArrayList<>();
+                try (ResultSet results = statement.executeQuery()) {
+                    Object[] values = new Object[columns.size()];
+                    SnapshotSchema.Row row = new ValueRow(values);
+                    while (results.next()) {
+                        for (int i = 0; i < values.length; i++) {
+                            values[i] = results.getObject(i + 1);
+                        }
+                        entities.add(schema.createEntity(row));
+                    }
+                }
+                return entities;
+            }
+        }, new ArrayList<>());
+    }
+
+    private void bindInsert(PreparedStatement statement, T entity) throws SQLException {
+        for (int i = 0; i < columns.size(); i++) {
+            bind(statement, i + 1, columns.get(i), entity);
+        }
+    }
+
+    // SET every non-key column, then the key in the WHERE clause
+    private void bindUpdate(PreparedStatement statement, T entity) throws SQLException {
+        for (int i = 1; i < columns.size(); i++) {
+            bind(statement, i, columns.get(i), entity);
+        }
+        bind(statement, columns.size(), columns.get(0), entity);
+    }
+
+    private static <T> void bind(PreparedStatement statement, int index, SnapshotSchema.Column<T> column, T entity)
+            throws SQLException {
+        switch (column.type) {
+            case INT:
+                statement.setInt(index, column.intGetter.applyAsInt(entity));
+                break;
+            case LONG:
+                statement.setLong(index, column.longGetter.applyAsLong(entity));
+                break;
+            case DOUBLE:
+                statement.setDouble(index, column.doubleGetter.applyAsDouble(entity));
+                break;
+            case BOOLEAN:
+                statement.setBoolean(index, column.booleanGetter.test(entity));
+                break;
+            default:
+                statement.setString(index, column.stringGetter.apply(entity));
+                break;
+        }
+    }
+
+    private static int affectedRows(int[] counts) {
+        int affected = 0;
+        for (int count : counts) {
+            // Drivers may report success without a row count
+            affected += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+        }
+        return affected;
+    }
+
+    private static String containsPattern(String text) {
+        return "%" + text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
+    private static boolean isConstraintViolation(SQLException e) {
+        return e.getSQLState() != null && e.getSQLState().startsWith(CONSTRAINT_VIOLATION);
+    }
+
+    private <R> R withConnection(SqlWork<R> work, R fallback) {
+        Connection connection = null;
+        try {
+            connection = pool.acquire();
+            return work.run(connection);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return fallback;
+        } finally {
+            if (connection != null) {
+                pool.release(connection);
+            }
+        }
+    }
+
+    // Run the work as one transaction; returns 0 after rolling back if any statement fails
+    private int inTransaction(SqlWork<Integer> work) {
+        return withConnection(connection -> {
+            connection.setAutoCommit(false);
+            try {
+                int affected = work.run(connection);
+                connection.commit();
+                return affected;
+            } catch (SQLException | RuntimeException e) {
+                // Report the statement that failed, not a rollback failure it caused
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure);
+                }
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }, 0);
+    }
+
+    // Schema row over the column values of the current result set row, in declaration order
+    private static final class ValueRow implements SnapshotSchema.Row {
+        private final Object[] values;
+
+        ValueRow(Object[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public String string(int column) {
+            Object value = values[column];
+            return value == null ? null : value.toString();
+        }
+
+        @Override
+        public int integer(int column) {
+            Object value = values[column];
+            return value == null ? 0 : ((Number) value).intValue();
+        }
+
+        @Override
+        public long longInteger(int column) {
+            Object value = values[column];
+            return value == null ? 0 : ((Number) value).longValue();
+        }
+
+        @Override
+        public double decimal(int column) {
+            Object value = values[column];
+            return value == null ? 0 : ((Number) value).doubleValue();
+        }
+
+        @Override
+        public boolean bool(int column) {
+            Object value = values[column];
+            return value instanceof Boolean ? (Boolean) value
+                    : value instanceof Number && ((Number) value).intValue() != 0;
+        }
+    }
+}
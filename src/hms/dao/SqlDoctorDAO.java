@@ -0,0 +1,22 @@
+package hms.dao;
+
+import hms.model.Doctor;
+import java.util.List;
+
+public class SqlDoctorDAO extends SqlDAO<Doctor> {
+
+    public SqlDoctorDAO(ConnectionPool pool) {
+        super(pool, "doctors", DoctorDAO.SCHEMA);
+        addIndex("name");
+        addIndex("specialization");
+        // Same matching rules as DoctorDAO.matchesProperty
+        addProperty("name", "name", HashIndex.MatchMode.CONTAINS, true);
+        addProperty("specialization", "specialization", HashIndex.MatchMode.CONTAINS, true);
+        addProperty("availability", "availability", HashIndex.MatchMode.CONTAINS, true);
+        addSearchColumns("id", "name", "specialization");
+    }
+
+    public List<Doctor> findBySpecialization(String specialization) {
+        return findByProperty("specialization", specialization);
+    }
+}
@@ -0,0 +1,30 @@
+package hms.dao;
+
+import hms.model.Patient;
+import java.util.List;
+
+public class SqlPatientDAO extends SqlDAO<Patient> {
+
+    public SqlPatientDAO(ConnectionPool pool) {
+        super(pool, "patients", PatientDAO.SCHEMA);
+        addIndex("name");
+        addIndex("age");
+        addIndex("disease");
+        addIndex("bloodGroup");
+        // Same matching rules as PatientDAO.matchesProperty
+        addProperty("name", "name", HashIndex.MatchMode.CONTAINS, true);
+        addProperty("age", "age", HashIndex.MatchMode.EXACT, false);
+        addProperty("disease", "disease", HashIndex.MatchMode.CONTAINS, true);
+        addProperty("contact", "contact", HashIndex.MatchMode.CONTAINS, false);
+        addProperty("bloodgroup", "bloodGroup", HashIndex.MatchMode.EXACT, true);
+        addSearchColumns("id", "name", "disease", "contact");
+    }
+
+    public List<Patient> findByDisease(String disease) {
+        return findByProperty("disease", disease);
+    }
+
+    public List<Patient> findByBloodGroup(String bloodGroup) {
+        return findByProperty("bloodGroup", bloodGroup);
+    }
+}
@@ -0,0 +1,122 @@
+package hms.dao;
+
+import hms.interfaces.SecondaryIndex;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Running count and sum of a whole-number amount per group, e.g. bill totals
+ * in cents per day or per patient. Every write the DAO makes adjusts the
+ * affected group, so a group's total is a lookup and a total over a range of
+ * groups touches only the groups in the range, never the entities.
+ *
+ * Groups are kept in key order. An entity whose group key is null is not
+ * counted.
+ */
+public class SumIndex<T, ID, K extends Comparable<K>> implements SecondaryIndex<T, ID> {
+
+    private final Function<T, K> groupOf;
+    private final ToLongFunction<T> amountOf;
+
+    private final TreeMap<K, long[]> groups = new TreeMap<>();
+    // What each ID added, so removal undoes exactly that even if the entity was mutated in place
+    private final Map<ID, Contribution<K>> contributions = new HashMap<>();
+
+    public SumIndex(Function<T, K> groupOf, ToLongFunction<T> amountOf) {
+        this.groupOf = groupOf;
+        this.amountOf = amountOf;
+    }
+
+    @Override
+    public void add(ID id, T entity) {
+        K group = groupOf.apply(entity);
+        if (group == null) {
+            return;
+        }
+        long amount = amountOf.applyAsLong(entity);
+        contributions.put(id, new Contribution<>(group, amount));
+        long[] totals = groups.computeIfAbsent(group, g -> new long[2]);
+        totals[0]++;
+        totals[1] += amount;
+    }
+
+    @Override
+    public void remove(ID id) {
+        Contribution<K> contribution = contributions.remove(id);
+        if (contribution == null) {
+            return;
+        }
+        long[] totals = groups.get(contribution.group);
+        if (--totals[0] == 0) {
+            groups.remove(contribution.group);
+        } else {
+            totals[1] -= contribution.amount;
+        }
+    }
+
+    @Override
+    public void clear() {
+        groups.clear();
+        contributions.clear();
+    }
+
+    // Queries go through sum(), count() and the range methods
+    @Override
+    public Collection<ID> lookup(Object value) {
+        return null;
+    }
+
+    public long sum(K group) {
+        long[] totals = groups.get(group);
+        return totals != null ? totals[1] : 0;
+    }
+
+    public long count(K group) {
+        long[] totals = groups.get(group);
+        return totals != null ? totals[0] : 0;
+    }
+
+    // Sum over the groups in [from, to]; a null bound leaves that side open
+    public long sumBetween(K from, K to) {
+        long sum = 0;
+        for (long[] totals : range(from, to).values()) {
+            sum += totals[1];
+        }
+        return sum;
+    }
+
+    // Sum per group for the groups in [from, to], in key order
+    public Map<K, Long> sumsBetween(K from, K to) {
+        Map<K, Long> sums = new LinkedHashMap<>();
+        for (Map.Entry<K, long[]> group : range(from, to).entrySet()) {
+            sums.put(group.getKey(), group.getValue()[1]);
+        }
+        return sums;
+    }
+
+    private NavigableMap<K, long[]> range(K from, K to) {
+        if (from != null && to != null) {
+            return from.compareTo(to) > 0 ? new TreeMap<>() : groups.subMap(from, true, to, true);
+        }
+        if (from != null) {
+            return groups.tailMap(from, true);
+        }
+        return to != null ? groups.headMap(to, true) : groups;
+    }
+
+    private static final class Contribution<K> {
+        final K group;
+        final long amount;
+
+        Contribution(K group, long amount) {
+            this.group = group;
+            this.amount = amount;
+        }
+    }
+}
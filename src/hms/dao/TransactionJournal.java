@@ -0,0 +1,169 @@
+package hms.dao;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Redo journal that makes a unit of work spanning several log-structured DAOs
+ * atomic.
+ *
+ * A transaction is written as one block, "#BEGIN,&lt;id&gt;", one line per
+ * record naming the data file it belongs to, then "#COMMIT,&lt;id&gt;", with
+ * a single append and fsync. That write is the commit point. The records are
+ * then appended to the DAOs' own files and the journal is cleared. If the
+ * process dies in between, recover() re-applies every committed block at the
+ * next start; a block without its commit line was never committed and is
+ * dropped.
+ */
+public class TransactionJournal {
+
+    private static final String BEGIN = "#BEGIN,";
+    private static final String COMMIT = "#COMMIT,";
+
+    private final String filePath;
+    private final DataFileLock fileLock;
+    private final Map<String, LogStructuredDAO<?>> participants = new LinkedHashMap<>();
+
+    // Set when a committed block could not be applied; the journal is then kept for recovery
+    private boolean pendingReplay;
+
+    public TransactionJournal(String filePath) {
+        this.filePath = filePath;
+        this.fileLock = new DataFileLock(filePath);
+    }
+
+    // DAOs whose records may appear in the journal, matched by data file path
+    public synchronized void register(LogStructuredDAO<?> dao) {
+        participants.put(dao.filePath, dao);
+    }
+
+    /**
+     * Re-apply transactions that were committed but not yet applied to their
+     * data files, then clear the journal. Call once every DAO is registered.
+     */
+    public synchronized void recover() {
+        File file = new File(filePath);
+        if (!file.exists() || file.length() == 0) {
+            return;
+        }
+        // Same lock order as a committing unit of work: data files first, then the journal
+        List<LogStructuredDAO<?>> daos = UnitOfWork.lockInOrder(participants.values());
+        fileLock.acquire(false);
+        try {
+            int recovered = 0;
+            for (Map<String, List<String>> transaction : readCommitted()) {
+                for (Map.Entry<String, List<String>> records : transaction.entrySet()) {
+                    LogStructuredDAO<?> dao = participants.get(records.getKey());
+                    if (dao == null) {
+                        System.err.println("Journal names unknown data file " + records.getKey() + "; records skipped");
+                    } else if (!dao.replayRecords(records.getValue())) {
+                        System.err.println("Failed to replay journal into " + records.getKey() + "; journal kept");
+                        pendingReplay = true;
+                        return;
+                    }
+                }
+                recovered++;
+            }
+            if (recovered > 0) {
+                System.out.println("Recovered " + recovered + " committed transaction(s) from " + filePath);
+            }
+            pendingReplay = false;
+            truncate();
+        } finally {
+            fileLock.release();
+            UnitOfWork.unlockAll(daos);
+        }
+    }
+
+    // Committed blocks in order, each as data file -> record lines
+    private List<Map<String, List<String>>> readCommitted() {
+        List<Map<String, List<String>>> committed = new ArrayList<>();
+        Map<String, List<String>> current = null;
+        String currentId = null;
+        try (BufferedReader reader = new BufferedReader(new FileReader(filePath, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(BEGIN)) {
+                    current = new LinkedHashMap<>();
+                    currentId = line.substring(BEGIN.length());
+                } else if (line.startsWith(COMMIT)) {
+                    if (current != null && line.substring(COMMIT.length()).equals(currentId)) {
+                        committed.add(current);
+                    }
+                    current = null;
+                } else if (current != null && !line.trim().isEmpty()) {
+                    LineTokenizer record = new LineTokenizer().reset(line);
+                    current.computeIfAbsent(record.nextString(), k -> new ArrayList<>()).add(record.nextString());
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return committed;
+    }
+
+    // Held by a committing unit of work from the journal write until the journal is cleared
+    void lock() {
+        fileLock.acquire(false);
+    }
+
+    void unlock() {
+        fileLock.release();
+    }
+
+    // Durably append one transaction block; (data file, record line) pairs in apply order
+    boolean write(long transactionId, List<String[]> records) {
+        StringBuilder block = new StringBuilder(records.size() * 96);
+        String newline = System.lineSeparator();
+        block.append(BEGIN).append(transactionId).append(newline);
+        for (String[] record : records) {
+            block.append(LineTokenizer.join(record[0], record[1])).append(newline);
+        }
+        block.append(COMMIT).append(transactionId).append(newline);
+
+        try (RandomAccessFile file = new RandomAccessFile(filePath, "rw")) {
+            long length = file.length();
+            if (length > 0) {
+                file.seek(length - 1);
+                if (file.read() != '\n') {
+                    // Start on a fresh line after a block torn by a crash
+                    block.insert(0, newline);
+                }
+            }
+            file.seek(length);
+            file.write(block.toString().getBytes(StandardCharsets.UTF_8));
+            file.getFD().sync();
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // Called once a committed block has reached every data file
+    synchronized void applied() {
+        if (!pendingReplay) {
+            truncate();
+        }
+    }
+
+    synchronized void applyFailed() {
+        pendingReplay = true;
+    }
+
+    private void truncate() {
+        try (RandomAccessFile file = new RandomAccessFile(filePath, "rw")) {
+            file.setLength(0);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
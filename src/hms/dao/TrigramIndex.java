@@ -0,0 +1,195 @@
+package hms.dao;
+
+import hms.interfaces.SecondaryIndex;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Inverted index from lower-cased character trigrams to the entities whose
+ * text fields contain them, for substring search.
+ *
+ * Every entity gets an increasing document number, so posting lists are
+ * appended in sorted order and intersected with a linear merge. A lookup
+ * returns candidates that contain every trigram of the query; callers
+ * re-check them, because sharing trigrams does not guarantee a substring match.
+ * Queries shorter than three characters cannot be answered and return null.
+ */
+public class TrigramIndex<T, ID> implements SecondaryIndex<T, ID> {
+
+    private static final int GRAM = 3;
+
+    private final List<Function<T, String>> fields;
+
+    private final Map<Long, Postings> postings = new HashMap<>();
+    // Document number -> ID; null marks a removed document
+    private final List<ID> documents = new ArrayList<>();
+    private final Map<ID, Integer> documentById = new HashMap<>();
+    private int removedDocuments;
+
+    @SafeVarargs
+    public TrigramIndex(Function<T, String>... fields) {
+        // Copied element by element so the varargs array itself never escapes
+        List<Function<T, String>> copy = new ArrayList<>(fields.length);
+        for (Function<T, String> field : fields) {
+            copy.add(field);
+        }
+        this.fields = copy;
+    }
+
+    @Override
+    public void add(ID id, T entity) {
+        int doc = documents.size();
+        documents.add(id);
+        documentById.put(id, doc);
+
+        for (Function<T, String> field : fields) {
+            String value = field.apply(entity);
+            if (value == null) {
+                continue;
+            }
+            String text = value.toLowerCase();
+            for (int i = 0; i + GRAM <= text.length(); i++) {
+                postings.computeIfAbsent(trigramKey(text, i), k -> new Postings()).append(doc);
+            }
+        }
+    }
+
+    @Override
+    public void remove(ID id) {
+        Integer doc = documentById.remove(id);
+        if (doc == null) {
+            return;
+        }
+        documents.set(doc, null);
+        removedDocuments++;
+        if (removedDocuments > 1024 && removedDocuments > documentById.size()) {
+            purgeRemoved();
+        }
+    }
+
+    @Override
+    public void clear() {
+        postings.clear();
+        documents.clear();
+        documentById.clear();
+        removedDocuments = 0;
+    }
+
+    @Override
+    public Collection<ID> lookup(Object value) {
+        if (value == null) {
+            return null;
+        }
+        String query = value.toString().toLowerCase();
+        if (query.length() < GRAM) {
+            return null;
+        }
+
+        Set<Long> keys = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= query.length(); i++) {
+            keys.add(trigramKey(query, i));
+        }
+        List<Postings> lists = new ArrayList<>(keys.size());
+        for (Long key : keys) {
+            Postings list = postings.get(key);
+            if (list == null) {
+                return Collections.emptyList();
+            }
+            lists.add(list);
+        }
+        // Start from the rarest trigram so the intersection shrinks fastest
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+
+        int[] result = Arrays.copyOf(lists.get(0).docs, lists.get(0).size);
+        int resultSize = result.length;
+        for (int l = 1; l < lists.size() && resultSize > 0; l++) {
+            resultSize = intersect(result, resultSize, lists.get(l));
+        }
+
+        List<ID> ids = new ArrayList<>(resultSize);
+        for (int i = 0; i < resultSize; i++) {
+            ID id = documents.get(result[i]);
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    // Keep in result[0..size) only the documents also present in other; returns the new size
+    private static int intersect(int[] result, int size, Postings other) {
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < size && j < other.size; i++) {
+            int doc = result[i];
+            while (j < other.size && other.docs[j] < doc) {
+                j++;
+            }
+            if (j < other.size && other.docs[j] == doc) {
+                result[kept++] = doc;
+            }
+        }
+        return kept;
+    }
+
+    // Renumber live documents densely and drop removed ones from every posting list
+    private void purgeRemoved() {
+        int[] renumbered = new int[documents.size()];
+        List<ID> live = new ArrayList<>(documentById.size());
+        for (int doc = 0; doc < documents.size(); doc++) {
+            ID id = documents.get(doc);
+            if (id == null) {
+                renumbered[doc] = -1;
+            } else {
+                renumbered[doc] = live.size();
+                documentById.put(id, live.size());
+                live.add(id);
+            }
+        }
+        postings.values().removeIf(list -> list.remap(renumbered) == 0);
+        documents.clear();
+        documents.addAll(live);
+        removedDocuments = 0;
+    }
+
+    private static long trigramKey(String text, int offset) {
+        return ((long) text.charAt(offset) << 32) | ((long) text.charAt(offset + 1) << 16) | text.charAt(offset + 2);
+    }
+
+    // Growable, ascending list of document numbers
+    private static final class Postings {
+        int[] docs = new int[4];
+        int size;
+
+        void append(int doc) {
+            // Documents arrive in increasing order, so a repeat can only be the last entry
+            if (size > 0 && docs[size - 1] == doc) {
+                return;
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+
+        int remap(int[] renumbered) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int doc = renumbered[docs[i]];
+                if (doc >= 0) {
+                    docs[kept++] = doc;
+                }
+            }
+            size = kept;
+            return size;
+        }
+    }
+}
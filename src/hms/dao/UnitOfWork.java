@@ -0,0 +1,211 @@
+package hms.dao;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A set of changes across several log-structured DAOs that is applied
+ * completely or not at all.
+ *
+ * Opening a unit of work takes the write lock of every participating DAO, in
+ * data file order so two units never deadlock. While it is open the caller
+ * can check and reserve (mutate) cached entities, registering an undo action
+ * for each, and queue the entities to upsert. commit() makes them durable with
+ * one journal write and then appends them to each DAO's log (or, for DAOs
+ * attached to a write-ahead journal, writes them as one journal block and
+ * leaves the data files to its checkpointer); rollback() (or
+ * close() without a commit) runs the undo actions and writes nothing. The
+ * locks are held until the changes are durable, so nobody else sees a
+ * reservation that might still be undone.
+ *
+ * <pre>
+ * try (UnitOfWork work = new UnitOfWork(journal, medicineDAO, billingDAO)) {
+ *     ...reserve, work.onRollback(...), work.upsert(...)...
+ *     work.commit();
+ * }
+ * </pre>
+ */
+public final class UnitOfWork implements AutoCloseable {
+
+    private static final AtomicLong NEXT_ID = new AtomicLong(System.currentTimeMillis());
+
+    private final TransactionJournal journal;
+    private final List<LogStructuredDAO<?>> participants;
+    private final Map<LogStructuredDAO<?>, Changes<?>> changes = new LinkedHashMap<>();
+    private final Deque<Runnable> undoActions = new ArrayDeque<>();
+    private boolean finished;
+
+    public UnitOfWork(TransactionJournal journal, LogStructuredDAO<?>... daos) {
+        this.journal = journal;
+        this.participants = lockInOrder(Arrays.asList(daos));
+        // Reservations must see every journaled change to these DAOs, not just the ones already applied
+        for (LogStructuredDAO<?> dao : participants) {
+            if (dao.journal != null) {
+                dao.settleJournaled();
+            }
+        }
+    }
+
+    // Queue an entity to be written by the DAO when the unit commits
+    public <T> void upsert(LogStructuredDAO<T> dao, T entity) {
+        checkOpen();
+        if (!participants.contains(dao)) {
+            throw new IllegalArgumentException("DAO for " + dao.filePath + " is not part of this unit of work");
+        }
+        @SuppressWarnings("unchecked")
+        Changes<T> daoChanges = (Changes<T>) changes.computeIfAbsent(dao, d -> new Changes<>(dao));
+        daoChanges.entities.add(entity);
+    }
+
+    // Undo an in-memory reservation if the unit does not commit; actions run in reverse order
+    public void onRollback(Runnable action) {
+        checkOpen();
+        undoActions.push(action);
+    }
+
+    /**
+     * Make every queued change durable and visible. Returns false, after
+     * rolling back, if the journal could not be written. Once the journal
+     * write succeeds the unit is committed, even if a data file append then
+     * fails; the journal keeps such a transaction for recovery.
+     */
+    public boolean commit() {
+        checkOpen();
+        List<String[]> records = new ArrayList<>();
+        for (Changes<?> daoChanges : changes.values()) {
+            daoChanges.addRecords(records);
+        }
+        if (records.isEmpty()) {
+            finish();
+            return true;
+        }
+
+        WriteAheadLog wal = participants.get(0).journal;
+        if (wal != null) {
+            return commitJournaled(wal, records);
+        }
+
+        journal.lock();
+        try {
+            if (!journal.write(NEXT_ID.incrementAndGet(), records)) {
+                rollback();
+                return false;
+            }
+            boolean applied = true;
+            for (Changes<?> daoChanges : changes.values()) {
+                if (!daoChanges.apply()) {
+                    System.err.println("Committed changes to " + daoChanges.dao.filePath +
+                            " could not be applied; they will be replayed from the journal on restart");
+                    applied = false;
+                }
+            }
+            if (applied) {
+                journal.applied();
+            } else {
+                journal.applyFailed();
+            }
+        } finally {
+            journal.unlock();
+        }
+        finish();
+        return true;
+    }
+
+    // The DAOs share a write-ahead journal: wait for the group commit of one block, still holding the locks,
+    // then apply it to the caches; if the journal write fails, roll back instead
+    private boolean commitJournaled(WriteAheadLog wal, List<String[]> records) {
+        if (!wal.submit(records).await()) {
+            rollback();
+            return false;
+        }
+        for (Changes<?> daoChanges : changes.values()) {
+            daoChanges.applyJournaled();
+        }
+        finish();
+        return true;
+    }
+
+    public void rollback() {
+        if (finished) {
+            return;
+        }
+        try {
+            while (!undoActions.isEmpty()) {
+                undoActions.pop().run();
+            }
+        } finally {
+            finish();
+        }
+    }
+
+    @Override
+    public void close() {
+        rollback();
+    }
+
+    private void checkOpen() {
+        if (finished) {
+            throw new IllegalStateException("Unit of work already finished");
+        }
+    }
+
+    private void finish() {
+        finished = true;
+        unlockAll(participants);
+    }
+
+    // Take the write locks of the given DAOs in data file order; returns them in that order
+    static List<LogStructuredDAO<?>> lockInOrder(Collection<LogStructuredDAO<?>> daos) {
+        List<LogStructuredDAO<?>> ordered = new ArrayList<>(daos);
+        ordered.sort(Comparator.comparing(dao -> dao.filePath));
+        List<LogStructuredDAO<?>> locked = new ArrayList<>(ordered.size());
+        try {
+            for (LogStructuredDAO<?> dao : ordered) {
+                dao.writeLock.lock();
+                locked.add(dao);
+            }
+        } catch (RuntimeException | Error e) {
+            unlockAll(locked);
+            throw e;
+        }
+        return ordered;
+    }
+
+    static void unlockAll(List<LogStructuredDAO<?>> daos) {
+        for (int i = daos.size() - 1; i >= 0; i--) {
+            daos.get(i).writeLock.unlock();
+        }
+    }
+
+    private static final class Changes<T> {
+        final LogStructuredDAO<T> dao;
+        final List<T> entities = new ArrayList<>();
+
+        Changes(LogStructuredDAO<T> dao) {
+            this.dao = dao;
+        }
+
+        void addRecords(List<String[]> records) {
+            for (T entity : entities) {
+                records.add(dao.journal != null ? dao.journalRecord(WriteAheadLog.UPSERT, entity)
+                        : new String[]{dao.filePath, dao.entityToFileString(entity)});
+            }
+        }
+
+        boolean apply() {
+            return dao.upsertAll(entities);
+        }
+
+        void applyJournaled() {
+            dao.applyJournaled(entities);
+        }
+    }
+}
@@ -1,27 +1,40 @@
 package hms.dao;
 
 import hms.model.User;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 
 public class UserDAO extends FileBasedDAO<User, String> {
 
     public UserDAO() {
-        super("data/users.txt");
+        this(false);
+    }
+
+    public UserDAO(boolean cacheEnabled) {
+        super("data/users.txt", cacheEnabled);
+        // Losing an account change locks people out; the file is tiny so fsync is cheap
+        setDurability(DurabilityLevel.SYNC);
+        addIndex("role", new HashIndex<>(User::getRole, false, HashIndex.MatchMode.EXACT));
+        addIndex("active", new SortedIndex<User, String, Boolean>(User::isActive,
+                value -> value instanceof Boolean ? (Boolean) value : Boolean.parseBoolean(value.toString())));
     }
 
     @Override
     protected User parseEntity(String line) {
         try {
-            String[] data = line.split(",");
-            if (data.length >= 4) {
+            LineTokenizer data = tokenize(line);
+            int fieldCount = data.fieldCount();
+            if (fieldCount >= 4) {
                 User user = new User(
-                        data[0], // username
-                        data[1], // password
-                        data[2], // fullName
-                        data[3]  // role
+                        data.nextString(), // username
+                        data.nextString(), // password
+                        data.nextString(), // fullName
+                        data.nextString()  // role
                 );
-                if (data.length >= 5) {
-                    user.setActive(Boolean.parseBoolean(data[4]));
+                if (fieldCount >= 5) {
+                    user.setActive(data.nextBoolean());
                 }
                 return user;
             }
@@ -34,7 +47,23 @@ public class UserDAO extends FileBasedDAO<User, String> {
 
     @Override
     protected String entityToFileString(User user) {
-        return user.toFileString();
+        return LineTokenizer.join(user.getUsername(), user.getPassword(), user.getFullName(),
+                user.getRole(), user.isActive());
+    }
+
+    @Override
+    protected SnapshotSchema<User> snapshotSchema() {
+        return new SnapshotSchema<User>()
+                .string("username", User::getUsername)
+                .string("password", User::getPassword)
+                .string("fullName", User::getFullName)
+                .string("role", User::getRole)
+                .bool("active", User::isActive)
+                .rows(row -> {
+                    User user = new User(row.string(0), row.string(1), row.string(2), row.string(3));
+                    user.setActive(row.bool(4));
+                    return user;
+                });
     }
 
     @Override
@@ -42,6 +71,21 @@ public class UserDAO extends FileBasedDAO<User, String> {
         return user.getUsername();
     }
 
+    // Properties the management table can be sorted on
+    @Override
+    protected Comparator<User> sortOrder(String propertyName) {
+        switch (propertyName.toLowerCase()) {
+            case "username":
+                return textOrder(User::getUsername);
+            case "role":
+                return textOrder(User::getRole);
+            case "fullname":
+                return textOrder(User::getFullName);
+            default:
+                return super.sortOrder(propertyName);
+        }
+    }
+
     @Override
     protected boolean matchesProperty(User user, String propertyName, Object value) {
         if (value == null) return false;
@@ -65,13 +109,15 @@ public class UserDAO extends FileBasedDAO<User, String> {
 
     // Additional method for authentication
     public User authenticate(String username, String password) {
-        List<User> users = findAll();
-        for (User user : users) {
-            if (user.getUsername().equals(username) &&
-                    user.getPassword().equals(password) &&
-                    user.isActive()) {
-                return user;
-            }
+        if (username == null) {
+            return null;
+        }
+        // Username is the ID, so this is a direct lookup rather than a scan
+        User user = findById(username);
+        if (user != null &&
+                user.getPassword().equals(password) &&
+                user.isActive()) {
+            return user;
         }
         return null;
     }
@@ -80,5 +126,54 @@ public class UserDAO extends FileBasedDAO<User, String> {
     public List<User> findByRole(String role) {
         return findByProperty("role", role);
     }
+
+    // Replace the password if the old one is right; readers never see the change unless it was written
+    public boolean changePassword(String username, String oldPassword, String newPassword) {
+        writeLock.lock();
+        try {
+            User user = authenticate(username, oldPassword);
+            if (user == null) {
+                return false;
+            }
+            user.setPassword(newPassword);
+            if (update(user)) {
+                return true;
+            }
+            user.setPassword(oldPassword);
+            return false;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Enable or disable the users with one write, or not at all; returns how many were found
+    public int setActive(Collection<String> usernames, boolean active) {
+        writeLock.lock();
+        try {
+            List<User> users = new ArrayList<>();
+            List<Boolean> previous = new ArrayList<>();
+            for (String username : usernames) {
+                User user = username != null ? findById(username) : null;
+                if (user != null) {
+                    users.add(user);
+                    previous.add(user.isActive());
+                    user.setActive(active);
+                }
+            }
+            if (users.isEmpty()) {
+                return 0;
+            }
+            int updated = updateAll(users);
+            if (updated == 0) {
+                // Put the cached users back the way the indexes still have them
+                for (int i = 0; i < users.size(); i++) {
+                    users.get(i).setActive(previous.get(i));
+                }
+            }
+            return updated;
+        } finally {
+            writeLock.unlock();
+        }
+    }
 }
 
@@ -0,0 +1,413 @@
+package hms.dao;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-ahead journal shared by every attached DAO.
+ *
+ * An attached DAO queues each change here under its write lock as a block of
+ * records: "#BEGIN,&lt;seq&gt;", one "&lt;data file&gt;,U|D,&lt;entity
+ * line&gt;" per upsert or delete, and "#COMMIT,&lt;seq&gt;". The caller then
+ * waits, outside the lock, until a committer thread has written and fsynced
+ * its block, and only then applies it to the DAO's cache. Blocks queued by
+ * concurrent writers share one write and one fsync. When the previous batch
+ * held more than one block (writers are contending), the committer waits up
+ * to the batch window until about as many blocks are queued again, never
+ * more than the batch size limit; a lone writer is never delayed.
+ *
+ * Data files are only rewritten by the background checkpointer: it moves the
+ * journal aside, rewrites (and fsyncs) every DAO with journaled changes from
+ * its cache, then deletes the old journal. Every record is a whole-entity
+ * upsert or delete, so replaying a journal over a data file that already
+ * holds some of its changes gives the same result. On startup recover()
+ * replays the committed blocks of both journal files and checkpoints.
+ *
+ * The data files lag behind the journal, so a journal is owned by one process
+ * for its lifetime: open() returns null if another process holds it. Such a
+ * process writes the data files directly under their file locks; each DAO
+ * checkpoint takes the same lock and catches up with those writes first,
+ * replaying this journal over a reloaded file when needed (see replayInto).
+ */
+public final class WriteAheadLog implements AutoCloseable {
+
+    private static final String BEGIN = "#BEGIN,";
+    private static final String COMMIT = "#COMMIT,";
+    static final char UPSERT = 'U';
+    static final char DELETE = 'D';
+
+    private static final int DEFAULT_MAX_BATCH = 64;
+    private static final long DEFAULT_BATCH_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final long CHECKPOINT_INTERVAL_MILLIS = 5000;
+    private static final long CHECKPOINT_BYTES = 4L << 20;
+
+    private final Path path;
+    private final Path rotatedPath;
+    private final FileChannel lockChannel;
+    private final FileLock processLock;
+    private final int maxBatch;
+    private final long batchWindowNanos;
+
+    private final Map<String, FileBasedDAO<?, ?>> daos = new LinkedHashMap<>();
+
+    // Guarded by queue
+    private final ArrayDeque<Commit> queue = new ArrayDeque<>();
+    private long nextSequence;
+    private boolean closed;
+
+    // Guarded by io: the current journal file and what was written to it since the last checkpoint
+    private final Object io = new Object();
+    private FileChannel out;
+    private long bytesSinceCheckpoint;
+    private long lastCheckpoint = System.currentTimeMillis();
+
+    private Thread committer;
+    private ScheduledExecutorService checkpointer;
+
+    private WriteAheadLog(Path path, FileChannel lockChannel, FileLock processLock, int maxBatch, long batchWindowNanos) {
+        this.path = path;
+        this.rotatedPath = Paths.get(path + ".old");
+        this.lockChannel = lockChannel;
+        this.processLock = processLock;
+        this.maxBatch = maxBatch;
+        this.batchWindowNanos = batchWindowNanos;
+    }
+
+    public static WriteAheadLog open(String filePath) throws IOException {
+        return open(filePath, DEFAULT_MAX_BATCH, DEFAULT_BATCH_WINDOW_NANOS);
+    }
+
+    // Open the journal for this process, or return null if another process already owns it
+    public static WriteAheadLog open(String filePath, int maxBatch, long batchWindowNanos) throws IOException {
+        Path path = Paths.get(filePath).toAbsolutePath();
+        FileChannel lockChannel = FileChannel.open(Paths.get(path + ".lock"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileLock processLock = lockChannel.tryLock();
+        if (processLock == null) {
+            lockChannel.close();
+            return null;
+        }
+        return new WriteAheadLog(path, lockChannel, processLock, maxBatch, batchWindowNanos);
+    }
+
+    // Route the DAO's writes through this journal; attach every DAO before recover()
+    public synchronized void attach(FileBasedDAO<?, ?> dao) {
+        if (!dao.isCacheEnabled()) {
+            throw new IllegalArgumentException("Only cached DAOs can be journaled: " + dao.filePath);
+        }
+        daos.put(dao.filePath, dao);
+        dao.journal = this;
+    }
+
+    /**
+     * Replay committed blocks left by the previous run into the attached DAOs,
+     * checkpoint them and start from an empty journal. A trailing block
+     * without its commit line was never acknowledged and is dropped.
+     */
+    public synchronized void recover() throws IOException {
+        int recovered = replay(rotatedPath) + replay(path);
+        if (recovered > 0) {
+            System.out.println("Recovered " + recovered + " journaled change(s) from " + path);
+        }
+        for (FileBasedDAO<?, ?> dao : daos.values()) {
+            if (!dao.checkpoint()) {
+                throw new IOException("Could not checkpoint " + dao.filePath + " after journal recovery");
+            }
+        }
+        Files.deleteIfExists(rotatedPath);
+        synchronized (io) {
+            out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+    }
+
+    /**
+     * Apply the committed records for one DAO's data file again, in journal
+     * order, after the DAO reloaded a file another process had rewritten.
+     * Both journal files still hold every change not yet checkpointed into
+     * that file; replaying ones it already holds changes nothing.
+     */
+    void replayInto(FileBasedDAO<?, ?> dao) {
+        // Holding io keeps the committer from appending and a checkpoint from rotating while the files are read
+        synchronized (io) {
+            try {
+                replay(rotatedPath, dao.filePath);
+                replay(path, dao.filePath);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private int replay(Path journal) throws IOException {
+        return replay(journal, null);
+    }
+
+    // Replay the committed blocks of a journal file, only the records for one data file unless it is null
+    private int replay(Path journal, String onlyFile) throws IOException {
+        if (!Files.exists(journal)) {
+            return 0;
+        }
+        int replayed = 0;
+        List<String[]> block = null;
+        String blockId = null;
+        try (BufferedReader reader = Files.newBufferedReader(journal, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(BEGIN)) {
+                    block = new ArrayList<>();
+                    blockId = line.substring(BEGIN.length());
+                } else if (line.startsWith(COMMIT)) {
+                    if (block != null && line.substring(COMMIT.length()).equals(blockId)) {
+                        for (String[] record : block) {
+                            if (onlyFile != null && !onlyFile.equals(record[0])) {
+                                continue;
+                            }
+                            FileBasedDAO<?, ?> dao = daos.get(record[0]);
+                            if (dao == null) {
+                                System.err.println("Journal names unknown data file " + record[0] + "; record skipped");
+                            } else {
+                                dao.replayJournalRecord(record[1].charAt(0), record[2]);
+                                replayed++;
+                            }
+                        }
+                    }
+                    block = null;
+                } else if (block != null && !line.trim().isEmpty()) {
+                    LineTokenizer record = new LineTokenizer().reset(line);
+                    block.add(new String[]{record.nextString(), record.nextString(), record.nextString()});
+                }
+            }
+        }
+        return replayed;
+    }
+
+    // Start the committer and checkpointer threads; call after recover()
+    public synchronized void start() {
+        committer = new Thread(this::runCommitter, "hms-wal-commit");
+        committer.setDaemon(true);
+        committer.start();
+
+        checkpointer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hms-wal-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointer.scheduleWithFixedDelay(this::checkpointIfDue, 500, 500, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queue a block of {data file, op, entity line} records. The caller must
+     * hold the write lock of every DAO in the block while submitting and
+     * applying it, so blocks reach the journal in the order they were applied.
+     */
+    Commit submit(List<String[]> records) {
+        StringBuilder block = new StringBuilder(records.size() * 96 + 32);
+        String newline = System.lineSeparator();
+        synchronized (queue) {
+            if (closed) {
+                throw new IllegalStateException("Write-ahead journal is closed");
+            }
+            long sequence = ++nextSequence;
+            block.append(BEGIN).append(sequence).append(newline);
+            for (String[] record : records) {
+                block.append(LineTokenizer.join(record[0], record[1], record[2])).append(newline);
+            }
+            block.append(COMMIT).append(sequence).append(newline);
+            Commit commit = new Commit(block.toString().getBytes(StandardCharsets.UTF_8));
+            queue.add(commit);
+            queue.notifyAll();
+            return commit;
+        }
+    }
+
+    private void runCommitter() {
+        int lastBatchSize = 0;
+        while (true) {
+            List<Commit> batch = new ArrayList<>();
+            synchronized (queue) {
+                try {
+                    while (queue.isEmpty() && !closed) {
+                        queue.wait();
+                    }
+                    if (queue.isEmpty()) {
+                        return;
+                    }
+                    // Only wait for company when the last batch showed other writers are active, and
+                    // only for about as many blocks as they produced then
+                    if (lastBatchSize > 1) {
+                        int target = Math.min(maxBatch, lastBatchSize);
+                        long deadline = System.nanoTime() + batchWindowNanos;
+                        long remaining;
+                        while (queue.size() < target && !closed && (remaining = deadline - System.nanoTime()) > 0) {
+                            TimeUnit.NANOSECONDS.timedWait(queue, remaining);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                while (!queue.isEmpty() && batch.size() < maxBatch) {
+                    batch.add(queue.poll());
+                }
+            }
+            lastBatchSize = batch.size();
+            flush(batch);
+        }
+    }
+
+    // One write and one fsync for the whole batch
+    private void flush(List<Commit> batch) {
+        int size = 0;
+        for (Commit commit : batch) {
+            size += commit.bytes.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (Commit commit : batch) {
+            buffer.put(commit.bytes);
+        }
+        buffer.flip();
+
+        boolean durable;
+        synchronized (io) {
+            try {
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                out.force(false);
+                bytesSinceCheckpoint += size;
+                durable = true;
+            } catch (IOException e) {
+                e.printStackTrace();
+                durable = false;
+            }
+            // Settled before the journal can be rotated, so a checkpoint finds every block of the old file settled
+            for (Commit commit : batch) {
+                commit.result.complete(durable);
+            }
+        }
+    }
+
+    private void checkpointIfDue() {
+        boolean due;
+        synchronized (io) {
+            due = bytesSinceCheckpoint >= CHECKPOINT_BYTES ||
+                    (bytesSinceCheckpoint > 0 && System.currentTimeMillis() - lastCheckpoint >= CHECKPOINT_INTERVAL_MILLIS);
+        }
+        if (due) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Write every DAO's journaled changes to its data file and discard the
+     * journal they came from. Changes made while the checkpoint runs go to
+     * the fresh journal file.
+     */
+    public synchronized boolean checkpoint() {
+        try {
+            synchronized (io) {
+                out.close();
+                if (Files.exists(rotatedPath)) {
+                    // A previous checkpoint failed; keep its journal in front of this one
+                    Files.write(rotatedPath, Files.readAllBytes(path), StandardOpenOption.APPEND);
+                    Files.delete(path);
+                } else {
+                    Files.move(path, rotatedPath);
+                }
+                out = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                bytesSinceCheckpoint = 0;
+                lastCheckpoint = System.currentTimeMillis();
+            }
+
+            boolean complete = true;
+            for (FileBasedDAO<?, ?> dao : daos.values()) {
+                complete &= dao.checkpoint();
+            }
+            if (complete) {
+                Files.deleteIfExists(rotatedPath);
+            }
+            return complete;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // Flush queued blocks, checkpoint every DAO and release the journal
+    @Override
+    public void close() {
+        synchronized (queue) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.notifyAll();
+        }
+        try {
+            if (committer != null) {
+                committer.join();
+            }
+            // Let a running checkpoint finish; interrupting it would close its file channels
+            if (checkpointer != null) {
+                checkpointer.shutdown();
+                checkpointer.awaitTermination(1, TimeUnit.MINUTES);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (out != null && checkpoint()) {
+                try {
+                    synchronized (io) {
+                        out.close();
+                    }
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        try {
+            processLock.release();
+            lockChannel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // A queued block; await() returns once it is durable (true) or failed to write (false)
+    static final class Commit {
+        private final byte[] bytes;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        private Commit(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        boolean await() {
+            return result.join();
+        }
+
+        boolean isDone() {
+            return result.isDone();
+        }
+    }
+}
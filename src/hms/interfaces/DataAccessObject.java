@@ -1,5 +1,6 @@
 package hms.interfaces;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -26,7 +27,21 @@ public interface DataAccessObject<T, ID> {
     // Utility method to check if an entity exists
     boolean exists(ID id);
 
-    // Count the number of entities
+    // Count the number of entities without building them all
     long count();
+
+    // Paging: the entities at positions [offset, offset + limit) in the given sort order.
+    // sort is a property name, prefixed with "-" for descending; null keeps the DAO's natural order.
+    List<T> findPage(int offset, int limit, String sort);
+
+    // Keyset cursor: up to limit entities whose ID sorts after afterId (null starts at the beginning),
+    // in ID order. Pass the last ID of one page to get the next, however far into the table it is.
+    List<T> findAfter(ID afterId, int limit);
+
+    // Batch operations: apply every change with a single read and a single write.
+    // Each returns the number of entities saved, updated or deleted.
+    int saveAll(Collection<T> entities);
+    int updateAll(Collection<T> entities);
+    int deleteAll(Collection<ID> ids);
 }
 
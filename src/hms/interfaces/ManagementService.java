@@ -1,5 +1,6 @@
 package hms.interfaces;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -13,6 +14,16 @@ public interface ManagementService<T, ID> {
     boolean update(T entity);
     boolean delete(ID id);
 
+    // Batch operations; each returns the number of entities affected
+    int addAll(Collection<T> entities);
+    int updateAll(Collection<T> entities);
+    int deleteAll(Collection<ID> ids);
+
+    // Paging, for views that show one window of a large table at a time (see DataAccessObject)
+    long count();
+    List<T> getPage(int offset, int limit, String sort);
+    List<T> getAfter(ID afterId, int limit);
+
     // Search functionality
     List<T> search(String query);
 }
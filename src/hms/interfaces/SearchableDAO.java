@@ -0,0 +1,15 @@
+package hms.interfaces;
+
+import java.util.List;
+
+/**
+ * DAO that also answers the free-text search behind a management panel's
+ * search box, so services can work against any storage backend
+ * @param <T> the type of object this DAO handles
+ * @param <ID> the type of the ID field
+ */
+public interface SearchableDAO<T, ID> extends DataAccessObject<T, ID> {
+
+    // Entities whose searchable fields contain the query (case-insensitive); all entities for a blank query
+    List<T> search(String query);
+}
@@ -0,0 +1,23 @@
+package hms.interfaces;
+
+import java.util.Collection;
+
+/**
+ * Secondary index over a DAO's in-memory entities, kept up to date on every write
+ * @param <T> the type of object being indexed
+ * @param <ID> the type of the ID field
+ */
+public interface SecondaryIndex<T, ID> {
+
+    // Index an entity under the key(s) derived from it
+    void add(ID id, T entity);
+
+    // Forget whatever keys were recorded for this ID
+    void remove(ID id);
+
+    // Drop all entries
+    void clear();
+
+    // Candidate IDs for a property value, or null if this index cannot answer the query
+    Collection<ID> lookup(Object value);
+}
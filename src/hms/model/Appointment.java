@@ -1,18 +1,30 @@
 package hms.model;
 
 import java.io.Serializable;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
 
 public class Appointment implements Serializable {
+    public static final int DEFAULT_DURATION_MINUTES = 30;
+
     private String appointmentId;
     private String patientId;
     private String doctorId;
     private Date appointmentDate;
-    private String timeSlot;
+    private String timeSlot; // e.g. "09:30 AM"
+    private int durationMinutes;
     private String status; // SCHEDULED, COMPLETED, CANCELLED
     private String description;
     private double fee;
     private boolean isPaid;
+    private RecurrenceRule recurrence; // null for a one-off appointment
+    private String seriesId; // for one session of a recurring appointment: the series it belongs to
+    private LocalDate occurrenceDay; // and the day that session was originally due
 
     public Appointment(String appointmentId, String patientId, String doctorId, Date appointmentDate, String timeSlot) {
         this.appointmentId = appointmentId;
@@ -20,6 +32,7 @@ public class Appointment implements Serializable {
         this.doctorId = doctorId;
         this.appointmentDate = appointmentDate;
         this.timeSlot = timeSlot;
+        this.durationMinutes = DEFAULT_DURATION_MINUTES;
         this.status = "SCHEDULED";
         this.description = "";
         this.fee = 0.0;
@@ -30,9 +43,9 @@ public class Appointment implements Serializable {
         this.appointmentId = appointmentId;
         this.patientId = patientId;
         this.doctorId = doctorId;
-        // Parse date from string in real implementation
-        this.appointmentDate = new Date();
+        this.appointmentDate = parseDate(dateString);
         this.timeSlot = timeSlot;
+        this.durationMinutes = DEFAULT_DURATION_MINUTES;
         this.status = status;
         this.description = "";
         this.fee = 0.0;
@@ -80,6 +93,41 @@ public class Appointment implements Serializable {
         this.timeSlot = timeSlot;
     }
 
+    public int getDurationMinutes() {
+        return durationMinutes;
+    }
+
+    public void setDurationMinutes(int durationMinutes) {
+        this.durationMinutes = durationMinutes;
+    }
+
+    // Calendar day of the appointment in the local time zone, or null if it has no date
+    public LocalDate getDay() {
+        return appointmentDate != null
+                ? Instant.ofEpochMilli(appointmentDate.getTime()).atZone(ZoneId.systemDefault()).toLocalDate()
+                : null;
+    }
+
+    // Minutes after midnight the appointment starts, or -1 if the time slot cannot be read
+    public int getStartMinute() {
+        return parseTimeSlot(timeSlot);
+    }
+
+    public int getEndMinute() {
+        int start = getStartMinute();
+        return start < 0 ? -1 : start + durationMinutes;
+    }
+
+    // Start as epoch milliseconds (day plus time slot), or -1 if either is missing
+    public long getStartTime() {
+        LocalDate day = getDay();
+        int start = getStartMinute();
+        if (day == null || start < 0) {
+            return -1;
+        }
+        return day.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli() + start * 60000L;
+    }
+
     public String getStatus() {
         return status;
     }
@@ -112,10 +160,100 @@ public class Appointment implements Serializable {
         isPaid = paid;
     }
 
-    public String toFileString() {
-        // Format date to string in real implementation
-        return appointmentId + "," + patientId + "," + doctorId + "," + appointmentDate + "," +
-                timeSlot + "," + status + "," + description + "," + fee + "," + isPaid;
+    public RecurrenceRule getRecurrence() {
+        return recurrence;
+    }
+
+    public void setRecurrence(RecurrenceRule recurrence) {
+        this.recurrence = recurrence;
+    }
+
+    // A series: stored once, its sessions are worked out from the rule when needed
+    public boolean isRecurring() {
+        return recurrence != null;
+    }
+
+    public String getSeriesId() {
+        return seriesId;
+    }
+
+    public LocalDate getOccurrenceDay() {
+        return occurrenceDay;
+    }
+
+    // Mark this appointment as the series' session originally due on the day, e.g. to store a change to it
+    public void setOccurrenceOf(String seriesId, LocalDate occurrenceDay) {
+        this.seriesId = seriesId;
+        this.occurrenceDay = occurrenceDay;
+    }
+
+    // Whether the series has a session on the day
+    public boolean occursOn(LocalDate day) {
+        LocalDate first = getDay();
+        return recurrence != null && first != null && recurrence.occursOn(first, day);
+    }
+
+    // The series' session on the day as an appointment of its own, unpaid and with a derived ID
+    public Appointment occurrenceOn(LocalDate day) {
+        Appointment occurrence = new Appointment(occurrenceId(appointmentId, day), patientId, doctorId,
+                Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant()), timeSlot);
+        occurrence.durationMinutes = durationMinutes;
+        occurrence.status = status;
+        occurrence.description = description;
+        occurrence.fee = fee;
+        occurrence.setOccurrenceOf(appointmentId, day);
+        return occurrence;
+    }
+
+    // ID of a series' session on the day, e.g. "A123-20270115"; also the ID a change to that session is stored under
+    public static String occurrenceId(String seriesId, LocalDate day) {
+        return seriesId + "-" + day.format(DateTimeFormatter.BASIC_ISO_DATE);
+    }
+
+    // Parse "hh:mm AM/PM" or 24-hour "HH:mm" into minutes after midnight; -1 if malformed
+    public static int parseTimeSlot(String timeSlot) {
+        if (timeSlot == null) {
+            return -1;
+        }
+        String text = timeSlot.trim().toUpperCase();
+        boolean pm = text.endsWith("PM");
+        boolean am = text.endsWith("AM");
+        if (am || pm) {
+            text = text.substring(0, text.length() - 2).trim();
+        }
+        int colon = text.indexOf(':');
+        if (colon < 1) {
+            return -1;
+        }
+        try {
+            int hour = Integer.parseInt(text.substring(0, colon));
+            int minute = Integer.parseInt(text.substring(colon + 1));
+            if (minute < 0 || minute > 59 || hour < 0 || hour > ((am || pm) ? 12 : 23) || ((am || pm) && hour == 0)) {
+                return -1;
+            }
+            if (am || pm) {
+                hour = hour % 12 + (pm ? 12 : 0);
+            }
+            return hour * 60 + minute;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Format minutes after midnight the way time slots are written, e.g. 570 -> "09:30 AM"
+    public static String formatTimeSlot(int minute) {
+        int hour = minute / 60 % 24;
+        return String.format("%02d:%02d %s", hour % 12 == 0 ? 12 : hour % 12, minute % 60, hour < 12 ? "AM" : "PM");
+    }
+
+    private static Date parseDate(String dateString) {
+        try {
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+            format.setLenient(false);
+            return format.parse(dateString);
+        } catch (ParseException | NullPointerException e) {
+            return new Date();
+        }
     }
 
     @Override
@@ -1,15 +1,20 @@
 package hms.model;
 
+import hms.util.IdGenerator;
+import hms.util.Money;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
 public class Billing implements Serializable {
+    // Every bill ID, whoever generates it, starts with this
+    public static final String ID_PREFIX = "BILL-";
+
     private String billId;
     private String patientId;
     private Date billDate;
-    private double totalAmount;
+    private long totalCents;
     private String paymentStatus;
     private String paymentMethod;
     private List<BillItem> items;
@@ -20,7 +25,7 @@ public class Billing implements Serializable {
         this.billId = billId;
         this.patientId = patientId;
         this.billDate = billDate;
-        this.totalAmount = 0.0;
+        this.totalCents = 0;
         this.paymentStatus = "UNPAID";
         this.items = new ArrayList<>();
         this.discount = 0.0;
@@ -31,7 +36,7 @@ public class Billing implements Serializable {
         this.billId = generateBillId();
         this.patientId = patientId;
         this.billDate = new Date();
-        this.totalAmount = totalAmount;
+        this.totalCents = Money.ofAmount(totalAmount);
         this.paymentStatus = paymentStatus;
         this.items = new ArrayList<>();
         this.discount = 0.0;
@@ -39,7 +44,7 @@ public class Billing implements Serializable {
     }
 
     private String generateBillId() {
-        return "BILL-" + System.currentTimeMillis();
+        return IdGenerator.getDefault().next(ID_PREFIX);
     }
 
     // Method to add an item and update the total amount
@@ -50,20 +55,26 @@ public class Billing implements Serializable {
         }
     }
 
-    // Calculate the total bill amount
+    // Calculate the total bill amount; discount and tax are each rounded to the cent
     private void calculateTotal() {
-        double subtotal = 0.0;
+        totalCents = Money.add(Money.subtract(getSubtotalCents(), getDiscountCents()), getTaxCents());
+    }
+
+    // Sum of the item amounts
+    public long getSubtotalCents() {
+        long subtotal = 0;
         for (BillItem item : items) {
-            subtotal += item.getAmount();
+            subtotal = Money.add(subtotal, item.getAmountCents());
         }
+        return subtotal;
+    }
 
-        // Apply discount
-        double discountAmount = subtotal * (discount / 100.0);
-
-        // Apply tax
-        double taxAmount = subtotal * (tax / 100.0);
+    public long getDiscountCents() {
+        return Money.percentOf(getSubtotalCents(), Money.basisPoints(discount));
+    }
 
-        totalAmount = subtotal - discountAmount + taxAmount;
+    public long getTaxCents() {
+        return Money.percentOf(getSubtotalCents(), Money.basisPoints(tax));
     }
 
     // Getters and setters
@@ -80,14 +91,22 @@ public class Billing implements Serializable {
     }
 
     public double getTotalAmount() {
-        return totalAmount;
+        return Money.toAmount(totalCents);
     }
 
     public void setTotalAmount(double totalAmount) {
-        if (totalAmount < 0) {
+        setTotalCents(Money.ofAmount(totalAmount));
+    }
+
+    public long getTotalCents() {
+        return totalCents;
+    }
+
+    public void setTotalCents(long totalCents) {
+        if (totalCents < 0) {
             throw new IllegalArgumentException("Total amount cannot be negative");
         }
-        this.totalAmount = totalAmount;
+        this.totalCents = totalCents;
     }
 
     public String getPaymentStatus() {
@@ -134,36 +153,47 @@ public class Billing implements Serializable {
         calculateTotal();
     }
 
-    public String toFileString() {
-        return billId + "," + patientId + "," + billDate + "," + totalAmount + "," +
-                paymentStatus + "," + paymentMethod + "," + discount + "," + tax;
-    }
-
     @Override
     public String toString() {
         return "Bill ID: " + billId + ", Patient ID: " + patientId +
-                ", Date: " + billDate + ", Amount: " + totalAmount +
+                ", Date: " + billDate + ", Amount: " + Money.format(totalCents) +
                 ", Status: " + paymentStatus;
     }
 
     // Inner class for bill items
     public static class BillItem implements Serializable {
         private String description;
-        private double amount;
+        private long unitPriceCents;
+        private long amountCents;
         private int quantity;
 
         public BillItem(String description, double amount, int quantity) {
+            this(description, Money.ofAmount(amount), quantity);
+        }
+
+        // Private so that a caller's int price still goes to the double constructor, not this one
+        private BillItem(String description, long unitPriceCents, int quantity) {
             this.description = description;
-            this.amount = amount * quantity;
+            this.unitPriceCents = unitPriceCents;
+            this.amountCents = Money.times(unitPriceCents, quantity);
             this.quantity = quantity;
         }
 
+        // Item priced in cents
+        public static BillItem ofCents(String description, long unitPriceCents, int quantity) {
+            return new BillItem(description, unitPriceCents, quantity);
+        }
+
         public String getDescription() {
             return description;
         }
 
         public double getAmount() {
-            return amount;
+            return Money.toAmount(amountCents);
+        }
+
+        public long getAmountCents() {
+            return amountCents;
         }
 
         public int getQuantity() {
@@ -171,12 +201,16 @@ public class Billing implements Serializable {
         }
 
         public double getUnitPrice() {
-            return quantity > 0 ? amount / quantity : amount;
+            return Money.toAmount(unitPriceCents);
+        }
+
+        public long getUnitPriceCents() {
+            return unitPriceCents;
         }
 
         @Override
         public String toString() {
-            return description + " x " + quantity + " = " + amount;
+            return description + " x " + quantity + " = " + Money.format(amountCents);
         }
     }
 }
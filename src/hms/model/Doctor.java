@@ -92,12 +92,6 @@ public class Doctor extends Person {
         this.availableTimeSlots.add(timeSlot);
     }
 
-    public String toFileString() {
-        return id + "," + name + "," + age + "," + contact + "," + email + "," +
-                address + "," + gender + "," + specialization + "," + qualification +
-                "," + availability + "," + consultationFee;
-    }
-
     @Override
     public String toString() {
         return super.toString() + ", Specialization: " + specialization + ", Availability: " + availability;
@@ -1,5 +1,6 @@
 package hms.model;
 
+import hms.util.Money;
 import java.io.Serializable;
 
 public class Medicine implements Serializable {
@@ -7,7 +8,7 @@ public class Medicine implements Serializable {
     private String name;
     private String manufacturer;
     private String category;
-    private double price;
+    private long priceCents;
     private int quantity;
     private String dosage; // For prescriptions
     private String frequency; // For prescriptions
@@ -32,7 +33,7 @@ public class Medicine implements Serializable {
         this.medicineId = medicineId.trim();
         this.name = name.trim();
         this.manufacturer = manufacturer != null ? manufacturer.trim() : "";
-        this.price = price;
+        this.priceCents = Money.ofAmount(price);
         this.quantity = quantity;
         this.category = ""; // Initialize category
         this.description = ""; // Initialize description
@@ -55,7 +56,7 @@ public class Medicine implements Serializable {
         this.manufacturer = "";
         this.category = "";
         this.description = "";
-        this.price = 0.0;
+        this.priceCents = 0;
         this.quantity = 0;
     }
 
@@ -99,14 +100,22 @@ public class Medicine implements Serializable {
     }
 
     public double getPrice() {
-        return price;
+        return Money.toAmount(priceCents);
     }
 
     public void setPrice(double price) {
-        if (price < 0) {
+        setPriceCents(Money.ofAmount(price));
+    }
+
+    public long getPriceCents() {
+        return priceCents;
+    }
+
+    public void setPriceCents(long priceCents) {
+        if (priceCents < 0) {
             throw new IllegalArgumentException("Price cannot be negative");
         }
-        this.price = price;
+        this.priceCents = priceCents;
     }
 
     public int getQuantity() {
@@ -152,16 +161,6 @@ public class Medicine implements Serializable {
         this.description = description != null ? description.trim() : "";
     }
 
-    public String toFileString() {
-        return medicineId + "," +
-                (name != null ? name.replaceAll(",", ";") : "") + "," +
-                (manufacturer != null ? manufacturer.replaceAll(",", ";") : "") + "," +
-                (category != null ? category.replaceAll(",", ";") : "") + "," +
-                price + "," +
-                quantity + "," +
-                (description != null ? description.replaceAll(",", ";") : "");
-    }
-
     // For prescription format
     public String toPrescriptionString() {
         return (name != null ? name : "") + "," +
@@ -173,7 +172,7 @@ public class Medicine implements Serializable {
     @Override
     public String toString() {
         return "Medicine: " + name + ", Manufacturer: " + manufacturer +
-                ", Price: " + price + ", Quantity: " + quantity;
+                ", Price: " + Money.format(priceCents) + ", Quantity: " + quantity;
     }
 
     @Override
@@ -69,11 +69,6 @@ public class Patient extends Person {
         }
     }
 
-    public String toFileString() {
-        return id + "," + name + "," + age + "," + contact + "," + email + "," +
-                address + "," + gender + "," + bloodGroup + "," + allergies + "," + disease;
-    }
-
     @Override
     public String toString() {
         return super.toString() + ", Disease: " + disease + ", Blood Group: " + bloodGroup;
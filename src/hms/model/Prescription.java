@@ -66,18 +66,6 @@ public class Prescription implements Serializable {
         this.dispensed = dispensed;
     }
 
-    public String toFileString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append(prescriptionId).append(",")
-                .append(patientId).append(",")
-                .append(doctorId).append(",")
-                .append(issueDate).append(",")
-                .append(notes).append(",")
-                .append(dispensed);
-
-        return sb.toString();
-    }
-
     @Override
     public String toString() {
         return "Prescription ID: " + prescriptionId + ", Issue Date: " + issueDate +
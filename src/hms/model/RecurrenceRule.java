@@ -0,0 +1,148 @@
+package hms.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Repeats an appointment every N days or weeks from its first date, either
+ * until a date, for a number of sessions, or (with neither) indefinitely.
+ * Stored in the appointment record in the iCalendar RRULE form, e.g.
+ * "FREQ=WEEKLY;INTERVAL=2;COUNT=12".
+ */
+public class RecurrenceRule implements Serializable {
+    public static final String DAILY = "DAILY";
+    public static final String WEEKLY = "WEEKLY";
+
+    private static final DateTimeFormatter UNTIL_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final String frequency; // DAILY, WEEKLY
+    private final int interval;
+    private final LocalDate until; // last possible day, inclusive; null for none
+    private final int count; // number of sessions; 0 for no limit
+
+    public RecurrenceRule(String frequency, int interval, LocalDate until, int count) {
+        if (!DAILY.equals(frequency) && !WEEKLY.equals(frequency)) {
+            throw new IllegalArgumentException("Frequency must be DAILY or WEEKLY: " + frequency);
+        }
+        if (interval < 1 || count < 0) {
+            throw new IllegalArgumentException("Interval must be positive and count not negative");
+        }
+        this.frequency = frequency;
+        this.interval = interval;
+        this.until = until;
+        this.count = count;
+    }
+
+    // Getters
+    public String getFrequency() {
+        return frequency;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public LocalDate getUntil() {
+        return until;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    // Days between consecutive sessions
+    public int getStepDays() {
+        return WEEKLY.equals(frequency) ? interval * 7 : interval;
+    }
+
+    // Day of the final session for a series starting on first, or null if it never ends
+    public LocalDate lastDay(LocalDate first) {
+        LocalDate last = count > 0 ? first.plusDays((long) (count - 1) * getStepDays()) : null;
+        if (until != null && (last == null || until.isBefore(last))) {
+            // Round down to the last session on or before the until date
+            long span = until.toEpochDay() - first.toEpochDay();
+            last = span < 0 ? first.minusDays(1) : first.plusDays(span - span % getStepDays());
+        }
+        return last;
+    }
+
+    // Whether a series starting on first has a session on the day
+    public boolean occursOn(LocalDate first, LocalDate day) {
+        long offset = day.toEpochDay() - first.toEpochDay();
+        LocalDate last = lastDay(first);
+        return offset >= 0 && offset % getStepDays() == 0 && (last == null || !day.isAfter(last));
+    }
+
+    // The first session on or after the day, or null if the series has ended by then
+    public LocalDate firstOnOrAfter(LocalDate first, LocalDate day) {
+        long offset = day.toEpochDay() - first.toEpochDay();
+        int step = getStepDays();
+        LocalDate next = offset <= 0 ? first : first.plusDays((offset + step - 1) / step * step);
+        LocalDate last = lastDay(first);
+        return last == null || !next.isAfter(last) ? next : null;
+    }
+
+    // Parse the stored form; null for an empty or unreadable rule
+    public static RecurrenceRule parse(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return null;
+        }
+        String frequency = null;
+        int interval = 1;
+        LocalDate until = null;
+        int count = 0;
+        try {
+            for (String part : text.trim().toUpperCase().split(";")) {
+                int equals = part.indexOf('=');
+                if (equals < 0) {
+                    continue;
+                }
+                String value = part.substring(equals + 1).trim();
+                switch (part.substring(0, equals).trim()) {
+                    case "FREQ":
+                        frequency = value;
+                        break;
+                    case "INTERVAL":
+                        interval = Integer.parseInt(value);
+                        break;
+                    case "UNTIL":
+                        until = LocalDate.parse(value, UNTIL_FORMAT);
+                        break;
+                    case "COUNT":
+                        count = Integer.parseInt(value);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return new RecurrenceRule(frequency, interval, until, count);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    public String toRuleString() {
+        StringBuilder rule = new StringBuilder("FREQ=").append(frequency).append(";INTERVAL=").append(interval);
+        if (until != null) {
+            rule.append(";UNTIL=").append(until.format(UNTIL_FORMAT));
+        }
+        if (count > 0) {
+            rule.append(";COUNT=").append(count);
+        }
+        return rule.toString();
+    }
+
+    @Override
+    public String toString() {
+        String text = "Every " + interval + (WEEKLY.equals(frequency) ? " week(s)" : " day(s)");
+        if (until != null) {
+            text += " until " + until;
+        }
+        if (count > 0) {
+            text += ", " + count + " sessions";
+        }
+        return text;
+    }
+}
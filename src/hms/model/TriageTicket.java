@@ -0,0 +1,97 @@
+package hms.model;
+
+import java.io.Serializable;
+
+public class TriageTicket implements Serializable {
+    // Severity levels, most urgent first (five-level emergency severity index)
+    public static final int RESUSCITATION = 1;
+    public static final int EMERGENT = 2;
+    public static final int URGENT = 3;
+    public static final int LESS_URGENT = 4;
+    public static final int NON_URGENT = 5;
+
+    private String ticketId;
+    private String patientId;
+    private String specialization;
+    private int severity;
+    private long arrivalTime;
+    private String status; // WAITING, ASSIGNED, LEFT
+    private String doctorId;
+    private long assignedTime;
+
+    public TriageTicket(String ticketId, String patientId, String specialization, int severity, long arrivalTime) {
+        this.ticketId = ticketId;
+        this.patientId = patientId;
+        this.specialization = specialization;
+        this.severity = severity;
+        this.arrivalTime = arrivalTime;
+        this.status = "WAITING";
+    }
+
+    // Copy, so callers get a snapshot rather than the queue's own ticket
+    public TriageTicket(TriageTicket other) {
+        this.ticketId = other.ticketId;
+        this.patientId = other.patientId;
+        this.specialization = other.specialization;
+        this.severity = other.severity;
+        this.arrivalTime = other.arrivalTime;
+        this.status = other.status;
+        this.doctorId = other.doctorId;
+        this.assignedTime = other.assignedTime;
+    }
+
+    // Getters and setters
+    public String getTicketId() {
+        return ticketId;
+    }
+
+    public String getPatientId() {
+        return patientId;
+    }
+
+    public String getSpecialization() {
+        return specialization;
+    }
+
+    public int getSeverity() {
+        return severity;
+    }
+
+    public void setSeverity(int severity) {
+        this.severity = severity;
+    }
+
+    public long getArrivalTime() {
+        return arrivalTime;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getDoctorId() {
+        return doctorId;
+    }
+
+    public void setDoctorId(String doctorId) {
+        this.doctorId = doctorId;
+    }
+
+    public long getAssignedTime() {
+        return assignedTime;
+    }
+
+    public void setAssignedTime(long assignedTime) {
+        this.assignedTime = assignedTime;
+    }
+
+    @Override
+    public String toString() {
+        return "Ticket " + ticketId + ", Patient ID: " + patientId + ", Severity: " + severity +
+                ", Specialization: " + specialization + ", Status: " + status;
+    }
+}
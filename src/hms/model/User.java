@@ -63,8 +63,4 @@ public class User implements Serializable {
     public void setActive(boolean active) {
         this.active = active;
     }
-
-    public String toFileString() {
-        return username + "," + password + "," + fullName + "," + role + "," + active;
-    }
 }
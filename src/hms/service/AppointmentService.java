@@ -0,0 +1,300 @@
+package hms.service;
+
+import hms.dao.AppointmentDAO;
+import hms.interfaces.ManagementService;
+import hms.model.Appointment;
+import hms.util.IdGenerator;
+import hms.util.ValidationUtils;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * Books, reschedules and cancels appointments. A booking is refused when its
+ * doctor already has an appointment (other than a cancelled one) overlapping
+ * the same time on the same day; findConflicts() tells the caller which.
+ * Schedule listeners hear about every doctor and day whose bookings changed.
+ *
+ * A recurring appointment is stored once as a series. Its sessions are
+ * worked out when a day or date range is asked for, with IDs from
+ * Appointment.occurrenceId; updating or cancelling one session stores just
+ * that session as a change to the series, and deleting the change restores
+ * the session.
+ */
+public class AppointmentService implements ManagementService<Appointment, String> {
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private AppointmentDAO appointmentDAO;
+    private final List<BiConsumer<String, LocalDate>> scheduleListeners = new CopyOnWriteArrayList<>();
+
+    public AppointmentService() {
+        this(new AppointmentDAO());
+    }
+
+    public AppointmentService(AppointmentDAO appointmentDAO) {
+        this.appointmentDAO = appointmentDAO;
+    }
+
+    @Override
+    public boolean add(Appointment appointment) {
+        if (appointment == null || !isValid(appointment)) {
+            return false;
+        }
+
+        // Check if appointment ID already exists
+        if (appointmentDAO.exists(appointment.getAppointmentId())) {
+            return false;
+        }
+
+        if (!appointmentDAO.saveIfFree(appointment)) {
+            return false;
+        }
+        scheduleChanged(appointment);
+        return true;
+    }
+
+    // Also finds a single session of a series by its occurrence ID
+    @Override
+    public Appointment getById(String id) {
+        if (!ValidationUtils.isValidId(id)) {
+            return null;
+        }
+        return appointmentDAO.findOccurrence(id);
+    }
+
+    @Override
+    public List<Appointment> getAll() {
+        return appointmentDAO.findAll();
+    }
+
+    @Override
+    public boolean update(Appointment appointment) {
+        if (appointment == null || !isValid(appointment)) {
+            return false;
+        }
+
+        Appointment previous = appointmentDAO.findOccurrence(appointment.getAppointmentId());
+        if (previous == null) {
+            return false;
+        }
+        // The stored copy may be the same object, already changed in place
+        String previousDoctor = previous.getDoctorId();
+        LocalDate previousDay = previous.isRecurring() ? null : previous.getDay();
+
+        if (appointment.getSeriesId() == null && previous.getSeriesId() != null) {
+            // Keep a session's link to its series when the caller built a fresh object
+            appointment.setOccurrenceOf(previous.getSeriesId(), previous.getOccurrenceDay());
+        }
+        // A session of a series not changed before is stored as its first change
+        boolean stored = appointmentDAO.exists(appointment.getAppointmentId());
+        if (!(stored ? appointmentDAO.updateIfFree(appointment) : appointmentDAO.saveIfFree(appointment))) {
+            return false;
+        }
+        scheduleChanged(previousDoctor, previousDay);
+        scheduleChanged(appointment);
+        return true;
+    }
+
+    // Deleting a series also deletes the changes to its sessions
+    @Override
+    public boolean delete(String id) {
+        if (!ValidationUtils.isValidId(id)) {
+            return false;
+        }
+        Appointment previous = appointmentDAO.findById(id);
+        if (previous != null && previous.isRecurring()) {
+            List<String> ids = new ArrayList<>();
+            ids.add(id);
+            for (Appointment change : appointmentDAO.findChanges(id)) {
+                ids.add(change.getAppointmentId());
+            }
+            if (appointmentDAO.deleteAll(ids) == 0) {
+                return false;
+            }
+            scheduleChanged(previous);
+            return true;
+        }
+        if (!appointmentDAO.delete(id)) {
+            return false;
+        }
+        scheduleChanged(previous);
+        return true;
+    }
+
+    // Book every valid appointment that is free, with a single write
+    @Override
+    public int addAll(Collection<Appointment> appointments) {
+        List<Appointment> toSave = new ArrayList<>();
+        for (Appointment appointment : appointments) {
+            if (appointment != null && isValid(appointment) && !appointmentDAO.exists(appointment.getAppointmentId())) {
+                toSave.add(appointment);
+            }
+        }
+        int saved = appointmentDAO.saveAllIfFree(toSave);
+        if (saved > 0) {
+            for (Appointment appointment : toSave) {
+                scheduleChanged(appointment);
+            }
+        }
+        return saved;
+    }
+
+    // Each appointment is checked against the schedule as left by the ones before it
+    @Override
+    public int updateAll(Collection<Appointment> appointments) {
+        int updated = 0;
+        for (Appointment appointment : appointments) {
+            if (update(appointment)) {
+                updated++;
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public int deleteAll(Collection<String> ids) {
+        List<String> toDelete = new ArrayList<>();
+        List<Appointment> previous = new ArrayList<>();
+        for (String id : ids) {
+            if (ValidationUtils.isValidId(id)) {
+                toDelete.add(id);
+                Appointment appointment = appointmentDAO.findById(id);
+                if (appointment != null) {
+                    previous.add(appointment);
+                }
+            }
+        }
+        int deleted = appointmentDAO.deleteAll(toDelete);
+        if (deleted > 0) {
+            for (Appointment appointment : previous) {
+                scheduleChanged(appointment);
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public long count() {
+        return appointmentDAO.count();
+    }
+
+    @Override
+    public List<Appointment> getPage(int offset, int limit, String sort) {
+        return appointmentDAO.findPage(offset, limit, sort);
+    }
+
+    @Override
+    public List<Appointment> getAfter(String afterId, int limit) {
+        return appointmentDAO.findAfter(afterId, limit);
+    }
+
+    // Appointments whose ID, patient ID, doctor ID or status contains the query
+    @Override
+    public List<Appointment> search(String query) {
+        if (query == null || query.trim().isEmpty()) {
+            return getAll();
+        }
+        String text = query.trim().toLowerCase();
+        return appointmentDAO.findByPredicate(appointment ->
+                contains(appointment.getAppointmentId(), text) ||
+                contains(appointment.getPatientId(), text) ||
+                contains(appointment.getDoctorId(), text) ||
+                contains(appointment.getStatus(), text));
+    }
+
+    // Additional methods
+    public List<Appointment> findByPatient(String patientId) {
+        return appointmentDAO.findByPatient(patientId);
+    }
+
+    public List<Appointment> findByDoctor(String doctorId) {
+        return appointmentDAO.findByDoctor(doctorId);
+    }
+
+    // The doctor's appointments on the day in time order, sessions of series included
+    public List<Appointment> getDoctorSchedule(String doctorId, LocalDate day) {
+        if (!ValidationUtils.isValidId(doctorId) || day == null) {
+            return new ArrayList<>();
+        }
+        return appointmentDAO.findByDoctorOnDay(doctorId, day);
+    }
+
+    // The doctor's appointments in the date range (inclusive) in time order, sessions of series included
+    public List<Appointment> getDoctorSchedule(String doctorId, LocalDate from, LocalDate to) {
+        if (!ValidationUtils.isValidId(doctorId) || from == null || to == null) {
+            return new ArrayList<>();
+        }
+        return appointmentDAO.findByDoctorBetween(doctorId, from, to);
+    }
+
+    // Every appointment in the date range (inclusive) in time order, sessions of series included
+    public List<Appointment> getAppointmentsBetween(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            return new ArrayList<>();
+        }
+        return appointmentDAO.findBetween(from, to);
+    }
+
+    // Existing appointments that overlap the given one for the same doctor
+    public List<Appointment> findConflicts(Appointment appointment) {
+        return appointmentDAO.findConflicts(appointment);
+    }
+
+    // Cancel the appointment, which frees its slot for other bookings; for a series' session, just that one
+    public boolean cancel(String appointmentId) {
+        if (!ValidationUtils.isValidId(appointmentId)) {
+            return false;
+        }
+        Appointment appointment = appointmentDAO.cancel(appointmentId);
+        if (appointment == null) {
+            return false;
+        }
+        scheduleChanged(appointment);
+        return true;
+    }
+
+    // Register a callback for (doctor ID, day) whenever that doctor's bookings on the day change;
+    // the day is null when a series changed, which may affect any day
+    public void addScheduleListener(BiConsumer<String, LocalDate> listener) {
+        scheduleListeners.add(listener);
+    }
+
+    private void scheduleChanged(Appointment appointment) {
+        if (appointment != null) {
+            scheduleChanged(appointment.getDoctorId(), appointment.isRecurring() ? null : appointment.getDay());
+        }
+    }
+
+    private void scheduleChanged(String doctorId, LocalDate day) {
+        if (doctorId == null) {
+            return;
+        }
+        for (BiConsumer<String, LocalDate> listener : scheduleListeners) {
+            listener.accept(doctorId, day);
+        }
+    }
+
+    // Generate a unique appointment ID
+    public String generateAppointmentId() {
+        return IdGenerator.getDefault().next("A");
+    }
+
+    private boolean isValid(Appointment appointment) {
+        int start = appointment.getStartMinute();
+        return ValidationUtils.isValidId(appointment.getAppointmentId()) &&
+                ValidationUtils.isValidId(appointment.getPatientId()) &&
+                ValidationUtils.isValidId(appointment.getDoctorId()) &&
+                appointment.getAppointmentDate() != null &&
+                start >= 0 &&
+                appointment.getDurationMinutes() > 0 &&
+                start + appointment.getDurationMinutes() <= MINUTES_PER_DAY;
+    }
+
+    private static boolean contains(String value, String text) {
+        return value != null && value.toLowerCase().contains(text);
+    }
+}
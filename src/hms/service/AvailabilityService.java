@@ -0,0 +1,192 @@
+package hms.service;
+
+import hms.model.Appointment;
+import hms.model.Doctor;
+import hms.util.SlotCalendar;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Free appointment times per doctor over the next twelve months, kept in a
+ * SlotCalendar of 15-minute slots.
+ *
+ * A doctor's working hours come from the free-text availability field: "no",
+ * "false", "unavailable" or "off" means not bookable, a range such as
+ * "08:00-14:00" sets the hours, and anything else (e.g. "yes") means the
+ * default hours. Doctors work Monday to Friday. A doctor is loaded into the
+ * calendar on first use, together with their booked appointments; after that
+ * the AppointmentService reports every change to a doctor's day, which is
+ * then re-read. Holidays close a day for every doctor.
+ */
+public class AvailabilityService {
+
+    public static final int SLOT_MINUTES = 15;
+    private static final int HORIZON_DAYS = 366;
+    private static final int DEFAULT_START = 9 * 60;
+    private static final int DEFAULT_END = 17 * 60 + 30;
+    private static final Pattern HOURS = Pattern.compile("(\\d{1,2}):(\\d{2})\\s*-\\s*(\\d{1,2}):(\\d{2})");
+
+    private final DoctorService doctorService;
+    private final AppointmentService appointmentService;
+    private final SlotCalendar calendar;
+    private final Set<LocalDate> holidays = ConcurrentHashMap.newKeySet();
+    // Doctors whose hours and bookings are in the calendar
+    private final Set<String> loaded = ConcurrentHashMap.newKeySet();
+
+    public AvailabilityService(DoctorService doctorService, AppointmentService appointmentService) {
+        this(doctorService, appointmentService, LocalDate.now());
+    }
+
+    public AvailabilityService(DoctorService doctorService, AppointmentService appointmentService, LocalDate firstDay) {
+        this.doctorService = doctorService;
+        this.appointmentService = appointmentService;
+        this.calendar = new SlotCalendar(firstDay, HORIZON_DAYS, SLOT_MINUTES);
+        appointmentService.addScheduleListener(this::refreshDay);
+    }
+
+    // Start minutes at which the doctor can see a patient for the duration on the day
+    public List<Integer> getFreeSlots(String doctorId, LocalDate day, int durationMinutes) {
+        if (!ensureLoaded(doctorId)) {
+            return new ArrayList<>();
+        }
+        return calendar.freeSlots(doctorId, day, durationMinutes);
+    }
+
+    // The earliest opening of the duration with any doctor of the specialization, from the given time on
+    public SlotCalendar.Opening findNextAvailable(String specialization, LocalDateTime from, int durationMinutes) {
+        List<String> doctorIds = new ArrayList<>();
+        for (Doctor doctor : doctorService.findBySpecialization(specialization)) {
+            if (ensureLoaded(doctor.getId())) {
+                doctorIds.add(doctor.getId());
+            }
+        }
+        return calendar.firstOpening(doctorIds, from.toLocalDate(), from.getHour() * 60 + from.getMinute(),
+                durationMinutes);
+    }
+
+    // The earliest opening with this doctor, from the given time on
+    public SlotCalendar.Opening findNextAvailable(Doctor doctor, LocalDateTime from, int durationMinutes) {
+        if (!ensureLoaded(doctor.getId())) {
+            return null;
+        }
+        List<String> doctorIds = new ArrayList<>();
+        doctorIds.add(doctor.getId());
+        return calendar.firstOpening(doctorIds, from.toLocalDate(), from.getHour() * 60 + from.getMinute(),
+                durationMinutes);
+    }
+
+    // Close the day for every doctor, including ones loaded later
+    public void addHoliday(LocalDate day) {
+        holidays.add(day);
+        calendar.closeDay(day);
+    }
+
+    // Block [startMinute, endMinute) on each of the days for one doctor, e.g. leave or a conference
+    public void blockTime(String doctorId, LocalDate from, LocalDate to, int startMinute, int endMinute) {
+        if (!ensureLoaded(doctorId)) {
+            return;
+        }
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            calendar.close(doctorId, day, startMinute, endMinute);
+        }
+    }
+
+    // Drop the doctor so the next query re-reads their hours and appointments, e.g. after an edit
+    public synchronized void reloadDoctor(String doctorId) {
+        loaded.remove(doctorId);
+        calendar.removeResource(doctorId);
+    }
+
+    // Called by AppointmentService whenever an appointment of the doctor on the day (any day if null) changes
+    private synchronized void refreshDay(String doctorId, LocalDate day) {
+        if (!loaded.contains(doctorId)) {
+            return;
+        }
+        if (day == null) {
+            for (LocalDate each = calendar.getFirstDay(); !each.isAfter(calendar.getLastDay()); each = each.plusDays(1)) {
+                calendar.clearBookings(doctorId, each);
+            }
+            bookAll(doctorId);
+            return;
+        }
+        calendar.clearBookings(doctorId, day);
+        for (Appointment appointment : appointmentService.getDoctorSchedule(doctorId, day)) {
+            book(appointment);
+        }
+    }
+
+    // Put the doctor's hours and bookings into the calendar on first use; false if the doctor is unknown
+    private boolean ensureLoaded(String doctorId) {
+        if (loaded.contains(doctorId)) {
+            return true;
+        }
+        Doctor doctor = doctorService.getById(doctorId);
+        if (doctor == null) {
+            return false;
+        }
+        synchronized (this) {
+            if (loaded.contains(doctorId)) {
+                return true;
+            }
+            int[] hours = workingHours(doctor.getAvailability());
+            calendar.addResource(doctorId);
+            if (hours != null) {
+                for (LocalDate day = calendar.getFirstDay(); !day.isAfter(calendar.getLastDay()); day = day.plusDays(1)) {
+                    DayOfWeek weekday = day.getDayOfWeek();
+                    if (weekday != DayOfWeek.SATURDAY && weekday != DayOfWeek.SUNDAY && !holidays.contains(day)) {
+                        calendar.open(doctorId, day, hours[0], hours[1]);
+                    }
+                }
+            }
+            bookAll(doctorId);
+            loaded.add(doctorId);
+        }
+        return true;
+    }
+
+    // Every booking of the doctor within the calendar, sessions of recurring appointments included
+    private void bookAll(String doctorId) {
+        for (Appointment appointment : appointmentService.getDoctorSchedule(doctorId, calendar.getFirstDay(),
+                calendar.getLastDay())) {
+            book(appointment);
+        }
+    }
+
+    private void book(Appointment appointment) {
+        if (!"CANCELLED".equalsIgnoreCase(appointment.getStatus()) && appointment.getDay() != null &&
+                appointment.getStartMinute() >= 0) {
+            calendar.book(appointment.getDoctorId(), appointment.getDay(),
+                    appointment.getStartMinute(), appointment.getEndMinute());
+        }
+    }
+
+    // [start, end) minutes from the availability text, or null if the doctor takes no appointments
+    static int[] workingHours(String availability) {
+        String text = availability != null ? availability.trim().toLowerCase() : "";
+        switch (text) {
+            case "no":
+            case "false":
+            case "unavailable":
+            case "off":
+                return null;
+            default:
+                break;
+        }
+        Matcher matcher = HOURS.matcher(text);
+        if (matcher.find()) {
+            int start = Integer.parseInt(matcher.group(1)) * 60 + Integer.parseInt(matcher.group(2));
+            int end = Integer.parseInt(matcher.group(3)) * 60 + Integer.parseInt(matcher.group(4));
+            if (start < end && end <= SlotCalendar.MINUTES_PER_DAY) {
+                return new int[]{start, end};
+            }
+        }
+        return new int[]{DEFAULT_START, DEFAULT_END};
+    }
+}
@@ -0,0 +1,203 @@
+package hms.service;
+
+import hms.dao.BillingDAO;
+import hms.interfaces.ManagementService;
+import hms.model.Billing;
+import hms.util.IdGenerator;
+import hms.util.ValidationUtils;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bills and the revenue figures kept alongside them. The totals come from
+ * BillingDAO's running aggregates, so none of them scans the bills.
+ */
+public class BillingService implements ManagementService<Billing, String> {
+
+    private BillingDAO billingDAO;
+
+    public BillingService() {
+        this(new BillingDAO());
+    }
+
+    public BillingService(BillingDAO billingDAO) {
+        this.billingDAO = billingDAO;
+    }
+
+    @Override
+    public boolean add(Billing bill) {
+        if (bill == null || !isValid(bill)) {
+            return false;
+        }
+
+        // Check if bill ID already exists
+        if (billingDAO.exists(bill.getBillId())) {
+            return false;
+        }
+
+        return billingDAO.save(bill);
+    }
+
+    @Override
+    public Billing getById(String id) {
+        if (!ValidationUtils.isValidId(id)) {
+            return null;
+        }
+        return billingDAO.findById(id);
+    }
+
+    @Override
+    public List<Billing> getAll() {
+        return billingDAO.findAll();
+    }
+
+    @Override
+    public boolean update(Billing bill) {
+        if (bill == null || !isValid(bill)) {
+            return false;
+        }
+
+        if (!billingDAO.exists(bill.getBillId())) {
+            return false;
+        }
+
+        return billingDAO.update(bill);
+    }
+
+    @Override
+    public boolean delete(String id) {
+        if (!ValidationUtils.isValidId(id)) {
+            return false;
+        }
+        return billingDAO.delete(id);
+    }
+
+    // Add every valid bill whose ID is not taken yet, with a single write
+    @Override
+    public int addAll(Collection<Billing> bills) {
+        Set<String> ids = new HashSet<>();
+        List<Billing> toSave = new ArrayList<>();
+        for (Billing bill : bills) {
+            if (bill != null && isValid(bill) && ids.add(bill.getBillId()) && !billingDAO.exists(bill.getBillId())) {
+                toSave.add(bill);
+            }
+        }
+        return billingDAO.saveAll(toSave);
+    }
+
+    @Override
+    public int updateAll(Collection<Billing> bills) {
+        List<Billing> toUpdate = new ArrayList<>();
+        for (Billing bill : bills) {
+            if (bill != null && isValid(bill)) {
+                toUpdate.add(bill);
+            }
+        }
+        return billingDAO.updateAll(toUpdate);
+    }
+
+    @Override
+    public int deleteAll(Collection<String> ids) {
+        List<String> toDelete = new ArrayList<>();
+        for (String id : ids) {
+            if (ValidationUtils.isValidId(id)) {
+                toDelete.add(id);
+            }
+        }
+        return billingDAO.deleteAll(toDelete);
+    }
+
+    @Override
+    public long count() {
+        return billingDAO.count();
+    }
+
+    @Override
+    public List<Billing> getPage(int offset, int limit, String sort) {
+        return billingDAO.findPage(offset, limit, sort);
+    }
+
+    @Override
+    public List<Billing> getAfter(String afterId, int limit) {
+        return billingDAO.findAfter(afterId, limit);
+    }
+
+    // Bills whose ID, patient ID or payment status contains the query
+    @Override
+    public List<Billing> search(String query) {
+        if (query == null || query.trim().isEmpty()) {
+            return getAll();
+        }
+        String text = query.trim().toLowerCase();
+        return billingDAO.findByPredicate(bill ->
+                contains(bill.getBillId(), text) ||
+                contains(bill.getPatientId(), text) ||
+                contains(bill.getPaymentStatus(), text));
+    }
+
+    // Additional methods
+    public List<Billing> findByPatient(String patientId) {
+        return billingDAO.findByPatient(patientId);
+    }
+
+    // Record payment of the whole bill
+    public boolean markPaid(String billId, String paymentMethod) {
+        return setPayment(billId, BillingDAO.PAID, paymentMethod);
+    }
+
+    public boolean setPayment(String billId, String paymentStatus, String paymentMethod) {
+        if (!ValidationUtils.isValidId(billId)) {
+            return false;
+        }
+        return billingDAO.setPayment(billId, paymentStatus, paymentMethod);
+    }
+
+    public double getTotalUnpaid() {
+        return billingDAO.getTotalUnpaid();
+    }
+
+    public double getTotalByStatus(String paymentStatus) {
+        return billingDAO.getTotalByStatus(paymentStatus);
+    }
+
+    public double getRevenueOn(LocalDate day) {
+        return billingDAO.getRevenueOn(day);
+    }
+
+    public double getRevenueBetween(LocalDate from, LocalDate to) {
+        return billingDAO.getRevenueBetween(from, to);
+    }
+
+    public Map<LocalDate, Double> getDailyRevenue(LocalDate from, LocalDate to) {
+        return billingDAO.getDailyRevenue(from, to);
+    }
+
+    public double getPatientTotal(String patientId) {
+        return billingDAO.getPatientTotal(patientId);
+    }
+
+    public double getPatientBalance(String patientId) {
+        return billingDAO.getPatientBalance(patientId);
+    }
+
+    // Generate a unique bill ID
+    public String generateBillId() {
+        return IdGenerator.getDefault().next(Billing.ID_PREFIX);
+    }
+
+    private boolean isValid(Billing bill) {
+        return ValidationUtils.isValidId(bill.getBillId()) &&
+                ValidationUtils.isValidId(bill.getPatientId()) &&
+                bill.getBillDate() != null &&
+                bill.getTotalCents() >= 0;
+    }
+
+    private static boolean contains(String value, String text) {
+        return value != null && value.toLowerCase().contains(text);
+    }
+}
@@ -0,0 +1,88 @@
+package hms.service;
+
+import hms.dao.BillingDAO;
+import hms.dao.MedicineDAO;
+import hms.dao.PrescriptionDAO;
+import hms.dao.TransactionJournal;
+import hms.dao.UnitOfWork;
+import hms.model.Billing;
+import hms.model.Medicine;
+import hms.model.Prescription;
+import hms.util.IdGenerator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Dispenses a prescription as one atomic unit: the stock of every medicine is
+ * reduced, the prescription is recorded as dispensed and a bill is created,
+ * or, if any medicine is short, nothing changes at all.
+ */
+public class DispensingService {
+
+    private final MedicineDAO medicineDAO;
+    private final PrescriptionDAO prescriptionDAO;
+    private final BillingDAO billingDAO;
+    private final TransactionJournal journal;
+
+    public DispensingService(MedicineDAO medicineDAO, PrescriptionDAO prescriptionDAO, BillingDAO billingDAO,
+                             TransactionJournal journal) {
+        this.medicineDAO = medicineDAO;
+        this.prescriptionDAO = prescriptionDAO;
+        this.billingDAO = billingDAO;
+        this.journal = journal;
+    }
+
+    /**
+     * Dispense every medicine on the prescription (each carrying the quantity
+     * to hand out) and return the bill. Throws IllegalArgumentException naming
+     * the first medicine that is unknown or out of stock, in which case no
+     * stock, prescription or bill is written.
+     */
+    public Billing dispense(Prescription prescription) {
+        List<Medicine> items = prescription.getMedicines();
+        if (items.isEmpty()) {
+            throw new IllegalArgumentException("Prescription has no medicines");
+        }
+
+        try (UnitOfWork work = new UnitOfWork(journal, medicineDAO, prescriptionDAO, billingDAO)) {
+            Billing bill = new Billing(generateBillId(), prescription.getPatientId(), new Date());
+
+            // Reserve every line item; any shortfall closes the unit and undoes the reservations
+            for (Medicine item : items) {
+                Medicine stock = medicineDAO.findById(item.getMedicineId());
+                if (stock == null) {
+                    throw new IllegalArgumentException("Unknown medicine: " + item.getMedicineId());
+                }
+                int available = stock.getQuantity();
+                if (item.getQuantity() <= 0 || available < item.getQuantity()) {
+                    throw new IllegalArgumentException("Insufficient stock for " + stock.getName() +
+                            ": " + available + " available, " + item.getQuantity() + " requested");
+                }
+                stock.setQuantity(available - item.getQuantity());
+                work.onRollback(() -> stock.setQuantity(available));
+                work.upsert(medicineDAO, stock);
+                bill.addItem(Billing.BillItem.ofCents(stock.getName(), stock.getPriceCents(), item.getQuantity()));
+            }
+
+            boolean wasDispensed = prescription.isDispensed();
+            prescription.setDispensed(true);
+            work.onRollback(() -> prescription.setDispensed(wasDispensed));
+            work.upsert(prescriptionDAO, prescription);
+            work.upsert(billingDAO, bill);
+
+            if (!work.commit()) {
+                throw new IllegalStateException("Could not record the dispensing; nothing was changed");
+            }
+            return bill;
+        }
+    }
+
+    // Generate a unique prescription ID
+    public String generatePrescriptionId() {
+        return IdGenerator.getDefault().next("RX");
+    }
+
+    private String generateBillId() {
+        return IdGenerator.getDefault().next(Billing.ID_PREFIX);
+    }
+}
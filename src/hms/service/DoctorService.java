@@ -2,15 +2,26 @@ package hms.service;
 
 import hms.dao.DoctorDAO;
 import hms.interfaces.ManagementService;
+import hms.interfaces.SearchableDAO;
 import hms.model.Doctor;
+import hms.util.IdGenerator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class DoctorService implements ManagementService<Doctor, String> {
 
-    private DoctorDAO doctorDAO;
+    private SearchableDAO<Doctor, String> doctorDAO;
 
     public DoctorService() {
-        doctorDAO = new DoctorDAO();
+        this(new DoctorDAO());
+    }
+
+    // Works against either storage backend: DoctorDAO (text file) or SqlDoctorDAO
+    public DoctorService(SearchableDAO<Doctor, String> doctorDAO) {
+        this.doctorDAO = doctorDAO;
     }
 
     @Override
@@ -47,19 +58,56 @@ public class DoctorService implements ManagementService<Doctor, String> {
         return doctorDAO.delete(id);
     }
 
+    // Add every doctor whose ID is not taken yet, with a single write
+    @Override
+    public int addAll(Collection<Doctor> doctors) {
+        Set<String> ids = new HashSet<>();
+        List<Doctor> toSave = new ArrayList<>();
+        for (Doctor doctor : doctors) {
+            if (doctor != null && ids.add(doctor.getId()) && !doctorDAO.exists(doctor.getId())) {
+                toSave.add(doctor);
+            }
+        }
+        return doctorDAO.saveAll(toSave);
+    }
+
+    @Override
+    public int updateAll(Collection<Doctor> doctors) {
+        return doctorDAO.updateAll(doctors);
+    }
+
+    @Override
+    public int deleteAll(Collection<String> ids) {
+        return doctorDAO.deleteAll(ids);
+    }
+
+    @Override
+    public long count() {
+        return doctorDAO.count();
+    }
+
+    @Override
+    public List<Doctor> getPage(int offset, int limit, String sort) {
+        return doctorDAO.findPage(offset, limit, sort);
+    }
+
+    @Override
+    public List<Doctor> getAfter(String afterId, int limit) {
+        return doctorDAO.findAfter(afterId, limit);
+    }
+
     @Override
     public List<Doctor> search(String query) {
-        return doctorDAO.searchDoctors(query);
+        return doctorDAO.search(query);
     }
 
     // Additional methods
     public List<Doctor> findBySpecialization(String specialization) {
-        return doctorDAO.findBySpecialization(specialization);
+        return doctorDAO.findByProperty("specialization", specialization);
     }
 
     // Generate a unique doctor ID
     public String generateDoctorId() {
-        // Format: D + timestamp (simple approach)
-        return "D" + System.currentTimeMillis();
+        return IdGenerator.getDefault().next("D");
     }
 }
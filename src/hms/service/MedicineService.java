@@ -3,15 +3,24 @@ package hms.service;
 import hms.dao.MedicineDAO;
 import hms.interfaces.ManagementService;
 import hms.model.Medicine;
+import hms.util.IdGenerator;
 import hms.util.ValidationUtils;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class MedicineService implements ManagementService<Medicine, String> {
 
     private MedicineDAO medicineDAO;
 
     public MedicineService() {
-        medicineDAO = new MedicineDAO();
+        this(new MedicineDAO());
+    }
+
+    public MedicineService(MedicineDAO medicineDAO) {
+        this.medicineDAO = medicineDAO;
     }
 
     @Override
@@ -21,10 +30,7 @@ public class MedicineService implements ManagementService<Medicine, String> {
         }
 
         // Validate medicine data
-        if (!ValidationUtils.isValidId(medicine.getMedicineId()) ||
-                !ValidationUtils.isValidName(medicine.getName()) ||
-                !ValidationUtils.isValidPrice(medicine.getPrice()) ||
-                !ValidationUtils.isValidQuantity(medicine.getQuantity())) {
+        if (!isValid(medicine)) {
             return false;
         }
 
@@ -56,10 +62,7 @@ public class MedicineService implements ManagementService<Medicine, String> {
         }
 
         // Validate medicine data
-        if (!ValidationUtils.isValidId(medicine.getMedicineId()) ||
-                !ValidationUtils.isValidName(medicine.getName()) ||
-                !ValidationUtils.isValidPrice(medicine.getPrice()) ||
-                !ValidationUtils.isValidQuantity(medicine.getQuantity())) {
+        if (!isValid(medicine)) {
             return false;
         }
 
@@ -78,6 +81,57 @@ public class MedicineService implements ManagementService<Medicine, String> {
         return medicineDAO.delete(id);
     }
 
+    // Add every valid medicine whose ID is not taken yet, with a single write
+    @Override
+    public int addAll(Collection<Medicine> medicines) {
+        Set<String> ids = new HashSet<>();
+        List<Medicine> toSave = new ArrayList<>();
+        for (Medicine medicine : medicines) {
+            if (medicine != null && isValid(medicine) && ids.add(medicine.getMedicineId()) &&
+                    !medicineDAO.exists(medicine.getMedicineId())) {
+                toSave.add(medicine);
+            }
+        }
+        return medicineDAO.saveAll(toSave);
+    }
+
+    @Override
+    public int updateAll(Collection<Medicine> medicines) {
+        List<Medicine> toUpdate = new ArrayList<>();
+        for (Medicine medicine : medicines) {
+            if (medicine != null && isValid(medicine)) {
+                toUpdate.add(medicine);
+            }
+        }
+        return medicineDAO.updateAll(toUpdate);
+    }
+
+    @Override
+    public int deleteAll(Collection<String> ids) {
+        List<String> toDelete = new ArrayList<>();
+        for (String id : ids) {
+            if (ValidationUtils.isValidId(id)) {
+                toDelete.add(id);
+            }
+        }
+        return medicineDAO.deleteAll(toDelete);
+    }
+
+    @Override
+    public long count() {
+        return medicineDAO.count();
+    }
+
+    @Override
+    public List<Medicine> getPage(int offset, int limit, String sort) {
+        return medicineDAO.findPage(offset, limit, sort);
+    }
+
+    @Override
+    public List<Medicine> getAfter(String afterId, int limit) {
+        return medicineDAO.findAfter(afterId, limit);
+    }
+
     @Override
     public List<Medicine> search(String query) {
         return medicineDAO.searchMedicines(query);
@@ -115,10 +169,16 @@ public class MedicineService implements ManagementService<Medicine, String> {
         return medicineDAO.reduceQuantity(medicineId, quantity);
     }
 
+    private boolean isValid(Medicine medicine) {
+        return ValidationUtils.isValidId(medicine.getMedicineId()) &&
+                ValidationUtils.isValidName(medicine.getName()) &&
+                ValidationUtils.isValidPrice(medicine.getPrice()) &&
+                ValidationUtils.isValidQuantity(medicine.getQuantity());
+    }
+
     // Generate a unique medicine ID
     public String generateMedicineId() {
-        // Format: M + timestamp (simple approach)
-        return "M" + System.currentTimeMillis();
+        return IdGenerator.getDefault().next("M");
     }
 
     // Get low stock medicines (quantity < 10)
@@ -2,15 +2,26 @@ package hms.service;
 
 import hms.dao.PatientDAO;
 import hms.interfaces.ManagementService;
+import hms.interfaces.SearchableDAO;
 import hms.model.Patient;
+import hms.util.IdGenerator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class PatientService implements ManagementService<Patient, String> {
 
-    private PatientDAO patientDAO;
+    private SearchableDAO<Patient, String> patientDAO;
 
     public PatientService() {
-        patientDAO = new PatientDAO();
+        this(new PatientDAO());
+    }
+
+    // Works against either storage backend: PatientDAO (text file) or SqlPatientDAO
+    public PatientService(SearchableDAO<Patient, String> patientDAO) {
+        this.patientDAO = patientDAO;
     }
 
     @Override
@@ -47,9 +58,47 @@ public class PatientService implements ManagementService<Patient, String> {
         return patientDAO.delete(id);
     }
 
+    // Add every patient whose ID is not taken yet, with a single write
+    @Override
+    public int addAll(Collection<Patient> patients) {
+        Set<String> ids = new HashSet<>();
+        List<Patient> toSave = new ArrayList<>();
+        for (Patient patient : patients) {
+            if (patient != null && ids.add(patient.getId()) && !patientDAO.exists(patient.getId())) {
+                toSave.add(patient);
+            }
+        }
+        return patientDAO.saveAll(toSave);
+    }
+
+    @Override
+    public int updateAll(Collection<Patient> patients) {
+        return patientDAO.updateAll(patients);
+    }
+
+    @Override
+    public int deleteAll(Collection<String> ids) {
+        return patientDAO.deleteAll(ids);
+    }
+
+    @Override
+    public long count() {
+        return patientDAO.count();
+    }
+
+    @Override
+    public List<Patient> getPage(int offset, int limit, String sort) {
+        return patientDAO.findPage(offset, limit, sort);
+    }
+
+    @Override
+    public List<Patient> getAfter(String afterId, int limit) {
+        return patientDAO.findAfter(afterId, limit);
+    }
+
     @Override
     public List<Patient> search(String query) {
-        return patientDAO.searchPatients(query);
+        return patientDAO.search(query);
     }
 
     // Additional methods
@@ -59,8 +108,7 @@ public class PatientService implements ManagementService<Patient, String> {
 
     // Generate a unique patient ID
     public String generatePatientId() {
-        // Format: P + timestamp (simple approach)
-        return "P" + System.currentTimeMillis();
+        return IdGenerator.getDefault().next("P");
     }
 }
 
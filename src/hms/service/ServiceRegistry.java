@@ -0,0 +1,206 @@
+package hms.service;
+
+import hms.dao.AppointmentDAO;
+import hms.dao.BillingDAO;
+import hms.dao.ConnectionPool;
+import hms.dao.DoctorDAO;
+import hms.dao.MedicineDAO;
+import hms.dao.PatientDAO;
+import hms.dao.PrescriptionDAO;
+import hms.dao.SqlDoctorDAO;
+import hms.dao.SqlPatientDAO;
+import hms.dao.TransactionJournal;
+import hms.dao.UserDAO;
+import hms.dao.WriteAheadLog;
+import hms.interfaces.SearchableDAO;
+import hms.model.Doctor;
+import hms.model.Patient;
+import hms.util.IdGenerator;
+import java.io.IOException;
+
+/**
+ * Application-wide owner of the DAOs and services.
+ *
+ * Each entity type gets exactly one cached DAO (and with it one cache and one
+ * set of indexes), shared by every panel. The data is loaded once in
+ * initialize(), so opening a panel does no disk I/O.
+ *
+ * Starting with -Dhms.wal=true routes every DAO's writes through a shared
+ * write-ahead journal with group commit (see WriteAheadLog). The journal is
+ * owned by one process, so a second instance on the same data directory
+ * falls back to direct, file-locked writes; the owner takes those in before
+ * each checkpoint rewrites a data file.
+ *
+ * Starting with -Dhms.storage=sql keeps patients and doctors in an embedded
+ * SQL database instead (see SqlDAO and ConnectionPool for the -Dhms.jdbc.*
+ * settings); load the existing text files into it once with
+ * hms.util.SqlMigration. The other tables stay file-based.
+ */
+public final class ServiceRegistry {
+
+    private static ServiceRegistry instance;
+
+    private final SearchableDAO<Patient, String> patientDAO;
+    private final SearchableDAO<Doctor, String> doctorDAO;
+    private final MedicineDAO medicineDAO;
+    private final UserDAO userDAO;
+    private final PrescriptionDAO prescriptionDAO;
+    private final BillingDAO billingDAO;
+    private final AppointmentDAO appointmentDAO;
+    private final TransactionJournal journal;
+    private WriteAheadLog writeAheadLog;
+    private ConnectionPool connectionPool;
+
+    private final PatientService patientService;
+    private final DoctorService doctorService;
+    private final MedicineService medicineService;
+    private final UserService userService;
+    private final DispensingService dispensingService;
+    private final AppointmentService appointmentService;
+    private final AvailabilityService availabilityService;
+    private final TriageService triageService;
+    private final BillingService billingService;
+
+    private ServiceRegistry() {
+        if ("sql".equalsIgnoreCase(System.getProperty("hms.storage"))) {
+            connectionPool = ConnectionPool.fromSystemProperties();
+            patientDAO = new SqlPatientDAO(connectionPool);
+            doctorDAO = new SqlDoctorDAO(connectionPool);
+        } else {
+            patientDAO = new PatientDAO();
+            doctorDAO = new DoctorDAO(true);
+        }
+        medicineDAO = new MedicineDAO();
+        userDAO = new UserDAO(true);
+        prescriptionDAO = new PrescriptionDAO();
+        billingDAO = new BillingDAO();
+        appointmentDAO = new AppointmentDAO();
+
+        // Finish any multi-entity transaction a previous run committed but did not apply
+        journal = new TransactionJournal("data/transactions.journal");
+        journal.register(medicineDAO);
+        journal.register(prescriptionDAO);
+        journal.register(billingDAO);
+        journal.recover();
+
+        if (Boolean.getBoolean("hms.wal")) {
+            openWriteAheadLog();
+        }
+
+        patientService = new PatientService(patientDAO);
+        doctorService = new DoctorService(doctorDAO);
+        medicineService = new MedicineService(medicineDAO);
+        userService = new UserService(userDAO);
+        dispensingService = new DispensingService(medicineDAO, prescriptionDAO, billingDAO, journal);
+        appointmentService = new AppointmentService(appointmentDAO);
+        availabilityService = new AvailabilityService(doctorService, appointmentService);
+        triageService = new TriageService(doctorService);
+        billingService = new BillingService(billingDAO);
+    }
+
+    // Build the registry and load every table into memory; called once from Main
+    public static synchronized ServiceRegistry initialize() {
+        if (instance == null) {
+            ServiceRegistry registry = new ServiceRegistry();
+            registry.warmUp();
+            instance = registry;
+        }
+        return instance;
+    }
+
+    public static synchronized ServiceRegistry getInstance() {
+        if (instance == null) {
+            // Fallback for code paths (e.g. tools) that skip Main
+            return initialize();
+        }
+        return instance;
+    }
+
+    private void openWriteAheadLog() {
+        try {
+            WriteAheadLog wal = WriteAheadLog.open("data/journal.wal");
+            if (wal == null) {
+                System.err.println("Write-ahead journal is in use by another process; writing data files directly");
+                return;
+            }
+            if (connectionPool == null) {
+                wal.attach((PatientDAO) patientDAO);
+                wal.attach((DoctorDAO) doctorDAO);
+            }
+            wal.attach(medicineDAO);
+            wal.attach(userDAO);
+            wal.attach(prescriptionDAO);
+            wal.attach(billingDAO);
+            wal.attach(appointmentDAO);
+            wal.recover();
+            wal.start();
+            writeAheadLog = wal;
+        } catch (IOException e) {
+            // Attached DAOs cannot fall back safely once recovery has failed
+            throw new RuntimeException("Failed to open write-ahead journal", e);
+        }
+    }
+
+    private void warmUp() {
+        patientDAO.count();
+        doctorDAO.count();
+        medicineDAO.count();
+        userDAO.count();
+        prescriptionDAO.count();
+        billingDAO.count();
+        appointmentDAO.count();
+    }
+
+    // Persist snapshots so the next start can skip text parsing
+    public void shutdown() {
+        if (writeAheadLog != null) {
+            // Flush pending commits and checkpoint every data file first
+            writeAheadLog.close();
+        }
+        if (connectionPool != null) {
+            connectionPool.close();
+        } else {
+            ((PatientDAO) patientDAO).writeSnapshot();
+            ((DoctorDAO) doctorDAO).writeSnapshot();
+        }
+        medicineDAO.writeSnapshot();
+        userDAO.writeSnapshot();
+        IdGenerator.closeDefault();
+    }
+
+    public PatientService getPatientService() {
+        return patientService;
+    }
+
+    public DoctorService getDoctorService() {
+        return doctorService;
+    }
+
+    public MedicineService getMedicineService() {
+        return medicineService;
+    }
+
+    public UserService getUserService() {
+        return userService;
+    }
+
+    public DispensingService getDispensingService() {
+        return dispensingService;
+    }
+
+    public AppointmentService getAppointmentService() {
+        return appointmentService;
+    }
+
+    public AvailabilityService getAvailabilityService() {
+        return availabilityService;
+    }
+
+    public TriageService getTriageService() {
+        return triageService;
+    }
+
+    public BillingService getBillingService() {
+        return billingService;
+    }
+}
@@ -0,0 +1,394 @@
+package hms.service;
+
+import hms.model.Doctor;
+import hms.model.TriageTicket;
+import hms.util.IdGenerator;
+import hms.util.IndexedHeap;
+import hms.util.ValidationUtils;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Walk-in waiting list. Patients check in for a specialization with a
+ * severity from 1 (most urgent) to 5 and are seen in severity order, then
+ * in order of arrival.
+ *
+ * Each specialization's queue is an IndexedHeap, so check-in, a change of
+ * severity, leaving the queue and taking the next patient are all O(log n).
+ * A second heap per queue, ordered by arrival, gives the longest current wait
+ * in O(1).
+ *
+ * Doctors come from DoctorService.findBySpecialization. Everyone whose
+ * availability allows bookings counts as on duty unless taken off with
+ * setOnDuty. A new patient goes straight to the free doctor who has been
+ * idle longest. A doctor who finishes is given the most urgent patient
+ * waiting in any queue their specialization matches.
+ *
+ * All state sits behind one lock, so several desks can check patients in,
+ * re-triage them and release doctors at the same time. Tickets handed out
+ * are copies. The waiting list lives in memory only.
+ */
+public class TriageService {
+
+    private static final String WAITING = "WAITING";
+    private static final String ASSIGNED = "ASSIGNED";
+    private static final String LEFT = "LEFT";
+
+    private static final Comparator<Entry> PRIORITY = Comparator
+            .comparingInt((Entry entry) -> entry.ticket.getSeverity())
+            .thenComparingLong(entry -> entry.ticket.getArrivalTime())
+            .thenComparingLong(entry -> entry.sequence);
+    private static final Comparator<Entry> ARRIVAL = Comparator
+            .comparingLong((Entry entry) -> entry.ticket.getArrivalTime())
+            .thenComparingLong(entry -> entry.sequence);
+
+    private final DoctorService doctorService;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Guarded by lock
+    private final Map<String, Queue> queues = new HashMap<>();
+    private final Map<String, Entry> waiting = new HashMap<>();
+    private final Map<String, TriageTicket> seenBy = new HashMap<>();
+    private final Map<String, Long> idleSince = new HashMap<>();
+    private final Set<String> offDuty = new HashSet<>();
+    private long nextSequence;
+    private long assignedCount;
+    private long totalWaitMillis;
+
+    public TriageService(DoctorService doctorService) {
+        this.doctorService = doctorService;
+    }
+
+    /** Queue depth and waiting times at one moment. */
+    public static final class QueueStats {
+        private final int depth;
+        private final int[] depthBySeverity;
+        private final long longestWaitMillis;
+        private final long averageWaitMillis;
+        private final long patientsSeen;
+        private final int doctorsBusy;
+
+        QueueStats(int depth, int[] depthBySeverity, long longestWaitMillis, long averageWaitMillis,
+                   long patientsSeen, int doctorsBusy) {
+            this.depth = depth;
+            this.depthBySeverity = depthBySeverity;
+            this.longestWaitMillis = longestWaitMillis;
+            this.averageWaitMillis = averageWaitMillis;
+            this.patientsSeen = patientsSeen;
+            this.doctorsBusy = doctorsBusy;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        // Waiting patients of a severity from 1 to 5
+        public int getDepth(int severity) {
+            return depthBySeverity[severity - 1];
+        }
+
+        // How long the earliest arrival still waiting has waited
+        public long getLongestWaitMillis() {
+            return longestWaitMillis;
+        }
+
+        // Mean time from check-in to being assigned a doctor, over every patient assigned so far
+        public long getAverageWaitMillis() {
+            return averageWaitMillis;
+        }
+
+        public long getPatientsSeen() {
+            return patientsSeen;
+        }
+
+        public int getDoctorsBusy() {
+            return doctorsBusy;
+        }
+    }
+
+    /**
+     * Put the patient on the waiting list for the specialization and, if a
+     * doctor for it is free, assign them straight away. Throws
+     * IllegalArgumentException for a missing ID or specialization or a
+     * severity outside 1-5.
+     */
+    public TriageTicket checkIn(String patientId, String specialization, int severity) {
+        if (!ValidationUtils.isValidId(patientId) || specialization == null || specialization.trim().isEmpty()) {
+            throw new IllegalArgumentException("Patient ID and specialization are required");
+        }
+        checkSeverity(severity);
+        String key = specialization.trim().toLowerCase();
+        List<Doctor> doctors = doctorService.findBySpecialization(key);
+
+        TriageTicket ticket = new TriageTicket(IdGenerator.getDefault().next("T"), patientId, key, severity,
+                System.currentTimeMillis());
+        lock.lock();
+        try {
+            Entry entry = new Entry(ticket, nextSequence++);
+            waiting.put(ticket.getTicketId(), entry);
+            queues.computeIfAbsent(key, k -> new Queue()).add(entry);
+            dispatch(key, doctors);
+            return new TriageTicket(ticket);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Re-triage a waiting patient; false if the ticket is no longer waiting
+    public boolean reprioritize(String ticketId, int severity) {
+        checkSeverity(severity);
+        lock.lock();
+        try {
+            Entry entry = waiting.get(ticketId);
+            if (entry == null) {
+                return false;
+            }
+            queues.get(entry.ticket.getSpecialization()).changeSeverity(entry, severity);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The patient left before being seen; false if the ticket is no longer waiting
+    public boolean leave(String ticketId) {
+        lock.lock();
+        try {
+            Entry entry = waiting.remove(ticketId);
+            if (entry == null) {
+                return false;
+            }
+            queues.get(entry.ticket.getSpecialization()).remove(entry);
+            entry.ticket.setStatus(LEFT);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The doctor has finished with their current patient (if any) and is
+     * free. Returns the next patient now assigned to them, or null if nobody
+     * they can see is waiting.
+     */
+    public TriageTicket finish(String doctorId) {
+        Doctor doctor = doctorService.getById(doctorId);
+        lock.lock();
+        try {
+            seenBy.remove(doctorId);
+            idleSince.put(doctorId, System.currentTimeMillis());
+            if (doctor == null || !isOnDuty(doctor)) {
+                return null;
+            }
+            TriageTicket next = assignBestFor(doctor);
+            return next != null ? new TriageTicket(next) : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Take a doctor off duty (they finish their current patient but get no new ones) or back on
+    public void setOnDuty(String doctorId, boolean onDuty) {
+        Doctor doctor = doctorService.getById(doctorId);
+        lock.lock();
+        try {
+            if (onDuty) {
+                offDuty.remove(doctorId);
+                if (doctor != null && !seenBy.containsKey(doctorId) && isOnDuty(doctor)) {
+                    assignBestFor(doctor);
+                }
+            } else {
+                offDuty.add(doctorId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The patient the doctor is seeing, or null
+    public TriageTicket getCurrentPatient(String doctorId) {
+        lock.lock();
+        try {
+            TriageTicket ticket = seenBy.get(doctorId);
+            return ticket != null ? new TriageTicket(ticket) : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public TriageTicket getWaitingTicket(String ticketId) {
+        lock.lock();
+        try {
+            Entry entry = waiting.get(ticketId);
+            return entry != null ? new TriageTicket(entry.ticket) : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Waiting patients for the specialization in the order they will be seen
+    public List<TriageTicket> getWaitingList(String specialization) {
+        lock.lock();
+        try {
+            Queue queue = queues.get(specialization.trim().toLowerCase());
+            List<Entry> entries = queue != null ? queue.byPriority.values() : new ArrayList<>();
+            List<TriageTicket> tickets = new ArrayList<>(entries.size());
+            entries.sort(PRIORITY);
+            for (Entry entry : entries) {
+                tickets.add(new TriageTicket(entry.ticket));
+            }
+            return tickets;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Metrics for one specialization's queue
+    public QueueStats getStats(String specialization) {
+        lock.lock();
+        try {
+            Queue queue = queues.get(specialization.trim().toLowerCase());
+            List<Queue> selected = new ArrayList<>();
+            if (queue != null) {
+                selected.add(queue);
+            }
+            return stats(selected);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Metrics across every queue
+    public QueueStats getStats() {
+        lock.lock();
+        try {
+            return stats(queues.values());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private QueueStats stats(Iterable<Queue> selected) {
+        long now = System.currentTimeMillis();
+        int depth = 0;
+        int[] bySeverity = new int[TriageTicket.NON_URGENT];
+        long earliest = Long.MAX_VALUE;
+        for (Queue queue : selected) {
+            depth += queue.byPriority.size();
+            for (int i = 0; i < bySeverity.length; i++) {
+                bySeverity[i] += queue.depthBySeverity[i];
+            }
+            Entry oldest = queue.byArrival.peek();
+            if (oldest != null) {
+                earliest = Math.min(earliest, oldest.ticket.getArrivalTime());
+            }
+        }
+        return new QueueStats(depth, bySeverity, earliest == Long.MAX_VALUE ? 0 : now - earliest,
+                assignedCount == 0 ? 0 : totalWaitMillis / assignedCount, assignedCount, seenBy.size());
+    }
+
+    // Hand waiting patients of the queue to free doctors, longest idle first; the caller holds the lock
+    private void dispatch(String key, List<Doctor> doctors) {
+        Queue queue = queues.get(key);
+        while (!queue.byPriority.isEmpty()) {
+            Doctor free = null;
+            for (Doctor doctor : doctors) {
+                if (!seenBy.containsKey(doctor.getId()) && isOnDuty(doctor) &&
+                        (free == null || idleSince(doctor) < idleSince(free))) {
+                    free = doctor;
+                }
+            }
+            if (free == null) {
+                return;
+            }
+            assign(queue, queue.byPriority.peek(), free.getId());
+        }
+    }
+
+    // Give the doctor the most urgent patient among the queues their specialization matches
+    private TriageTicket assignBestFor(Doctor doctor) {
+        String specialization = doctor.getSpecialization() != null ? doctor.getSpecialization().toLowerCase() : "";
+        Queue best = null;
+        for (Map.Entry<String, Queue> candidate : queues.entrySet()) {
+            Queue queue = candidate.getValue();
+            // Same containment test as DoctorService.findBySpecialization
+            if (!queue.byPriority.isEmpty() && specialization.contains(candidate.getKey()) &&
+                    (best == null || PRIORITY.compare(queue.byPriority.peek(), best.byPriority.peek()) < 0)) {
+                best = queue;
+            }
+        }
+        return best != null ? assign(best, best.byPriority.peek(), doctor.getId()) : null;
+    }
+
+    private TriageTicket assign(Queue queue, Entry entry, String doctorId) {
+        long now = System.currentTimeMillis();
+        queue.remove(entry);
+        waiting.remove(entry.ticket.getTicketId());
+        TriageTicket ticket = entry.ticket;
+        ticket.setStatus(ASSIGNED);
+        ticket.setDoctorId(doctorId);
+        ticket.setAssignedTime(now);
+        seenBy.put(doctorId, ticket);
+        idleSince.remove(doctorId);
+        assignedCount++;
+        totalWaitMillis += now - ticket.getArrivalTime();
+        return ticket;
+    }
+
+    private boolean isOnDuty(Doctor doctor) {
+        return !offDuty.contains(doctor.getId()) && AvailabilityService.workingHours(doctor.getAvailability()) != null;
+    }
+
+    // Doctors never seen yet count as idle since the start
+    private long idleSince(Doctor doctor) {
+        return idleSince.getOrDefault(doctor.getId(), 0L);
+    }
+
+    private static void checkSeverity(int severity) {
+        if (severity < TriageTicket.RESUSCITATION || severity > TriageTicket.NON_URGENT) {
+            throw new IllegalArgumentException("Severity must be between 1 and 5: " + severity);
+        }
+    }
+
+    // A waiting ticket plus its check-in order, which breaks ties between equal arrival times
+    private static final class Entry {
+        final TriageTicket ticket;
+        final long sequence;
+
+        Entry(TriageTicket ticket, long sequence) {
+            this.ticket = ticket;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class Queue {
+        final IndexedHeap<String, Entry> byPriority = new IndexedHeap<>(PRIORITY);
+        final IndexedHeap<String, Entry> byArrival = new IndexedHeap<>(ARRIVAL);
+        final int[] depthBySeverity = new int[TriageTicket.NON_URGENT];
+
+        void add(Entry entry) {
+            byPriority.offer(entry.ticket.getTicketId(), entry);
+            byArrival.offer(entry.ticket.getTicketId(), entry);
+            depthBySeverity[entry.ticket.getSeverity() - 1]++;
+        }
+
+        void remove(Entry entry) {
+            byPriority.remove(entry.ticket.getTicketId());
+            byArrival.remove(entry.ticket.getTicketId());
+            depthBySeverity[entry.ticket.getSeverity() - 1]--;
+        }
+
+        void changeSeverity(Entry entry, int severity) {
+            depthBySeverity[entry.ticket.getSeverity() - 1]--;
+            entry.ticket.setSeverity(severity);
+            depthBySeverity[severity - 1]++;
+            byPriority.update(entry.ticket.getTicketId());
+        }
+    }
+}
@@ -6,14 +6,22 @@ import hms.model.User;
 import hms.util.PasswordUtils;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class UserService implements ManagementService<User, String> {
 
     private UserDAO userDAO;
 
     public UserService() {
-        userDAO = new UserDAO();
+        this(new UserDAO());
+    }
+
+    public UserService(UserDAO userDAO) {
+        this.userDAO = userDAO;
 
         // Initialize with admin user if no users exist
         if (userDAO.count() == 0) {
@@ -57,15 +65,18 @@ public class UserService implements ManagementService<User, String> {
             return false;
         }
 
-        // Don't update password if it's empty (not changed)
+        keepPasswordIfUnchanged(user, existingUser);
+        return userDAO.update(user);
+    }
+
+    // Don't update password if it's empty (not changed)
+    private void keepPasswordIfUnchanged(User user, User existingUser) {
         if (user.getPassword() == null || user.getPassword().isEmpty()) {
             user.setPassword(existingUser.getPassword());
         } else {
             // In a real application, you'd hash the new password
             // user.setPassword(PasswordUtils.hashPassword(user.getPassword()));
         }
-
-        return userDAO.update(user);
     }
 
     @Override
@@ -73,6 +84,52 @@ public class UserService implements ManagementService<User, String> {
         return userDAO.delete(username);
     }
 
+    // Add every user whose username is not taken yet, with a single write
+    @Override
+    public int addAll(Collection<User> users) {
+        Set<String> usernames = new HashSet<>();
+        List<User> toSave = new ArrayList<>();
+        for (User user : users) {
+            if (user != null && usernames.add(user.getUsername()) && !userDAO.exists(user.getUsername())) {
+                toSave.add(user);
+            }
+        }
+        return userDAO.saveAll(toSave);
+    }
+
+    @Override
+    public int updateAll(Collection<User> users) {
+        List<User> toUpdate = new ArrayList<>();
+        for (User user : users) {
+            User existingUser = user != null ? userDAO.findById(user.getUsername()) : null;
+            if (existingUser != null) {
+                keepPasswordIfUnchanged(user, existingUser);
+                toUpdate.add(user);
+            }
+        }
+        return userDAO.updateAll(toUpdate);
+    }
+
+    @Override
+    public int deleteAll(Collection<String> usernames) {
+        return userDAO.deleteAll(usernames);
+    }
+
+    @Override
+    public long count() {
+        return userDAO.count();
+    }
+
+    @Override
+    public List<User> getPage(int offset, int limit, String sort) {
+        return userDAO.findPage(offset, limit, sort);
+    }
+
+    @Override
+    public List<User> getAfter(String afterId, int limit) {
+        return userDAO.findAfter(afterId, limit);
+    }
+
     @Override
     public List<User> search(String query) {
         if (query == null || query.trim().isEmpty()) {
@@ -100,26 +157,18 @@ public class UserService implements ManagementService<User, String> {
 
     // Change password
     public boolean changePassword(String username, String oldPassword, String newPassword) {
-        User user = userDAO.authenticate(username, oldPassword);
-        if (user == null) {
-            return false; // Authentication failed
-        }
-
         // In a real application, you'd hash the new password
-        // user.setPassword(PasswordUtils.hashPassword(newPassword));
-        user.setPassword(newPassword);
-
-        return userDAO.update(user);
+        // newPassword = PasswordUtils.hashPassword(newPassword);
+        return userDAO.changePassword(username, oldPassword, newPassword);
     }
 
     // Enable or disable user
     public boolean setUserStatus(String username, boolean active) {
-        User user = userDAO.findById(username);
-        if (user == null) {
-            return false;
-        }
+        return userDAO.setActive(Collections.singletonList(username), active) > 0;
+    }
 
-        user.setActive(active);
-        return userDAO.update(user);
+    // Enable or disable many users with one rewrite of the user file; returns how many were found
+    public int setUserStatus(Collection<String> usernames, boolean active) {
+        return userDAO.setActive(usernames, active);
     }
 }
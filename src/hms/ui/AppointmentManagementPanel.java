@@ -3,8 +3,13 @@ package hms.ui;
 import hms.model.Appointment;
 import hms.model.Doctor;
 import hms.model.Patient;
+import hms.model.RecurrenceRule;
+import hms.service.AppointmentService;
+import hms.service.AvailabilityService;
 import hms.service.DoctorService;
 import hms.service.PatientService;
+import hms.service.ServiceRegistry;
+import hms.util.SlotCalendar;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -13,25 +18,41 @@ import java.awt.*;
 import java.awt.event.*;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Function;
 
 public class AppointmentManagementPanel extends JPanel {
     private JTable appointmentTable;
     private DefaultTableModel tableModel;
     private JTextField searchField;
+    private JTextField dayField;
     private JButton addButton;
     private JButton editButton;
     private JButton deleteButton;
     private JButton viewButton;
     private JButton refreshButton;
 
+    // Most patients or doctors a dialog's lookup lists at once
+    private static final int LOOKUP_LIMIT = 50;
+
+    private PagingBar pagingBar;
+    // Results of the last search, paged in memory; null while paging through every appointment
+    private List<Appointment> searchResults;
+
     private PatientService patientService;
     private DoctorService doctorService;
+    private AppointmentService appointmentService;
+    private AvailabilityService availabilityService;
 
     public AppointmentManagementPanel() {
-        patientService = new PatientService();
-        doctorService = new DoctorService();
+        patientService = ServiceRegistry.getInstance().getPatientService();
+        doctorService = ServiceRegistry.getInstance().getDoctorService();
+        appointmentService = ServiceRegistry.getInstance().getAppointmentService();
+        availabilityService = ServiceRegistry.getInstance().getAvailabilityService();
         initializeUI();
         loadAppointments();
     }
@@ -47,10 +68,15 @@ public class AppointmentManagementPanel extends JPanel {
         JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         JLabel searchLabel = new JLabel("Search:");
         searchField = new JTextField(20);
+        JLabel dayLabel = new JLabel("Day:");
+        dayField = new JTextField(8);
+        dayField.setToolTipText("YYYY-MM-DD; with a doctor ID in the search box, shows that doctor's day");
         JButton searchButton = new JButton("Search");
 
         searchPanel.add(searchLabel);
         searchPanel.add(searchField);
+        searchPanel.add(dayLabel);
+        searchPanel.add(dayField);
         searchPanel.add(searchButton);
 
         // Buttons panel
@@ -89,16 +115,21 @@ public class AppointmentManagementPanel extends JPanel {
         add(topPanel, BorderLayout.NORTH);
         add(scrollPane, BorderLayout.CENTER);
 
+        pagingBar = new PagingBar(this::showAppointments);
+        add(pagingBar, BorderLayout.SOUTH);
+
         // Add action listeners
         searchButton.addActionListener(e -> searchAppointments());
-        searchField.addKeyListener(new KeyAdapter() {
+        KeyAdapter searchOnEnter = new KeyAdapter() {
             @Override
             public void keyPressed(KeyEvent e) {
                 if (e.getKeyCode() == KeyEvent.VK_ENTER) {
                     searchAppointments();
                 }
             }
-        });
+        };
+        searchField.addKeyListener(searchOnEnter);
+        dayField.addKeyListener(searchOnEnter);
 
         addButton.addActionListener(e -> showBookAppointmentDialog());
         editButton.addActionListener(e -> showEditAppointmentDialog());
@@ -108,69 +139,211 @@ public class AppointmentManagementPanel extends JPanel {
     }
 
     private void loadAppointments() {
+        searchResults = null;
+        showAppointments();
+    }
+
+    private void searchAppointments() {
+        String query = searchField.getText().trim();
+        String dayText = dayField.getText().trim();
+
+        if (!dayText.isEmpty()) {
+            // A doctor's day is a direct lookup in the schedule index
+            LocalDate day;
+            try {
+                day = LocalDate.parse(dayText);
+            } catch (DateTimeParseException ex) {
+                JOptionPane.showMessageDialog(this, "Invalid date format. Please use YYYY-MM-DD", "Validation Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            if (query.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "Enter a doctor ID to show that doctor's day", "Validation Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            searchResults = appointmentService.getDoctorSchedule(query, day);
+        } else {
+            // Search appointments; a blank query goes back to paging through all of them
+            searchResults = query.isEmpty() ? null : appointmentService.search(query);
+        }
+        pagingBar.firstPage();
+        showAppointments();
+    }
+
+    // Fill the table with the current page only, earliest appointment first
+    private void showAppointments() {
         // Clear table
         tableModel.setRowCount(0);
 
-        // Add sample data for now
-        // In a real implementation, this would load from a service
-        addSampleAppointments();
+        List<Appointment> appointments;
+        if (searchResults != null) {
+            pagingBar.setTotal(searchResults.size());
+            appointments = pagingBar.window(searchResults);
+        } else {
+            pagingBar.setTotal(appointmentService.count());
+            appointments = appointmentService.getPage(pagingBar.getOffset(), pagingBar.getPageSize(), "date");
+        }
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        for (Appointment appointment : appointments) {
+            Object[] row = {
+                    appointment.getAppointmentId(),
+                    patientName(appointment.getPatientId()),
+                    doctorName(appointment.getDoctorId()),
+                    dateFormat.format(appointment.getAppointmentDate()),
+                    appointment.getTimeSlot(),
+                    appointment.getStatus()
+            };
+            tableModel.addRow(row);
+        }
     }
 
-    private void addSampleAppointments() {
-        // Add some sample appointments for demonstration
-        Object[] row1 = {"A001", "John Doe", "Dr. Smith", "2025-06-15", "10:00 AM", "SCHEDULED"};
-        Object[] row2 = {"A002", "Jane Smith", "Dr. Johnson", "2025-06-16", "11:30 AM", "SCHEDULED"};
-        Object[] row3 = {"A003", "Robert Brown", "Dr. Williams", "2025-06-14", "09:15 AM", "COMPLETED"};
-        Object[] row4 = {"A004", "Emily Davis", "Dr. Smith", "2025-06-13", "02:00 PM", "CANCELLED"};
-
-        tableModel.addRow(row1);
-        tableModel.addRow(row2);
-        tableModel.addRow(row3);
-        tableModel.addRow(row4);
+    private String patientName(String patientId) {
+        Patient patient = patientService.getById(patientId);
+        return patient != null ? patient.getName() : patientId;
     }
 
-    private void searchAppointments() {
-        String query = searchField.getText().trim().toLowerCase();
+    private String doctorName(String doctorId) {
+        Doctor doctor = doctorService.getById(doctorId);
+        return doctor != null ? doctor.getName() : doctorId;
+    }
 
-        if (query.isEmpty()) {
-            loadAppointments();
-            return;
+    // Save a new or changed appointment, explaining a clash with another booking; returns true on success
+    private boolean saveAppointment(JDialog dialog, Appointment appointment, boolean isNew) {
+        List<Appointment> conflicts = appointmentService.findConflicts(appointment);
+        if (!conflicts.isEmpty()) {
+            Appointment other = conflicts.get(0);
+            JOptionPane.showMessageDialog(dialog, "The doctor is already booked at " + other.getTimeSlot() +
+                    " on that day (appointment " + other.getAppointmentId() + ")", "Time Not Available", JOptionPane.WARNING_MESSAGE);
+            return false;
         }
+        boolean saved = isNew ? appointmentService.add(appointment) : appointmentService.update(appointment);
+        if (!saved) {
+            JOptionPane.showMessageDialog(dialog, "Failed to save appointment; the time may have just been taken",
+                    "Error", JOptionPane.ERROR_MESSAGE);
+        }
+        return saved;
+    }
 
-        // Clear table
-        tableModel.setRowCount(0);
+    // Offer only the start times at which the selected doctor is free on the entered day
+    private void showFreeTimes(JComboBox<String> doctorComboBox, JTextField dateField, JComboBox<String> timeComboBox) {
+        if (doctorComboBox.getSelectedIndex() == -1) {
+            return;
+        }
+        LocalDate day;
+        try {
+            day = LocalDate.parse(dateField.getText().trim());
+        } catch (DateTimeParseException ex) {
+            return;
+        }
+        timeComboBox.removeAllItems();
+        for (int minute : availabilityService.getFreeSlots(selectedId(doctorComboBox), day,
+                Appointment.DEFAULT_DURATION_MINUTES)) {
+            timeComboBox.addItem(Appointment.formatTimeSlot(minute));
+        }
+    }
 
-        // In a real implementation, this would search from a service
-        // For now, just reload all and filter
-        addSampleAppointments();
-
-        // Filter rows
-        for (int i = tableModel.getRowCount() - 1; i >= 0; i--) {
-            boolean match = false;
-            for (int j = 0; j < tableModel.getColumnCount(); j++) {
-                Object value = tableModel.getValueAt(i, j);
-                if (value != null && value.toString().toLowerCase().contains(query)) {
-                    match = true;
-                    break;
-                }
+    // Fill in the earliest free time with any doctor of the selected doctor's specialization
+    private void showNextAvailable(JDialog dialog, JComboBox<String> doctorComboBox, JTextField dateField,
+                                   JComboBox<String> timeComboBox) {
+        if (doctorComboBox.getSelectedIndex() == -1) {
+            JOptionPane.showMessageDialog(dialog, "Please select a doctor", "Validation Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        Doctor selected = doctorService.getById(selectedId(doctorComboBox));
+        SlotCalendar.Opening opening = selected == null ? null : availabilityService.findNextAvailable(
+                selected.getSpecialization(), LocalDateTime.now(), Appointment.DEFAULT_DURATION_MINUTES);
+        if (opening == null) {
+            JOptionPane.showMessageDialog(dialog, "No free time found in the next twelve months", "Not Available", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        for (int i = 0; i < doctorComboBox.getItemCount(); i++) {
+            if (doctorComboBox.getItemAt(i).startsWith(opening.getResource() + " - ")) {
+                doctorComboBox.setSelectedIndex(i);
+                break;
             }
-            if (!match) {
-                tableModel.removeRow(i);
+        }
+        dateField.setText(opening.getDay().toString());
+        showFreeTimes(doctorComboBox, dateField, timeComboBox);
+        timeComboBox.setSelectedItem(Appointment.formatTimeSlot(opening.getStartMinute()));
+    }
+
+    // Rule for the book dialog's "Repeat" choice (1 = daily, 2 = weekly, then every 2 and 4 weeks)
+    private static RecurrenceRule repeatRule(int choice, int sessions) {
+        switch (choice) {
+            case 1:
+                return new RecurrenceRule(RecurrenceRule.DAILY, 1, null, sessions);
+            case 2:
+                return new RecurrenceRule(RecurrenceRule.WEEKLY, 1, null, sessions);
+            case 3:
+                return new RecurrenceRule(RecurrenceRule.WEEKLY, 2, null, sessions);
+            default:
+                return new RecurrenceRule(RecurrenceRule.WEEKLY, 4, null, sessions);
+        }
+    }
+
+    // Patient lookup for the dialogs, starting with the given patient if there is one
+    private JPanel patientLookup(JComboBox<String> comboBox, Patient selected) {
+        return lookupPanel(comboBox,
+                query -> query.isEmpty() ? patientService.getPage(0, LOOKUP_LIMIT, null) : patientService.search(query),
+                patient -> patient.getId() + " - " + patient.getName(), selected);
+    }
+
+    // Doctor lookup for the dialogs, starting with the given doctor if there is one
+    private JPanel doctorLookup(JComboBox<String> comboBox, Doctor selected) {
+        return lookupPanel(comboBox,
+                query -> query.isEmpty() ? doctorService.getPage(0, LOOKUP_LIMIT, null) : doctorService.search(query),
+                doctor -> doctor.getId() + " - " + doctor.getName() + " (" + doctor.getSpecialization() + ")", selected);
+    }
+
+    /**
+     * A search box beside the combo box. The combo box lists at most
+     * LOOKUP_LIMIT matches of the search (the first entities while it is
+     * blank) and is refilled when Enter is pressed in the box, so the dialogs
+     * never load every patient or doctor.
+     */
+    private static <T> JPanel lookupPanel(JComboBox<String> comboBox, Function<String, List<T>> search,
+                                          Function<T, String> label, T selected) {
+        JTextField queryField = new JTextField(8);
+        queryField.setToolTipText("Part of a name or ID; press Enter to search");
+        Runnable refill = () -> {
+            List<T> matches = search.apply(queryField.getText().trim());
+            comboBox.removeAllItems();
+            for (int i = 0; i < matches.size() && i < LOOKUP_LIMIT; i++) {
+                comboBox.addItem(label.apply(matches.get(i)));
             }
+        };
+        queryField.addActionListener(e -> refill.run());
+        refill.run();
+        if (selected != null) {
+            String entry = label.apply(selected);
+            comboBox.removeItem(entry);
+            comboBox.insertItemAt(entry, 0);
+            comboBox.setSelectedIndex(0);
         }
+
+        JPanel panel = new JPanel(new BorderLayout(5, 0));
+        panel.add(queryField, BorderLayout.WEST);
+        panel.add(comboBox, BorderLayout.CENTER);
+        return panel;
+    }
+
+    // The ID at the start of a "ID - Name" combo box entry
+    private static String selectedId(JComboBox<String> comboBox) {
+        String item = (String) comboBox.getSelectedItem();
+        return item.substring(0, item.indexOf(" - "));
     }
 
     private void showBookAppointmentDialog() {
         JDialog dialog = new JDialog((Frame) SwingUtilities.getWindowAncestor(this), "Book Appointment", true);
-        dialog.setSize(500, 400);
+        dialog.setSize(500, 480);
         dialog.setLocationRelativeTo(this);
         dialog.setLayout(new BorderLayout());
 
-        JPanel formPanel = new JPanel(new GridLayout(7, 2, 10, 10));
+        JPanel formPanel = new JPanel(new GridLayout(9, 2, 10, 10));
         formPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
 
         // Generate appointment ID
-        String appointmentId = "A" + System.currentTimeMillis();
+        String appointmentId = appointmentService.generateAppointmentId();
 
         JLabel idLabel = new JLabel("Appointment ID:");
         JTextField idField = new JTextField(appointmentId);
@@ -178,21 +351,11 @@ public class AppointmentManagementPanel extends JPanel {
 
         JLabel patientLabel = new JLabel("Patient:");
         JComboBox<String> patientComboBox = new JComboBox<>();
-
-        // Load patients
-        List<Patient> patients = patientService.getAll();
-        for (Patient patient : patients) {
-            patientComboBox.addItem(patient.getId() + " - " + patient.getName());
-        }
+        JPanel patientLookup = patientLookup(patientComboBox, null);
 
         JLabel doctorLabel = new JLabel("Doctor:");
         JComboBox<String> doctorComboBox = new JComboBox<>();
-
-        // Load doctors
-        List<Doctor> doctors = doctorService.getAll();
-        for (Doctor doctor : doctors) {
-            doctorComboBox.addItem(doctor.getId() + " - " + doctor.getName() + " (" + doctor.getSpecialization() + ")");
-        }
+        JPanel doctorLookup = doctorLookup(doctorComboBox, null);
 
         JLabel dateLabel = new JLabel("Date (YYYY-MM-DD):");
         JTextField dateField = new JTextField();
@@ -210,12 +373,18 @@ public class AppointmentManagementPanel extends JPanel {
         JLabel descriptionLabel = new JLabel("Description:");
         JTextField descriptionField = new JTextField();
 
+        JLabel repeatLabel = new JLabel("Repeat:");
+        JComboBox<String> repeatComboBox = new JComboBox<>(new String[]{"Never", "Daily", "Weekly", "Every 2 weeks", "Every 4 weeks"});
+
+        JLabel sessionsLabel = new JLabel("Sessions (blank = no end):");
+        JTextField sessionsField = new JTextField();
+
         formPanel.add(idLabel);
         formPanel.add(idField);
         formPanel.add(patientLabel);
-        formPanel.add(patientComboBox);
+        formPanel.add(patientLookup);
         formPanel.add(doctorLabel);
-        formPanel.add(doctorComboBox);
+        formPanel.add(doctorLookup);
         formPanel.add(dateLabel);
         formPanel.add(dateField);
         formPanel.add(timeLabel);
@@ -224,11 +393,18 @@ public class AppointmentManagementPanel extends JPanel {
         formPanel.add(statusComboBox);
         formPanel.add(descriptionLabel);
         formPanel.add(descriptionField);
+        formPanel.add(repeatLabel);
+        formPanel.add(repeatComboBox);
+        formPanel.add(sessionsLabel);
+        formPanel.add(sessionsField);
 
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         JButton saveButton = new JButton("Save");
         JButton cancelButton = new JButton("Cancel");
 
+        JButton nextAvailableButton = new JButton("Next Available");
+
+        buttonPanel.add(nextAvailableButton);
         buttonPanel.add(saveButton);
         buttonPanel.add(cancelButton);
 
@@ -236,6 +412,16 @@ public class AppointmentManagementPanel extends JPanel {
         dialog.add(buttonPanel, BorderLayout.SOUTH);
 
         // Add action listeners
+        doctorComboBox.addActionListener(e -> showFreeTimes(doctorComboBox, dateField, timeComboBox));
+        dateField.addActionListener(e -> showFreeTimes(doctorComboBox, dateField, timeComboBox));
+        dateField.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                showFreeTimes(doctorComboBox, dateField, timeComboBox);
+            }
+        });
+        nextAvailableButton.addActionListener(e -> showNextAvailable(dialog, doctorComboBox, dateField, timeComboBox));
+
         saveButton.addActionListener(e -> {
             try {
                 // Validate input
@@ -256,36 +442,46 @@ public class AppointmentManagementPanel extends JPanel {
                 }
 
                 // Validate date format
+                Date date;
                 try {
                     SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
                     sdf.setLenient(false);
-                    Date date = sdf.parse(dateText);
+                    date = sdf.parse(dateText);
                 } catch (ParseException ex) {
                     JOptionPane.showMessageDialog(dialog, "Invalid date format. Please use YYYY-MM-DD", "Validation Error", JOptionPane.ERROR_MESSAGE);
                     return;
                 }
 
-                // In a real implementation, this would save to a service
-                // For now, just add to the table
-                String patientInfo = (String) patientComboBox.getSelectedItem();
-                String doctorInfo = (String) doctorComboBox.getSelectedItem();
-
-                String patientName = patientInfo.substring(patientInfo.indexOf(" - ") + 3);
-                String doctorName = doctorInfo.substring(doctorInfo.indexOf(" - ") + 3, doctorInfo.indexOf(" ("));
-
-                Object[] row = {
-                        idField.getText(),
-                        patientName,
-                        doctorName,
-                        dateField.getText(),
-                        timeComboBox.getSelectedItem(),
-                        statusComboBox.getSelectedItem()
-                };
+                if (timeComboBox.getSelectedItem() == null) {
+                    JOptionPane.showMessageDialog(dialog, "The doctor has no free time on that day", "Validation Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
 
-                tableModel.addRow(row);
+                Appointment appointment = new Appointment(idField.getText(), selectedId(patientComboBox),
+                        selectedId(doctorComboBox), date, (String) timeComboBox.getSelectedItem());
+                appointment.setStatus((String) statusComboBox.getSelectedItem());
+                appointment.setDescription(descriptionField.getText().trim());
+
+                if (repeatComboBox.getSelectedIndex() > 0) {
+                    int sessions;
+                    try {
+                        String sessionsText = sessionsField.getText().trim();
+                        sessions = sessionsText.isEmpty() ? 0 : Integer.parseInt(sessionsText);
+                        if (sessions < 0) {
+                            throw new NumberFormatException();
+                        }
+                    } catch (NumberFormatException ex) {
+                        JOptionPane.showMessageDialog(dialog, "Sessions must be a whole number", "Validation Error", JOptionPane.ERROR_MESSAGE);
+                        return;
+                    }
+                    appointment.setRecurrence(repeatRule(repeatComboBox.getSelectedIndex(), sessions));
+                }
 
-                JOptionPane.showMessageDialog(dialog, "Appointment booked successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
-                dialog.dispose();
+                if (saveAppointment(dialog, appointment, true)) {
+                    JOptionPane.showMessageDialog(dialog, "Appointment booked successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
+                    dialog.dispose();
+                    loadAppointments();
+                }
 
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, "Error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
@@ -313,11 +509,13 @@ public class AppointmentManagementPanel extends JPanel {
         formPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
 
         String appointmentId = (String) appointmentTable.getValueAt(selectedRow, 0);
-        String patientName = (String) appointmentTable.getValueAt(selectedRow, 1);
-        String doctorName = (String) appointmentTable.getValueAt(selectedRow, 2);
+        Appointment existing = appointmentService.getById(appointmentId);
+        if (existing == null) {
+            JOptionPane.showMessageDialog(this, "Appointment not found", "Error", JOptionPane.ERROR_MESSAGE);
+            dialog.dispose();
+            return;
+        }
         String date = (String) appointmentTable.getValueAt(selectedRow, 3);
-        String time = (String) appointmentTable.getValueAt(selectedRow, 4);
-        String status = (String) appointmentTable.getValueAt(selectedRow, 5);
 
         JLabel idLabel = new JLabel("Appointment ID:");
         JTextField idField = new JTextField(appointmentId);
@@ -325,27 +523,11 @@ public class AppointmentManagementPanel extends JPanel {
 
         JLabel patientLabel = new JLabel("Patient:");
         JComboBox<String> patientComboBox = new JComboBox<>();
-
-        // Load patients
-        List<Patient> patients = patientService.getAll();
-        for (Patient patient : patients) {
-            patientComboBox.addItem(patient.getId() + " - " + patient.getName());
-            if (patient.getName().equals(patientName)) {
-                patientComboBox.setSelectedIndex(patientComboBox.getItemCount() - 1);
-            }
-        }
+        JPanel patientLookup = patientLookup(patientComboBox, patientService.getById(existing.getPatientId()));
 
         JLabel doctorLabel = new JLabel("Doctor:");
         JComboBox<String> doctorComboBox = new JComboBox<>();
-
-        // Load doctors
-        List<Doctor> doctors = doctorService.getAll();
-        for (Doctor doctor : doctors) {
-            doctorComboBox.addItem(doctor.getId() + " - " + doctor.getName() + " (" + doctor.getSpecialization() + ")");
-            if (doctor.getName().equals(doctorName)) {
-                doctorComboBox.setSelectedIndex(doctorComboBox.getItemCount() - 1);
-            }
-        }
+        JPanel doctorLookup = doctorLookup(doctorComboBox, doctorService.getById(existing.getDoctorId()));
 
         JLabel dateLabel = new JLabel("Date (YYYY-MM-DD):");
         JTextField dateField = new JTextField(date);
@@ -356,21 +538,21 @@ public class AppointmentManagementPanel extends JPanel {
                 "12:00 PM", "12:30 PM", "01:00 PM", "01:30 PM", "02:00 PM", "02:30 PM",
                 "03:00 PM", "03:30 PM", "04:00 PM", "04:30 PM", "05:00 PM"
         });
-        timeComboBox.setSelectedItem(time);
+        timeComboBox.setSelectedItem(existing.getTimeSlot());
 
         JLabel statusLabel = new JLabel("Status:");
         JComboBox<String> statusComboBox = new JComboBox<>(new String[]{"SCHEDULED", "COMPLETED", "CANCELLED"});
-        statusComboBox.setSelectedItem(status);
+        statusComboBox.setSelectedItem(existing.getStatus());
 
         JLabel descriptionLabel = new JLabel("Description:");
-        JTextField descriptionField = new JTextField();
+        JTextField descriptionField = new JTextField(existing.getDescription());
 
         formPanel.add(idLabel);
         formPanel.add(idField);
         formPanel.add(patientLabel);
-        formPanel.add(patientComboBox);
+        formPanel.add(patientLookup);
         formPanel.add(doctorLabel);
-        formPanel.add(doctorComboBox);
+        formPanel.add(doctorLookup);
         formPanel.add(dateLabel);
         formPanel.add(dateField);
         formPanel.add(timeLabel);
@@ -411,31 +593,32 @@ public class AppointmentManagementPanel extends JPanel {
                 }
 
                 // Validate date format
+                Date date2;
                 try {
                     SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
                     sdf.setLenient(false);
-                    Date date2 = sdf.parse(dateText);
+                    date2 = sdf.parse(dateText);
                 } catch (ParseException ex) {
                     JOptionPane.showMessageDialog(dialog, "Invalid date format. Please use YYYY-MM-DD", "Validation Error", JOptionPane.ERROR_MESSAGE);
                     return;
                 }
 
-                // In a real implementation, this would update in a service
-                // For now, just update the table
-                String patientInfo = (String) patientComboBox.getSelectedItem();
-                String doctorInfo = (String) doctorComboBox.getSelectedItem();
-
-                String newPatientName = patientInfo.substring(patientInfo.indexOf(" - ") + 3);
-                String newDoctorName = doctorInfo.substring(doctorInfo.indexOf(" - ") + 3, doctorInfo.indexOf(" ("));
-
-                appointmentTable.setValueAt(newPatientName, selectedRow, 1);
-                appointmentTable.setValueAt(newDoctorName, selectedRow, 2);
-                appointmentTable.setValueAt(dateField.getText(), selectedRow, 3);
-                appointmentTable.setValueAt(timeComboBox.getSelectedItem(), selectedRow, 4);
-                appointmentTable.setValueAt(statusComboBox.getSelectedItem(), selectedRow, 5);
-
-                JOptionPane.showMessageDialog(dialog, "Appointment updated successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
-                dialog.dispose();
+                // Build a new copy so a refused change leaves the stored appointment untouched
+                Appointment appointment = new Appointment(appointmentId, selectedId(patientComboBox),
+                        selectedId(doctorComboBox), date2, (String) timeComboBox.getSelectedItem());
+                appointment.setDurationMinutes(existing.getDurationMinutes());
+                appointment.setStatus((String) statusComboBox.getSelectedItem());
+                appointment.setDescription(descriptionField.getText().trim());
+                appointment.setFee(existing.getFee());
+                appointment.setPaid(existing.isPaid());
+                appointment.setRecurrence(existing.getRecurrence());
+                appointment.setOccurrenceOf(existing.getSeriesId(), existing.getOccurrenceDay());
+
+                if (saveAppointment(dialog, appointment, false)) {
+                    JOptionPane.showMessageDialog(dialog, "Appointment updated successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
+                    dialog.dispose();
+                    loadAppointments();
+                }
 
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, "Error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
@@ -468,11 +651,12 @@ public class AppointmentManagementPanel extends JPanel {
         );
 
         if (option == JOptionPane.YES_OPTION) {
-            // In a real implementation, this would update in a service
-            // For now, just update the table
-            appointmentTable.setValueAt("CANCELLED", selectedRow, 5);
-
-            JOptionPane.showMessageDialog(this, "Appointment cancelled successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
+            if (appointmentService.cancel(appointmentId)) {
+                JOptionPane.showMessageDialog(this, "Appointment cancelled successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
+                showAppointments();
+            } else {
+                JOptionPane.showMessageDialog(this, "Failed to cancel appointment", "Error", JOptionPane.ERROR_MESSAGE);
+            }
         }
     }
 
@@ -513,6 +697,12 @@ public class AppointmentManagementPanel extends JPanel {
         addDetailRow(infoPanel, "Date:", date);
         addDetailRow(infoPanel, "Time:", time);
         addDetailRow(infoPanel, "Status:", status);
+        Appointment appointment = appointmentService.getById(appointmentId);
+        if (appointment != null && appointment.isRecurring()) {
+            addDetailRow(infoPanel, "Repeats:", appointment.getRecurrence().toString());
+        } else if (appointment != null && appointment.getSeriesId() != null) {
+            addDetailRow(infoPanel, "Session of:", appointment.getSeriesId());
+        }
 
         detailsPanel.add(titleLabel);
         detailsPanel.add(Box.createRigidArea(new Dimension(0, 20)));
@@ -2,7 +2,10 @@ package hms.ui;
 
 import hms.model.Billing;
 import hms.model.Patient;
+import hms.service.BillingService;
 import hms.service.PatientService;
+import hms.service.ServiceRegistry;
+import hms.util.Money;
 import hms.util.PDFGenerator;
 
 import javax.swing.*;
@@ -12,7 +15,9 @@ import java.awt.*;
 import java.awt.event.*;
 import java.io.File;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
 import java.util.Date;
+import java.util.List;
 
 public class BillingManagementPanel extends JPanel {
     private JTable billingTable;
@@ -24,11 +29,18 @@ public class BillingManagementPanel extends JPanel {
     private JButton viewButton;
     private JButton refreshButton;
     private JButton printButton;
+    private JLabel summaryLabel;
+
+    private PagingBar pagingBar;
+    // Results of the last search, paged in memory; null while paging through every bill
+    private List<Billing> searchResults;
 
     private PatientService patientService;
+    private BillingService billingService;
 
     public BillingManagementPanel() {
-        patientService = new PatientService();
+        patientService = ServiceRegistry.getInstance().getPatientService();
+        billingService = ServiceRegistry.getInstance().getBillingService();
         initializeUI();
         loadBillings();
     }
@@ -84,9 +96,17 @@ public class BillingManagementPanel extends JPanel {
 
         JScrollPane scrollPane = new JScrollPane(billingTable);
 
+        // Running totals on the left, page controls on the right
+        JPanel bottomPanel = new JPanel(new BorderLayout());
+        summaryLabel = new JLabel();
+        pagingBar = new PagingBar(this::showBillings);
+        bottomPanel.add(summaryLabel, BorderLayout.WEST);
+        bottomPanel.add(pagingBar, BorderLayout.EAST);
+
         // Add components to panel
         add(topPanel, BorderLayout.NORTH);
         add(scrollPane, BorderLayout.CENTER);
+        add(bottomPanel, BorderLayout.SOUTH);
 
         // Add action listeners
         searchButton.addActionListener(e -> searchBillings());
@@ -108,58 +128,59 @@ public class BillingManagementPanel extends JPanel {
     }
 
     private void loadBillings() {
-        // Clear table
-        tableModel.setRowCount(0);
-
-        // Add sample data for now
-        // In a real implementation, this would load from a service
-        addSampleBillings();
-    }
-
-    private void addSampleBillings() {
-        // Add some sample billings for demonstration
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-
-        Object[] row1 = {"B001", "John Doe", sdf.format(new Date()), "$150.00", "PAID"};
-        Object[] row2 = {"B002", "Jane Smith", "2025-06-10", "$275.50", "UNPAID"};
-        Object[] row3 = {"B003", "Robert Brown", "2025-06-05", "$420.75", "PAID"};
-        Object[] row4 = {"B004", "Emily Davis", "2025-06-01", "$95.25", "UNPAID"};
-
-        tableModel.addRow(row1);
-        tableModel.addRow(row2);
-        tableModel.addRow(row3);
-        tableModel.addRow(row4);
+        searchResults = null;
+        showBillings();
     }
 
     private void searchBillings() {
-        String query = searchField.getText().trim().toLowerCase();
+        String query = searchField.getText().trim();
 
-        if (query.isEmpty()) {
-            loadBillings();
-            return;
-        }
+        // Search bills; a blank query goes back to paging through all of them
+        searchResults = query.isEmpty() ? null : billingService.search(query);
+        pagingBar.firstPage();
+        showBillings();
+    }
 
+    // Fill the table with the current page only, newest bill first
+    private void showBillings() {
         // Clear table
         tableModel.setRowCount(0);
 
-        // In a real implementation, this would search from a service
-        // For now, just reload all and filter
-        addSampleBillings();
-
-        // Filter rows
-        for (int i = tableModel.getRowCount() - 1; i >= 0; i--) {
-            boolean match = false;
-            for (int j = 0; j < tableModel.getColumnCount(); j++) {
-                Object value = tableModel.getValueAt(i, j);
-                if (value != null && value.toString().toLowerCase().contains(query)) {
-                    match = true;
-                    break;
-                }
-            }
-            if (!match) {
-                tableModel.removeRow(i);
-            }
+        List<Billing> bills;
+        if (searchResults != null) {
+            pagingBar.setTotal(searchResults.size());
+            bills = pagingBar.window(searchResults);
+        } else {
+            pagingBar.setTotal(billingService.count());
+            bills = billingService.getPage(pagingBar.getOffset(), pagingBar.getPageSize(), "-date");
+        }
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        for (Billing bill : bills) {
+            Object[] row = {
+                    bill.getBillId(),
+                    patientName(bill.getPatientId()),
+                    dateFormat.format(bill.getBillDate()),
+                    String.format("$%.2f", bill.getTotalAmount()),
+                    bill.getPaymentStatus()
+            };
+            tableModel.addRow(row);
         }
+
+        // Both figures come from the running totals, not from the rows loaded here
+        summaryLabel.setText(String.format("Total unpaid: $%.2f    Billed today: $%.2f",
+                billingService.getTotalUnpaid(), billingService.getRevenueOn(LocalDate.now())));
+    }
+
+    private String patientName(String patientId) {
+        Patient patient = patientService.getById(patientId);
+        return patient != null ? patient.getName() : patientId;
+    }
+
+    // The ID at the start of a "ID - Name" combo box entry
+    private static String selectedId(JComboBox<String> comboBox) {
+        String item = (String) comboBox.getSelectedItem();
+        return item.substring(0, item.indexOf(" - "));
     }
 
     private void showGenerateBillDialog() {
@@ -176,7 +197,7 @@ public class BillingManagementPanel extends JPanel {
         headerPanel.setBorder(new EmptyBorder(0, 0, 10, 0));
 
         // Generate bill ID
-        String billId = "B" + System.currentTimeMillis();
+        String billId = billingService.generateBillId();
 
         JLabel idLabel = new JLabel("Bill ID:");
         JTextField idField = new JTextField(billId);
@@ -341,23 +362,31 @@ public class BillingManagementPanel extends JPanel {
                     return;
                 }
 
-                // In a real implementation, this would save to a service
-                // For now, just add to the table
-                String patientInfo = (String) patientComboBox.getSelectedItem();
-                String patientName = patientInfo.substring(patientInfo.indexOf(" - ") + 3);
-
-                Object[] row = {
-                        idField.getText(),
-                        patientName,
-                        dateField.getText(),
-                        totalField.getText(),
-                        statusComboBox.getSelectedItem()
-                };
+                Billing bill = new Billing(idField.getText(), selectedId(patientComboBox), new Date());
+                for (int i = 0; i < itemsModel.getRowCount(); i++) {
+                    // Quantity and unit price may have been edited in the table
+                    bill.addItem(Billing.BillItem.ofCents((String) itemsModel.getValueAt(i, 0),
+                            Money.parse(itemsModel.getValueAt(i, 2).toString()),
+                            Integer.parseInt(itemsModel.getValueAt(i, 1).toString().trim())));
+                }
+                try {
+                    bill.setDiscount(Double.parseDouble(discountField.getText().trim()));
+                    bill.setTax(Double.parseDouble(taxField.getText().trim()));
+                } catch (IllegalArgumentException ex) {
+                    JOptionPane.showMessageDialog(dialog, "Invalid discount or tax: " + ex.getMessage(), "Validation Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                bill.setPaymentStatus((String) statusComboBox.getSelectedItem());
+                bill.setPaymentMethod((String) methodComboBox.getSelectedItem());
 
-                tableModel.addRow(row);
+                if (!billingService.add(bill)) {
+                    JOptionPane.showMessageDialog(dialog, "Failed to save bill", "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
 
                 JOptionPane.showMessageDialog(dialog, "Bill generated successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
                 dialog.dispose();
+                loadBillings();
 
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, "Error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
@@ -418,11 +447,11 @@ public class BillingManagementPanel extends JPanel {
             public void focusLost(FocusEvent e) {
                 try {
                     int quantity = Integer.parseInt(quantityField.getText().trim());
-                    double price = Double.parseDouble(priceField.getText().trim());
-                    double amount = quantity * price;
-                    amountField.setText(String.format("$%.2f", amount));
-                } catch (NumberFormatException ex) {
-                    amountField.setText("$0.00");
+                    // Rounded to the cent first, as the saved item's unit price will be
+                    long price = Money.parse(priceField.getText().trim());
+                    amountField.setText(Money.display(Money.times(price, quantity)));
+                } catch (NumberFormatException | ArithmeticException ex) {
+                    amountField.setText(Money.display(0));
                 }
             }
         };
@@ -452,9 +481,9 @@ public class BillingManagementPanel extends JPanel {
                     return;
                 }
 
-                double price;
+                long price;
                 try {
-                    price = Double.parseDouble(priceField.getText().trim());
+                    price = Money.parse(priceField.getText().trim());
                     if (price < 0) {
                         JOptionPane.showMessageDialog(dialog, "Price cannot be negative", "Validation Error", JOptionPane.ERROR_MESSAGE);
                         return;
@@ -464,14 +493,12 @@ public class BillingManagementPanel extends JPanel {
                     return;
                 }
 
-                double amount = quantity * price;
-
                 // Add to items table
                 Object[] row = {
                         description,
                         quantity,
-                        String.format("$%.2f", price),
-                        String.format("$%.2f", amount)
+                        Money.display(price),
+                        Money.display(Money.times(price, quantity))
                 };
 
                 itemsModel.addRow(row);
@@ -493,13 +520,20 @@ public class BillingManagementPanel extends JPanel {
 
     private void updateBillTotal(DefaultTableModel itemsModel, JTextField subtotalField,
                                  JTextField totalField, JTextField discountField, JTextField taxField) {
-        double subtotal = 0.0;
+        long subtotal = 0;
 
-        // Calculate subtotal
+        // Calculate subtotal from quantity and unit price, as the saved bill will, refreshing edited rows' amounts
         for (int i = 0; i < itemsModel.getRowCount(); i++) {
-            String amountStr = (String) itemsModel.getValueAt(i, 3);
-            double amount = Double.parseDouble(amountStr.substring(1));
-            subtotal += amount;
+            long amount;
+            try {
+                amount = Money.times(Money.parse(itemsModel.getValueAt(i, 2).toString()),
+                        Integer.parseInt(itemsModel.getValueAt(i, 1).toString().trim()));
+            } catch (NumberFormatException | ArithmeticException e) {
+                // Left for the save to reject; it does not count towards the total meanwhile
+                amount = 0;
+            }
+            itemsModel.setValueAt(Money.display(amount), i, 3);
+            subtotal = Money.add(subtotal, amount);
         }
 
         // Get discount and tax
@@ -517,14 +551,14 @@ public class BillingManagementPanel extends JPanel {
             taxField.setText("0");
         }
 
-        // Calculate total
-        double discountAmount = subtotal * (discount / 100.0);
-        double taxAmount = subtotal * (tax / 100.0);
-        double total = subtotal - discountAmount + taxAmount;
+        // Calculate total, rounded the way the saved bill will be
+        long discountAmount = Money.percentOf(subtotal, Money.basisPoints(discount));
+        long taxAmount = Money.percentOf(subtotal, Money.basisPoints(tax));
+        long total = subtotal - discountAmount + taxAmount;
 
         // Update fields
-        subtotalField.setText(String.format("$%.2f", subtotal));
-        totalField.setText(String.format("$%.2f", total));
+        subtotalField.setText(Money.display(subtotal));
+        totalField.setText(Money.display(total));
     }
 
     private void showEditBillDialog() {
@@ -534,7 +568,38 @@ public class BillingManagementPanel extends JPanel {
             return;
         }
 
-        JOptionPane.showMessageDialog(this, "Edit Bill functionality will be implemented here", "Information", JOptionPane.INFORMATION_MESSAGE);
+        String billId = (String) billingTable.getValueAt(selectedRow, 0);
+        Billing bill = billingService.getById(billId);
+        if (bill == null) {
+            JOptionPane.showMessageDialog(this, "Bill not found", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        // Items are fixed once billed; only the payment can change
+        JComboBox<String> statusComboBox = new JComboBox<>(new String[]{"PAID", "UNPAID"});
+        statusComboBox.setSelectedItem(bill.getPaymentStatus());
+        JComboBox<String> methodComboBox = new JComboBox<>(new String[]{"Cash", "Credit Card", "Debit Card", "Insurance", "Other"});
+        methodComboBox.setSelectedItem(bill.getPaymentMethod());
+
+        JPanel formPanel = new JPanel(new GridLayout(2, 2, 10, 10));
+        formPanel.add(new JLabel("Payment Status:"));
+        formPanel.add(statusComboBox);
+        formPanel.add(new JLabel("Payment Method:"));
+        formPanel.add(methodComboBox);
+
+        int option = JOptionPane.showConfirmDialog(this, formPanel, "Edit Bill " + billId,
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (option != JOptionPane.OK_OPTION) {
+            return;
+        }
+
+        if (billingService.setPayment(billId, (String) statusComboBox.getSelectedItem(),
+                (String) methodComboBox.getSelectedItem())) {
+            JOptionPane.showMessageDialog(this, "Bill updated successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
+            showBillings();
+        } else {
+            JOptionPane.showMessageDialog(this, "Failed to update bill", "Error", JOptionPane.ERROR_MESSAGE);
+        }
     }
 
     private void deleteBill() {
@@ -556,11 +621,12 @@ public class BillingManagementPanel extends JPanel {
         );
 
         if (option == JOptionPane.YES_OPTION) {
-            // In a real implementation, this would delete from a service
-            // For now, just remove from the table
-            tableModel.removeRow(selectedRow);
-
-            JOptionPane.showMessageDialog(this, "Bill deleted successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
+            if (billingService.delete(billId)) {
+                JOptionPane.showMessageDialog(this, "Bill deleted successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
+                showBillings();
+            } else {
+                JOptionPane.showMessageDialog(this, "Failed to delete bill", "Error", JOptionPane.ERROR_MESSAGE);
+            }
         }
     }
 
@@ -576,6 +642,11 @@ public class BillingManagementPanel extends JPanel {
         String date = (String) billingTable.getValueAt(selectedRow, 2);
         String amount = (String) billingTable.getValueAt(selectedRow, 3);
         String status = (String) billingTable.getValueAt(selectedRow, 4);
+        Billing bill = billingService.getById(billId);
+        if (bill == null) {
+            JOptionPane.showMessageDialog(this, "Bill not found", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
 
         JDialog dialog = new JDialog((Frame) SwingUtilities.getWindowAncestor(this), "Bill Details", true);
         dialog.setSize(600, 500);
@@ -599,6 +670,9 @@ public class BillingManagementPanel extends JPanel {
         addDetailRow(infoPanel, "Date:", date);
         addDetailRow(infoPanel, "Amount:", amount);
         addDetailRow(infoPanel, "Status:", status);
+        addDetailRow(infoPanel, "Payment Method:", bill.getPaymentMethod());
+        addDetailRow(infoPanel, "Discount / Tax:", String.format("%.1f%% / %.1f%%", bill.getDiscount(), bill.getTax()));
+        addDetailRow(infoPanel, "Patient Balance:", String.format("$%.2f", billingService.getPatientBalance(bill.getPatientId())));
 
         detailsPanel.add(titleLabel);
         detailsPanel.add(Box.createRigidArea(new Dimension(0, 20)));
@@ -622,14 +696,10 @@ public class BillingManagementPanel extends JPanel {
         itemsScrollPane.setAlignmentX(Component.LEFT_ALIGNMENT);
         itemsScrollPane.setPreferredSize(new Dimension(550, 200));
 
-        // Add sample items
-        Object[] item1 = {"Consultation Fee", 1, "$50.00", "$50.00"};
-        Object[] item2 = {"Medicine - Paracetamol", 2, "$5.99", "$11.98"};
-        Object[] item3 = {"Blood Test", 1, "$35.00", "$35.00"};
-
-        itemsModel.addRow(item1);
-        itemsModel.addRow(item2);
-        itemsModel.addRow(item3);
+        for (Billing.BillItem item : bill.getItems()) {
+            itemsModel.addRow(new Object[]{item.getDescription(), item.getQuantity(),
+                    Money.display(item.getUnitPriceCents()), Money.display(item.getAmountCents())});
+        }
 
         detailsPanel.add(Box.createRigidArea(new Dimension(0, 20)));
         detailsPanel.add(itemsLabel);
@@ -648,8 +718,8 @@ public class BillingManagementPanel extends JPanel {
 
         // Add action listeners
         printButton.addActionListener(e -> {
-            // In a real implementation, this would generate a PDF
-            JOptionPane.showMessageDialog(dialog, "Bill printed successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
+            dialog.dispose();
+            printBill();
         });
 
         closeButton.addActionListener(e -> dialog.dispose());
@@ -665,20 +735,14 @@ public class BillingManagementPanel extends JPanel {
         }
 
         String billId = (String) billingTable.getValueAt(selectedRow, 0);
-        String patientName = (String) billingTable.getValueAt(selectedRow, 1);
 
         try {
-            // Create a sample billing and patient for demonstration
-            Billing billing = new Billing(billId, "P001", new Date());
-            billing.setTotalAmount(Double.parseDouble(((String) billingTable.getValueAt(selectedRow, 3)).substring(1)));
-            billing.setPaymentStatus((String) billingTable.getValueAt(selectedRow, 4));
-
-            Patient patient = new Patient("P001", patientName, 35, "123-456-7890", "Fever");
-
-            // Add some sample items
-            billing.addItem(new Billing.BillItem("Consultation Fee", 50.0, 1));
-            billing.addItem(new Billing.BillItem("Medicine - Paracetamol", 5.99, 2));
-            billing.addItem(new Billing.BillItem("Blood Test", 35.0, 1));
+            Billing billing = billingService.getById(billId);
+            Patient patient = billing != null ? patientService.getById(billing.getPatientId()) : null;
+            if (billing == null || patient == null) {
+                JOptionPane.showMessageDialog(this, "Bill or patient not found", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
 
             String outputPath = "reports/bill_" + billId + ".pdf";
             File file = PDFGenerator.generateBillingReport(billing, patient, outputPath);
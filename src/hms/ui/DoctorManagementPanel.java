@@ -2,6 +2,7 @@ package hms.ui;
 
 import hms.model.Doctor;
 import hms.service.DoctorService;
+import hms.service.ServiceRegistry;
 import hms.util.ValidationUtils;
 
 import javax.swing.*;
@@ -21,9 +22,12 @@ public class DoctorManagementPanel extends JPanel {
     private JButton deleteButton;
     private JButton viewButton;
     private JButton refreshButton;
+    private PagingBar pagingBar;
+    // Results of the last search, paged in memory; null while paging through every doctor
+    private List<Doctor> searchResults;
 
     public DoctorManagementPanel() {
-        doctorService = new DoctorService();
+        doctorService = ServiceRegistry.getInstance().getDoctorService();
         initializeUI();
         loadDoctors();
     }
@@ -81,6 +85,9 @@ public class DoctorManagementPanel extends JPanel {
         add(topPanel, BorderLayout.NORTH);
         add(scrollPane, BorderLayout.CENTER);
 
+        pagingBar = new PagingBar(this::showDoctors);
+        add(pagingBar, BorderLayout.SOUTH);
+
         // Add action listeners
         searchButton.addActionListener(e -> searchDoctors());
         searchField.addKeyListener(new KeyAdapter() {
@@ -100,33 +107,32 @@ public class DoctorManagementPanel extends JPanel {
     }
 
     private void loadDoctors() {
-        // Clear table
-        tableModel.setRowCount(0);
-
-        // Load doctors from service
-        List<Doctor> doctors = doctorService.getAll();
-
-        // Add doctors to table
-        for (Doctor doctor : doctors) {
-            Object[] row = {
-                    doctor.getId(),
-                    doctor.getName(),
-                    doctor.getSpecialization(),
-                    doctor.getAvailability(),
-                    doctor.getContact()
-            };
-            tableModel.addRow(row);
-        }
+        searchResults = null;
+        showDoctors();
     }
 
     private void searchDoctors() {
         String query = searchField.getText().trim();
 
+        // Search doctors; a blank query goes back to paging through all of them
+        searchResults = query.isEmpty() ? null : doctorService.search(query);
+        pagingBar.firstPage();
+        showDoctors();
+    }
+
+    // Fill the table with the current page only
+    private void showDoctors() {
         // Clear table
         tableModel.setRowCount(0);
 
-        // Search doctors
-        List<Doctor> doctors = doctorService.search(query);
+        List<Doctor> doctors;
+        if (searchResults != null) {
+            pagingBar.setTotal(searchResults.size());
+            doctors = pagingBar.window(searchResults);
+        } else {
+            pagingBar.setTotal(doctorService.count());
+            doctors = doctorService.getPage(pagingBar.getOffset(), pagingBar.getPageSize(), null);
+        }
 
         // Add doctors to table
         for (Doctor doctor : doctors) {
@@ -426,19 +432,16 @@ public class DoctorManagementPanel extends JPanel {
                     return;
                 }
 
-                // Update doctor object
-                doctor.setName(name);
-                doctor.setAge(age);
-                doctor.setContact(contact);
-                doctor.setEmail(email);
-                doctor.setAddress(addressField.getText().trim());
-                doctor.setGender(genderComboBox.getSelectedItem().toString());
-                doctor.setSpecialization(specialization);
-                doctor.setQualification(qualificationField.getText().trim());
-                doctor.setAvailability(availability);
+                // Build a new copy so a refused change leaves the stored doctor untouched
+                Doctor updated = new Doctor(doctor.getId(), name, age, contact, email,
+                        addressField.getText().trim(), genderComboBox.getSelectedItem().toString(),
+                        specialization, qualificationField.getText().trim(), availability,
+                        doctor.getConsultationFee());
+                updated.setAvailableDays(doctor.getAvailableDays());
+                updated.setAvailableTimeSlots(doctor.getAvailableTimeSlots());
 
                 // Save doctor
-                if (doctorService.update(doctor)) {
+                if (doctorService.update(updated)) {
                     JOptionPane.showMessageDialog(dialog, "Doctor updated successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
                     dialog.dispose();
                     loadDoctors();
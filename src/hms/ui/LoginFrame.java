@@ -2,6 +2,7 @@ package hms.ui;
 
 import hms.model.User;
 import hms.service.UserService;
+import hms.service.ServiceRegistry;
 import hms.util.ValidationUtils;
 
 import javax.swing.*;
@@ -17,7 +18,7 @@ public class LoginFrame extends JFrame {
     private UserService userService;
 
     public LoginFrame() {
-        userService = new UserService();
+        userService = ServiceRegistry.getInstance().getUserService();
         initializeUI();
     }
 
@@ -0,0 +1,84 @@
+package hms.ui;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Previous/next controls under a management table that shows one page of
+ * rows at a time, so a large table never has to be loaded into the UI whole.
+ * The owning panel sets the total row count, fetches the window starting at
+ * getOffset(), and is called back whenever the user changes page.
+ */
+class PagingBar extends JPanel {
+    static final int DEFAULT_PAGE_SIZE = 100;
+
+    private final int pageSize;
+    private final JButton previousButton;
+    private final JButton nextButton;
+    private final JLabel statusLabel;
+    private int offset;
+    private long total;
+
+    PagingBar(Runnable onPageChange) {
+        this(DEFAULT_PAGE_SIZE, onPageChange);
+    }
+
+    PagingBar(int pageSize, Runnable onPageChange) {
+        super(new FlowLayout(FlowLayout.RIGHT));
+        this.pageSize = pageSize;
+
+        previousButton = new JButton("< Previous");
+        nextButton = new JButton("Next >");
+        statusLabel = new JLabel();
+
+        add(statusLabel);
+        add(previousButton);
+        add(nextButton);
+
+        previousButton.addActionListener(e -> {
+            offset = Math.max(0, offset - pageSize);
+            onPageChange.run();
+        });
+        nextButton.addActionListener(e -> {
+            offset += pageSize;
+            onPageChange.run();
+        });
+        updateControls();
+    }
+
+    int getOffset() {
+        return offset;
+    }
+
+    int getPageSize() {
+        return pageSize;
+    }
+
+    void firstPage() {
+        offset = 0;
+    }
+
+    // Record the row count; steps back to the last page if rows were removed from under the current one
+    void setTotal(long total) {
+        this.total = total;
+        if (offset >= total) {
+            offset = (int) Math.max(0, (total - 1) / pageSize * pageSize);
+        }
+        updateControls();
+    }
+
+    // The current page of an already loaded list, e.g. search results
+    <T> List<T> window(List<T> rows) {
+        int from = Math.min(offset, rows.size());
+        return new ArrayList<>(rows.subList(from, Math.min(from + pageSize, rows.size())));
+    }
+
+    private void updateControls() {
+        long last = Math.min(offset + pageSize, total);
+        statusLabel.setText(total == 0 ? "No records" : String.format("Rows %,d-%,d of %,d", offset + 1, last, total));
+        previousButton.setEnabled(offset > 0);
+        nextButton.setEnabled(last < total);
+    }
+}
@@ -2,6 +2,7 @@ package hms.ui;
 
 import hms.model.Patient;
 import hms.service.PatientService;
+import hms.service.ServiceRegistry;
 import hms.util.ValidationUtils;
 
 import javax.swing.*;
@@ -21,9 +22,12 @@ public class PatientManagementPanel extends JPanel {
     private JButton deleteButton;
     private JButton viewButton;
     private JButton refreshButton;
+    private PagingBar pagingBar;
+    // Results of the last search, paged in memory; null while paging through every patient
+    private List<Patient> searchResults;
 
     public PatientManagementPanel() {
-        patientService = new PatientService();
+        patientService = ServiceRegistry.getInstance().getPatientService();
         initializeUI();
         loadPatients();
     }
@@ -81,6 +85,9 @@ public class PatientManagementPanel extends JPanel {
         add(topPanel, BorderLayout.NORTH);
         add(scrollPane, BorderLayout.CENTER);
 
+        pagingBar = new PagingBar(this::showPatients);
+        add(pagingBar, BorderLayout.SOUTH);
+
         // Add action listeners
         searchButton.addActionListener(e -> searchPatients());
         searchField.addKeyListener(new KeyAdapter() {
@@ -100,33 +107,32 @@ public class PatientManagementPanel extends JPanel {
     }
 
     private void loadPatients() {
-        // Clear table
-        tableModel.setRowCount(0);
-
-        // Load patients from service
-        List<Patient> patients = patientService.getAll();
-
-        // Add patients to table
-        for (Patient patient : patients) {
-            Object[] row = {
-                    patient.getId(),
-                    patient.getName(),
-                    patient.getAge(),
-                    patient.getContact(),
-                    patient.getDisease()
-            };
-            tableModel.addRow(row);
-        }
+        searchResults = null;
+        showPatients();
     }
 
     private void searchPatients() {
         String query = searchField.getText().trim();
 
+        // Search patients; a blank query goes back to paging through all of them
+        searchResults = query.isEmpty() ? null : patientService.search(query);
+        pagingBar.firstPage();
+        showPatients();
+    }
+
+    // Fill the table with the current page only
+    private void showPatients() {
         // Clear table
         tableModel.setRowCount(0);
 
-        // Search patients
-        List<Patient> patients = patientService.search(query);
+        List<Patient> patients;
+        if (searchResults != null) {
+            pagingBar.setTotal(searchResults.size());
+            patients = pagingBar.window(searchResults);
+        } else {
+            pagingBar.setTotal(patientService.count());
+            patients = patientService.getPage(pagingBar.getOffset(), pagingBar.getPageSize(), null);
+        }
 
         // Add patients to table
         for (Patient patient : patients) {
@@ -393,17 +399,13 @@ public class PatientManagementPanel extends JPanel {
                     return;
                 }
 
-                // Update patient object
-                patient.setName(name);
-                patient.setAge(age);
-                patient.setContact(contact);
-                patient.setEmail(email);
-                patient.setAddress(addressField.getText().trim());
-                patient.setGender(genderComboBox.getSelectedItem().toString());
-                patient.setDisease(disease);
+                // Build a new copy so a refused change leaves the stored patient untouched
+                Patient updated = new Patient(patient.getId(), name, age, contact, email,
+                        addressField.getText().trim(), genderComboBox.getSelectedItem().toString(),
+                        patient.getBloodGroup(), patient.getAllergies(), disease);
 
                 // Save patient
-                if (patientService.update(patient)) {
+                if (patientService.update(updated)) {
                     JOptionPane.showMessageDialog(dialog, "Patient updated successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
                     dialog.dispose();
                     loadPatients();
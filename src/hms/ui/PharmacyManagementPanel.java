@@ -1,7 +1,13 @@
 package hms.ui;
 
+import hms.model.Billing;
 import hms.model.Medicine;
+import hms.model.Patient;
+import hms.model.Prescription;
+import hms.service.DispensingService;
 import hms.service.MedicineService;
+import hms.service.ServiceRegistry;
+import hms.util.Money;
 import hms.util.ValidationUtils;
 
 import javax.swing.*;
@@ -9,6 +15,7 @@ import javax.swing.border.EmptyBorder;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.*;
+import java.util.Date;
 import java.util.List;
 
 public class PharmacyManagementPanel extends JPanel {
@@ -22,11 +29,14 @@ public class PharmacyManagementPanel extends JPanel {
     private JButton viewButton;
     private JButton refreshButton;
     private JButton dispenseMedicineButton;
+    private PagingBar pagingBar;
+    // Results of the last search, paged in memory; null while paging through every medicine
+    private List<Medicine> searchResults;
 
     private boolean samplesAdded = false; // Add this as a class field
 
     public PharmacyManagementPanel() {
-        medicineService = new MedicineService();
+        medicineService = ServiceRegistry.getInstance().getMedicineService();
         initializeUI();
         loadMedicines();
     }
@@ -86,6 +96,9 @@ public class PharmacyManagementPanel extends JPanel {
         add(topPanel, BorderLayout.NORTH);
         add(scrollPane, BorderLayout.CENTER);
 
+        pagingBar = new PagingBar(this::showMedicines);
+        add(pagingBar, BorderLayout.SOUTH);
+
         // Add action listeners
         searchButton.addActionListener(e -> searchMedicines());
         searchField.addKeyListener(new KeyAdapter() {
@@ -107,39 +120,35 @@ public class PharmacyManagementPanel extends JPanel {
 
     // Fix the sample data loading to prevent recursion
     private void loadMedicines() {
+        searchResults = null;
+        showMedicines();
+    }
+
+    // Fill the table with the current page only
+    private void showMedicines() {
         // Clear table
         tableModel.setRowCount(0);
 
         try {
-            // Load medicines from service
-            List<Medicine> medicines = medicineService.getAll();
-            System.out.println("Loaded " + medicines.size() + " medicines from service");
+            if (searchResults != null) {
+                pagingBar.setTotal(searchResults.size());
+                addMedicineRows(pagingBar.window(searchResults));
+                return;
+            }
+
+            // Count medicines in the service
+            long total = medicineService.count();
+            System.out.println("Loaded " + total + " medicines from service");
 
             // If no medicines exist, add samples first
-            if (medicines.isEmpty() && !samplesAdded) {
+            if (total == 0 && !samplesAdded) {
                 System.out.println("No medicines found, adding sample data...");
                 addSampleMedicinesDirectly();
-                medicines = medicineService.getAll(); // Reload after adding samples
-                System.out.println("After adding samples: " + medicines.size() + " medicines");
-            }
-
-            // Add medicines to table
-            for (Medicine medicine : medicines) {
-                try {
-                    Object[] row = {
-                            medicine.getMedicineId(),
-                            medicine.getName(),
-                            medicine.getManufacturer() != null ? medicine.getManufacturer() : "N/A",
-                            medicine.getCategory() != null ? medicine.getCategory() : "N/A",
-                            String.format("%.2f", medicine.getPrice()),
-                            medicine.getQuantity()
-                    };
-                    tableModel.addRow(row);
-                } catch (Exception e) {
-                    System.err.println("Error adding medicine to table: " + medicine.getMedicineId());
-                    e.printStackTrace();
-                }
+                total = medicineService.count(); // Recount after adding samples
+                System.out.println("After adding samples: " + total + " medicines");
             }
+            pagingBar.setTotal(total);
+            addMedicineRows(medicineService.getPage(pagingBar.getOffset(), pagingBar.getPageSize(), null));
 
             System.out.println("Successfully loaded " + tableModel.getRowCount() + " medicines to table");
 
@@ -184,23 +193,29 @@ public class PharmacyManagementPanel extends JPanel {
     private void searchMedicines() {
         String query = searchField.getText().trim();
 
-        // Clear table
-        tableModel.setRowCount(0);
-
-        // Search medicines
-        List<Medicine> medicines = medicineService.search(query);
+        // Search medicines; a blank query goes back to paging through all of them
+        searchResults = query.isEmpty() ? null : medicineService.search(query);
+        pagingBar.firstPage();
+        showMedicines();
+    }
 
+    private void addMedicineRows(List<Medicine> medicines) {
         // Add medicines to table
         for (Medicine medicine : medicines) {
-            Object[] row = {
-                    medicine.getMedicineId(),
-                    medicine.getName(),
-                    medicine.getManufacturer() != null ? medicine.getManufacturer() : "N/A",
-                    medicine.getCategory() != null ? medicine.getCategory() : "N/A",
-                    String.format("%.2f", medicine.getPrice()),
-                    medicine.getQuantity()
-            };
-            tableModel.addRow(row);
+            try {
+                Object[] row = {
+                        medicine.getMedicineId(),
+                        medicine.getName(),
+                        medicine.getManufacturer() != null ? medicine.getManufacturer() : "N/A",
+                        medicine.getCategory() != null ? medicine.getCategory() : "N/A",
+                        String.format("%.2f", medicine.getPrice()),
+                        medicine.getQuantity()
+                };
+                tableModel.addRow(row);
+            } catch (Exception e) {
+                System.err.println("Error adding medicine to table: " + medicine.getMedicineId());
+                e.printStackTrace();
+            }
         }
     }
 
@@ -450,16 +465,13 @@ public class PharmacyManagementPanel extends JPanel {
                     return;
                 }
 
-                // Update medicine object
-                medicine.setName(name);
-                medicine.setManufacturer(manufacturer);
-                medicine.setCategory((String) categoryComboBox.getSelectedItem());
-                medicine.setPrice(price);
-                medicine.setQuantity(quantity);
-                medicine.setDescription(descriptionField.getText().trim());
+                // Build a new copy so a refused change leaves the stored medicine untouched
+                Medicine updated = new Medicine(medicine.getMedicineId(), name, manufacturer, price, quantity);
+                updated.setCategory((String) categoryComboBox.getSelectedItem());
+                updated.setDescription(descriptionField.getText().trim());
 
                 // Save medicine
-                if (medicineService.update(medicine)) {
+                if (medicineService.update(updated)) {
                     JOptionPane.showMessageDialog(dialog, "Medicine updated successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
                     dialog.dispose();
                     loadMedicines();
@@ -576,10 +588,10 @@ public class PharmacyManagementPanel extends JPanel {
         JLabel patientLabel = new JLabel("Patient:");
         JComboBox<String> patientComboBox = new JComboBox<>();
 
-        // Add some sample patients
-        patientComboBox.addItem("P001 - John Doe");
-        patientComboBox.addItem("P002 - Jane Smith");
-        patientComboBox.addItem("P003 - Robert Brown");
+        // Load registered patients; the bill is raised against the selected one
+        for (Patient patient : ServiceRegistry.getInstance().getPatientService().getAll()) {
+            patientComboBox.addItem(patient.getId() + " - " + patient.getName());
+        }
 
         patientPanel.add(patientLabel);
         patientPanel.add(patientComboBox);
@@ -766,6 +778,15 @@ public class PharmacyManagementPanel extends JPanel {
                 JOptionPane.showMessageDialog(dialog, "Please select at least one medicine", "No Medicines", JOptionPane.WARNING_MESSAGE);
                 return;
             }
+            if (patientComboBox.getSelectedItem() == null) {
+                JOptionPane.showMessageDialog(dialog, "Please select a patient", "No Patient", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+
+            DispensingService dispensingService = ServiceRegistry.getInstance().getDispensingService();
+            String patientId = patientComboBox.getSelectedItem().toString().split(" - ")[0];
+            Prescription prescription = new Prescription(dispensingService.generatePrescriptionId(),
+                    patientId, null, new Date());
 
             // Check if all required fields are filled
             for (int i = 0; i < selectedModel.getRowCount(); i++) {
@@ -792,12 +813,24 @@ public class PharmacyManagementPanel extends JPanel {
                     JOptionPane.showMessageDialog(dialog, "Please fill in dosage, frequency, and duration for all medicines", "Missing Information", JOptionPane.WARNING_MESSAGE);
                     return;
                 }
+
+                Medicine item = new Medicine((String) selectedModel.getValueAt(i, 0),
+                        (String) selectedModel.getValueAt(i, 1), dosage, frequency, duration);
+                item.setQuantity(quantity);
+                prescription.addMedicine(item);
             }
 
-            // In a real implementation, this would update inventory and create a prescription
-            // For now, just show success message
-            JOptionPane.showMessageDialog(dialog, "Medicines dispensed successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
-            dialog.dispose();
+            // Stock, prescription and bill are written together or not at all
+            try {
+                Billing bill = dispensingService.dispense(prescription);
+                JOptionPane.showMessageDialog(dialog,
+                        String.format("Medicines dispensed successfully\nBill %s: $%.2f", bill.getBillId(), bill.getTotalAmount()),
+                        "Success", JOptionPane.INFORMATION_MESSAGE);
+                dialog.dispose();
+                loadMedicines();
+            } catch (IllegalArgumentException | IllegalStateException ex) {
+                JOptionPane.showMessageDialog(dialog, ex.getMessage(), "Cannot Dispense", JOptionPane.ERROR_MESSAGE);
+            }
         });
 
         cancelButton.addActionListener(e -> dialog.dispose());
@@ -811,11 +844,10 @@ public class PharmacyManagementPanel extends JPanel {
     }
 
     private void updateTotal(DefaultTableModel model, JLabel totalLabel) {
-        double total = 0.0;
+        long total = 0;
 
         for (int i = 0; i < model.getRowCount(); i++) {
-            String priceStr = (String) model.getValueAt(i, 6);
-            double price = Double.parseDouble(priceStr.substring(1));
+            long price = Money.parse((String) model.getValueAt(i, 6));
 
             int quantity = 1;
             try {
@@ -827,10 +859,10 @@ public class PharmacyManagementPanel extends JPanel {
                 // Use default quantity of 1
             }
 
-            total += price * quantity;
+            total = Money.add(total, Money.times(price, quantity));
         }
 
-        totalLabel.setText(String.format("Total: $%.2f", total));
+        totalLabel.setText("Total: " + Money.display(total));
     }
 
     private void addDetailRow(JPanel panel, String label, String value) {
@@ -2,6 +2,7 @@ package hms.ui;
 
 import hms.model.Patient;
 import hms.service.PatientService;
+import hms.service.ServiceRegistry;
 import hms.util.PDFGenerator;
 
 import javax.swing.*;
@@ -20,7 +21,7 @@ public class ReportsPanel extends JPanel {
     private PatientService patientService;
 
     public ReportsPanel() {
-        patientService = new PatientService();
+        patientService = ServiceRegistry.getInstance().getPatientService();
         initializeUI();
     }
 
@@ -2,6 +2,7 @@ package hms.ui;
 
 import hms.model.User;
 import hms.service.UserService;
+import hms.service.ServiceRegistry;
 import hms.util.PasswordUtils;
 
 import javax.swing.*;
@@ -21,9 +22,12 @@ public class UserManagementPanel extends JPanel {
     private JButton deleteButton;
     private JButton resetPasswordButton;
     private JButton refreshButton;
+    private PagingBar pagingBar;
+    // Results of the last search, paged in memory; null while paging through every user
+    private List<User> searchResults;
 
     public UserManagementPanel() {
-        userService = new UserService();
+        userService = ServiceRegistry.getInstance().getUserService();
         initializeUI();
         loadUsers();
     }
@@ -81,6 +85,9 @@ public class UserManagementPanel extends JPanel {
         add(topPanel, BorderLayout.NORTH);
         add(scrollPane, BorderLayout.CENTER);
 
+        pagingBar = new PagingBar(this::showUsers);
+        add(pagingBar, BorderLayout.SOUTH);
+
         // Add action listeners
         searchButton.addActionListener(e -> searchUsers());
         searchField.addKeyListener(new KeyAdapter() {
@@ -100,32 +107,32 @@ public class UserManagementPanel extends JPanel {
     }
 
     private void loadUsers() {
-        // Clear table
-        tableModel.setRowCount(0);
-
-        // Load users from service
-        List<User> users = userService.getAll();
-
-        // Add users to table
-        for (User user : users) {
-            Object[] row = {
-                    user.getUsername(),
-                    user.getFullName(),
-                    user.getRole(),
-                    user.isActive() ? "Active" : "Inactive"
-            };
-            tableModel.addRow(row);
-        }
+        searchResults = null;
+        showUsers();
     }
 
     private void searchUsers() {
         String query = searchField.getText().trim();
 
+        // Search users; a blank query goes back to paging through all of them
+        searchResults = query.isEmpty() ? null : userService.search(query);
+        pagingBar.firstPage();
+        showUsers();
+    }
+
+    // Fill the table with the current page only
+    private void showUsers() {
         // Clear table
         tableModel.setRowCount(0);
 
-        // Search users
-        List<User> users = userService.search(query);
+        List<User> users;
+        if (searchResults != null) {
+            pagingBar.setTotal(searchResults.size());
+            users = pagingBar.window(searchResults);
+        } else {
+            pagingBar.setTotal(userService.count());
+            users = userService.getPage(pagingBar.getOffset(), pagingBar.getPageSize(), null);
+        }
 
         // Add users to table
         for (User user : users) {
@@ -323,13 +330,13 @@ public class UserManagementPanel extends JPanel {
                     return;
                 }
 
-                // Update user object
-                user.setFullName(fullName);
-                user.setRole((String) roleComboBox.getSelectedItem());
-                user.setActive(statusComboBox.getSelectedItem().equals("Active"));
+                // Build a new copy so a refused change leaves the stored user untouched
+                User updated = new User(user.getUsername(), user.getPassword(), fullName,
+                        (String) roleComboBox.getSelectedItem());
+                updated.setActive(statusComboBox.getSelectedItem().equals("Active"));
 
                 // Save user
-                if (userService.update(user)) {
+                if (userService.update(updated)) {
                     JOptionPane.showMessageDialog(dialog, "User updated successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
                     dialog.dispose();
                     loadUsers();
@@ -451,11 +458,12 @@ public class UserManagementPanel extends JPanel {
                     return;
                 }
 
-                // Update user password
-                user.setPassword(password); // In a real application, this would be hashed
+                // Build a new copy so a refused change leaves the stored user untouched
+                User updated = new User(user.getUsername(), password, user.getFullName(), user.getRole());
+                updated.setActive(user.isActive());
 
                 // Save user
-                if (userService.update(user)) {
+                if (userService.update(updated)) {
                     JOptionPane.showMessageDialog(dialog, "Password reset successfully", "Success", JOptionPane.INFORMATION_MESSAGE);
                     dialog.dispose();
                 } else {
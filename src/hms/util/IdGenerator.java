@@ -0,0 +1,229 @@
+package hms.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snowflake-style generator for entity IDs: prefix + a 63-bit number made of
+ * 41 bits of milliseconds since 2024-01-01, a 10-bit node id and a 12-bit
+ * sequence. IDs from one generator are strictly increasing, so they never
+ * collide, however many threads share it.
+ *
+ * Each workstation sharing the data directory claims its own node id by
+ * locking "node-&lt;n&gt;.lock" in the IDs directory for as long as the
+ * generator is open (-Dhms.nodeId pins the number). The lock file also holds
+ * a timestamp lease: IDs are only handed out below it and it is pushed ahead
+ * in LEASE_MILLIS steps, so after a restart, or a clock set back, numbering
+ * resumes above anything issued before.
+ *
+ * next() is lock-free. When 4096 IDs are taken within one millisecond it
+ * carries on into the next millisecond rather than waiting for the clock.
+ */
+public final class IdGenerator implements AutoCloseable {
+
+    private static final long EPOCH = 1704067200000L; // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long LEASE_MILLIS = 10000;
+
+    private static final String DEFAULT_DIRECTORY = "data/ids";
+    private static IdGenerator defaultInstance;
+
+    private final int node;
+    private final FileChannel channel;
+    private final FileLock nodeLock;
+
+    // Last issued (timestamp << SEQUENCE_BITS | sequence)
+    private final AtomicLong last;
+    // IDs may be issued with timestamps below this; persisted before it is raised
+    private volatile long leaseUntil;
+
+    private IdGenerator(int node, FileChannel channel, FileLock nodeLock, long lease) {
+        this.node = node;
+        this.channel = channel;
+        this.nodeLock = nodeLock;
+        long start = Math.max(System.currentTimeMillis() - EPOCH, lease);
+        this.last = new AtomicLong(start << SEQUENCE_BITS);
+        this.leaseUntil = lease;
+    }
+
+    // The process-wide generator over data/ids, opened on first use
+    public static synchronized IdGenerator getDefault() {
+        if (defaultInstance == null) {
+            defaultInstance = open(DEFAULT_DIRECTORY);
+        }
+        return defaultInstance;
+    }
+
+    public static synchronized void closeDefault() {
+        if (defaultInstance != null) {
+            defaultInstance.close();
+            defaultInstance = null;
+        }
+    }
+
+    /**
+     * Claim a node id in the given directory: the one named by -Dhms.nodeId,
+     * otherwise the lowest one no other generator holds. Throws
+     * IllegalStateException if that is not possible.
+     */
+    public static IdGenerator open(String directory) {
+        Path dir = Paths.get(directory);
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create ID directory " + dir, e);
+        }
+
+        String pinned = System.getProperty("hms.nodeId");
+        if (pinned != null) {
+            int node = Integer.parseInt(pinned.trim());
+            if (node < 0 || node > MAX_NODE) {
+                throw new IllegalArgumentException("hms.nodeId must be between 0 and " + MAX_NODE + ": " + node);
+            }
+            IdGenerator generator = tryClaim(dir, node);
+            if (generator == null) {
+                throw new IllegalStateException("Node id " + node + " in " + dir + " is in use or unreadable");
+            }
+            return generator;
+        }
+
+        for (int node = 0; node <= MAX_NODE; node++) {
+            IdGenerator generator = tryClaim(dir, node);
+            if (generator != null) {
+                return generator;
+            }
+        }
+        throw new IllegalStateException("All " + (MAX_NODE + 1) + " node ids in " + dir + " are in use");
+    }
+
+    /**
+     * Lock the node's file and read its lease, or return null if another
+     * generator holds it or its lease is unreadable. Throws
+     * IllegalStateException if the file cannot be opened or locked at all:
+     * without the lock and lease, IDs could repeat ones issued before.
+     */
+    private static IdGenerator tryClaim(Path dir, int node) {
+        Path path = dir.resolve("node-" + node + ".lock");
+        FileChannel channel = null;
+        FileLock lock;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            lock = channel.tryLock();
+            if (lock == null) {
+                channel.close();
+                return null;
+            }
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new IllegalStateException("Could not lock ID node file " + path, e);
+        } catch (OverlappingFileLockException e) {
+            // Already claimed by another generator in this JVM
+            closeQuietly(channel);
+            return null;
+        }
+
+        try {
+            return new IdGenerator(node, channel, lock, readLease(channel));
+        } catch (IOException e) {
+            // Leave a damaged node file for inspection and move on to the next node
+            System.err.println("Skipping ID node " + node + ": " + e.getMessage());
+            closeQuietly(channel);
+            return null;
+        }
+    }
+
+    private static long readLease(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(32);
+        channel.read(buffer, 0);
+        String text = new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII).trim();
+        if (text.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new IOException("Unreadable lease in node file: " + text);
+        }
+    }
+
+    public int getNode() {
+        return node;
+    }
+
+    // A new ID, e.g. next("P") -> "P33741279981817856"
+    public String next(String prefix) {
+        return prefix + nextLong();
+    }
+
+    public long nextLong() {
+        long now = System.currentTimeMillis() - EPOCH;
+        long current;
+        long next;
+        do {
+            current = last.get();
+            next = Math.max(current + 1, now << SEQUENCE_BITS);
+        } while (!last.compareAndSet(current, next));
+
+        long timestamp = next >>> SEQUENCE_BITS;
+        if (timestamp >= leaseUntil) {
+            extendLease(timestamp);
+        }
+        return timestamp << (NODE_BITS + SEQUENCE_BITS) | (long) node << SEQUENCE_BITS | (next & SEQUENCE_MASK);
+    }
+
+    // Persist a lease past the timestamp before any ID carrying it is returned
+    private synchronized void extendLease(long timestamp) {
+        if (timestamp < leaseUntil) {
+            return;
+        }
+        long lease = timestamp + LEASE_MILLIS;
+        try {
+            // Fixed width, so the new value overwrites the old one in place
+            byte[] text = String.format("%020d%n", lease).getBytes(StandardCharsets.US_ASCII);
+            channel.write(ByteBuffer.wrap(text), 0);
+            channel.force(false);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not record ID lease for node " + node, e);
+        }
+        leaseUntil = lease;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            if (nodeLock.isValid()) {
+                nodeLock.release();
+            }
+        } catch (IOException e) {
+            System.err.println("Could not release ID node " + node + ": " + e.getMessage());
+        }
+        closeQuietly(channel);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing ID node file: " + e.getMessage());
+        }
+    }
+}
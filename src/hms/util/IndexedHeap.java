@@ -0,0 +1,162 @@
+package hms.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary min-heap of values addressed by key. Besides the usual O(log n)
+ * offer and poll it keeps each key's position in the heap, so a value can be
+ * looked up in O(1), and removed or re-ordered after a change in O(log n)
+ * without searching for it.
+ *
+ * Not thread-safe; callers synchronize.
+ */
+public class IndexedHeap<K, V> {
+
+    private final Comparator<? super V> order;
+    private final List<K> keys = new ArrayList<>();
+    private final List<V> values = new ArrayList<>();
+    private final Map<K, Integer> positions = new HashMap<>();
+
+    public IndexedHeap(Comparator<? super V> order) {
+        this.order = order;
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    public boolean isEmpty() {
+        return keys.isEmpty();
+    }
+
+    public boolean contains(K key) {
+        return positions.containsKey(key);
+    }
+
+    public V get(K key) {
+        Integer position = positions.get(key);
+        return position != null ? values.get(position) : null;
+    }
+
+    // Add the value, or replace and re-order the one already filed under the key
+    public void offer(K key, V value) {
+        Integer position = positions.get(key);
+        if (position != null) {
+            values.set(position, value);
+            restore(position);
+            return;
+        }
+        keys.add(key);
+        values.add(value);
+        positions.put(key, keys.size() - 1);
+        siftUp(keys.size() - 1);
+    }
+
+    // Re-establish the key's place after its value changed in a way that affects the order
+    public boolean update(K key) {
+        Integer position = positions.get(key);
+        if (position == null) {
+            return false;
+        }
+        restore(position);
+        return true;
+    }
+
+    public K peekKey() {
+        return keys.isEmpty() ? null : keys.get(0);
+    }
+
+    public V peek() {
+        return values.isEmpty() ? null : values.get(0);
+    }
+
+    public V poll() {
+        return keys.isEmpty() ? null : removeAt(0);
+    }
+
+    public V remove(K key) {
+        Integer position = positions.get(key);
+        return position != null ? removeAt(position) : null;
+    }
+
+    // Values in heap (not sorted) order
+    public List<V> values() {
+        return new ArrayList<>(values);
+    }
+
+    private V removeAt(int position) {
+        int last = keys.size() - 1;
+        V removed = values.get(position);
+        positions.remove(keys.get(position));
+        if (position != last) {
+            move(last, position);
+        }
+        keys.remove(last);
+        values.remove(last);
+        if (position != last) {
+            restore(position);
+        }
+        return removed;
+    }
+
+    private void restore(int position) {
+        if (position > 0 && less(position, (position - 1) / 2)) {
+            siftUp(position);
+        } else {
+            siftDown(position);
+        }
+    }
+
+    private void siftUp(int position) {
+        K key = keys.get(position);
+        V value = values.get(position);
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (order.compare(value, values.get(parent)) >= 0) {
+                break;
+            }
+            move(parent, position);
+            position = parent;
+        }
+        place(key, value, position);
+    }
+
+    private void siftDown(int position) {
+        K key = keys.get(position);
+        V value = values.get(position);
+        int size = keys.size();
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && less(child + 1, child)) {
+                child++;
+            }
+            if (order.compare(values.get(child), value) >= 0) {
+                break;
+            }
+            move(child, position);
+            position = child;
+        }
+        place(key, value, position);
+    }
+
+    private boolean less(int a, int b) {
+        return order.compare(values.get(a), values.get(b)) < 0;
+    }
+
+    private void move(int from, int to) {
+        place(keys.get(from), values.get(from), to);
+    }
+
+    private void place(K key, V value, int position) {
+        keys.set(position, key);
+        values.set(position, value);
+        positions.put(key, position);
+    }
+}
@@ -0,0 +1,172 @@
+package hms.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Money as a primitive long of cents. Bill, item and medicine amounts are
+ * held this way so that adding them up is exact integer arithmetic: no
+ * binary-fraction drift as with double, and no object per value as with
+ * BigDecimal.
+ *
+ * Percentages (discount, tax) are taken in basis points, i.e. hundredths of
+ * a percent, and every division rounds half away from zero, the way a
+ * receipt is rounded. Arithmetic that would overflow a long throws
+ * ArithmeticException instead of wrapping.
+ */
+public final class Money {
+
+    public static final long CENTS_PER_UNIT = 100;
+    public static final long BASIS_POINTS_PER_UNIT = 10000;
+
+    private Money() {
+    }
+
+    // Nearest cent to an amount in currency units, e.g. 12.345 -> 1235
+    public static long ofAmount(double amount) {
+        if (Double.isNaN(amount) || Double.isInfinite(amount)) {
+            throw new ArithmeticException("Not a money amount: " + amount);
+        }
+        double cents = amount * CENTS_PER_UNIT;
+        if (Math.abs(cents) >= Long.MAX_VALUE) {
+            throw new ArithmeticException("Money amount out of range: " + amount);
+        }
+        return (long) (cents < 0 ? cents - 0.5 : cents + 0.5);
+    }
+
+    // Amount in currency units, for display and for callers that still work in double
+    public static double toAmount(long cents) {
+        return cents / (double) CENTS_PER_UNIT;
+    }
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    // Line amount for a unit price and quantity
+    public static long times(long cents, int quantity) {
+        return Math.multiplyExact(cents, (long) quantity);
+    }
+
+    // Percentage to basis points, e.g. 7.25 -> 725
+    public static long basisPoints(double percent) {
+        return ofAmount(percent);
+    }
+
+    // The given share of an amount, rounded to the cent, e.g. 7.25% of 1999 -> 145
+    public static long percentOf(long cents, long basisPoints) {
+        return divideRounded(Math.multiplyExact(cents, basisPoints), BASIS_POINTS_PER_UNIT);
+    }
+
+    // Division rounding half away from zero; the divisor must be positive
+    public static long divideRounded(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (Math.abs(remainder) * 2 >= divisor) {
+            quotient += dividend < 0 ? -1 : 1;
+        }
+        return quotient;
+    }
+
+    // Parse a decimal amount such as "12.5", "-3", "$1,234.567" or "1.0E7" into cents, rounding past the second decimal
+    public static long parse(String text) {
+        if (text == null) {
+            throw new NumberFormatException("Empty money amount");
+        }
+        return parse(text.toCharArray(), 0, text.length());
+    }
+
+    // Same as parse(String) for chars[start, end), without allocating
+    public static long parse(char[] chars, int start, int end) {
+        while (start < end && Character.isWhitespace(chars[start])) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(chars[end - 1])) {
+            end--;
+        }
+        int i = start;
+        boolean negative = i < end && chars[i] == '-';
+        if (i < end && (negative || chars[i] == '+')) {
+            i++;
+        }
+        if (i < end && chars[i] == '$') {
+            i++;
+        }
+
+        long cents = 0;
+        int decimals = -1; // digits seen after the point, -1 before it
+        boolean roundUp = false;
+        boolean seenDigit = false;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (decimals < 0) {
+                    cents = Math.addExact(Math.multiplyExact(cents, 10), c - '0');
+                } else if (decimals < 2) {
+                    cents = Math.addExact(Math.multiplyExact(cents, 10), c - '0');
+                    decimals++;
+                } else if (decimals == 2) {
+                    // Only the first digit past the cents decides the rounding
+                    roundUp = c >= '5';
+                    decimals++;
+                }
+            } else if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (c == ',' && decimals < 0 && seenDigit) {
+                // Thousands separator
+            } else if ((c == 'e' || c == 'E') && seenDigit) {
+                return parseScientific(chars, start, end);
+            } else {
+                throw new NumberFormatException("Not a money amount: " + new String(chars, start, end - start));
+            }
+        }
+        if (!seenDigit) {
+            throw new NumberFormatException("Not a money amount: " + new String(chars, start, end - start));
+        }
+        for (int d = Math.max(decimals, 0); d < 2; d++) {
+            cents = Math.multiplyExact(cents, 10);
+        }
+        if (roundUp) {
+            cents = Math.addExact(cents, 1);
+        }
+        return negative ? -cents : cents;
+    }
+
+    // Amounts written by Double.toString in older data files, e.g. "1.0E7"; rare enough to go through BigDecimal
+    private static long parseScientific(char[] chars, int start, int end) {
+        BigDecimal amount;
+        try {
+            amount = new BigDecimal(chars, start, end - start);
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException("Not a money amount: " + new String(chars, start, end - start));
+        }
+        return amount.setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+    }
+
+    // Plain decimal with two places, e.g. 123456 -> "1234.56"; what parse and the data files read back
+    public static String format(long cents) {
+        StringBuilder text = new StringBuilder(24);
+        if (cents < 0) {
+            text.append('-');
+        }
+        // Long.MIN_VALUE has no positive counterpart, so split before negating
+        long units = Math.abs(cents / CENTS_PER_UNIT);
+        int fraction = (int) Math.abs(cents % CENTS_PER_UNIT);
+        text.append(units).append('.');
+        if (fraction < 10) {
+            text.append('0');
+        }
+        return text.append(fraction).toString();
+    }
+
+    // For display, e.g. 123456 -> "$1234.56", -50 -> "-$0.50"
+    public static String display(long cents) {
+        String amount = format(cents);
+        return cents < 0 ? "-$" + amount.substring(1) : "$" + amount;
+    }
+}
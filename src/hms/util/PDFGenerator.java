@@ -149,25 +149,25 @@ public class PDFGenerator {
             addTableHeader(table, new String[]{"Description", "Quantity", "Unit Price", "Amount"});
 
             // Add billing items
-            double subtotal = 0;
+            long subtotal;
             List<Billing.BillItem> items = billing.getItems();
             if (items != null && !items.isEmpty()) {
                 for (Billing.BillItem item : items) {
                     if (item != null) {
                         table.addCell(new Phrase(safeString(item.getDescription()), SMALL_FONT));
                         table.addCell(new Phrase(String.valueOf(item.getQuantity()), SMALL_FONT));
-                        table.addCell(new Phrase(String.format("$%.2f", item.getUnitPrice()), SMALL_FONT));
-                        table.addCell(new Phrase(String.format("$%.2f", item.getAmount()), SMALL_FONT));
-                        subtotal += item.getAmount();
+                        table.addCell(new Phrase(Money.display(item.getUnitPriceCents()), SMALL_FONT));
+                        table.addCell(new Phrase(Money.display(item.getAmountCents()), SMALL_FONT));
                     }
                 }
+                subtotal = billing.getSubtotalCents();
             } else {
                 // Add sample items if none exist
                 table.addCell(new Phrase("Consultation Fee", SMALL_FONT));
                 table.addCell(new Phrase("1", SMALL_FONT));
-                table.addCell(new Phrase(String.format("$%.2f", billing.getTotalAmount()), SMALL_FONT));
-                table.addCell(new Phrase(String.format("$%.2f", billing.getTotalAmount()), SMALL_FONT));
-                subtotal = billing.getTotalAmount();
+                table.addCell(new Phrase(Money.display(billing.getTotalCents()), SMALL_FONT));
+                table.addCell(new Phrase(Money.display(billing.getTotalCents()), SMALL_FONT));
+                subtotal = billing.getTotalCents();
             }
 
             document.add(table);
@@ -179,21 +179,22 @@ public class PDFGenerator {
             summaryTable.setHorizontalAlignment(Element.ALIGN_RIGHT);
 
             summaryTable.addCell(new Phrase("Subtotal:", NORMAL_FONT));
-            summaryTable.addCell(new Phrase(String.format("$%.2f", subtotal), NORMAL_FONT));
+            summaryTable.addCell(new Phrase(Money.display(subtotal), NORMAL_FONT));
 
-            double discountAmount = subtotal * (billing.getDiscount() / 100.0);
+            // Rounded the same way as the bill's own total, so the lines add up to it
+            long discountAmount = Money.percentOf(subtotal, Money.basisPoints(billing.getDiscount()));
             summaryTable.addCell(new Phrase("Discount (" + billing.getDiscount() + "%):", NORMAL_FONT));
-            summaryTable.addCell(new Phrase(String.format("$%.2f", discountAmount), NORMAL_FONT));
+            summaryTable.addCell(new Phrase(Money.display(discountAmount), NORMAL_FONT));
 
-            double taxAmount = subtotal * (billing.getTax() / 100.0);
+            long taxAmount = Money.percentOf(subtotal, Money.basisPoints(billing.getTax()));
             summaryTable.addCell(new Phrase("Tax (" + billing.getTax() + "%):", NORMAL_FONT));
-            summaryTable.addCell(new Phrase(String.format("$%.2f", taxAmount), NORMAL_FONT));
+            summaryTable.addCell(new Phrase(Money.display(taxAmount), NORMAL_FONT));
 
             PdfPCell totalCell = new PdfPCell(new Phrase("Total:", SUBTITLE_FONT));
             totalCell.setBorder(0);
             summaryTable.addCell(totalCell);
 
-            PdfPCell totalAmountCell = new PdfPCell(new Phrase(String.format("$%.2f", billing.getTotalAmount()), SUBTITLE_FONT));
+            PdfPCell totalAmountCell = new PdfPCell(new Phrase(Money.display(billing.getTotalCents()), SUBTITLE_FONT));
             totalAmountCell.setBorder(0);
             summaryTable.addCell(totalAmountCell);
 
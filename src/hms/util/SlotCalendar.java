@@ -0,0 +1,389 @@
+package hms.util;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Free/busy bitmap per resource (e.g. per doctor) over a fixed horizon of
+ * days, one bit per slot of slotMinutes (5 minutes gives 288 slots, or 5 words,
+ * a day; 15 minutes gives 96 slots, or 2 words).
+ *
+ * Each resource has three layers per day: "open" (working hours, minus
+ * holidays and other closures), "booked", and "free" = open AND NOT booked.
+ * Each resource also has one bit per day saying whether the day has any free
+ * slot at all. Finding a run of n free slots ANDs the day's words with
+ * themselves shifted down by 1, 2, 4... slots, so it takes O(log n) word
+ * operations. A search across resources ORs their day bits and skips
+ * straight to the next day on which any of them has a free slot.
+ *
+ * Times are minutes after midnight. Ranges are [start, end). Closing and
+ * booking round outward to whole slots; finding free time rounds the
+ * duration up. Days outside the horizon are ignored.
+ */
+public class SlotCalendar {
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    private final LocalDate firstDay;
+    private final int days;
+    private final int slotMinutes;
+    private final int slotsPerDay;
+    private final int wordsPerDay;
+    private final int summaryWords;
+
+    private final Map<String, Resource> resources = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public SlotCalendar(LocalDate firstDay, int days, int slotMinutes) {
+        if (slotMinutes <= 0 || MINUTES_PER_DAY % slotMinutes != 0) {
+            throw new IllegalArgumentException("Slot length must divide a day evenly: " + slotMinutes);
+        }
+        if (days <= 0) {
+            throw new IllegalArgumentException("Horizon must be at least one day: " + days);
+        }
+        this.firstDay = firstDay;
+        this.days = days;
+        this.slotMinutes = slotMinutes;
+        this.slotsPerDay = MINUTES_PER_DAY / slotMinutes;
+        this.wordsPerDay = (slotsPerDay + 63) / 64;
+        this.summaryWords = (days + 63) / 64;
+    }
+
+    /** A free run found by firstOpening: the resource, the day and the start minute. */
+    public static final class Opening {
+        private final String resource;
+        private final LocalDate day;
+        private final int startMinute;
+
+        Opening(String resource, LocalDate day, int startMinute) {
+            this.resource = resource;
+            this.day = day;
+            this.startMinute = startMinute;
+        }
+
+        public String getResource() {
+            return resource;
+        }
+
+        public LocalDate getDay() {
+            return day;
+        }
+
+        public int getStartMinute() {
+            return startMinute;
+        }
+    }
+
+    public LocalDate getFirstDay() {
+        return firstDay;
+    }
+
+    public LocalDate getLastDay() {
+        return firstDay.plusDays(days - 1);
+    }
+
+    public int getSlotMinutes() {
+        return slotMinutes;
+    }
+
+    public boolean contains(String resource) {
+        lock.readLock().lock();
+        try {
+            return resources.containsKey(resource);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Register the resource (fully closed) if it is not known yet
+    public void addResource(String resource) {
+        lock.writeLock().lock();
+        try {
+            resources.computeIfAbsent(resource, r -> new Resource());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeResource(String resource) {
+        lock.writeLock().lock();
+        try {
+            resources.remove(resource);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Mark [start, end) open (e.g. working hours) on the day
+    public void open(String resource, LocalDate day, int start, int end) {
+        setOpen(resource, day, start, end, true);
+    }
+
+    // Mark [start, end) closed on the day (time off); bookings stay recorded
+    public void close(String resource, LocalDate day, int start, int end) {
+        setOpen(resource, day, start, end, false);
+    }
+
+    // Close the whole day for every resource, e.g. a public holiday
+    public void closeDay(LocalDate day) {
+        int index = dayIndex(day);
+        if (index < 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Resource resource : resources.values()) {
+                int from = index * wordsPerDay;
+                for (int w = from; w < from + wordsPerDay; w++) {
+                    resource.open[w] = 0;
+                    resource.free[w] = 0;
+                }
+                resource.summary[index >>> 6] &= ~(1L << index);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void book(String resource, LocalDate day, int start, int end) {
+        setBooked(resource, day, start, end, true);
+    }
+
+    public void release(String resource, LocalDate day, int start, int end) {
+        setBooked(resource, day, start, end, false);
+    }
+
+    // Forget every booking of the resource on the day, e.g. before re-reading them
+    public void clearBookings(String resource, LocalDate day) {
+        setBooked(resource, day, 0, MINUTES_PER_DAY, false);
+    }
+
+    // Start minutes of every free run of the duration on the day, in order; runs may overlap
+    public List<Integer> freeSlots(String resource, LocalDate day, int durationMinutes) {
+        int index = dayIndex(day);
+        List<Integer> starts = new ArrayList<>();
+        if (index < 0) {
+            return starts;
+        }
+        long[] runs = new long[wordsPerDay];
+        lock.readLock().lock();
+        try {
+            Resource calendar = resources.get(resource);
+            if (calendar == null || !runStarts(calendar.free, index, slotsFor(durationMinutes), runs, new long[wordsPerDay])) {
+                return starts;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int w = 0; w < wordsPerDay; w++) {
+            long word = runs[w];
+            while (word != 0) {
+                starts.add((w * 64 + Long.numberOfTrailingZeros(word)) * slotMinutes);
+                word &= word - 1;
+            }
+        }
+        return starts;
+    }
+
+    /**
+     * The earliest free run of the duration among the resources, at or after
+     * fromMinute on fromDay, or null if there is none within the horizon. Ties
+     * go to the resource listed first.
+     */
+    public Opening firstOpening(Collection<String> resourceIds, LocalDate fromDay, int fromMinute, int durationMinutes) {
+        if (fromDay.isAfter(getLastDay())) {
+            return null;
+        }
+        int index = 0;
+        int firstSlot = 0;
+        if (!fromDay.isBefore(firstDay)) {
+            index = dayIndex(fromDay);
+            firstSlot = Math.min(slotsPerDay, (Math.max(0, fromMinute) + slotMinutes - 1) / slotMinutes);
+        }
+        int length = slotsFor(durationMinutes);
+        long[] runs = new long[wordsPerDay];
+        long[] scratch = new long[wordsPerDay];
+
+        lock.readLock().lock();
+        try {
+            List<Resource> candidates = new ArrayList<>(resourceIds.size());
+            List<String> names = new ArrayList<>(resourceIds.size());
+            long[] anyFree = new long[summaryWords];
+            for (String id : resourceIds) {
+                Resource resource = resources.get(id);
+                if (resource != null) {
+                    candidates.add(resource);
+                    names.add(id);
+                    for (int w = 0; w < summaryWords; w++) {
+                        anyFree[w] |= resource.summary[w];
+                    }
+                }
+            }
+
+            for (int day = nextSetBit(anyFree, index); day >= 0; day = nextSetBit(anyFree, day + 1)) {
+                int bestSlot = Integer.MAX_VALUE;
+                int best = -1;
+                for (int r = 0; r < candidates.size(); r++) {
+                    Resource resource = candidates.get(r);
+                    if ((resource.summary[day >>> 6] & (1L << day)) == 0 || !runStarts(resource.free, day, length, runs, scratch)) {
+                        continue;
+                    }
+                    int slot = nextSetBit(runs, day == index ? firstSlot : 0);
+                    if (slot >= 0 && slot < bestSlot) {
+                        bestSlot = slot;
+                        best = r;
+                    }
+                }
+                if (best >= 0) {
+                    return new Opening(names.get(best), firstDay.plusDays(day), bestSlot * slotMinutes);
+                }
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void setOpen(String resource, LocalDate day, int start, int end, boolean open) {
+        int index = dayIndex(day);
+        if (index < 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Resource calendar = resources.computeIfAbsent(resource, r -> new Resource());
+            setBits(calendar.open, index, start, end, open);
+            calendar.refresh(index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void setBooked(String resource, LocalDate day, int start, int end, boolean booked) {
+        int index = dayIndex(day);
+        if (index < 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Resource calendar = resources.computeIfAbsent(resource, r -> new Resource());
+            setBits(calendar.booked, index, start, end, booked);
+            calendar.refresh(index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Set or clear the slots covering [start, end) on the day
+    private void setBits(long[] layer, int day, int start, int end, boolean value) {
+        int from = Math.max(0, start) / slotMinutes;
+        int to = Math.min(slotsPerDay, (Math.min(end, MINUTES_PER_DAY) + slotMinutes - 1) / slotMinutes);
+        int base = day * wordsPerDay;
+        for (int slot = from; slot < to; ) {
+            int bit = slot & 63;
+            int count = Math.min(64 - bit, to - slot);
+            long mask = (count == 64 ? -1L : (1L << count) - 1) << bit;
+            if (value) {
+                layer[base + (slot >>> 6)] |= mask;
+            } else {
+                layer[base + (slot >>> 6)] &= ~mask;
+            }
+            slot += count;
+        }
+    }
+
+    /**
+     * Fill runs with the slots of the day that start a free run of the given
+     * length, by ANDing the day with itself shifted down by doubling amounts.
+     * Returns false if there are none. shifted is scratch space of one day.
+     */
+    private boolean runStarts(long[] free, int day, int length, long[] runs, long[] shifted) {
+        System.arraycopy(free, day * wordsPerDay, runs, 0, wordsPerDay);
+        int covered = 1;
+        while (covered < length) {
+            int shift = Math.min(covered, length - covered);
+            shiftDown(runs, shift, shifted);
+            boolean any = false;
+            for (int w = 0; w < wordsPerDay; w++) {
+                runs[w] &= shifted[w];
+                any |= runs[w] != 0;
+            }
+            if (!any) {
+                return false;
+            }
+            covered += shift;
+        }
+        for (long word : runs) {
+            if (word != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // dst[slot] = src[slot + shift] across word boundaries; slots past the day read as busy
+    private void shiftDown(long[] src, int shift, long[] dst) {
+        int words = shift >>> 6;
+        int bits = shift & 63;
+        for (int w = 0; w < wordsPerDay; w++) {
+            int from = w + words;
+            long low = from < wordsPerDay ? src[from] : 0;
+            long high = from + 1 < wordsPerDay ? src[from + 1] : 0;
+            dst[w] = bits == 0 ? low : (low >>> bits) | (high << (64 - bits));
+        }
+    }
+
+    private int slotsFor(int durationMinutes) {
+        return Math.max(1, (durationMinutes + slotMinutes - 1) / slotMinutes);
+    }
+
+    private int dayIndex(LocalDate day) {
+        long index = ChronoUnit.DAYS.between(firstDay, day);
+        return index >= 0 && index < days ? (int) index : -1;
+    }
+
+    private static int nextSetBit(long[] words, int from) {
+        int w = from >>> 6;
+        if (w >= words.length) {
+            return -1;
+        }
+        long word = words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return w * 64 + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == words.length) {
+                return -1;
+            }
+            word = words[w];
+        }
+    }
+
+    private final class Resource {
+        final long[] open = new long[days * wordsPerDay];
+        final long[] booked = new long[days * wordsPerDay];
+        final long[] free = new long[days * wordsPerDay];
+        // Bit per day: does it have any free slot
+        final long[] summary = new long[summaryWords];
+
+        void refresh(int day) {
+            boolean any = false;
+            for (int w = day * wordsPerDay; w < (day + 1) * wordsPerDay; w++) {
+                free[w] = open[w] & ~booked[w];
+                any |= free[w] != 0;
+            }
+            if (any) {
+                summary[day >>> 6] |= 1L << day;
+            } else {
+                summary[day >>> 6] &= ~(1L << day);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package hms.util;
+
+import hms.dao.ConnectionPool;
+import hms.dao.DoctorDAO;
+import hms.dao.PatientDAO;
+import hms.dao.SqlDoctorDAO;
+import hms.dao.SqlPatientDAO;
+import hms.interfaces.DataAccessObject;
+import hms.model.Doctor;
+import hms.model.Patient;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Bulk-loads data/patients.txt and data/doctors.txt into the SQL database
+ * used by -Dhms.storage=sql. Run it with the application stopped:
+ *
+ * <pre>
+ * java -cp ...:h2.jar [-Dhms.jdbc.url=...] hms.util.SqlMigration [--replace]
+ * </pre>
+ *
+ * A table that already holds rows is left alone unless --replace is given,
+ * in which case its rows are deleted first. Rows are inserted in batches,
+ * one transaction per batch.
+ */
+public class SqlMigration {
+
+    private static final int BATCH_SIZE = 5000;
+
+    public static void main(String[] args) {
+        boolean replace = args.length > 0 && args[0].equals("--replace");
+
+        try (ConnectionPool pool = ConnectionPool.fromSystemProperties()) {
+            System.out.println("Migrating to " + pool.getUrl());
+            migrate("patients", new PatientDAO(), new SqlPatientDAO(pool), Patient::getId, replace);
+            migrate("doctors", new DoctorDAO(), new SqlDoctorDAO(pool), Doctor::getId, replace);
+        }
+    }
+
+    private static <T> void migrate(String table, DataAccessObject<T, String> source,
+                                    DataAccessObject<T, String> target, Function<T, String> idOf, boolean replace) {
+        long start = System.currentTimeMillis();
+        long existing = target.count();
+        if (existing > 0) {
+            if (!replace) {
+                System.out.println(table + ": " + existing + " row(s) already present, skipped (use --replace)");
+                return;
+            }
+            List<String> ids = new ArrayList<>();
+            for (T entity : target.findAll()) {
+                ids.add(idOf.apply(entity));
+            }
+            target.deleteAll(ids);
+        }
+
+        List<T> entities = source.findAll();
+        int loaded = 0;
+        for (int from = 0; from < entities.size(); from += BATCH_SIZE) {
+            List<T> batch = entities.subList(from, Math.min(from + BATCH_SIZE, entities.size()));
+            int saved = target.saveAll(batch);
+            if (saved == 0) {
+                System.err.println(table + ": batch starting at record " + from + " failed; stopping");
+                break;
+            }
+            loaded += saved;
+        }
+        System.out.println(table + ": " + loaded + " of " + entities.size() + " record(s) loaded in " +
+                (System.currentTimeMillis() - start) + " ms");
+    }
+}
@@ -60,6 +60,7 @@ public class ValidationUtils {
 
     public static String sanitizeString(String input) {
         if (input == null) return "";
-        return input.trim().replaceAll("[,\n\r]", " "); // Remove commas and newlines for CSV safety
+        // The DAO layer quotes fields containing commas, so only line breaks need removing
+        return input.trim().replaceAll("[\n\r]", " ");
     }
 }
@@ -0,0 +1,72 @@
+package hms.dao;
+
+import hms.model.Doctor;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cost of one insert into a data file of 1k, 10k and 100k rows: the append
+ * that FileBasedDAO.save does against the read-everything-and-rewrite it
+ * replaced (readFromFile, add, writeToFile). Both use the DAO's default
+ * ATOMIC durability.
+ *
+ * Run as described in TestPrograms: hms.dao.AppendBenchmark [inserts]
+ */
+public class AppendBenchmark {
+
+    private static final int[] SIZES = {1000, 10000, 100000};
+
+    public static void main(String[] args) throws IOException {
+        int inserts = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        TestPrograms.requireNoDataDirectory();
+        Path file = Paths.get("data/doctors.txt");
+
+        for (int size : SIZES) {
+            long append = Long.MAX_VALUE;
+            long rewrite = Long.MAX_VALUE;
+            // The first pass only warms up the JIT
+            for (int pass = 0; pass < 2; pass++) {
+                Files.deleteIfExists(file);
+                DoctorDAO dao = new DoctorDAO();
+                dao.saveAll(doctors("D", size));
+
+                List<Doctor> added = doctors("A", inserts);
+                long start = System.nanoTime();
+                for (Doctor doctor : added) {
+                    dao.save(doctor);
+                }
+                append = System.nanoTime() - start;
+
+                List<Doctor> rewritten = doctors("R", inserts);
+                start = System.nanoTime();
+                for (Doctor doctor : rewritten) {
+                    List<Doctor> all = dao.readFromFile();
+                    all.add(doctor);
+                    dao.writeToFile(all);
+                }
+                rewrite = System.nanoTime() - start;
+
+                if (dao.readFromFile().size() != size + 2 * inserts) {
+                    System.out.println("MISMATCH: expected " + (size + 2 * inserts) + " rows");
+                    System.exit(1);
+                }
+            }
+            System.out.printf("%,7d rows: append %8.1f us/insert, rewrite %10.1f us/insert%n",
+                    size, append / 1e3 / inserts, rewrite / 1e3 / inserts);
+        }
+        Files.deleteIfExists(file);
+    }
+
+    private static List<Doctor> doctors(String prefix, int count) {
+        List<Doctor> doctors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            doctors.add(new Doctor(prefix + i, "Doctor " + i, 30 + i % 40, "555-" + (1000 + i % 9000),
+                    "General", "Mon-Fri"));
+        }
+        return doctors;
+    }
+}
@@ -0,0 +1,104 @@
+package hms.dao;
+
+import hms.model.Doctor;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cost of updating and then deleting every row of a 1k, 10k and 100k-row
+ * data file in one batch (updateAll, deleteAll) against one call per row
+ * (update, delete), each of which rewrites the whole file. Both use the
+ * DAO's default ATOMIC durability.
+ *
+ * One call per row is quadratic, so only the first sample rows (200 by
+ * default) are timed and the total is extrapolated; those figures are
+ * marked "est.". The file shrinks as rows are deleted, so the estimate for
+ * single deletes is an upper bound, at most about twice the real cost.
+ *
+ * Run as described in TestPrograms: hms.dao.BatchBenchmark [sample]
+ */
+public class BatchBenchmark {
+
+    private static final int[] SIZES = {1000, 10000, 100000};
+
+    public static void main(String[] args) throws IOException {
+        int sample = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        TestPrograms.requireNoDataDirectory();
+        Path file = Paths.get("data/doctors.txt");
+
+        for (int size : SIZES) {
+            int timed = Math.min(sample, size);
+            String estimate = timed < size ? " est." : "";
+            long updateAll = 0;
+            long deleteAll = 0;
+            long updateEach = 0;
+            long deleteEach = 0;
+            // The first pass only warms up the JIT
+            for (int pass = 0; pass < 2; pass++) {
+                Files.deleteIfExists(file);
+                DoctorDAO dao = new DoctorDAO();
+                dao.saveAll(doctors(size, "General"));
+
+                List<Doctor> changed = doctors(size, "Cardiology");
+                long start = System.nanoTime();
+                int updated = dao.updateAll(changed);
+                updateAll = System.nanoTime() - start;
+
+                List<String> ids = ids(size);
+                start = System.nanoTime();
+                int deleted = dao.deleteAll(ids);
+                deleteAll = System.nanoTime() - start;
+
+                if (updated != size || deleted != size || dao.count() != 0) {
+                    System.out.println("MISMATCH: batch updated " + updated + ", deleted " + deleted
+                            + " of " + size + " rows");
+                    System.exit(1);
+                }
+
+                dao.saveAll(doctors(size, "General"));
+                start = System.nanoTime();
+                for (int i = 0; i < timed; i++) {
+                    dao.update(changed.get(i));
+                }
+                updateEach = (System.nanoTime() - start) / timed * size;
+
+                start = System.nanoTime();
+                for (int i = 0; i < timed; i++) {
+                    dao.delete(ids.get(i));
+                }
+                deleteEach = (System.nanoTime() - start) / timed * size;
+
+                if (dao.count() != size - timed) {
+                    System.out.println("MISMATCH: expected " + (size - timed) + " rows after single deletes");
+                    System.exit(1);
+                }
+            }
+            System.out.printf("%,7d rows: updateAll %9.1f ms, update x%d %12.1f ms%s%n",
+                    size, updateAll / 1e6, size, updateEach / 1e6, estimate);
+            System.out.printf("%,7d rows: deleteAll %9.1f ms, delete x%d %12.1f ms%s%n",
+                    size, deleteAll / 1e6, size, deleteEach / 1e6, estimate);
+        }
+        Files.deleteIfExists(file);
+    }
+
+    private static List<Doctor> doctors(int count, String specialization) {
+        List<Doctor> doctors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            doctors.add(new Doctor("D" + i, "Doctor " + i, 30 + i % 40, "555-" + (1000 + i % 9000),
+                    specialization, "Mon-Fri"));
+        }
+        return doctors;
+    }
+
+    private static List<String> ids(int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add("D" + i);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,104 @@
+package hms.dao;
+
+import hms.model.Doctor;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Cost of findById, exists and count on a 10k and a 100k-row data file with
+ * the entity cache on and off. The cached DAO's one-off load is timed
+ * separately; an uncached DAO reads the file on every call.
+ *
+ * Run as described in TestPrograms: hms.dao.CacheBenchmark [lookups]
+ * It exits with status 1 if the two modes disagree.
+ */
+public class CacheBenchmark {
+
+    private static final int[] SIZES = {10000, 100000};
+
+    public static void main(String[] args) throws IOException {
+        int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        TestPrograms.requireNoDataDirectory();
+        Path file = Paths.get("data/doctors.txt");
+
+        for (int size : SIZES) {
+            Files.deleteIfExists(file);
+            new DoctorDAO(false).saveAll(doctors(size));
+            String[] ids = ids(size, lookups);
+
+            long start = System.nanoTime();
+            DoctorDAO cached = new DoctorDAO(true);
+            cached.count();
+            long load = System.nanoTime() - start;
+            DoctorDAO uncached = new DoctorDAO(false);
+
+            // The first pass only warms up the JIT
+            long[] cachedTimes = null;
+            long[] uncachedTimes = null;
+            for (int pass = 0; pass < 2; pass++) {
+                cachedTimes = time(cached, ids);
+                uncachedTimes = time(uncached, ids);
+            }
+            if (cachedTimes[3] != uncachedTimes[3]) {
+                System.out.println("MISMATCH: cached and uncached DAOs found different rows");
+                System.exit(1);
+            }
+
+            System.out.printf("%,7d rows: cache load %.1f ms%n", size, load / 1e6);
+            String[] operations = {"findById", "exists", "count"};
+            for (int i = 0; i < operations.length; i++) {
+                System.out.printf("%,7d rows: %-8s cached %9.2f us, uncached %11.2f us%n", size, operations[i],
+                        cachedTimes[i] / 1e3 / ids.length, uncachedTimes[i] / 1e3 / ids.length);
+            }
+        }
+        Files.deleteIfExists(file);
+    }
+
+    // Nanoseconds for all findById, exists and count calls, then a checksum of what they returned
+    private static long[] time(DoctorDAO dao, String[] ids) {
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (String id : ids) {
+            Doctor doctor = dao.findById(id);
+            checksum += doctor != null ? doctor.getAge() : -1;
+        }
+        long findById = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (String id : ids) {
+            checksum += dao.exists(id) ? 1 : 0;
+        }
+        long exists = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ids.length; i++) {
+            checksum += dao.count();
+        }
+        long count = System.nanoTime() - start;
+        return new long[]{findById, exists, count, checksum};
+    }
+
+    private static List<Doctor> doctors(int count) {
+        List<Doctor> doctors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            doctors.add(new Doctor("D" + i, "Doctor " + i, 30 + i % 40, "555-" + (1000 + i % 9000),
+                    "General", "Mon-Fri"));
+        }
+        return doctors;
+    }
+
+    // Random existing IDs, and one in ten that is missing
+    private static String[] ids(int size, int count) {
+        Random random = new Random(42);
+        String[] ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = i % 10 == 0 ? "MISSING" + i : "D" + random.nextInt(size);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,79 @@
+package hms.dao;
+
+import hms.model.Doctor;
+import hms.model.Medicine;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Multithreaded stress run for the DAO locking: many threads reduce the same
+ * medicine's stock and add doctors while others read, then a fresh DAO checks
+ * that the data file agrees with what the callers were told.
+ *
+ * Run as described in TestPrograms: hms.dao.DaoStress [threads] [operations]
+ * It exits with status 1 if any update was lost.
+ */
+public class DaoStress {
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        TestPrograms.requireNoDataDirectory();
+
+        boolean ok = stressStock(threads, operations);
+        ok &= stressInserts(threads, operations / 10);
+        System.out.println(ok ? "No lost updates" : "LOST UPDATES");
+        System.exit(ok ? 0 : 1);
+    }
+
+    // More reductions than stock: exactly the stock may succeed, and nothing may oversell
+    private static boolean stressStock(int threads, int operations) throws InterruptedException {
+        int stock = operations * 4 / 5;
+        MedicineDAO dao = new MedicineDAO();
+        dao.save(new Medicine("MSTRESS", "Stress", "Stress Labs", 1.0, stock));
+
+        AtomicInteger reduced = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < operations; i++) {
+            pool.execute(() -> {
+                if (dao.reduceQuantity("MSTRESS", 1)) {
+                    reduced.incrementAndGet();
+                }
+                dao.findAll();
+                dao.searchMedicines("stress");
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.MINUTES);
+
+        int cached = dao.findById("MSTRESS").getQuantity();
+        int stored = new MedicineDAO().findById("MSTRESS").getQuantity();
+        System.out.println("Stock: " + reduced + " of " + operations + " reductions succeeded, quantity "
+                + cached + " in memory, " + stored + " on disk");
+        return reduced.get() == stock && cached == 0 && stored == 0;
+    }
+
+    // Concurrent saves of distinct doctors must all be kept
+    private static boolean stressInserts(int threads, int operations) throws InterruptedException {
+        DoctorDAO dao = new DoctorDAO();
+        AtomicInteger saved = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < operations; i++) {
+            String id = "DSTRESS" + i;
+            pool.execute(() -> {
+                if (dao.save(new Doctor(id, "Stress " + id, 40, "555-0100", "General", "Mon-Fri"))) {
+                    saved.incrementAndGet();
+                }
+                dao.findAll();
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.MINUTES);
+
+        long stored = new DoctorDAO().count();
+        System.out.println("Doctors: " + saved + " of " + operations + " saves succeeded, " + stored + " on disk");
+        return saved.get() == operations && stored == operations;
+    }
+}
@@ -0,0 +1,89 @@
+package hms.dao;
+
+import hms.model.Patient;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Patient saves per second with 1, 8 and 64 concurrent writers, first written
+ * directly to the data file and then through the write-ahead journal with
+ * group commit. After the journal is closed, a fresh DAO must read back every
+ * save that was acknowledged.
+ *
+ * Run as described in TestPrograms: hms.dao.JournalBenchmark [seconds]
+ * It exits with status 1 if an acknowledged save is missing.
+ */
+public class JournalBenchmark {
+
+    private static final int[] WRITERS = {1, 8, 64};
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        TestPrograms.requireNoDataDirectory();
+        Path file = Paths.get("data/patients.txt");
+
+        PatientDAO direct = new PatientDAO();
+        long directSaves = 0;
+        for (int writers : WRITERS) {
+            long saves = run(direct, "D" + writers, writers, seconds);
+            directSaves += saves;
+            System.out.printf("direct   %2d writers: %,8d ops/s%n", writers, saves / seconds);
+        }
+        if (new PatientDAO().count() != directSaves) {
+            System.out.println("MISMATCH: " + directSaves + " direct saves acknowledged");
+            System.exit(1);
+        }
+        Files.delete(file);
+
+        PatientDAO journaled = new PatientDAO();
+        WriteAheadLog journal = WriteAheadLog.open("data/journal.wal");
+        journal.attach(journaled);
+        journal.recover();
+        journal.start();
+        long journalSaves = 0;
+        for (int writers : WRITERS) {
+            long saves = run(journaled, "J" + writers, writers, seconds);
+            journalSaves += saves;
+            System.out.printf("journal  %2d writers: %,8d ops/s%n", writers, saves / seconds);
+        }
+        journal.close();
+
+        long stored = new PatientDAO().count();
+        if (stored != journalSaves) {
+            System.out.println("MISMATCH: " + journalSaves + " journaled saves acknowledged, " + stored + " stored");
+            System.exit(1);
+        }
+        Files.delete(file);
+    }
+
+    // Number of saves acknowledged by the writers within the given time
+    private static long run(PatientDAO dao, String prefix, int writers, int seconds) throws InterruptedException {
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicLong saves = new AtomicLong();
+        List<Thread> threads = new ArrayList<>(writers);
+        for (int w = 0; w < writers; w++) {
+            String writerPrefix = prefix + "-" + w + "-";
+            Thread thread = new Thread(() -> {
+                for (int i = 0; !stop.get(); i++) {
+                    if (dao.save(new Patient(writerPrefix + i, "Patient " + i, 30 + i % 50, "555-0100", "Flu"))) {
+                        saves.incrementAndGet();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        Thread.sleep(seconds * 1000L);
+        stop.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return saves.get();
+    }
+}
@@ -0,0 +1,27 @@
+package hms.dao;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Shared setup for the test programs in this package. They are plain mains
+ * rather than a JMH harness, since the project has no test dependencies, and
+ * the DAOs they drive keep their files in data/ under the working directory,
+ * so each is run from an empty directory with the compiled test classes on
+ * the class path, e.g. java -cp out:out-test hms.dao.AppendBenchmark.
+ */
+final class TestPrograms {
+
+    private TestPrograms() {
+    }
+
+    // Exit with status 2 rather than write into, or measure against, an existing data/ directory
+    static void requireNoDataDirectory() {
+        Path data = Paths.get("data");
+        if (Files.exists(data)) {
+            System.err.println("Refusing to run: " + data.toAbsolutePath() + " already exists");
+            System.exit(2);
+        }
+    }
+}
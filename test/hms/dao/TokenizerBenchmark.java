@@ -0,0 +1,148 @@
+package hms.dao;
+
+import java.util.Random;
+
+/**
+ * Parsing of medicine-style records (id, name, manufacturer, category, price,
+ * quantity) with LineTokenizer against the String.split parsing it replaced:
+ * split(","), trim each field, Double.parseDouble and Integer.parseInt.
+ *
+ * Before timing, it checks that fieldCount agrees with the fields advance
+ * actually returns on lines with quotes in and around fields, and that both
+ * parsers read the same values from unquoted lines.
+ *
+ * Each variant is run for several warm-up rounds before the timed ones and
+ * the best round is reported. It needs no data/ directory.
+ * Run as described in TestPrograms: hms.dao.TokenizerBenchmark [lines] [rounds]
+ * It exits with status 1 on a mismatch.
+ */
+public class TokenizerBenchmark {
+
+    private static final String[] QUOTED_LINES = {
+            "M1,\"Paracetamol, 500mg\",Acme,Analgesic,2.50,10",
+            "M2,Tablet 5\" case,Acme,Other,1.00,3",
+            "M3,\"He said \"\"hi, there\"\"\",Acme,Other,1.00,3",
+            "M4, \"spaced, quoted\" ,Acme,Other,1.00,3",
+            "M5,ab\"c,d\"e,Other,1.00,3",
+            "M6,\"unterminated, quote",
+            "M7,,,,,"
+    };
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        if (!checkFieldCounts() || !checkAgainstSplit(100000)) {
+            System.exit(1);
+        }
+
+        String[] lines = lines(count, new Random(42));
+        long tokenizerSum = 0;
+        long splitSum = 0;
+        long bestTokenizer = Long.MAX_VALUE;
+        long bestSplit = Long.MAX_VALUE;
+        for (int round = 0; round < rounds * 2; round++) {
+            long start = System.nanoTime();
+            tokenizerSum = parseWithTokenizer(lines);
+            long middle = System.nanoTime();
+            splitSum = parseWithSplit(lines);
+            long end = System.nanoTime();
+            // The first half of the rounds only warms up the JIT
+            if (round >= rounds) {
+                bestTokenizer = Math.min(bestTokenizer, middle - start);
+                bestSplit = Math.min(bestSplit, end - middle);
+            }
+        }
+
+        System.out.printf("%d lines: LineTokenizer %.1f ms, String.split %.1f ms%n",
+                count, bestTokenizer / 1e6, bestSplit / 1e6);
+        if (tokenizerSum != splitSum) {
+            System.out.println("MISMATCH: checksums " + tokenizerSum + " vs " + splitSum);
+            System.exit(1);
+        }
+    }
+
+    // fieldCount must count exactly the fields that the next* methods walk
+    private static boolean checkFieldCounts() {
+        LineTokenizer tokenizer = new LineTokenizer();
+        boolean ok = true;
+        for (String line : QUOTED_LINES) {
+            int counted = tokenizer.reset(line).fieldCount();
+            int walked = 0;
+            while (tokenizer.hasMoreFields()) {
+                tokenizer.skipField();
+                walked++;
+            }
+            if (counted != walked) {
+                System.out.println("MISMATCH: fieldCount " + counted + ", fields " + walked + " in " + line);
+                ok = false;
+            }
+        }
+        return ok;
+    }
+
+    private static boolean checkAgainstSplit(int count) {
+        LineTokenizer tokenizer = new LineTokenizer();
+        for (String line : lines(count, new Random(7))) {
+            String[] data = line.split(",");
+            tokenizer.reset(line);
+            if (tokenizer.fieldCount() != data.length
+                    || !tokenizer.nextTrimmedString().equals(data[0].trim())
+                    || !tokenizer.nextTrimmedString().equals(data[1].trim())
+                    || !tokenizer.nextTrimmedString().equals(data[2].trim())
+                    || !tokenizer.nextTrimmedString().equals(data[3].trim())
+                    || tokenizer.nextDouble() != Double.parseDouble(data[4].trim())
+                    || tokenizer.nextInt() != Integer.parseInt(data[5].trim())) {
+                System.out.println("MISMATCH: parsers disagree on " + line);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseWithTokenizer(String[] lines) {
+        LineTokenizer tokenizer = new LineTokenizer();
+        long sum = 0;
+        for (String line : lines) {
+            tokenizer.reset(line);
+            if (tokenizer.fieldCount() < 6) {
+                continue;
+            }
+            sum += tokenizer.nextTrimmedString().length();
+            sum += tokenizer.nextTrimmedString().length();
+            sum += tokenizer.nextTrimmedString().length();
+            sum += tokenizer.nextTrimmedString().length();
+            sum += (long) (tokenizer.nextDouble() * 100);
+            sum += tokenizer.nextInt();
+        }
+        return sum;
+    }
+
+    private static long parseWithSplit(String[] lines) {
+        long sum = 0;
+        for (String line : lines) {
+            String[] data = line.split(",");
+            if (data.length < 6) {
+                continue;
+            }
+            sum += data[0].trim().length();
+            sum += data[1].trim().length();
+            sum += data[2].trim().length();
+            sum += data[3].trim().length();
+            sum += (long) (Double.parseDouble(data[4].trim()) * 100);
+            sum += Integer.parseInt(data[5].trim());
+        }
+        return sum;
+    }
+
+    private static String[] lines(int count, Random random) {
+        String[] categories = {"Analgesic", "Antibiotic", "Antiviral", "Vitamin"};
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) {
+            lines[i] = "MED" + i + ",Medicine " + random.nextInt(10000) + ",Maker " + random.nextInt(500) + ","
+                    + categories[random.nextInt(categories.length)] + ","
+                    + random.nextInt(100000) / 100.0 + "," + random.nextInt(1000);
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,96 @@
+package hms.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+/**
+ * Rollup of a million bills in long cents (Money) against the same rollup in
+ * BigDecimal: each bill's subtotal less a percentage discount plus tax, each
+ * rounded to the cent, summed over all bills.
+ *
+ * A plain main rather than a JMH harness; each variant is run for several
+ * warm-up rounds before the timed ones and the best round is reported.
+ *   java -cp out:out-test hms.util.MoneyBenchmark [bills] [rounds]
+ */
+public class MoneyBenchmark {
+
+    private static final int ITEMS_PER_BILL = 4;
+
+    public static void main(String[] args) {
+        int bills = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        Random random = new Random(42);
+        long[] itemCents = new long[bills * ITEMS_PER_BILL];
+        BigDecimal[] itemAmounts = new BigDecimal[itemCents.length];
+        for (int i = 0; i < itemCents.length; i++) {
+            itemCents[i] = random.nextInt(500000);
+            itemAmounts[i] = BigDecimal.valueOf(itemCents[i], 2);
+        }
+        long[] discountPoints = new long[bills];
+        long[] taxPoints = new long[bills];
+        BigDecimal[] discountRates = new BigDecimal[bills];
+        BigDecimal[] taxRates = new BigDecimal[bills];
+        for (int b = 0; b < bills; b++) {
+            discountPoints[b] = random.nextInt(2000);
+            taxPoints[b] = random.nextInt(1500);
+            discountRates[b] = BigDecimal.valueOf(discountPoints[b], 4);
+            taxRates[b] = BigDecimal.valueOf(taxPoints[b], 4);
+        }
+
+        long cents = 0;
+        BigDecimal exact = BigDecimal.ZERO;
+        long bestCents = Long.MAX_VALUE;
+        long bestBigDecimal = Long.MAX_VALUE;
+        for (int round = 0; round < rounds * 2; round++) {
+            long start = System.nanoTime();
+            cents = rollupCents(itemCents, discountPoints, taxPoints);
+            long middle = System.nanoTime();
+            exact = rollupBigDecimal(itemAmounts, discountRates, taxRates);
+            long end = System.nanoTime();
+            // The first half of the rounds only warms up the JIT
+            if (round >= rounds) {
+                bestCents = Math.min(bestCents, middle - start);
+                bestBigDecimal = Math.min(bestBigDecimal, end - middle);
+            }
+        }
+
+        System.out.printf("%d bills: long cents %.1f ms, BigDecimal %.1f ms%n",
+                bills, bestCents / 1e6, bestBigDecimal / 1e6);
+        if (exact.movePointRight(2).longValueExact() != cents) {
+            System.out.println("MISMATCH: " + Money.format(cents) + " vs " + exact.toPlainString());
+            System.exit(1);
+        }
+        System.out.println("Totals agree: " + Money.display(cents));
+    }
+
+    private static long rollupCents(long[] items, long[] discountPoints, long[] taxPoints) {
+        long total = 0;
+        for (int b = 0; b < discountPoints.length; b++) {
+            long subtotal = 0;
+            for (int i = b * ITEMS_PER_BILL; i < (b + 1) * ITEMS_PER_BILL; i++) {
+                subtotal = Money.add(subtotal, items[i]);
+            }
+            long discount = Money.percentOf(subtotal, discountPoints[b]);
+            long tax = Money.percentOf(subtotal, taxPoints[b]);
+            total = Money.add(total, Money.add(Money.subtract(subtotal, discount), tax));
+        }
+        return total;
+    }
+
+    private static BigDecimal rollupBigDecimal(BigDecimal[] items, BigDecimal[] discountRates,
+                                               BigDecimal[] taxRates) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int b = 0; b < discountRates.length; b++) {
+            BigDecimal subtotal = BigDecimal.ZERO;
+            for (int i = b * ITEMS_PER_BILL; i < (b + 1) * ITEMS_PER_BILL; i++) {
+                subtotal = subtotal.add(items[i]);
+            }
+            BigDecimal discount = subtotal.multiply(discountRates[b]).setScale(2, RoundingMode.HALF_UP);
+            BigDecimal tax = subtotal.multiply(taxRates[b]).setScale(2, RoundingMode.HALF_UP);
+            total = total.add(subtotal.subtract(discount).add(tax));
+        }
+        return total;
+    }
+}